@@ -42,6 +42,10 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
+        // User vẫn đăng nhập từ trước khi có tìm kiếm theo tiền tố: bổ sung searchPrefixes
+        new com.example.nanaclu.data.repository.UserRepository(com.google.firebase.firestore.FirebaseFirestore.getInstance())
+                .ensureSearchFields(user.getUid());
+
         // Check if PIN is enabled
         boolean pinEnabled = getSharedPreferences("security", MODE_PRIVATE).getBoolean("pin_enabled", false);
         if (pinEnabled) {
@@ -25,5 +25,8 @@ public class Group {
     public int memberCount;
     public int postCount;
 
+    // true khi mọi member document đã có userName / nameLower / roleRank (group cũ được bổ sung một lần)
+    public Boolean membersIndexed;
+
     public Group() {}
 }
@@ -0,0 +1,39 @@
+package com.example.nanaclu.data.model;
+
+/**
+ * Thông tin rút gọn của một group, lưu kèm trong users/{uid}.joinedGroups
+ * để danh sách group của user chỉ cần đọc một document
+ */
+public class GroupSummary {
+    public String groupId;
+    public String name;
+    public String avatarImageId;
+    public String createdBy;
+    public int memberCount;
+    public String role; // "owner" | "admin" | "member"
+    public long joinedAt;
+
+    public GroupSummary() {}
+
+    public static GroupSummary of(Group group, String role, long joinedAt) {
+        GroupSummary s = new GroupSummary();
+        s.groupId = group.groupId;
+        s.name = group.name;
+        s.avatarImageId = group.avatarImageId;
+        s.createdBy = group.createdBy;
+        s.memberCount = group.memberCount;
+        s.role = role;
+        s.joinedAt = joinedAt;
+        return s;
+    }
+
+    public Group toGroup() {
+        Group g = new Group();
+        g.groupId = groupId;
+        g.name = name;
+        g.avatarImageId = avatarImageId;
+        g.createdBy = createdBy;
+        g.memberCount = memberCount;
+        return g;
+    }
+}
@@ -11,7 +11,34 @@ public class Member {
     public String userEmail;
     public String avatarImageId;
 
+    // Denormalized từ User để danh sách thành viên không phải đọc từng user
+    public String photoUrl;
+    // userName đã chuẩn hóa (TextNormalizer) để tìm theo tiền tố
+    public String nameLower;
+    // Thứ tự vai trò để orderBy: owner 0, admin 1, member 2
+    public int roleRank = 2;
+
     public Member() {}
-}
 
+    public static int rankOf(String role) {
+        if ("owner".equals(role)) return 0;
+        if ("admin".equals(role)) return 1;
+        return 2;
+    }
 
+    /** Gán role cùng roleRank tương ứng */
+    public void applyRole(String role) {
+        this.role = role;
+        this.roleRank = rankOf(role);
+    }
+
+    /** Chép tên / avatar của user vào member (user null thì dùng userId làm tên) */
+    public void applyProfile(User user) {
+        String name = user != null && user.displayName != null && !user.displayName.isEmpty()
+                ? user.displayName : userId;
+        this.userName = name;
+        this.photoUrl = user != null ? user.photoUrl : null;
+        this.avatarImageId = user != null ? user.avatarImageId : null;
+        this.nameLower = com.example.nanaclu.utils.TextNormalizer.normalizeForSearch(name);
+    }
+}
@@ -14,6 +14,8 @@ public class Post {
     public Long editedAt;
     public int likeCount;
     public int commentCount;
+    // true khi mọi like của post đã có trong index users/{uid}/likedPosts (post mới hoặc đã bổ sung)
+    public Boolean likesIndexed;
     
     // Video fields
     public boolean hasVideo;
@@ -22,6 +24,7 @@ public class Post {
     public long videoDurationMs;
     public int videoWidth;
     public int videoHeight;
+    public String videoHlsUrl;    // Master playlist HLS (null nếu chưa đóng gói)
 
     // Poll fields
     public String type;                  // null, "text", "media", "poll"
@@ -33,6 +36,7 @@ public class Post {
     public Boolean pollAllowViewVoters;  // Cho phép xem danh sách người đã chọn
     public Boolean pollHideResult;       // Không công bố kết quả (ẩn số lượng, chỉ hiển thị lựa chọn)
     public Long pollDeadline;            // Thời gian kết thúc (millis), null nếu không giới hạn
+    public Integer pollShardCount;       // Số shard đếm phiếu (PollRepository), null với poll cũ
 
     public Post() {
         this.imageUrls = new ArrayList<>(); // Initialize empty list
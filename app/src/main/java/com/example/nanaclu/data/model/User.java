@@ -13,8 +13,15 @@ public class User {
     public String status; // "online" | "offline"
     // Danh sách groupId mà user đã tham gia để hỗ trợ truy vấn feed hiệu quả
     public java.util.List<String> joinedGroupIds;
+    // Thông tin rút gọn của từng group đã tham gia (groupId -> summary), cập nhật cùng joinedGroupIds
+    public java.util.Map<String, GroupSummary> joinedGroups;
+    // true khi joinedGroupIds / joinedGroups đã được dựng cho user (user cũ cần dựng lại một lần)
+    public Boolean joinedGroupsIndexed;
     public Boolean isadmin; // Admin: true nếu là admin, null hoặc false nếu không phải
     public Boolean allowStrangerMessages; // Cho phép nhận tin nhắn từ người lạ (default: true)
+    // displayName đã chuẩn hóa (TextNormalizer) và các tiền tố theo từng từ, dùng cho tìm kiếm user
+    public String searchName;
+    public java.util.List<String> searchPrefixes;
 
     public User() {
         this.joinedGroupIds = new java.util.ArrayList<>();
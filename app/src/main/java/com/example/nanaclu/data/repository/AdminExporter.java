@@ -0,0 +1,422 @@
+package com.example.nanaclu.data.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Xuất dữ liệu Firestore ra file NDJSON (mỗi dòng một document), có thể nén gzip.
+ * - Duyệt từng collection theo trang (orderBy documentId + startAfter), ghi thẳng ra file,
+ *   bộ nhớ chỉ giữ trang đang xử lý
+ * - Các group (và chat) trong một trang được xuất song song tối đa MAX_PARALLEL
+ * - Sau mỗi trang gốc (users / groups / chats) ghi checkpoint cạnh file: giai đoạn, con trỏ,
+ *   độ dài file. Chạy lại với cùng file sẽ cắt phần ghi dở sau checkpoint và xuất tiếp.
+ *   Khi nén gzip, mỗi trang gốc là một gzip member (file nhiều member vẫn đọc được bằng gunzip)
+ * Mỗi dòng: {"collection": "groups/posts", "path": "groups/{id}/posts/{id}", "data": {...}}
+ * Callback được gọi trên main thread.
+ */
+public class AdminExporter {
+    private static final String TAG = "AdminExporter";
+
+    public enum Section { USERS, GROUPS, POSTS, EVENTS, MEMBERS, REPORTS, GROUP_CHATS, CHATS }
+
+    public interface ExportCallback {
+        /** stage: collection gốc đang xuất (users / groups / chats), documents: tổng số dòng đã ghi */
+        void onProgress(String stage, long documents);
+        void onComplete(File file, long documents);
+        void onError(Exception e);
+    }
+
+    private static final String[] STAGES = {"users", "groups", "chats"};
+    private static final int ROOT_PAGE_SIZE = 200;
+    // Mỗi trang group kéo theo toàn bộ subcollection, giữ nhỏ để checkpoint thường xuyên
+    private static final int GROUP_PAGE_SIZE = 20;
+    private static final int SUB_PAGE_SIZE = 500;
+    private static final int MAX_PARALLEL = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private interface ChildExport {
+        Task<Void> export(DocumentSnapshot parent);
+    }
+
+    private final FirebaseFirestore db;
+    private final File file;
+    private final File checkpointFile;
+    private boolean gzip;
+    // null = lấy tùy chọn từ checkpoint (xuất tiếp)
+    private Set<Section> sections;
+    private final ExportCallback callback;
+
+    // Mọi continuation chạy trên một thread nên ghi file tuần tự, không cần khóa
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private volatile boolean closed;
+    private final Executor io = command -> {
+        if (closed) return;
+        try {
+            worker.execute(command);
+        } catch (RejectedExecutionException ignored) {
+            // Đã kết thúc, bỏ qua các callback đến muộn
+        }
+    };
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    private FileOutputStream fileOut;
+    private Writer writer;
+    private int stageIndex;
+    private String cursor;
+    private long documents;
+
+    public AdminExporter(FirebaseFirestore db, File file, boolean gzip, Set<Section> sections, ExportCallback callback) {
+        this.db = db;
+        this.file = file;
+        this.checkpointFile = checkpointOf(file);
+        this.gzip = gzip;
+        this.sections = sections != null ? EnumSet.copyOf(sections) : null;
+        this.callback = callback;
+    }
+
+    /** File checkpoint đi kèm file xuất, còn tồn tại nghĩa là lần xuất trước chưa xong */
+    public static File checkpointOf(File file) {
+        return new File(file.getPath() + ".checkpoint");
+    }
+
+    public void start() {
+        io.execute(this::begin);
+    }
+
+    private void begin() {
+        try {
+            long length = 0;
+            JSONObject checkpoint = readCheckpoint();
+            if (checkpoint != null && (sections == null || matches(checkpoint))) {
+                gzip = checkpoint.getBoolean("gzip");
+                sections = parseSections(checkpoint.getString("sections"));
+                stageIndex = checkpoint.getInt("stage");
+                cursor = checkpoint.isNull("cursor") ? null : checkpoint.getString("cursor");
+                documents = checkpoint.getLong("documents");
+                length = checkpoint.getLong("length");
+            } else if (sections == null) {
+                throw new IllegalStateException("Không có checkpoint để xuất tiếp");
+            }
+            // Bỏ phần đã ghi sau checkpoint cuối (trang chưa xong sẽ được xuất lại)
+            fileOut = new FileOutputStream(file, length > 0);
+            fileOut.getChannel().truncate(length);
+            openSegment();
+            nextPage();
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private void nextPage() {
+        while (stageIndex < STAGES.length && !stageSelected(STAGES[stageIndex])) {
+            stageIndex++;
+            cursor = null;
+        }
+        if (stageIndex >= STAGES.length) {
+            finish();
+            return;
+        }
+        String stage = STAGES[stageIndex];
+        int pageSize = "groups".equals(stage) ? GROUP_PAGE_SIZE : ROOT_PAGE_SIZE;
+        page(db.collection(stage), cursor, pageSize).addOnCompleteListener(io, t -> {
+            if (!t.isSuccessful()) {
+                fail(t.getException());
+                return;
+            }
+            List<DocumentSnapshot> docs = t.getResult().getDocuments();
+            Task<Void> work;
+            if ("users".equals(stage)) {
+                for (DocumentSnapshot doc : docs) write("users", doc);
+                work = Tasks.forResult(null);
+            } else if ("groups".equals(stage)) {
+                work = forEachBounded(docs, this::exportGroup);
+            } else {
+                work = forEachBounded(docs, chat -> {
+                    write("chats", chat);
+                    return exportCollection(chat.getReference().collection("messages"), "chats/messages", null);
+                });
+            }
+            work.addOnCompleteListener(io, w -> {
+                if (!w.isSuccessful()) {
+                    fail(w.getException());
+                    return;
+                }
+                if (docs.size() < pageSize) {
+                    stageIndex++;
+                    cursor = null;
+                } else {
+                    cursor = docs.get(docs.size() - 1).getId();
+                }
+                try {
+                    checkpoint();
+                } catch (Exception e) {
+                    fail(e);
+                    return;
+                }
+                long count = documents;
+                main.post(() -> callback.onProgress(stage, count));
+                nextPage();
+            });
+        });
+    }
+
+    private Task<Void> exportGroup(DocumentSnapshot group) {
+        if (sections.contains(Section.GROUPS)) write("groups", group);
+        DocumentReference ref = group.getReference();
+        Task<Void> chain = Tasks.forResult(null);
+        if (sections.contains(Section.POSTS)) {
+            chain = then(chain, () -> exportCollection(ref.collection("posts"), "groups/posts", null));
+        }
+        if (sections.contains(Section.EVENTS)) {
+            chain = then(chain, () -> exportCollection(ref.collection("events"), "groups/events", null));
+        }
+        if (sections.contains(Section.MEMBERS)) {
+            chain = then(chain, () -> exportCollection(ref.collection("members"), "groups/members", null));
+        }
+        if (sections.contains(Section.REPORTS)) {
+            chain = then(chain, () -> exportCollection(ref.collection("reports"), "groups/reports", null));
+        }
+        if (sections.contains(Section.GROUP_CHATS)) {
+            chain = then(chain, () -> exportCollection(ref.collection("chats"), "groups/chats",
+                    chat -> exportCollection(chat.getReference().collection("messages"), "groups/chats/messages", null)));
+        }
+        return chain;
+    }
+
+    /**
+     * Xuất cả collection theo trang; children (nếu có) chạy lần lượt cho từng document của trang.
+     * Lỗi đọc subcollection chỉ ghi log và bỏ qua collection đó (như bản xuất cũ).
+     */
+    private Task<Void> exportCollection(CollectionReference collection, String kind, ChildExport children) {
+        return exportPage(collection, kind, children, null);
+    }
+
+    private Task<Void> exportPage(CollectionReference collection, String kind, ChildExport children, String after) {
+        return page(collection, after, SUB_PAGE_SIZE).continueWithTask(io, t -> {
+            if (!t.isSuccessful()) {
+                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, t.getException());
+                android.util.Log.w(TAG, "Skip " + collection.getPath(), t.getException());
+                return Tasks.forResult(null);
+            }
+            List<DocumentSnapshot> docs = t.getResult().getDocuments();
+            Task<Void> chain = Tasks.forResult(null);
+            for (DocumentSnapshot doc : docs) {
+                write(kind, doc);
+                if (children != null) chain = then(chain, () -> children.export(doc));
+            }
+            if (docs.size() < SUB_PAGE_SIZE) return chain;
+            String last = docs.get(docs.size() - 1).getId();
+            return then(chain, () -> exportPage(collection, kind, children, last));
+        });
+    }
+
+    /** Chạy action cho từng document, tối đa MAX_PARALLEL cùng lúc; lỗi đầu tiên làm task thất bại */
+    private Task<Void> forEachBounded(List<DocumentSnapshot> docs, ChildExport action) {
+        TaskCompletionSource<Void> done = new TaskCompletionSource<>();
+        int[] next = {0};
+        int[] running = {0};
+        Runnable[] pump = new Runnable[1];
+        pump[0] = () -> {
+            while (running[0] < MAX_PARALLEL && next[0] < docs.size()) {
+                DocumentSnapshot doc = docs.get(next[0]++);
+                running[0]++;
+                action.export(doc).addOnCompleteListener(io, t -> {
+                    running[0]--;
+                    if (!t.isSuccessful()) {
+                        done.trySetException(t.getException());
+                        return;
+                    }
+                    pump[0].run();
+                });
+            }
+            if (running[0] == 0 && next[0] >= docs.size()) done.trySetResult(null);
+        };
+        pump[0].run();
+        return done.getTask();
+    }
+
+    private Task<Void> then(Task<Void> previous, java.util.function.Supplier<Task<Void>> next) {
+        return previous.continueWithTask(io, t -> {
+            if (!t.isSuccessful()) throw t.getException();
+            return next.get();
+        });
+    }
+
+    private static Task<QuerySnapshot> page(CollectionReference collection, String after, int size) {
+        Query query = collection.orderBy(FieldPath.documentId()).limit(size);
+        if (after != null) query = query.startAfter(after);
+        return query.get();
+    }
+
+    private void write(String kind, DocumentSnapshot doc) {
+        if (closed) return;
+        try {
+            JSONObject line = new JSONObject();
+            line.put("collection", kind);
+            line.put("path", doc.getReference().getPath());
+            line.put("data", AdminRepository.convertMapToJson(doc.getData()));
+            writer.write(line.toString());
+            writer.write('\n');
+            documents++;
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    /** Mở phần ghi mới; khi nén gzip mỗi phần là một gzip member riêng */
+    private void openSegment() throws IOException {
+        // Đóng segment không đóng file
+        OutputStream base = new FilterOutputStream(fileOut) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        OutputStream segment = gzip ? new GZIPOutputStream(base, BUFFER_SIZE) : new BufferedOutputStream(base, BUFFER_SIZE);
+        writer = new OutputStreamWriter(segment, StandardCharsets.UTF_8);
+    }
+
+    private void checkpoint() throws Exception {
+        writer.close();
+        fileOut.getFD().sync();
+
+        JSONObject checkpoint = new JSONObject();
+        checkpoint.put("gzip", gzip);
+        checkpoint.put("sections", sectionsKey(sections));
+        checkpoint.put("stage", stageIndex);
+        checkpoint.put("cursor", cursor != null ? cursor : JSONObject.NULL);
+        checkpoint.put("documents", documents);
+        checkpoint.put("length", fileOut.getChannel().size());
+        File tmp = new File(checkpointFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(checkpoint.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(checkpointFile)) throw new IOException("Không ghi được checkpoint");
+        openSegment();
+    }
+
+    private void finish() {
+        try {
+            writer.close();
+            fileOut.close();
+            //noinspection ResultOfMethodCallIgnored
+            checkpointFile.delete();
+        } catch (Exception e) {
+            fail(e);
+            return;
+        }
+        close();
+        long count = documents;
+        main.post(() -> callback.onComplete(file, count));
+    }
+
+    /** Dừng xuất; file và checkpoint giữ nguyên để lần sau xuất tiếp */
+    private void fail(Exception e) {
+        if (closed) return;
+        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, e);
+        android.util.Log.e(TAG, "Export failed", e);
+        try {
+            if (fileOut != null) fileOut.close();
+        } catch (IOException ignored) {}
+        close();
+        main.post(() -> callback.onError(e));
+    }
+
+    private void close() {
+        closed = true;
+        worker.shutdown();
+    }
+
+    private boolean stageSelected(String stage) {
+        switch (stage) {
+            case "users":
+                return sections.contains(Section.USERS);
+            case "groups":
+                return sections.contains(Section.GROUPS) || sections.contains(Section.POSTS)
+                        || sections.contains(Section.EVENTS) || sections.contains(Section.MEMBERS)
+                        || sections.contains(Section.REPORTS) || sections.contains(Section.GROUP_CHATS);
+            default:
+                return sections.contains(Section.CHATS);
+        }
+    }
+
+    private JSONObject readCheckpoint() {
+        if (!checkpointFile.exists() || !file.exists()) return null;
+        try (FileInputStream in = new FileInputStream(checkpointFile)) {
+            byte[] bytes = new byte[(int) checkpointFile.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            JSONObject checkpoint = new JSONObject(new String(bytes, 0, read, StandardCharsets.UTF_8));
+            // File ngắn hơn checkpoint nghĩa là đã bị sửa, xuất lại từ đầu
+            return checkpoint.getLong("length") <= file.length() ? checkpoint : null;
+        } catch (Exception e) {
+            android.util.Log.w(TAG, "Invalid checkpoint, starting over", e);
+            return null;
+        }
+    }
+
+    private boolean matches(JSONObject checkpoint) {
+        return checkpoint.optBoolean("gzip") == gzip
+                && sectionsKey(sections).equals(checkpoint.optString("sections"));
+    }
+
+    private static String sectionsKey(Set<Section> sections) {
+        StringBuilder sb = new StringBuilder();
+        for (Section s : Section.values()) {
+            if (!sections.contains(s)) continue;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(s.name());
+        }
+        return sb.toString();
+    }
+
+    private static Set<Section> parseSections(String key) {
+        Set<Section> result = EnumSet.noneOf(Section.class);
+        for (String name : key.split(",")) {
+            if (!name.isEmpty()) result.add(Section.valueOf(name));
+        }
+        return result;
+    }
+}
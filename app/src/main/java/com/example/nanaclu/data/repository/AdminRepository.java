@@ -1,8 +1,6 @@
 package com.example.nanaclu.data.repository;
 
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.GeoPoint;
 import com.google.firebase.Timestamp;
@@ -11,15 +9,12 @@ import org.json.JSONArray;
 
 import java.util.Map;
 import java.util.List;
-import java.util.HashMap;
-import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class AdminRepository {
     private final FirebaseFirestore db;
     private static final String USERS_COLLECTION = "users";
-    private static final String GROUPS_COLLECTION = "groups";
-    private static final String CHATS_COLLECTION = "chats";
+    // Tối đa 500 thao tác mỗi batch
+    private static final int MIGRATION_PAGE_SIZE = 400;
 
     public AdminRepository(FirebaseFirestore db) {
         this.db = db;
@@ -49,234 +44,79 @@ public class AdminRepository {
     }
 
     /**
-     * Lấy toàn bộ dữ liệu từ Firestore và chuyển thành JSON string
-     * Bao gồm: users, groups, chats và tất cả subcollections (convert các kiểu đặc biệt)
+     * Xuất users, groups (kèm subcollections) và chats ra file NDJSON theo từng trang (xem AdminExporter).
+     * Nếu file còn checkpoint với cùng tùy chọn thì xuất tiếp từ checkpoint thay vì làm lại.
      */
-    public void exportAllDataToJson(ExportDataCallback callback) {
-        JSONObject allData = new JSONObject();
-
-        // Users
-        db.collection(USERS_COLLECTION).get()
-                .addOnSuccessListener(usersSnapshot -> {
-                    JSONArray usersArray = new JSONArray();
-                    for (QueryDocumentSnapshot doc : usersSnapshot) {
-                        usersArray.put(convertMapToJson(doc.getData()));
-                    }
-                    try { allData.put("users", usersArray); } catch (Exception ignored) {}
-
-                    // Groups
-                    db.collection(GROUPS_COLLECTION).get()
-                            .addOnSuccessListener(groupsSnapshot -> {
-                                JSONArray groupsArray = new JSONArray();
-
-                                if (groupsSnapshot.isEmpty()) {
-                                    try { allData.put("groups", groupsArray); } catch (Exception ignored) {}
-                                    exportChatsAndFinish(allData, callback);
-                                    return;
-                                }
-
-                                AtomicInteger completedGroups = new AtomicInteger(0);
-                                int totalGroups = groupsSnapshot.size();
-
-                                for (QueryDocumentSnapshot groupDoc : groupsSnapshot) {
-                                    String groupId = groupDoc.getId();
-                                    JSONObject groupJson = convertMapToJson(groupDoc.getData());
-                                    exportGroupSubcollections(groupId, groupJson, () -> {
-                                        groupsArray.put(groupJson);
-                                        if (completedGroups.incrementAndGet() == totalGroups) {
-                                            try { allData.put("groups", groupsArray); } catch (Exception ignored) {}
-                                            exportChatsAndFinish(allData, callback);
-                                        }
-                                    });
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
-                                callback.onError(e);
-                            });
-                })
-                .addOnFailureListener(e -> {
-                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
-                    callback.onError(e);
-                });
+    public AdminExporter exportToFile(java.io.File file, boolean gzip, java.util.Set<AdminExporter.Section> sections,
+                                      AdminExporter.ExportCallback callback) {
+        AdminExporter exporter = new AdminExporter(db, file, gzip, sections, callback);
+        exporter.start();
+        return exporter;
     }
 
-    /**
-     * Lấy tất cả subcollections của một group (posts, events, members, chats -> messages)
-     * groupJson là JSONObject đại diện cho document group, helper sẽ thêm các trường posts/events...
-     */
-    private void exportGroupSubcollections(String groupId, JSONObject groupJson, Runnable onComplete) {
-        // posts
-        db.collection(GROUPS_COLLECTION).document(groupId).collection("posts").get()
-                .addOnSuccessListener(postsSnapshot -> {
-                    JSONArray postsArray = new JSONArray();
-                    for (QueryDocumentSnapshot doc : postsSnapshot) {
-                        postsArray.put(convertMapToJson(doc.getData()));
-                    }
-                    try { groupJson.put("posts", postsArray); } catch (Exception ignored) {}
-
-                    // events
-                    db.collection(GROUPS_COLLECTION).document(groupId).collection("events").get()
-                            .addOnSuccessListener(eventsSnapshot -> {
-                                JSONArray eventsArray = new JSONArray();
-                                for (QueryDocumentSnapshot doc : eventsSnapshot) {
-                                    eventsArray.put(convertMapToJson(doc.getData()));
-                                }
-                                try { groupJson.put("events", eventsArray); } catch (Exception ignored) {}
-
-                                // members
-                                db.collection(GROUPS_COLLECTION).document(groupId).collection("members").get()
-                                        .addOnSuccessListener(membersSnapshot -> {
-                                            JSONArray membersArray = new JSONArray();
-                                            for (QueryDocumentSnapshot doc : membersSnapshot) {
-                                                membersArray.put(convertMapToJson(doc.getData()));
-                                            }
-                                            try { groupJson.put("members", membersArray); } catch (Exception ignored) {}
-
-                                            // reports
-                                            exportGroupReportsToJson(groupId, groupJson, () -> {
-                                                // chats in group
-                                                db.collection(GROUPS_COLLECTION).document(groupId).collection("chats").get()
-                                                    .addOnSuccessListener(groupChatsSnapshot -> {
-                                                        JSONArray groupChatsArray = new JSONArray();
-
-                                                        if (groupChatsSnapshot.isEmpty()) {
-                                                            try { groupJson.put("chats", groupChatsArray); } catch (Exception ignored) {}
-                                                            onComplete.run();
-                                                            return;
-                                                        }
-
-                                                        AtomicInteger completedGroupChats = new AtomicInteger(0);
-                                                        int totalGroupChats = groupChatsSnapshot.size();
-
-                                                        for (QueryDocumentSnapshot chatDoc : groupChatsSnapshot) {
-                                                            String chatId = chatDoc.getId();
-                                                            JSONObject chatJson = convertMapToJson(chatDoc.getData());
-
-                                                            // messages in group chat
-                                                            db.collection(GROUPS_COLLECTION).document(groupId)
-                                                                    .collection("chats").document(chatId).collection("messages").get()
-                                                                    .addOnSuccessListener(messagesSnapshot -> {
-                                                                        JSONArray messagesArray = new JSONArray();
-                                                                        for (QueryDocumentSnapshot msgDoc : messagesSnapshot) {
-                                                                            messagesArray.put(convertMapToJson(msgDoc.getData()));
-                                                                        }
-                                                                        try { chatJson.put("messages", messagesArray); } catch (Exception ignored) {}
-                                                                        groupChatsArray.put(chatJson);
-
-                                                                        if (completedGroupChats.incrementAndGet() == totalGroupChats) {
-                                                                            try { groupJson.put("chats", groupChatsArray); } catch (Exception ignored) {}
-                                                                            onComplete.run();
-                                                                        }
-                                                                    })
-                                                                    .addOnFailureListener(e -> {
-                                                                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
-                                                                        // vẫn thêm chat nhưng không có messages
-                                                                        try { groupChatsArray.put(chatJson); } catch (Exception ignored) {}
-                                                                        if (completedGroupChats.incrementAndGet() == totalGroupChats) {
-                                                                            try { groupJson.put("chats", groupChatsArray); } catch (Exception ignored) {}
-                                                                            onComplete.run();
-                                                                        }
-                                                                    });
-                                                        }
-                                                    })
-                                                    .addOnFailureListener(e -> {
-                                                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
-                                                        try { groupJson.put("chats", new JSONArray()); } catch (Exception ignored) {}
-                                                        onComplete.run();
-                                                    });
-                                            });
-                                        })
-                                        .addOnFailureListener(e -> {
-                                            com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
-                                            try { groupJson.put("members", new JSONArray()); } catch (Exception ignored) {}
-                                            onComplete.run();
-                                        });
-                            })
-                            .addOnFailureListener(e -> {
-                                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
-                                try { groupJson.put("events", new JSONArray()); } catch (Exception ignored) {}
-                                onComplete.run();
-                            });
-                })
-                .addOnFailureListener(e -> {
-                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
-                    try { groupJson.put("posts", new JSONArray()); } catch (Exception ignored) {}
-                    onComplete.run();
-                });
+    /** Xuất tiếp file còn checkpoint, dùng lại tùy chọn đã lưu trong checkpoint */
+    public AdminExporter resumeExport(java.io.File file, AdminExporter.ExportCallback callback) {
+        return exportToFile(file, false, null, callback);
     }
 
     /**
-     * Export reports của một group vào JSON
-     * Thêm reports array vào groupJson và gọi onComplete khi xong
+     * Bổ sung searchName / searchPrefixes cho mọi user tạo trước khi có tìm kiếm theo tiền tố.
+     * Duyệt users theo trang (documentId), mỗi trang ghi một batch cho các user còn thiếu.
+     * Xong thì ghi stats/userSearch.backfilled để tìm kiếm không còn chạy query displayName.
      */
-    private void exportGroupReportsToJson(String groupId, JSONObject groupJson, Runnable onComplete) {
-        db.collection(GROUPS_COLLECTION).document(groupId).collection("reports").get()
-            .addOnSuccessListener(reportsSnapshot -> {
-                JSONArray reportsArray = new JSONArray();
-                for (QueryDocumentSnapshot doc : reportsSnapshot) {
-                    reportsArray.put(convertMapToJson(doc.getData()));
-                }
-                try { 
-                    groupJson.put("reports", reportsArray); 
-                } catch (Exception ignored) {}
-                onComplete.run();
-            })
-            .addOnFailureListener(e -> {
-                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
-                // Nếu lỗi, vẫn thêm array rỗng và tiếp tục
-                try { 
-                    groupJson.put("reports", new JSONArray()); 
-                } catch (Exception ignored) {}
-                onComplete.run();
-            });
+    public void backfillUserSearchFields(MigrationCallback callback) {
+        backfillUserSearchPage(null, 0, 0, callback);
     }
 
-    /**
-     * Lấy chats (private) và hoàn thành export
-     */
-    private void exportChatsAndFinish(JSONObject allData, ExportDataCallback callback) {
-        db.collection(CHATS_COLLECTION).get()
-                .addOnSuccessListener(chatsSnapshot -> {
-                    JSONArray chatsArray = new JSONArray();
-
-                    if (chatsSnapshot.isEmpty()) {
-                        try { allData.put("chats", chatsArray); } catch (Exception ignored) {}
-                        finishExport(allData, callback);
-                        return;
+    private void backfillUserSearchPage(com.google.firebase.firestore.DocumentSnapshot after, int scanned, int updated,
+                                        MigrationCallback callback) {
+        com.google.firebase.firestore.Query query = db.collection(USERS_COLLECTION)
+                .orderBy(com.google.firebase.firestore.FieldPath.documentId())
+                .limit(MIGRATION_PAGE_SIZE);
+        if (after != null) query = query.startAfter(after);
+        query.get()
+                .addOnSuccessListener(snapshot -> {
+                    List<com.google.firebase.firestore.DocumentSnapshot> docs = snapshot.getDocuments();
+                    com.google.firebase.firestore.WriteBatch batch = db.batch();
+                    int count = 0;
+                    for (com.google.firebase.firestore.DocumentSnapshot doc : docs) {
+                        String displayName = doc.getString("displayName");
+                        if (doc.get("searchPrefixes") != null || displayName == null || displayName.isEmpty()) continue;
+                        batch.update(doc.getReference(), UserRepository.withSearchFields(new java.util.HashMap<>(), displayName));
+                        count++;
                     }
-
-                    AtomicInteger completedChats = new AtomicInteger(0);
-                    int totalChats = chatsSnapshot.size();
-
-                    for (QueryDocumentSnapshot chatDoc : chatsSnapshot) {
-                        String chatId = chatDoc.getId();
-                        JSONObject chatJson = convertMapToJson(chatDoc.getData());
-
-                        db.collection(CHATS_COLLECTION).document(chatId).collection("messages").get()
-                                .addOnSuccessListener(messagesSnapshot -> {
-                                    JSONArray messagesArray = new JSONArray();
-                                    for (QueryDocumentSnapshot msgDoc : messagesSnapshot) {
-                                        messagesArray.put(convertMapToJson(msgDoc.getData()));
-                                    }
-                                    try { chatJson.put("messages", messagesArray); } catch (Exception ignored) {}
-                                    chatsArray.put(chatJson);
-
-                                    if (completedChats.incrementAndGet() == totalChats) {
-                                        try { allData.put("chats", chatsArray); } catch (Exception ignored) {}
-                                        finishExport(allData, callback);
-                                    }
-                                })
-                                .addOnFailureListener(e -> {
-                                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
-                                    // nếu lỗi, vẫn tiếp tục
-                                    chatsArray.put(chatJson);
-                                    if (completedChats.incrementAndGet() == totalChats) {
-                                        try { allData.put("chats", chatsArray); } catch (Exception ignored) {}
-                                        finishExport(allData, callback);
-                                    }
-                                });
+                    int nowScanned = scanned + docs.size();
+                    int nowUpdated = updated + count;
+                    Runnable next = () -> {
+                        if (docs.size() < MIGRATION_PAGE_SIZE) {
+                            // Đánh dấu xong để searchUsers bỏ query displayName cho user cũ
+                            java.util.Map<String, Object> flag = new java.util.HashMap<>();
+                            flag.put("backfilled", true);
+                            flag.put("backfilledAt", System.currentTimeMillis());
+                            UserRepository.searchMigrationRef(db).set(flag)
+                                    .addOnSuccessListener(aVoid -> {
+                                        UserRepository.markSearchBackfilled();
+                                        callback.onComplete(nowScanned, nowUpdated);
+                                    })
+                                    .addOnFailureListener(e -> {
+                                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
+                                        callback.onError(e);
+                                    });
+                        } else {
+                            callback.onProgress(nowScanned, nowUpdated);
+                            backfillUserSearchPage(docs.get(docs.size() - 1), nowScanned, nowUpdated, callback);
+                        }
+                    };
+                    if (count == 0) {
+                        next.run();
+                        return;
                     }
+                    batch.commit()
+                            .addOnSuccessListener(aVoid -> next.run())
+                            .addOnFailureListener(e -> {
+                                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
+                                callback.onError(e);
+                            });
                 })
                 .addOnFailureListener(e -> {
                     com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminRepository", e);
@@ -284,23 +124,11 @@ public class AdminRepository {
                 });
     }
 
-    /**
-     * Hoàn thành export và chuyển thành JSON string (pretty print)
-     */
-    private void finishExport(JSONObject allData, ExportDataCallback callback) {
-        try {
-            // pretty print 2 spaces
-            callback.onSuccess(allData.toString(2));
-        } catch (Exception e) {
-            callback.onError(new Exception("Lỗi chuyển đổi JSON: " + e.getMessage()));
-        }
-    }
-
     /**
      * Helper: convert Map<String,Object> (doc.getData()) thành JSONObject đệ quy,
      * chuyển các kiểu Firestore đặc biệt sang primitives JSON-friendly.
      */
-    private JSONObject convertMapToJson(Map<String, Object> map) {
+    static JSONObject convertMapToJson(Map<String, Object> map) {
         JSONObject obj = new JSONObject();
         if (map == null) return obj;
         for (Map.Entry<String, Object> entry : map.entrySet()) {
@@ -318,7 +146,7 @@ public class AdminRepository {
     /**
      * Helper: convert List<Object> thành JSONArray đệ quy
      */
-    private JSONArray convertListToJson(List<Object> list) {
+    static JSONArray convertListToJson(List<Object> list) {
         JSONArray arr = new JSONArray();
         if (list == null) return arr;
         for (Object v : list) {
@@ -331,7 +159,7 @@ public class AdminRepository {
      * Convert các giá trị Firestore (Timestamp, GeoPoint, DocumentReference, Map, List, Date...)
      * sang các kiểu primitive/JSONObject/JSONArray an toàn cho org.json
      */
-    private Object toJsonCompatible(Object value) {
+    static Object toJsonCompatible(Object value) {
         if (value == null) return JSONObject.NULL;
 
         // Timestamp (com.google.firebase.Timestamp) -> epoch millis
@@ -385,13 +213,14 @@ public class AdminRepository {
         return String.valueOf(value);
     }
 
-    public interface AdminCheckCallback {
-        void onResult(boolean isAdmin);
+    public interface MigrationCallback {
+        void onProgress(int scanned, int updated);
+        void onComplete(int scanned, int updated);
         void onError(Exception e);
     }
 
-    public interface ExportDataCallback {
-        void onSuccess(String jsonData);
+    public interface AdminCheckCallback {
+        void onResult(boolean isAdmin);
         void onError(Exception e);
     }
 }
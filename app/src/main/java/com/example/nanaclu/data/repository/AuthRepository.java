@@ -57,11 +57,14 @@ public class AuthRepository {
                     userDoc.put("userId", fUser.getUid());
                     userDoc.put("createdAt", now);
                     userDoc.put("email", email);
-                    userDoc.put("displayName", displayName);
+                    UserRepository.withSearchFields(userDoc, displayName);
                     userDoc.put("photoUrl", null); // No Google photo for email registration
                     userDoc.put("avatarImageId", null);
                     userDoc.put("lastLoginAt", now);
                     userDoc.put("status", "online");
+                    // User mới chưa tham gia group nào, membership index rỗng
+                    userDoc.put("joinedGroupIds", new java.util.ArrayList<String>());
+                    userDoc.put("joinedGroupsIndexed", true);
                     return db.collection("users").document(fUser.getUid()).set(userDoc)
                             .continueWithTask(v -> com.google.android.gms.tasks.Tasks.forResult(task.getResult()));
                 });
@@ -78,6 +81,8 @@ public class AuthRepository {
                     FirebaseUser fUser = auth.getCurrentUser();
                     if (fUser == null) throw new IllegalStateException("User null after login");
                     long now = System.currentTimeMillis();
+                    // User tạo trước khi có trường tìm kiếm được bổ sung khi đăng nhập
+                    new UserRepository(db).ensureSearchFields(fUser.getUid());
                     return db.collection("users").document(fUser.getUid())
                             .update("lastLoginAt", now, "status", "online")
                             .continueWithTask(v -> com.google.android.gms.tasks.Tasks.forResult(task.getResult()));
@@ -97,6 +102,7 @@ public class AuthRepository {
         
         // Sign out from Firebase Auth first
         auth.signOut();
+        FriendGraph.getInstance().stop();
         
         // Clear all caches if context is provided
         if (context != null) {
@@ -126,7 +132,7 @@ public class AuthRepository {
                     Map<String, Object> userDoc = new HashMap<>();
                     userDoc.put("userId", fUser.getUid());
                     userDoc.put("email", fUser.getEmail());
-                    userDoc.put("displayName", fUser.getDisplayName());
+                    UserRepository.withSearchFields(userDoc, fUser.getDisplayName());
                     userDoc.put("photoUrl", fUser.getPhotoUrl() != null ? fUser.getPhotoUrl().toString() : null);
                     userDoc.put("avatarImageId", null);
                     userDoc.put("lastLoginAt", now);
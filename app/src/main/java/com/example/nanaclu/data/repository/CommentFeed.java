@@ -0,0 +1,271 @@
+package com.example.nanaclu.data.repository;
+
+import com.example.nanaclu.data.model.Comment;
+import com.example.nanaclu.data.model.User;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Danh sách comment gốc của một post, tải theo trang và cập nhật tăng dần.
+ * - Trang đầu là pageSize comment mới nhất; loadMore() đọc thêm các trang cũ hơn bằng cursor
+ * - Nghe realtime từ comment cũ nhất của trang đầu trở về sau (trang đầu + comment mới);
+ *   các trang cũ hơn đọc bằng loadMore() không được nghe. Mỗi snapshot chỉ áp dụng DocumentChange
+ *   (thêm / sửa / xóa) lên danh sách hiện có thay vì dựng lại toàn bộ
+ * - Chỉ truy vấn comment gốc (parentCommentId == null) nên mỗi trang đủ pageSize comment gốc;
+ *   reply không nằm trong danh sách, tải riêng qua CommentRepository.getReplies
+ * - Tên / avatar tác giả lấy từ UserCache, chỉ đọc các user chưa có trong cache
+ * Danh sách trả về theo thứ tự thời gian tăng dần. Gọi stop() khi màn hình đóng.
+ */
+public class CommentFeed {
+    private static final String TAG = "CommentFeed";
+    private static final int BATCH_LIMIT = 500;
+    // Post (theo path) đã chắc chắn mọi comment gốc có parentCommentId
+    private static final Set<String> indexedPosts = Collections.synchronizedSet(new HashSet<>());
+
+    private final CollectionReference commentsRef;
+    private final int pageSize;
+    private final CommentRepository.CommentsCallback callback;
+
+    private final List<Comment> items = new ArrayList<>();
+    private final Map<String, Comment> byId = new HashMap<>();
+    private DocumentSnapshot oldestDoc;
+    private ListenerRegistration headReg;
+    private boolean hasMore = true;
+    private boolean loading;
+    private boolean stopped;
+
+    CommentFeed(CollectionReference commentsRef, int pageSize, CommentRepository.CommentsCallback callback) {
+        this.commentsRef = commentsRef;
+        this.pageSize = pageSize;
+        this.callback = callback;
+    }
+
+    void start() {
+        loading = true;
+        ensureRootComments().addOnCompleteListener(t -> {
+            if (!t.isSuccessful()) {
+                // Vẫn tải được các comment đã có trường; lần mở sau sẽ bổ sung lại
+                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, t.getException());
+            }
+            if (!stopped) loadFirstPage();
+        });
+    }
+
+    private void loadFirstPage() {
+        rootComments().orderBy("createdAt", Query.Direction.DESCENDING)
+                .limit(pageSize)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    loading = false;
+                    if (stopped) return;
+                    List<DocumentSnapshot> docs = snapshot.getDocuments();
+                    hasMore = docs.size() >= pageSize;
+                    if (!docs.isEmpty()) oldestDoc = docs.get(docs.size() - 1);
+                    for (int i = docs.size() - 1; i >= 0; i--) {
+                        addSorted(docs.get(i));
+                    }
+                    listenFrom(oldestDoc);
+                    publish();
+                })
+                .addOnFailureListener(e -> {
+                    loading = false;
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, e);
+                    if (!stopped) callback.onError(e);
+                });
+    }
+
+    /** Đọc thêm một trang comment cũ hơn. Trả về false nếu đang tải hoặc đã hết. */
+    public boolean loadMore() {
+        if (stopped || loading || !hasMore || oldestDoc == null) return false;
+        loading = true;
+        rootComments().orderBy("createdAt", Query.Direction.DESCENDING)
+                .startAfter(oldestDoc)
+                .limit(pageSize)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    loading = false;
+                    if (stopped) return;
+                    List<DocumentSnapshot> docs = snapshot.getDocuments();
+                    hasMore = docs.size() >= pageSize;
+                    if (!docs.isEmpty()) oldestDoc = docs.get(docs.size() - 1);
+                    for (DocumentSnapshot doc : docs) {
+                        addSorted(doc);
+                    }
+                    publish();
+                })
+                .addOnFailureListener(e -> {
+                    loading = false;
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, e);
+                    if (!stopped) callback.onError(e);
+                });
+        return true;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Bỏ comment khỏi danh sách sau khi xóa thành công
+     * (các trang cũ không được nghe realtime nên không tự nhận được thay đổi này)
+     */
+    public void remove(String commentId) {
+        Comment c = byId.remove(commentId);
+        if (c == null) return;
+        items.remove(c);
+        publish();
+    }
+
+    public void stop() {
+        stopped = true;
+        if (headReg != null) {
+            headReg.remove();
+            headReg = null;
+        }
+    }
+
+    /** Nghe trang đầu và mọi comment mới hơn để nhận cả sửa / xóa của comment đang hiển thị */
+    private void listenFrom(DocumentSnapshot oldest) {
+        Query query = rootComments().orderBy("createdAt", Query.Direction.ASCENDING);
+        if (oldest != null) query = query.startAt(oldest);
+        headReg = query.addSnapshotListener((snapshot, error) -> {
+            if (stopped) return;
+            if (error != null) {
+                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, error);
+                callback.onError(error);
+                return;
+            }
+            if (snapshot == null || snapshot.getDocumentChanges().isEmpty()) return;
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                DocumentSnapshot doc = change.getDocument();
+                switch (change.getType()) {
+                    case ADDED:
+                    case MODIFIED:
+                        addSorted(doc);
+                        break;
+                    case REMOVED:
+                        Comment removed = byId.remove(doc.getId());
+                        if (removed != null) items.remove(removed);
+                        break;
+                }
+            }
+            publish();
+        });
+    }
+
+    /** Thêm hoặc thay thế comment, giữ thứ tự createdAt tăng dần */
+    private void addSorted(DocumentSnapshot doc) {
+        Comment comment = toComment(doc);
+        if (comment == null) return;
+        Comment old = byId.remove(comment.commentId);
+        if (old != null) {
+            items.remove(old);
+            // Giữ thông tin tác giả đã gắn trước đó
+            comment.authorName = old.authorName;
+            comment.authorAvatar = old.authorAvatar;
+        }
+        // Query chỉ trả comment gốc; vẫn chặn reply phòng dữ liệu lệch
+        if (comment.parentCommentId != null && !comment.parentCommentId.isEmpty()) return;
+
+        long time = comment.getCreatedAtLong();
+        int pos = items.size();
+        while (pos > 0 && items.get(pos - 1).getCreatedAtLong() > time) pos--;
+        items.add(pos, comment);
+        byId.put(comment.commentId, comment);
+    }
+
+    private Query rootComments() {
+        return commentsRef.whereEqualTo("parentCommentId", null);
+    }
+
+    /**
+     * Comment gốc tạo trước khi addComment luôn ghi parentCommentId = null không có trường này
+     * nên không khớp whereEqualTo(null). Bổ sung một lần cho cả post rồi đánh dấu commentsIndexed.
+     */
+    private Task<Void> ensureRootComments() {
+        DocumentReference postRef = commentsRef.getParent();
+        if (postRef == null || indexedPosts.contains(postRef.getPath())) return Tasks.forResult(null);
+        return postRef.get().continueWithTask(postTask -> {
+            if (!postTask.isSuccessful()) throw postTask.getException();
+            if (Boolean.TRUE.equals(postTask.getResult().getBoolean("commentsIndexed"))) {
+                return Tasks.forResult(null);
+            }
+            return backfillRootComments(postRef);
+        }).addOnSuccessListener(aVoid -> indexedPosts.add(postRef.getPath()));
+    }
+
+    private Task<Void> backfillRootComments(DocumentReference postRef) {
+        return commentsRef.get().continueWithTask(commentsTask -> {
+            if (!commentsTask.isSuccessful()) throw commentsTask.getException();
+            List<Task<Void>> commits = new ArrayList<>();
+            WriteBatch batch = commentsRef.getFirestore().batch();
+            int ops = 0;
+            for (DocumentSnapshot doc : commentsTask.getResult().getDocuments()) {
+                if (doc.contains("parentCommentId")) continue;
+                batch.update(doc.getReference(), "parentCommentId", null);
+                if (++ops == BATCH_LIMIT) {
+                    commits.add(batch.commit());
+                    batch = commentsRef.getFirestore().batch();
+                    ops = 0;
+                }
+            }
+            if (ops > 0) commits.add(batch.commit());
+            return Tasks.whenAll(commits);
+        }).continueWithTask(t -> {
+            if (!t.isSuccessful()) throw t.getException();
+            // Chỉ đánh dấu khi mọi batch đã ghi xong
+            return postRef.update("commentsIndexed", true);
+        });
+    }
+
+    static Comment toComment(DocumentSnapshot doc) {
+        Comment comment = doc.toObject(Comment.class);
+        if (comment == null) return null;
+        comment.commentId = doc.getId();
+        if (comment.createdAt == null) {
+            // Comment vừa gửi, server timestamp chưa có -> dùng giá trị ước lượng
+            comment.createdAt = doc.getTimestamp("createdAt", DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+        }
+        return comment;
+    }
+
+    private void publish() {
+        Set<String> authorIds = new HashSet<>();
+        for (Comment c : items) {
+            if (c.authorName == null && c.authorId != null) authorIds.add(c.authorId);
+        }
+        UserCache.getInstance().resolve(authorIds, () -> {
+            if (stopped) return;
+            for (Comment c : items) {
+                if (c.authorName == null) applyAuthor(c);
+            }
+            callback.onSuccess(new ArrayList<>(items));
+        });
+    }
+
+    static void applyAuthor(Comment comment) {
+        User user = UserCache.getInstance().get(comment.authorId);
+        comment.authorName = user != null && user.displayName != null && !user.displayName.isEmpty()
+                ? user.displayName : "Người dùng";
+        comment.authorAvatar = user != null ? user.photoUrl : null;
+    }
+}
@@ -11,14 +11,17 @@ import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class CommentRepository {
     private final FirebaseFirestore db;
     private static final String GROUPS_COLLECTION = "groups";
     private static final String POSTS_COLLECTION = "posts";
     private static final String COMMENTS_COLLECTION = "comments";
+    private static final int DEFAULT_PAGE_SIZE = 20;
 
     // Callback interfaces
     public interface OnSuccessCallback<T> {
@@ -48,9 +51,8 @@ public class CommentRepository {
         commentData.put("content", content);
         commentData.put("replyCount", 0);
         commentData.put("createdAt", FieldValue.serverTimestamp());
-        if (parentCommentId != null) {
-            commentData.put("parentCommentId", parentCommentId);
-        }
+        // Luôn ghi (null với comment gốc) để CommentFeed lọc comment gốc trên server
+        commentData.put("parentCommentId", parentCommentId);
 
         return db.collection(GROUPS_COLLECTION)
                 .document(groupId)
@@ -82,112 +84,25 @@ public class CommentRepository {
     }
 
     /**
-     * Lấy danh sách comments cho một post
+     * Mở danh sách comment gốc của một post (phân trang + realtime cho comment mới).
+     * callback.onSuccess được gọi lại mỗi khi danh sách thay đổi; gọi CommentFeed.stop() khi đóng màn hình.
      */
-    public void getComments(String groupId, String postId, CommentsCallback callback) {
-        android.util.Log.d("CommentRepository", "Loading comments for groupId: " + groupId + ", postId: " + postId);
+    public CommentFeed getComments(String groupId, String postId, CommentsCallback callback) {
+        return getComments(groupId, postId, DEFAULT_PAGE_SIZE, callback);
+    }
 
-        db.collection(GROUPS_COLLECTION)
+    public CommentFeed getComments(String groupId, String postId, int pageSize, CommentsCallback callback) {
+        CommentFeed feed = new CommentFeed(db.collection(GROUPS_COLLECTION)
                 .document(groupId)
                 .collection(POSTS_COLLECTION)
                 .document(postId)
-                .collection(COMMENTS_COLLECTION)
-                .orderBy("createdAt", Query.Direction.ASCENDING)
-                .addSnapshotListener((snapshot, error) -> {
-                    if (error != null) {
-                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CommentRepository", error);
-                        callback.onError(error);
-                        return;
-                    }
-                    
-                    if (snapshot != null) {
-                        List<Comment> comments = new ArrayList<>();
-                        android.util.Log.d("CommentRepository", "Found " + snapshot.size() + " documents");
-
-                        if (snapshot.isEmpty()) {
-                            callback.onSuccess(comments);
-                            return;
-                        }
-
-                        // Counter để track khi nào load xong tất cả user info
-                        final int[] pendingUserLoads = {0};
-
-                        for (DocumentSnapshot doc : snapshot.getDocuments()) {
-                            Comment comment = doc.toObject(Comment.class);
-                            if (comment != null) {
-                                comment.commentId = doc.getId();
-                                // Chỉ lấy comments gốc (không có parentCommentId hoặc parentCommentId = null)
-                                if (comment.parentCommentId == null || comment.parentCommentId.isEmpty()) {
-                                    comments.add(comment);
-                                    pendingUserLoads[0]++;
-                                    android.util.Log.d("CommentRepository", "Added comment: " + comment.content);
-                                }
-                            }
-                        }
-
-                        if (comments.isEmpty()) {
-                            callback.onSuccess(comments);
-                            return;
-                        }
-
-                        // Load user info cho từng comment
-                        for (Comment comment : comments) {
-                            loadUserInfo(comment, () -> {
-                                pendingUserLoads[0]--;
-                                if (pendingUserLoads[0] == 0) {
-                                    android.util.Log.d("CommentRepository", "Returning " + comments.size() + " comments with user info");
-                                    callback.onSuccess(comments);
-                                }
-                            });
-                        }
-                    }
-                });
+                .collection(COMMENTS_COLLECTION), pageSize, callback);
+        feed.start();
+        return feed;
     }
 
     /**
-     * Load user info cho comment
-     */
-    private void loadUserInfo(Comment comment, Runnable onComplete) {
-        if (comment.authorId == null || comment.authorId.isEmpty()) {
-            android.util.Log.d("CommentRepository", "Comment has no authorId");
-            comment.authorName = "Unknown User";
-            comment.authorAvatar = null;
-            onComplete.run();
-            return;
-        }
-
-        android.util.Log.d("CommentRepository", "Loading user info for authorId: " + comment.authorId);
-        db.collection("users")
-                .document(comment.authorId)
-                .get()
-                .addOnSuccessListener(userDoc -> {
-                    if (userDoc.exists()) {
-                        // Use correct field names from User model
-                        comment.authorName = userDoc.getString("displayName");
-                        comment.authorAvatar = userDoc.getString("photoUrl");
-
-                        android.util.Log.d("CommentRepository", "User loaded: " + comment.authorName + ", avatar: " + comment.authorAvatar);
-
-                        if (comment.authorName == null || comment.authorName.isEmpty()) {
-                            comment.authorName = "Unknown User";
-                        }
-                    } else {
-                        android.util.Log.d("CommentRepository", "User not found for authorId: " + comment.authorId);
-                        comment.authorName = "Unknown User";
-                        comment.authorAvatar = null;
-                    }
-                    onComplete.run();
-                })
-                .addOnFailureListener(e -> {
-                    android.util.Log.e("CommentRepository", "Error loading user info for authorId: " + comment.authorId, e);
-                    comment.authorName = "Unknown User";
-                    comment.authorAvatar = null;
-                    onComplete.run();
-                });
-    }
-
-    /**
-     * Lấy replies cho một comment
+     * Lấy replies cho một comment (query theo parentCommentId, chỉ chạy khi mở thread)
      */
     public void getReplies(String groupId, String postId, String parentCommentId, CommentsCallback callback) {
         db.collection(GROUPS_COLLECTION)
@@ -200,16 +115,25 @@ public class CommentRepository {
                 .get()
                 .addOnSuccessListener(snapshot -> {
                     List<Comment> replies = new ArrayList<>();
+                    Set<String> authorIds = new HashSet<>();
                     for (DocumentSnapshot doc : snapshot.getDocuments()) {
-                        Comment reply = doc.toObject(Comment.class);
+                        Comment reply = CommentFeed.toComment(doc);
                         if (reply != null) {
-                            reply.commentId = doc.getId();
                             replies.add(reply);
+                            if (reply.authorId != null) authorIds.add(reply.authorId);
                         }
                     }
-                    callback.onSuccess(replies);
+                    UserCache.getInstance().resolve(authorIds, () -> {
+                        for (Comment reply : replies) {
+                            CommentFeed.applyAuthor(reply);
+                        }
+                        callback.onSuccess(replies);
+                    });
                 })
-                .addOnFailureListener(callback::onError);
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CommentRepository", e);
+                    callback.onError(e);
+                });
     }
 
     private Task<Void> updatePostCommentCount(String groupId, String postId) {
@@ -0,0 +1,132 @@
+package com.example.nanaclu.data.repository;
+
+import com.example.nanaclu.data.model.Event;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache event theo group, chia bucket theo tháng ("yyyy-MM" của startTime).
+ * Mỗi tháng chỉ query một lần (startTime trong khoảng đầu tháng -> đầu tháng sau),
+ * chuyển qua lại giữa các tháng trên lịch là tra cứu cục bộ.
+ * Cache của group bị xóa khi tạo / sửa / xóa event hoặc RSVP (EventRepository gọi invalidate).
+ * Mọi hàm gọi trên main thread.
+ */
+public class EventCache {
+    private static EventCache instance;
+
+    private final EventRepository eventRepository;
+    // groupId -> monthKey -> events của tháng
+    private final Map<String, Map<String, List<Event>>> buckets = new HashMap<>();
+    // key group/tháng đang query -> các callback đang chờ
+    private final Map<String, List<EventRepository.OnSuccessCallback<List<Event>>>> pending = new HashMap<>();
+    private final Map<String, List<EventRepository.OnErrorCallback>> pendingErrors = new HashMap<>();
+    // Tăng mỗi lần invalidate, để kết quả của query bắt đầu trước đó không được ghi vào cache
+    private final Map<String, Integer> generations = new HashMap<>();
+
+    private EventCache() {
+        eventRepository = new EventRepository(FirebaseFirestore.getInstance());
+    }
+
+    public static synchronized EventCache getInstance() {
+        if (instance == null) {
+            instance = new EventCache();
+        }
+        return instance;
+    }
+
+    /** Event của tháng nếu đã có trong cache, null nếu chưa tải */
+    public List<Event> peekMonth(String groupId, int year, int month) {
+        Map<String, List<Event>> group = buckets.get(groupId);
+        return group != null ? group.get(monthKey(year, month)) : null;
+    }
+
+    /** Tất cả các tháng của group đang có trong cache (mỗi phần tử là event của một tháng) */
+    public List<List<Event>> peekLoaded(String groupId) {
+        Map<String, List<Event>> group = buckets.get(groupId);
+        return group != null ? new ArrayList<>(group.values()) : new ArrayList<>();
+    }
+
+    /**
+     * Event của tháng (month theo Calendar.MONTH, 0-11), sắp theo startTime.
+     * Trả về ngay nếu đã có trong cache.
+     */
+    public void getMonth(String groupId, int year, int month,
+                         EventRepository.OnSuccessCallback<List<Event>> onSuccess,
+                         EventRepository.OnErrorCallback onError) {
+        List<Event> cached = peekMonth(groupId, year, month);
+        if (cached != null) {
+            onSuccess.onSuccess(cached);
+            return;
+        }
+
+        String key = groupId + "/" + monthKey(year, month);
+        List<EventRepository.OnSuccessCallback<List<Event>>> waiting = pending.get(key);
+        if (waiting != null) {
+            waiting.add(onSuccess);
+            if (onError != null) pendingErrors.get(key).add(onError);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(onSuccess);
+        pending.put(key, waiting);
+        List<EventRepository.OnErrorCallback> errors = new ArrayList<>();
+        if (onError != null) errors.add(onError);
+        pendingErrors.put(key, errors);
+
+        long[] bounds = monthBounds(year, month);
+        int generation = generationOf(groupId);
+        eventRepository.getEventsInRange(groupId, bounds[0], bounds[1])
+                .addOnSuccessListener(events -> {
+                    List<Event> result = events != null ? events : new ArrayList<>();
+                    if (generation == generationOf(groupId)) {
+                        Map<String, List<Event>> group = buckets.get(groupId);
+                        if (group == null) {
+                            group = new HashMap<>();
+                            buckets.put(groupId, group);
+                        }
+                        group.put(monthKey(year, month), result);
+                    }
+                    pendingErrors.remove(key);
+                    for (EventRepository.OnSuccessCallback<List<Event>> cb : pending.remove(key)) {
+                        cb.onSuccess(result);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    pending.remove(key);
+                    List<EventRepository.OnErrorCallback> failed = pendingErrors.remove(key);
+                    if (failed != null) {
+                        for (EventRepository.OnErrorCallback cb : failed) cb.onError(e);
+                    }
+                });
+    }
+
+    /** Xóa cache của group sau khi dữ liệu event thay đổi */
+    public void invalidate(String groupId) {
+        buckets.remove(groupId);
+        generations.put(groupId, generationOf(groupId) + 1);
+    }
+
+    private int generationOf(String groupId) {
+        Integer g = generations.get(groupId);
+        return g != null ? g : 0;
+    }
+
+    /** [đầu tháng, đầu tháng sau) theo giờ địa phương, tính bằng millis */
+    public static long[] monthBounds(int year, int month) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(year, month, 1);
+        long start = cal.getTimeInMillis();
+        cal.add(Calendar.MONTH, 1);
+        return new long[]{start, cal.getTimeInMillis()};
+    }
+
+    private static String monthKey(int year, int month) {
+        return String.format(java.util.Locale.US, "%04d-%02d", year, month + 1);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.nanaclu.data.repository;
 
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
@@ -10,9 +11,11 @@ import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.example.nanaclu.data.model.Event;
 import com.example.nanaclu.data.model.EventRSVP;
+import com.example.nanaclu.data.model.User;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +24,13 @@ public class EventRepository {
     private static final String EVENTS = "events";
     private static final String EVENT_ATTENDEES = "event_attendees";
 
+    // Timestamp nhỏ nhất Firestore cho phép; so sánh khoảng chỉ khớp field cùng kiểu nên
+    // query ">= MIN_TIMESTAMP" trả về đúng các event còn lưu startTime dạng Timestamp
+    private static final com.google.firebase.Timestamp MIN_TIMESTAMP =
+            new com.google.firebase.Timestamp(-62135596800L, 0);
+    // Group đã chuyển hết startTime kiểu Timestamp sang millis trong phiên này
+    private static final java.util.Set<String> normalizedGroups = new HashSet<>();
+
     private final FirebaseFirestore db;
 
     // Callback interfaces
@@ -74,8 +84,10 @@ public class EventRepository {
             event.creatorId = currentUserId;
         }
 
-        return eventRef.set(event).continueWith(task -> {
+        // Lưu sẵn tên người tạo vào event để danh sách / lịch không phải đọc users khi hiển thị
+        return resolveCreatorName(event).continueWithTask(nameTask -> eventRef.set(event)).continueWith(task -> {
             if (task.isSuccessful()) {
+                EventCache.getInstance().invalidate(event.groupId);
                 // Log event creation
                 LogRepository logRepo = new LogRepository(db);
                 logRepo.logGroupAction(event.groupId, "event_created", "event", event.eventId, event.title, null);
@@ -102,41 +114,17 @@ public class EventRepository {
                     List<Event> events = new ArrayList<>();
                     if (task.isSuccessful() && task.getResult() != null) {
                         android.util.Log.d("EventRepository", "Query successful, found " + task.getResult().size() + " documents");
-                        
-                        List<Task<Void>> loadTasks = new ArrayList<>();
-                        
+
                         for (DocumentSnapshot doc : task.getResult().getDocuments()) {
-                            android.util.Log.d("EventRepository", "Document: " + doc.getId() + ", data: " + doc.getData());
                             Event event = doc.toObject(Event.class);
                             if (event != null) {
                                 event.eventId = doc.getId();
                                 events.add(event);
-                                
-                                // Load creator name if creatorId exists but creatorName is null
-                                if (event.creatorId != null && !event.creatorId.isEmpty() && 
-                                    (event.creatorName == null || event.creatorName.isEmpty())) {
-                                    
-                                    Task<Void> loadCreatorTask = db.collection("users")
-                                            .document(event.creatorId)
-                                            .get()
-                                            .continueWith(userTask -> {
-                                                if (userTask.isSuccessful() && userTask.getResult() != null && userTask.getResult().exists()) {
-                                                    String creatorName = userTask.getResult().getString("name");
-                                                    if (creatorName == null || creatorName.isEmpty()) {
-                                                        creatorName = userTask.getResult().getString("displayName");
-                                                    }
-                                                    event.creatorName = creatorName;
-                                                    android.util.Log.d("EventRepository", "Loaded creator name: " + creatorName + " for event: " + event.title);
-                                                }
-                                                return null;
-                                            });
-                                    loadTasks.add(loadCreatorTask);
-                                }
                             }
                         }
-                        
-                        // Wait for all creator names to load
-                        return Tasks.whenAll(loadTasks).continueWith(allTasks -> events);
+
+                        // Event cũ chưa lưu creatorName -> đọc tên người tạo theo lô
+                        return fillCreatorNames(events);
                     } else {
                         android.util.Log.e("EventRepository", "Query failed", task.getException());
                         com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("EventRepository", task.getException());
@@ -145,6 +133,142 @@ public class EventRepository {
                 });
     }
     
+    /**
+     * Lấy events active có startTime trong khoảng [fromMs, toMs), sắp theo startTime.
+     * Dùng index (status, startTime) nên chỉ đọc các event trong khoảng cần hiển thị.
+     * Query khoảng chỉ khớp startTime dạng số, nên event cũ lưu Timestamp được chuyển sang millis
+     * trước; nếu chưa chuyển được thì các event đó được lọc cục bộ và gộp vào kết quả.
+     */
+    public Task<List<Event>> getEventsInRange(String groupId, long fromMs, long toMs) {
+        return normalizeStartTimes(groupId).continueWithTask(legacyTask -> db.collection(GROUPS)
+                .document(groupId)
+                .collection(EVENTS)
+                .whereEqualTo("status", "active")
+                .whereGreaterThanOrEqualTo("startTime", fromMs)
+                .whereLessThan("startTime", toMs)
+                .orderBy("startTime", Query.Direction.ASCENDING)
+                .get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("EventRepository", task.getException());
+                        throw task.getException();
+                    }
+                    List<Event> events = new ArrayList<>();
+                    for (DocumentSnapshot doc : task.getResult().getDocuments()) {
+                        Event event = doc.toObject(Event.class);
+                        if (event != null) {
+                            event.eventId = doc.getId();
+                            events.add(event);
+                        }
+                    }
+                    List<Event> legacy = legacyTask.isSuccessful() ? legacyTask.getResult() : null;
+                    if (legacy != null && !legacy.isEmpty()) {
+                        for (Event event : legacy) {
+                            if ("active".equals(event.status)
+                                    && event.startTime >= fromMs && event.startTime < toMs) {
+                                events.add(event);
+                            }
+                        }
+                        java.util.Collections.sort(events, (a, b) -> Long.compare(a.startTime, b.startTime));
+                    }
+                    return fillCreatorNames(events);
+                }));
+    }
+
+    /**
+     * Chuyển startTime / endTime dạng Timestamp (event tạo bởi bản cũ) của group sang millis
+     * để query khoảng thấy được. Chạy một lần mỗi group trong phiên.
+     * @return các event cũ chưa ghi lại được (rỗng nếu đã chuyển xong)
+     */
+    private Task<List<Event>> normalizeStartTimes(String groupId) {
+        if (normalizedGroups.contains(groupId)) {
+            return Tasks.forResult(new ArrayList<>());
+        }
+        return db.collection(GROUPS)
+                .document(groupId)
+                .collection(EVENTS)
+                .whereGreaterThanOrEqualTo("startTime", MIN_TIMESTAMP)
+                .get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("EventRepository", task.getException());
+                        throw task.getException();
+                    }
+                    List<Event> legacy = new ArrayList<>();
+                    List<Task<Void>> commits = new ArrayList<>();
+                    com.google.firebase.firestore.WriteBatch batch = db.batch();
+                    int ops = 0;
+                    for (DocumentSnapshot doc : task.getResult().getDocuments()) {
+                        Event event = doc.toObject(Event.class);
+                        if (event == null) continue;
+                        event.eventId = doc.getId();
+                        legacy.add(event);
+                        Map<String, Object> updates = new HashMap<>();
+                        updates.put("startTime", event.startTime);
+                        if (doc.get("endTime") instanceof com.google.firebase.Timestamp) {
+                            updates.put("endTime", event.endTime);
+                        }
+                        batch.update(doc.getReference(), updates);
+                        if (++ops == 450) {
+                            commits.add(batch.commit());
+                            batch = db.batch();
+                            ops = 0;
+                        }
+                    }
+                    if (ops > 0) commits.add(batch.commit());
+                    return Tasks.whenAll(commits).continueWith(commitTask -> {
+                        if (!commitTask.isSuccessful()) {
+                            // Chưa ghi được (mạng / quyền): lần sau thử lại, tạm lọc cục bộ
+                            android.util.Log.w("EventRepository", "Normalize startTime failed: " + groupId, commitTask.getException());
+                            return legacy;
+                        }
+                        normalizedGroups.add(groupId);
+                        return new ArrayList<Event>();
+                    });
+                });
+    }
+
+    /**
+     * Gắn creatorName cho các event chưa lưu sẵn tên (event tạo trước khi denormalize),
+     * đọc qua UserCache một lần cho cả danh sách
+     */
+    private Task<List<Event>> fillCreatorNames(List<Event> events) {
+        java.util.Set<String> creatorIds = new HashSet<>();
+        for (Event event : events) {
+            if (event.creatorId != null && !event.creatorId.isEmpty()
+                    && (event.creatorName == null || event.creatorName.isEmpty())) {
+                creatorIds.add(event.creatorId);
+            }
+        }
+        if (creatorIds.isEmpty()) return Tasks.forResult(events);
+
+        TaskCompletionSource<List<Event>> source = new TaskCompletionSource<>();
+        UserCache.getInstance().resolve(creatorIds, () -> {
+            for (Event event : events) {
+                if (event.creatorName == null || event.creatorName.isEmpty()) {
+                    User creator = UserCache.getInstance().get(event.creatorId);
+                    if (creator != null) event.creatorName = creator.displayName;
+                }
+            }
+            source.setResult(events);
+        });
+        return source.getTask();
+    }
+
+    /** Điền creatorName của event mới từ UserCache; lỗi đọc không chặn việc tạo event */
+    private Task<Void> resolveCreatorName(Event event) {
+        if (event.creatorId == null || (event.creatorName != null && !event.creatorName.isEmpty())) {
+            return Tasks.forResult(null);
+        }
+        TaskCompletionSource<Void> source = new TaskCompletionSource<>();
+        UserCache.getInstance().resolve(java.util.Collections.singletonList(event.creatorId), () -> {
+            User creator = UserCache.getInstance().get(event.creatorId);
+            if (creator != null) event.creatorName = creator.displayName;
+            source.setResult(null);
+        });
+        return source.getTask();
+    }
+
     /**
      * Lấy chi tiết event
      */
@@ -174,7 +298,8 @@ public class EventRepository {
                 .document(groupId)
                 .collection(EVENTS)
                 .document(eventId)
-                .update(updates);
+                .update(updates)
+                .addOnSuccessListener(aVoid -> EventCache.getInstance().invalidate(groupId));
     }
     
     /**
@@ -187,23 +312,54 @@ public class EventRepository {
     }
     
     /**
-     * RSVP cho event
+     * RSVP cho event. Ghi RSVP và cập nhật goingCount / maybeCount / notGoingCount của event
+     * trong cùng transaction: đọc trạng thái cũ của user, trừ ở bộ đếm cũ, cộng ở bộ đếm mới.
      */
     public Task<Void> rsvpEvent(String groupId, String eventId, EventRSVP rsvp) {
-        return db.collection(GROUPS)
+        DocumentReference eventRef = db.collection(GROUPS)
                 .document(groupId)
                 .collection(EVENTS)
-                .document(eventId)
-                .collection(EVENT_ATTENDEES)
-                .document(rsvp.userId)
-                .set(rsvp)
-                .continueWithTask(task -> {
-                    if (task.isSuccessful()) {
-                        // Update event counts
-                        return updateEventCounts(groupId, eventId);
-                    }
-                    return task;
-                });
+                .document(eventId);
+        DocumentReference attendeeRef = eventRef.collection(EVENT_ATTENDEES).document(rsvp.userId);
+        String newField = counterField(rsvp.attendanceStatus != null ? rsvp.attendanceStatus : rsvp.status);
+
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot previous = transaction.get(attendeeRef);
+            String oldField = null;
+            if (previous.exists()) {
+                String oldStatus = previous.getString("attendanceStatus");
+                if (oldStatus == null) oldStatus = previous.getString("status"); // Backward compatibility
+                oldField = counterField(oldStatus);
+            }
+
+            transaction.set(attendeeRef, rsvp);
+            if (!java.util.Objects.equals(oldField, newField)) {
+                Map<String, Object> updates = new HashMap<>();
+                if (oldField != null) updates.put(oldField, FieldValue.increment(-1));
+                if (newField != null) updates.put(newField, FieldValue.increment(1));
+                transaction.update(eventRef, updates);
+            }
+            return null;
+        }).addOnSuccessListener(aVoid -> EventCache.getInstance().invalidate(groupId));
+    }
+
+    /**
+     * Field đếm trên event tương ứng với trạng thái RSVP (null nếu trạng thái không được đếm)
+     */
+    private static String counterField(String status) {
+        if (status == null) return null;
+        switch (status) {
+            case "attending":
+            case "going": // Backward compatibility
+                return "goingCount";
+            case "not_attending":
+            case "not_going": // Backward compatibility
+                return "notGoingCount";
+            case "maybe":
+                return "maybeCount";
+            default:
+                return null;
+        }
     }
     
     /**
@@ -250,47 +406,6 @@ public class EventRepository {
                 });
     }
     
-    /**
-     * Cập nhật số lượng RSVP trong event
-     */
-    private Task<Void> updateEventCounts(String groupId, String eventId) {
-        return getEventRSVPs(groupId, eventId).continueWithTask(task -> {
-            if (task.isSuccessful()) {
-                List<EventRSVP> rsvps = task.getResult();
-                int goingCount = 0, notGoingCount = 0, maybeCount = 0;
-                
-                for (EventRSVP rsvp : rsvps) {
-                    String status = rsvp.attendanceStatus != null ? rsvp.attendanceStatus : rsvp.status; // Backward compatibility
-                    android.util.Log.d("EventRepository", "Counting attendee: userId=" + rsvp.userId + ", attendanceStatus=" + status);
-
-                    if (status != null) {
-                        switch (status) {
-                            case "attending":
-                            case "going": // Backward compatibility
-                                goingCount++;
-                                break;
-                            case "not_attending":
-                            case "not_going": // Backward compatibility
-                                notGoingCount++;
-                                break;
-                            case "maybe":
-                                maybeCount++;
-                                break;
-                        }
-                    }
-                }
-                
-                Map<String, Object> updates = new HashMap<>();
-                updates.put("goingCount", goingCount);
-                updates.put("notGoingCount", notGoingCount);
-                updates.put("maybeCount", maybeCount);
-                
-                return updateEvent(groupId, eventId, updates);
-            }
-            return Tasks.forException(task.getException());
-        });
-    }
-
     // Callback-based methods for UI compatibility
 
     public void createEvent(Event event, android.net.Uri imageUri, OnSuccessCallback<String> onSuccess, OnErrorCallback onError) {
@@ -345,6 +460,12 @@ public class EventRepository {
                 .addOnFailureListener(onError::onError);
     }
 
+    public void getEventsInRange(String groupId, long fromMs, long toMs, OnSuccessCallback<java.util.List<Event>> onSuccess, OnErrorCallback onError) {
+        getEventsInRange(groupId, fromMs, toMs)
+                .addOnSuccessListener(onSuccess::onSuccess)
+                .addOnFailureListener(onError::onError);
+    }
+
     public void updateRSVP(String groupId, String eventId, EventRSVP.Status status, OnSuccessCallback<Void> onSuccess, OnErrorCallback onError) {
         android.util.Log.d("EventRepository", "updateAttendance: groupId=" + groupId + ", eventId=" + eventId + ", attendanceStatus=" + status.getValue());
 
@@ -385,33 +506,17 @@ public class EventRepository {
                 .addOnFailureListener(onError::onError);
     }
 
+    /**
+     * Số lượng RSVP lấy từ các bộ đếm trên event doc (được cập nhật khi RSVP), không đọc danh sách attendee
+     */
     public void getRSVPCounts(String groupId, String eventId, OnSuccessCallback<RSVPCounts> onSuccess, OnErrorCallback onError) {
-        getEventRSVPs(groupId, eventId)
-                .addOnSuccessListener(rsvps -> {
-                    int goingCount = 0, maybeCount = 0, notGoingCount = 0;
-
-                    for (EventRSVP rsvp : rsvps) {
-                        String status = rsvp.attendanceStatus != null ? rsvp.attendanceStatus : rsvp.status; // Backward compatibility
-                        android.util.Log.d("EventRepository", "Counting RSVP: userId=" + rsvp.userId + ", status=" + status);
-
-                        switch (status) {
-                            case "attending":
-                            case "going": // Backward compatibility
-                                goingCount++;
-                                break;
-                            case "maybe":
-                                maybeCount++;
-                                break;
-                            case "not_attending":
-                            case "not_going": // Backward compatibility
-                                notGoingCount++;
-                                break;
-                        }
+        getEvent(groupId, eventId)
+                .addOnSuccessListener(event -> {
+                    if (event == null) {
+                        onError.onError(new Exception("Event không tồn tại"));
+                        return;
                     }
-
-                    android.util.Log.d("EventRepository", "Attendance counts: attending=" + goingCount + ", maybe=" + maybeCount + ", notAttending=" + notGoingCount);
-
-                    onSuccess.onSuccess(new RSVPCounts(goingCount, maybeCount, notGoingCount));
+                    onSuccess.onSuccess(new RSVPCounts(event.goingCount, event.maybeCount, event.notGoingCount));
                 })
                 .addOnFailureListener(onError::onError);
     }
@@ -521,6 +626,7 @@ public class EventRepository {
                 .delete()
                 .addOnSuccessListener(aVoid -> {
                     android.util.Log.d("EventRepository", "Event deleted successfully");
+                    EventCache.getInstance().invalidate(groupId);
                     // Log event deletion
                     LogRepository logRepo = new LogRepository(db);
                     logRepo.logGroupAction(groupId, "event_cancelled", "event", eventId, null, null);
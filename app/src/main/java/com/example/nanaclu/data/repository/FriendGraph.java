@@ -0,0 +1,209 @@
+package com.example.nanaclu.data.repository;
+
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Đồ thị bạn bè của user hiện tại giữ trong bộ nhớ: quan hệ với từng user và các tập
+ * friends / incoming / outgoing / blocked-by-me / blocked-by-them.
+ * Một snapshot listener trên friendships (members chứa user hiện tại) giữ dữ liệu luôn mới,
+ * nên getStatus và các danh sách bạn bè không cần đọc Firestore sau lần snapshot đầu.
+ * Listener được bật khi cần lần đầu và bật lại khi user đăng nhập thay đổi.
+ * Snapshot lấy từ cache offline có thể thiếu friendship (cache chỉ chứa các document từng đọc),
+ * nên đồ thị chỉ được dùng sau snapshot đầu tiên từ server; trước đó người gọi dùng query.
+ * Mọi hàm gọi trên main thread.
+ */
+public class FriendGraph {
+    private static final String TAG = "FriendGraph";
+    private static final String FRIENDSHIPS_COLLECTION = "friendships";
+
+    public static final String NONE = "none";
+    public static final String PENDING_SENT = "pending_sent";
+    public static final String PENDING_INCOMING = "pending_incoming";
+    public static final String ACCEPTED = "accepted";
+    public static final String BLOCKED_BY_ME = "blocked_by_me";
+    public static final String BLOCKED_BY_THEM = "blocked_by_them";
+
+    private static FriendGraph instance;
+
+    private final FirebaseFirestore db;
+    private String ownerUid;
+    private ListenerRegistration registration;
+    // Hoàn thành khi có snapshot đầu tiên từ server, lỗi nếu listener lỗi trước đó
+    private TaskCompletionSource<Void> ready;
+
+    // otherUid -> quan hệ, cùng các tập theo từng quan hệ (giữ thứ tự snapshot)
+    private final Map<String, String> relations = new HashMap<>();
+    private final Map<String, Set<String>> byRelation = new HashMap<>();
+
+    private FriendGraph() {
+        db = FirebaseFirestore.getInstance();
+        for (String relation : new String[]{PENDING_SENT, PENDING_INCOMING, ACCEPTED, BLOCKED_BY_ME, BLOCKED_BY_THEM}) {
+            byRelation.put(relation, new LinkedHashSet<>());
+        }
+    }
+
+    public static synchronized FriendGraph getInstance() {
+        if (instance == null) {
+            instance = new FriendGraph();
+        }
+        return instance;
+    }
+
+    /**
+     * uid có phải user đang đăng nhập không; nếu phải thì đảm bảo listener đang chạy cho user đó
+     */
+    public boolean isOwner(String uid) {
+        String current = FirebaseAuth.getInstance().getUid();
+        if (uid == null || !uid.equals(current)) return false;
+        if (!uid.equals(ownerUid) || registration == null) start(uid);
+        return true;
+    }
+
+    /** Đồ thị đã có snapshot từ server, đọc trực tiếp được */
+    public boolean isReady() {
+        return ready != null && ready.getTask().isSuccessful();
+    }
+
+    /** Quan hệ của user hiện tại với otherUid, dùng khi isReady() */
+    public String statusOf(String otherUid) {
+        String relation = relations.get(otherUid);
+        return relation != null ? relation : NONE;
+    }
+
+    public List<String> friends(int limit) {
+        return take(ACCEPTED, limit);
+    }
+
+    public List<String> incomingRequests(int limit) {
+        return take(PENDING_INCOMING, limit);
+    }
+
+    public List<String> outgoingRequests(int limit) {
+        return take(PENDING_SENT, limit);
+    }
+
+    public List<String> blockedByMe(int limit) {
+        return take(BLOCKED_BY_ME, limit);
+    }
+
+    /**
+     * Ghi nhận ngay kết quả của thao tác vừa thành công (relation = NONE để xóa quan hệ),
+     * không chờ snapshot về tới. Bỏ qua nếu uid không phải chủ đồ thị.
+     */
+    public void apply(String uid, String otherUid, String relation) {
+        if (uid == null || !uid.equals(ownerUid) || otherUid == null) return;
+        setRelation(otherUid, relation);
+    }
+
+    /** Gỡ listener và xóa dữ liệu (khi đăng xuất) */
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        ownerUid = null;
+        ready = null;
+        clear();
+    }
+
+    /**
+     * Quan hệ của uid với người còn lại trong friendship document
+     * ("none", "pending_sent", "pending_incoming", "accepted", "blocked_by_me", "blocked_by_them")
+     */
+    public static String relationOf(String uid, DocumentSnapshot doc) {
+        String status = doc.getString("status");
+        if (status == null) return NONE;
+        switch (status) {
+            case "pending":
+                return uid.equals(doc.getString("requesterId")) ? PENDING_SENT : PENDING_INCOMING;
+            case "accepted":
+                return ACCEPTED;
+            case "blocked":
+                return uid.equals(doc.getString("blockedBy")) ? BLOCKED_BY_ME : BLOCKED_BY_THEM;
+            default:
+                return NONE;
+        }
+    }
+
+    private void start(String uid) {
+        stop();
+        ownerUid = uid;
+        ready = new TaskCompletionSource<>();
+        TaskCompletionSource<Void> firstSnapshot = ready;
+        registration = db.collection(FRIENDSHIPS_COLLECTION)
+                .whereArrayContains("members", uid)
+                // Nhận cả thay đổi metadata để biết khi dữ liệu cache được server xác nhận
+                .addSnapshotListener(MetadataChanges.INCLUDE, (snapshot, error) -> {
+                    if (error != null) {
+                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, error);
+                        // Lần gọi sau bật lại listener; trong lúc đó người gọi quay về đọc Firestore
+                        if (uid.equals(ownerUid) && registration != null) {
+                            registration.remove();
+                            registration = null;
+                        }
+                        firstSnapshot.trySetException(error);
+                        return;
+                    }
+                    if (snapshot == null || !uid.equals(ownerUid)) return;
+                    boolean fromServer = !snapshot.getMetadata().isFromCache();
+                    // Trước khi server trả lời, snapshot cache không đủ tin cậy để dựng đồ thị
+                    if (!fromServer && !firstSnapshot.getTask().isComplete()) return;
+                    rebuild(uid, snapshot);
+                    if (fromServer) firstSnapshot.trySetResult(null);
+                });
+    }
+
+    private void rebuild(String uid, QuerySnapshot snapshot) {
+        clear();
+        for (DocumentSnapshot doc : snapshot.getDocuments()) {
+            String other = otherMember(uid, doc);
+            if (other != null) setRelation(other, relationOf(uid, doc));
+        }
+    }
+
+    private void setRelation(String otherUid, String relation) {
+        String previous = relations.remove(otherUid);
+        if (previous != null) byRelation.get(previous).remove(otherUid);
+        Set<String> set = byRelation.get(relation);
+        if (set == null) return; // NONE
+        relations.put(otherUid, relation);
+        set.add(otherUid);
+    }
+
+    private void clear() {
+        relations.clear();
+        for (Set<String> set : byRelation.values()) set.clear();
+    }
+
+    private List<String> take(String relation, int limit) {
+        List<String> result = new ArrayList<>();
+        for (String uid : byRelation.get(relation)) {
+            if (result.size() >= limit) break;
+            result.add(uid);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String otherMember(String uid, DocumentSnapshot doc) {
+        List<String> members = (List<String>) doc.get("members");
+        if (members == null) return null;
+        for (String member : members) {
+            if (member != null && !member.equals(uid)) return member;
+        }
+        return null;
+    }
+}
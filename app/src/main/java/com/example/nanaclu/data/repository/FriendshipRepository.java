@@ -1,6 +1,7 @@
 package com.example.nanaclu.data.repository;
 
 import com.example.nanaclu.data.model.Friendship;
+import com.example.nanaclu.data.model.User;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.DocumentReference;
@@ -19,10 +20,27 @@ import java.util.Map;
 /**
  * Repository cho quản lý friendships trong Firestore
  * Sử dụng collection "friendships" với pairKey làm document ID
+ * Trạng thái / danh sách của user đang đăng nhập được đọc từ FriendGraph (trong bộ nhớ);
+ * user khác hoặc khi listener lỗi thì query Firestore như trước.
  */
 public class FriendshipRepository {
     private final FirebaseFirestore db;
     private static final String FRIENDSHIPS_COLLECTION = "friendships";
+    // Một trang bạn bè = một lần whereIn trên users (giới hạn 30 phần tử)
+    public static final int FRIEND_PAGE_SIZE = 30;
+
+    /** Một trang bạn bè đã có thông tin user, nextCursor dùng cho trang tiếp theo */
+    public static class FriendPage {
+        public final List<User> users;
+        public final int nextCursor;
+        public final boolean hasMore;
+
+        public FriendPage(List<User> users, int nextCursor, boolean hasMore) {
+            this.users = users;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+    }
 
     public FriendshipRepository(FirebaseFirestore db) {
         this.db = db;
@@ -114,6 +132,12 @@ public class FriendshipRepository {
             }
 
             return "unknown_status";
+        }).addOnSuccessListener(result -> {
+            if ("pending".equals(result)) {
+                FriendGraph.getInstance().apply(currentUid, targetUid, FriendGraph.PENDING_SENT);
+            } else if ("auto_accepted".equals(result)) {
+                FriendGraph.getInstance().apply(currentUid, targetUid, FriendGraph.ACCEPTED);
+            }
         });
     }
 
@@ -203,7 +227,7 @@ public class FriendshipRepository {
 
             android.util.Log.d("FriendshipRepository", "Successfully accepted friend request and cleaned up duplicates");
             return null;
-        });
+        }).addOnSuccessListener(aVoid -> FriendGraph.getInstance().apply(currentUid, requesterUid, FriendGraph.ACCEPTED));
     }
 
     /**
@@ -233,7 +257,7 @@ public class FriendshipRepository {
             // Xóa friendship document
             transaction.delete(docRef);
             return null;
-        });
+        }).addOnSuccessListener(aVoid -> FriendGraph.getInstance().apply(currentUid, requesterUid, FriendGraph.NONE));
     }
 
     /**
@@ -263,7 +287,7 @@ public class FriendshipRepository {
             // Xóa friendship document
             transaction.delete(docRef);
             return null;
-        });
+        }).addOnSuccessListener(aVoid -> FriendGraph.getInstance().apply(currentUid, targetUid, FriendGraph.NONE));
     }
 
     /**
@@ -292,7 +316,7 @@ public class FriendshipRepository {
             // Xóa friendship document
             transaction.delete(docRef);
             return null;
-        });
+        }).addOnSuccessListener(aVoid -> FriendGraph.getInstance().apply(currentUid, otherUid, FriendGraph.NONE));
     }
 
     /**
@@ -327,7 +351,7 @@ public class FriendshipRepository {
             }
 
             return null;
-        });
+        }).addOnSuccessListener(aVoid -> FriendGraph.getInstance().apply(currentUid, otherUid, FriendGraph.BLOCKED_BY_ME));
     }
 
     /**
@@ -357,7 +381,7 @@ public class FriendshipRepository {
             // Xóa friendship document
             transaction.delete(docRef);
             return null;
-        });
+        }).addOnSuccessListener(aVoid -> FriendGraph.getInstance().apply(currentUid, otherUid, FriendGraph.NONE));
     }
 
     /**
@@ -370,44 +394,81 @@ public class FriendshipRepository {
             return Tasks.forResult("none");
         }
 
-        return db.collection(FRIENDSHIPS_COLLECTION)
-                .document(pairKey)
-                .get()
-                .continueWith(task -> {
-                    if (!task.isSuccessful() || !task.getResult().exists()) {
-                        return "none";
-                    }
-
-                    DocumentSnapshot snapshot = task.getResult();
-                    String status = snapshot.getString("status");
-                    String requesterId = snapshot.getString("requesterId");
-                    String blockedBy = snapshot.getString("blockedBy");
-
-                    switch (status) {
-                        case "pending":
-                            if (currentUid.equals(requesterId)) {
-                                return "pending_sent";
-                            } else {
-                                return "pending_incoming";
+        return fromGraph(currentUid, graph -> graph.statusOf(otherUid),
+                () -> db.collection(FRIENDSHIPS_COLLECTION)
+                        .document(pairKey)
+                        .get()
+                        .continueWith(task -> {
+                            if (!task.isSuccessful() || !task.getResult().exists()) {
+                                return "none";
                             }
-                        case "accepted":
-                            return "accepted";
-                        case "blocked":
-                            if (currentUid.equals(blockedBy)) {
-                                return "blocked_by_me";
-                            } else {
-                                return "blocked_by_them";
-                            }
-                        default:
-                            return "none";
-                    }
-                });
+                            return FriendGraph.relationOf(currentUid, task.getResult());
+                        }));
+    }
+
+    /**
+     * Đọc từ FriendGraph nếu uid là user đang đăng nhập và đồ thị đã đồng bộ với server;
+     * chưa đồng bộ (mới bật, offline) hoặc listener lỗi thì dùng query
+     */
+    private <T> Task<T> fromGraph(String uid, java.util.function.Function<FriendGraph, T> read,
+                                  java.util.function.Supplier<Task<T>> query) {
+        FriendGraph graph = FriendGraph.getInstance();
+        if (!graph.isOwner(uid) || !graph.isReady()) return query.get();
+        return Tasks.forResult(read.apply(graph));
     }
 
     /**
      * Lấy danh sách bạn bè (accepted friends)
      */
     public Task<List<String>> listFriends(String uid, int limit) {
+        return fromGraph(uid, graph -> graph.friends(limit), () -> queryFriends(uid, limit));
+    }
+
+    /**
+     * Toàn bộ id bạn bè đã sắp theo id. Gọi một lần mỗi lần tải lại danh sách và giữ kết quả
+     * làm nguồn cho listFriendsPage, để cursor luôn trỏ vào cùng một danh sách.
+     */
+    public Task<List<String>> listFriendIds(String uid) {
+        return listFriends(uid, Integer.MAX_VALUE).continueWith(task -> {
+            if (!task.isSuccessful()) throw task.getException();
+            List<String> ids = new ArrayList<>(new java.util.LinkedHashSet<>(task.getResult()));
+            java.util.Collections.sort(ids);
+            return ids;
+        });
+    }
+
+    /**
+     * Trang bạn bè bắt đầu từ cursor (0 cho trang đầu) trong friendIds của listFriendIds:
+     * đọc thông tin user qua UserCache (tối đa FRIEND_PAGE_SIZE id mỗi lần whereIn),
+     * user trong trang sắp theo tên. User không đọc được bị bỏ qua.
+     */
+    public Task<FriendPage> listFriendsPage(List<String> friendIds, int cursor, int pageSize) {
+        int size = Math.min(Math.max(pageSize, 1), FRIEND_PAGE_SIZE);
+        int from = Math.min(Math.max(cursor, 0), friendIds.size());
+        int to = Math.min(from + size, friendIds.size());
+        List<String> pageIds = new ArrayList<>(friendIds.subList(from, to));
+
+        com.google.android.gms.tasks.TaskCompletionSource<FriendPage> page =
+                new com.google.android.gms.tasks.TaskCompletionSource<>();
+        UserCache.getInstance().resolve(pageIds, () -> {
+            List<User> users = new ArrayList<>();
+            for (String id : pageIds) {
+                User user = UserCache.getInstance().get(id);
+                if (user != null) users.add(user);
+            }
+            sortByName(users);
+            page.setResult(new FriendPage(users, to, to < friendIds.size()));
+        });
+        return page.getTask();
+    }
+
+    /** Sắp user theo tên đã chuẩn hóa (không phân biệt hoa thường / dấu) */
+    private static void sortByName(List<User> users) {
+        users.sort((a, b) -> com.example.nanaclu.utils.TextNormalizer.normalizeForSearch(a.displayName)
+                .compareTo(com.example.nanaclu.utils.TextNormalizer.normalizeForSearch(b.displayName)));
+    }
+
+    private Task<List<String>> queryFriends(String uid, int limit) {
         return db.collection(FRIENDSHIPS_COLLECTION)
                 .whereArrayContains("members", uid)
                 .whereEqualTo("status", "accepted")
@@ -436,6 +497,10 @@ public class FriendshipRepository {
      * Lấy danh sách lời mời kết bạn đã nhận (incoming requests)
      */
     public Task<List<String>> listIncomingRequests(String uid, int limit) {
+        return fromGraph(uid, graph -> graph.incomingRequests(limit), () -> queryIncomingRequests(uid, limit));
+    }
+
+    private Task<List<String>> queryIncomingRequests(String uid, int limit) {
         return db.collection(FRIENDSHIPS_COLLECTION)
                 .whereEqualTo("addresseeId", uid)
                 .whereEqualTo("status", "pending")
@@ -459,6 +524,10 @@ public class FriendshipRepository {
      * Lấy danh sách lời mời kết bạn đã gửi (outgoing requests)
      */
     public Task<List<String>> listOutgoingRequests(String uid, int limit) {
+        return fromGraph(uid, graph -> graph.outgoingRequests(limit), () -> queryOutgoingRequests(uid, limit));
+    }
+
+    private Task<List<String>> queryOutgoingRequests(String uid, int limit) {
         return db.collection(FRIENDSHIPS_COLLECTION)
                 .whereEqualTo("requesterId", uid)
                 .whereEqualTo("status", "pending")
@@ -479,6 +548,10 @@ public class FriendshipRepository {
     }
 
     public Task<List<String>> listBlockedUsers(String uid, int limit) {
+        return fromGraph(uid, graph -> graph.blockedByMe(limit), () -> queryBlockedUsers(uid, limit));
+    }
+
+    private Task<List<String>> queryBlockedUsers(String uid, int limit) {
         return db.collection(FRIENDSHIPS_COLLECTION)
                 .whereArrayContains("members", uid)
                 .whereEqualTo("status", "blocked")
@@ -0,0 +1,226 @@
+package com.example.nanaclu.data.repository;
+
+import com.example.nanaclu.data.model.Group;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache Group dùng chung giữa các màn hình (chi tiết group, feed, chi tiết post, danh sách group).
+ * - Giữ tối đa MAX_ENTRIES group theo thứ tự dùng gần nhất
+ * - get(): trả về ngay bản đang có (kể cả đã cũ) và đọc lại ngầm nếu quá STALE_MS
+ *   (stale-while-revalidate); chưa có thì đọc một lần, các request trùng chờ chung kết quả.
+ *   Chỉ dùng để hiển thị; kiểm tra quyền / cài đặt group dùng getFresh()
+ * - observe(): mỗi group đang được xem chỉ có một snapshot listener, đếm số observer,
+ *   gỡ listener khi observer cuối cùng remove()
+ * Mọi hàm gọi trên main thread.
+ */
+public class GroupCache {
+    private static final String TAG = "GroupCache";
+    private static final String GROUPS_COLLECTION = "groups";
+    private static final int MAX_ENTRIES = 100;
+    private static final long STALE_MS = 60_000;
+
+    private static GroupCache instance;
+
+    public interface GroupObserver {
+        /** group = null khi group không còn tồn tại */
+        void onChanged(Group group);
+    }
+
+    private static class Entry {
+        Group group;
+        long fetchedAt;
+        boolean exists = true;
+        ListenerRegistration registration;
+        final List<GroupObserver> observers = new ArrayList<>();
+        List<GroupRepository.GroupCallback> waiting;
+    }
+
+    private final FirebaseFirestore db;
+    // access-order để loại group lâu không dùng
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private GroupCache() {
+        db = FirebaseFirestore.getInstance();
+    }
+
+    public static synchronized GroupCache getInstance() {
+        if (instance == null) {
+            instance = new GroupCache();
+        }
+        return instance;
+    }
+
+    /** Group đang có trong cache (có thể đã cũ), null nếu chưa tải */
+    public Group peek(String groupId) {
+        Entry e = entries.get(groupId);
+        return e != null ? e.group : null;
+    }
+
+    public void get(String groupId, GroupRepository.GroupCallback callback) {
+        Entry e = entry(groupId);
+        if (e.group != null) {
+            callback.onSuccess(e.group);
+            // Đang có listener thì dữ liệu luôn mới, không cần đọc lại
+            if (e.registration == null && e.waiting == null
+                    && System.currentTimeMillis() - e.fetchedAt > STALE_MS) {
+                fetch(groupId, e);
+            }
+            return;
+        }
+        if (e.waiting == null) {
+            e.waiting = new ArrayList<>();
+            e.waiting.add(callback);
+            fetch(groupId, e);
+        } else {
+            e.waiting.add(callback);
+        }
+    }
+
+    /**
+     * Đọc group mới nhất cho các kiểm tra quyền / cài đặt (duyệt bài, quyền tạo sự kiện...):
+     * không trả bản cache, chỉ dùng lại khi đang có snapshot listener giữ group luôn mới
+     */
+    public void getFresh(String groupId, GroupRepository.GroupCallback callback) {
+        Entry e = entry(groupId);
+        if (e.group != null && e.registration != null) {
+            callback.onSuccess(e.group);
+            return;
+        }
+        // Đọc đang chạy (bắt đầu sau khi có yêu cầu trước đó) thì chờ chung kết quả
+        if (e.waiting == null) {
+            e.waiting = new ArrayList<>();
+            e.waiting.add(callback);
+            fetch(groupId, e);
+        } else {
+            e.waiting.add(callback);
+        }
+    }
+
+    /**
+     * Theo dõi group: observer nhận bản đang có ngay (nếu có) và mọi thay đổi sau đó.
+     * Gọi remove() trên registration trả về khi màn hình không còn hiển thị.
+     */
+    public ListenerRegistration observe(String groupId, GroupObserver observer) {
+        Entry e = entry(groupId);
+        e.observers.add(observer);
+        if (e.group != null) observer.onChanged(e.group);
+        if (e.registration == null) {
+            DocumentReference ref = db.collection(GROUPS_COLLECTION).document(groupId);
+            e.registration = ref.addSnapshotListener((snapshot, error) -> {
+                if (error != null) {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, error);
+                    return;
+                }
+                if (snapshot != null) apply(groupId, e, snapshot);
+            });
+        }
+        return () -> release(e, observer);
+    }
+
+    /** Ghi đè group sau khi chính app cập nhật (màn khác thấy ngay bản mới) */
+    public void put(Group group) {
+        if (group == null || group.groupId == null) return;
+        Entry e = entry(group.groupId);
+        e.group = group;
+        e.exists = true;
+        e.fetchedAt = System.currentTimeMillis();
+        notifyObservers(e);
+    }
+
+    /**
+     * Bỏ bản cache của group (sau khi đổi cài đặt, xóa group...), lần get() sau chờ đọc lại
+     * thay vì trả bản cũ. Entry đang được observe vẫn giữ để listener cập nhật tiếp.
+     */
+    public void invalidate(String groupId) {
+        Entry e = entries.get(groupId);
+        if (e == null) return;
+        if (e.registration == null && e.waiting == null) {
+            entries.remove(groupId);
+        } else {
+            e.group = null;
+            e.fetchedAt = 0;
+        }
+    }
+
+    private void release(Entry e, GroupObserver observer) {
+        e.observers.remove(observer);
+        if (e.observers.isEmpty() && e.registration != null) {
+            e.registration.remove();
+            e.registration = null;
+            // Cache có thể đã vượt giới hạn trong lúc group này được giữ lại
+            trim();
+        }
+    }
+
+    private void fetch(String groupId, Entry e) {
+        db.collection(GROUPS_COLLECTION).document(groupId).get()
+                .addOnSuccessListener(snapshot -> apply(groupId, e, snapshot))
+                .addOnFailureListener(err -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, err);
+                    List<GroupRepository.GroupCallback> waiting = e.waiting;
+                    e.waiting = null;
+                    if (waiting != null) {
+                        for (GroupRepository.GroupCallback cb : waiting) cb.onError(err);
+                    }
+                });
+    }
+
+    private void apply(String groupId, Entry e, DocumentSnapshot snapshot) {
+        e.fetchedAt = System.currentTimeMillis();
+        Group group = snapshot.exists() ? snapshot.toObject(Group.class) : null;
+        if (group != null && group.groupId == null) group.groupId = groupId;
+        e.exists = snapshot.exists();
+        e.group = group;
+        if (group != null) {
+            // Đồng bộ tên / số thành viên trong membership index nếu đã thay đổi
+            MembershipIndex.getInstance().refresh(group);
+        }
+
+        List<GroupRepository.GroupCallback> waiting = e.waiting;
+        e.waiting = null;
+        if (waiting != null) {
+            for (GroupRepository.GroupCallback cb : waiting) {
+                if (group != null) {
+                    cb.onSuccess(group);
+                } else {
+                    cb.onError(new Exception(e.exists ? "Failed to parse group data" : "Group not found"));
+                }
+            }
+        }
+        notifyObservers(e);
+    }
+
+    private void notifyObservers(Entry e) {
+        for (GroupObserver o : new ArrayList<>(e.observers)) {
+            o.onChanged(e.group);
+        }
+    }
+
+    private Entry entry(String groupId) {
+        Entry e = entries.get(groupId);
+        if (e == null) {
+            e = new Entry();
+            entries.put(groupId, e);
+            trim();
+        }
+        return e;
+    }
+
+    /** Loại group lâu không dùng, bỏ qua group đang được observe hoặc đang tải */
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > MAX_ENTRIES && it.hasNext()) {
+            Entry e = it.next().getValue();
+            if (e.registration == null && e.waiting == null) it.remove();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.nanaclu.data.repository;
 
 import com.example.nanaclu.data.model.Group;
+import com.example.nanaclu.data.model.GroupSummary;
 import com.example.nanaclu.data.model.Member;
+import com.example.nanaclu.data.model.User;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
@@ -9,6 +11,7 @@ import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
@@ -23,56 +26,148 @@ public class GroupRepository {
     private static final String BLOCKED_COLLECTION = "blockedUsers";
     private static final String PENDING_COLLECTION = "pendingUsers";
     private static final String PENDING_POSTS_COLLECTION = "pendingPosts";
+    private static final String USERS_COLLECTION = "users";
+    // joinCodes/{code} -> { groupId }: giữ chỗ mã tham gia, mỗi mã chỉ thuộc một group
+    private static final String JOIN_CODES_COLLECTION = "joinCodes";
+    private static final int CODE_LENGTH = 6;
+    private static final int CODE_ATTEMPTS = 8;
+
+    public static final int MEMBER_PAGE_SIZE = 30;
+    // Số thao tác tối đa mỗi batch khi ghi nhiều member (giới hạn Firestore là 500)
+    private static final int BATCH_LIMIT = 450;
+
+    /** Một trang thành viên, lastDoc dùng làm con trỏ cho trang tiếp theo */
+    public static class MemberPage {
+        public final List<Member> items;
+        public final DocumentSnapshot lastDoc;
+        public final boolean hasMore;
+
+        public MemberPage(List<Member> items, DocumentSnapshot lastDoc, boolean hasMore) {
+            this.items = items;
+            this.lastDoc = lastDoc;
+            this.hasMore = hasMore;
+        }
+    }
 
     public GroupRepository(FirebaseFirestore db) {
         this.db = db;
     }
 
     public Task<Void> createGroup(Group group) {
-        return db.collection(GROUPS_COLLECTION).document(group.groupId).set(group)
+        // Member của group mới luôn có đủ dữ liệu hiển thị, không cần bổ sung sau
+        group.membersIndexed = true;
+        DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(group.groupId);
+        // Giữ chỗ mã tham gia và ghi group trong cùng một transaction
+        return db.runTransaction(tx -> {
+                    group.code = reserveCode(tx, group.groupId);
+                    tx.set(groupRef, group);
+                    return (Void) null;
+                })
                 .continueWithTask(task -> {
                     if (task.isSuccessful()) {
                         // Add creator as owner member
                         Member member = new Member();
                         member.userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
-                        member.role = "owner";
+                        member.applyRole("owner");
                         member.joinedAt = System.currentTimeMillis();
                         member.status = "active";
 
-                        return db.collection(GROUPS_COLLECTION)
-                                .document(group.groupId)
-                                .collection(MEMBERS_COLLECTION)
-                                .document(member.userId)
-                                .set(member);
+                        return withProfile(member).continueWithTask(profileTask -> {
+                            com.google.firebase.firestore.WriteBatch batch = db.batch();
+                            batch.set(db.collection(GROUPS_COLLECTION)
+                                    .document(group.groupId)
+                                    .collection(MEMBERS_COLLECTION)
+                                    .document(member.userId), member);
+                            MembershipIndex.getInstance().add(batch, member.userId,
+                                    GroupSummary.of(group, member.role, member.joinedAt));
+                            return batch.commit();
+                        });
                     }
                     return task;
                 });
     }
 
-    /** Generate a unique short code for the group (e.g., 6 chars) */
-    public Task<String> generateUniqueCode(int length) {
-        return tryGenerateCode(length, 0);
+    /** Chép tên / avatar của user vào member trước khi ghi (lỗi đọc user thì dùng userId làm tên) */
+    private Task<Member> withProfile(Member m) {
+        User cached = UserCache.getInstance().get(m.userId);
+        if (cached != null) {
+            m.applyProfile(cached);
+            return Tasks.forResult(m);
+        }
+        return db.collection(USERS_COLLECTION).document(m.userId).get().continueWith(t -> {
+            User user = t.isSuccessful() && t.getResult() != null ? t.getResult().toObject(User.class) : null;
+            if (user != null) {
+                if (user.userId == null) user.userId = m.userId;
+                UserCache.getInstance().put(user);
+            }
+            m.applyProfile(user);
+            return m;
+        });
     }
 
-    private Task<String> tryGenerateCode(int length, int attempt) {
-        if (attempt > 8) {
-            return Tasks.forException(new Exception("Could not generate unique code"));
+    /**
+     * Chọn mã ngẫu nhiên chưa có trong joinCodes và ghi document giữ chỗ trong transaction tx.
+     * Mã trùng thì thử mã khác ngay trong transaction; transaction bị chạy lại nếu mã vừa
+     * bị group khác giữ cùng lúc, nên hai group không thể nhận cùng một mã.
+     */
+    private String reserveCode(com.google.firebase.firestore.Transaction tx, String groupId)
+            throws com.google.firebase.firestore.FirebaseFirestoreException {
+        for (int attempt = 0; attempt < CODE_ATTEMPTS; attempt++) {
+            String code = randomCode(CODE_LENGTH);
+            DocumentReference codeRef = db.collection(JOIN_CODES_COLLECTION).document(code);
+            if (!tx.get(codeRef).exists()) {
+                tx.set(codeRef, joinCodeData(groupId));
+                return code;
+            }
         }
-        String code = randomCode(length);
-        return db.collection(GROUPS_COLLECTION)
-                .whereEqualTo("code", code)
-                .limit(1)
-                .get()
-                .continueWithTask(task -> {
-                    if (!task.isSuccessful()) {
-                        return Tasks.forException(task.getException() != null ? task.getException() : new Exception("Query failed"));
-                    }
-                    if (task.getResult() == null || task.getResult().isEmpty()) {
-                        return Tasks.forResult(code);
-                    } else {
-                        return tryGenerateCode(length, attempt + 1);
-                    }
-                });
+        throw new com.google.firebase.firestore.FirebaseFirestoreException("Could not generate unique code",
+                com.google.firebase.firestore.FirebaseFirestoreException.Code.ABORTED);
+    }
+
+    private static Map<String, Object> joinCodeData(String groupId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("groupId", groupId);
+        data.put("createdAt", System.currentTimeMillis());
+        return data;
+    }
+
+    /**
+     * Tìm group theo mã tham gia: đọc joinCodes/{code} rồi group document.
+     * Trả về null nếu không có group nào dùng mã này.
+     * Group tạo trước khi có joinCodes được tìm bằng query theo "code" và giữ chỗ mã luôn.
+     */
+    public Task<DocumentSnapshot> findGroupByCode(String code) {
+        if (code == null || code.isEmpty()) return Tasks.forResult(null);
+        DocumentReference codeRef = db.collection(JOIN_CODES_COLLECTION).document(code);
+        return codeRef.get().continueWithTask(task -> {
+            if (!task.isSuccessful()) throw task.getException();
+            String groupId = task.getResult().getString("groupId");
+            if (groupId != null) {
+                return db.collection(GROUPS_COLLECTION).document(groupId).get()
+                        .continueWith(t -> {
+                            if (!t.isSuccessful()) throw t.getException();
+                            // Group đã bị xóa nhưng document giữ chỗ còn sót lại
+                            return t.getResult().exists() ? t.getResult() : null;
+                        });
+            }
+            return db.collection(GROUPS_COLLECTION).whereEqualTo("code", code).limit(1).get()
+                    .continueWith(t -> {
+                        if (!t.isSuccessful()) throw t.getException();
+                        if (t.getResult().isEmpty()) return null;
+                        DocumentSnapshot doc = t.getResult().getDocuments().get(0);
+                        backfillJoinCode(code, doc.getId());
+                        return doc;
+                    });
+        });
+    }
+
+    /** Giữ chỗ mã của group cũ nếu mã chưa được group nào giữ (create-if-absent) */
+    private void backfillJoinCode(String code, String groupId) {
+        DocumentReference codeRef = db.collection(JOIN_CODES_COLLECTION).document(code);
+        db.runTransaction(tx -> {
+            if (!tx.get(codeRef).exists()) tx.set(codeRef, joinCodeData(groupId));
+            return null;
+        }).addOnFailureListener(e -> com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("GroupRepository", e));
     }
 
     private static final char[] CODE_CHARS = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789".toCharArray();
@@ -83,25 +178,29 @@ public class GroupRepository {
         return sb.toString();
     }
 
-    /** Regenerate a new unique code for an existing group */
+    /**
+     * Đổi mã tham gia: giữ chỗ mã mới, cập nhật group và bỏ giữ chỗ mã cũ trong cùng một transaction
+     */
     public void regenerateGroupCode(String groupId, RegenerateCodeCallback callback) {
-        generateUniqueCode(6)
+        DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(groupId);
+        db.runTransaction(tx -> {
+                    // Đọc hết trước khi ghi
+                    String oldCode = tx.get(groupRef).getString("code");
+                    DocumentReference oldRef = oldCode != null && !oldCode.isEmpty()
+                            ? db.collection(JOIN_CODES_COLLECTION).document(oldCode) : null;
+                    boolean ownsOld = oldRef != null && groupId.equals(tx.get(oldRef).getString("groupId"));
+                    String newCode = reserveCode(tx, groupId);
+                    tx.update(groupRef, "code", newCode);
+                    if (ownsOld) tx.delete(oldRef);
+                    return newCode;
+                })
                 .addOnSuccessListener(newCode -> {
-                    // Update the group with the new code
-                    db.collection(GROUPS_COLLECTION)
-                            .document(groupId)
-                            .update("code", newCode)
-                            .addOnSuccessListener(aVoid -> {
-                                android.util.Log.d("GroupRepository", "Regenerated code for group " + groupId + ": " + newCode);
-                                callback.onSuccess(newCode);
-                            })
-                            .addOnFailureListener(e -> {
-                                android.util.Log.e("GroupRepository", "Failed to update group code", e);
-                                callback.onError(e);
-                            });
+                    GroupCache.getInstance().invalidate(groupId);
+                    android.util.Log.d("GroupRepository", "Regenerated code for group " + groupId + ": " + newCode);
+                    callback.onSuccess(newCode);
                 })
                 .addOnFailureListener(e -> {
-                    android.util.Log.e("GroupRepository", "Failed to generate new code", e);
+                    android.util.Log.e("GroupRepository", "Failed to regenerate group code", e);
                     callback.onError(e);
                 });
     }
@@ -112,15 +211,12 @@ public class GroupRepository {
                 ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
         if (uid == null) return Tasks.forException(new IllegalStateException("Not logged in"));
         if (code == null || code.isEmpty()) return Tasks.forException(new IllegalArgumentException("Empty code"));
-        return db.collection(GROUPS_COLLECTION)
-                .whereEqualTo("code", code)
-                .limit(1)
-                .get()
+        return findGroupByCode(code)
                 .continueWithTask(task -> {
-                    if (!task.isSuccessful() || task.getResult() == null || task.getResult().isEmpty()) {
+                    if (!task.isSuccessful() || task.getResult() == null) {
                         return Tasks.forException(new Exception("KhĂ´ng tĂŹm tháşĽy nhĂłm váťi mĂŁ nĂ y"));
                     }
-                    DocumentSnapshot doc = task.getResult().getDocuments().get(0);
+                    DocumentSnapshot doc = task.getResult();
                     String groupId = doc.getId();
                     String gid = groupId;
                     DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(gid);
@@ -138,18 +234,8 @@ public class GroupRepository {
                                     data.put("requestedAt", System.currentTimeMillis());
                                     return groupRef.collection(PENDING_COLLECTION).document(uid).set(data);
                                 } else {
-                                    Member m = new Member();
-                                    m.userId = uid;
-                                    m.role = "member";
-                                    m.status = "active";
-                                    m.joinedAt = System.currentTimeMillis();
-                                    return groupRef.collection(MEMBERS_COLLECTION).document(uid).set(m)
-                                            .continueWithTask(t2 -> {
-                                                if (t2.isSuccessful()) {
-                                                    return groupRef.update("memberCount", com.google.firebase.firestore.FieldValue.increment(1));
-                                                }
-                                                return t2;
-                                            });
+                                    // Member, membership index, memberCount và log ghi trong một transaction
+                                    return new MembershipService(db).join(gid, uid);
                                 }
                             });
                 });
@@ -194,51 +280,26 @@ public class GroupRepository {
     }
 
 
+    /** Các group user hiện tại đã tham gia, đọc từ membership index (một document) */
     public Task<List<Group>> loadUserGroups() {
-        String userId = FirebaseAuth.getInstance().getCurrentUser() != null
-                ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
-        if (userId == null) return Tasks.forResult(new ArrayList<>());
-        System.out.println("GroupRepository: Loading groups for user (by membership): " + userId);
-
-        return loadJoinedGroupIds()
-                .continueWithTask(task -> {
-                    java.util.Set<String> ids = task.getResult();
-                    if (ids == null || ids.isEmpty()) {
-                        System.out.println("GroupRepository: No joined group IDs found");
-                        return Tasks.forResult(new ArrayList<Group>());
-                    }
-                    java.util.List<com.google.android.gms.tasks.Task<DocumentSnapshot>> jobs = new ArrayList<>();
-                    for (String id : ids) {
-                        jobs.add(db.collection(GROUPS_COLLECTION).document(id).get());
-                    }
-                    return Tasks.whenAllSuccess(jobs).continueWith(t -> {
-                        java.util.List<Group> groups = new ArrayList<>();
-                        for (Object o : t.getResult()) {
-                            DocumentSnapshot ds = (DocumentSnapshot) o;
-                            Group g = ds.toObject(Group.class);
-                            if (g != null) groups.add(g);
-                        }
-                        System.out.println("GroupRepository: Loaded groups by membership = " + groups.size());
-                        return groups;
-                    });
-                });
+        return MembershipIndex.getInstance().load().continueWith(task -> {
+            if (!task.isSuccessful()) throw task.getException();
+            List<Group> groups = new ArrayList<>();
+            for (GroupSummary s : task.getResult()) {
+                groups.add(s.toGroup());
+            }
+            return groups;
+        });
     }
 
+    /** Đọc qua GroupCache: trả về ngay bản đã có, chỉ đọc Firestore khi chưa có hoặc đã cũ */
     public void getGroupById(String groupId, GroupCallback callback) {
-        db.collection(GROUPS_COLLECTION).document(groupId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Group group = documentSnapshot.toObject(Group.class);
-                        if (group != null) {
-                            callback.onSuccess(group);
-                        } else {
-                            callback.onError(new Exception("Failed to parse group data"));
-                        }
-                    } else {
-                        callback.onError(new Exception("Group not found"));
-                    }
-                })
-                .addOnFailureListener(callback::onError);
+        GroupCache.getInstance().get(groupId, callback);
+    }
+
+    /** Đọc group mới nhất (không dùng bản cache cũ), dùng cho kiểm tra quyền và cài đặt group */
+    public void getGroupFresh(String groupId, GroupCallback callback) {
+        GroupCache.getInstance().getFresh(groupId, callback);
     }
 
     public void getMemberById(String groupId, String userId, MemberCallback callback) {
@@ -266,7 +327,10 @@ public class GroupRepository {
         db.collection(GROUPS_COLLECTION)
                 .document(group.groupId)
                 .set(group)
-                .addOnSuccessListener(aVoid -> callback.onSuccess())
+                .addOnSuccessListener(aVoid -> {
+                    GroupCache.getInstance().put(group);
+                    callback.onSuccess();
+                })
                 .addOnFailureListener(callback::onError);
     }
 
@@ -276,6 +340,7 @@ public class GroupRepository {
                 .document(groupId)
                 .update("requirePostApproval", requireApproval)
                 .addOnSuccessListener(aVoid -> {
+                    GroupCache.getInstance().invalidate(groupId);
                     // Log setting change
                     LogRepository logRepo = new LogRepository(db);
                     java.util.Map<String, Object> metadata = new java.util.HashMap<>();
@@ -291,10 +356,20 @@ public class GroupRepository {
         deleteGroupSubcollections(groupId)
                 .addOnSuccessListener(aVoid -> {
                     // After subcollections are deleted, delete the main group document
-                    db.collection(GROUPS_COLLECTION)
-                            .document(groupId)
-                            .delete()
+                    // and free its join code in the same transaction
+                    DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(groupId);
+                    db.runTransaction(tx -> {
+                                String code = tx.get(groupRef).getString("code");
+                                DocumentReference codeRef = code != null && !code.isEmpty()
+                                        ? db.collection(JOIN_CODES_COLLECTION).document(code) : null;
+                                if (codeRef != null && groupId.equals(tx.get(codeRef).getString("groupId"))) {
+                                    tx.delete(codeRef);
+                                }
+                                tx.delete(groupRef);
+                                return null;
+                            })
                             .addOnSuccessListener(aVoid2 -> {
+                                GroupCache.getInstance().invalidate(groupId);
                                 // Log group deletion
                                 LogRepository logRepo = new LogRepository(db);
                                 logRepo.logGroupAction(groupId, "group_deleted", "group", groupId, null, null);
@@ -320,11 +395,22 @@ public class GroupRepository {
                 .get()
                 .continueWithTask(task -> {
                     if (!task.isSuccessful()) throw task.getException();
+                    // Mỗi member 2 thao tác (member + index), chia batch để không vượt giới hạn 500
+                    List<Task<Void>> commits = new ArrayList<>();
                     com.google.firebase.firestore.WriteBatch batch = db.batch();
+                    int ops = 0;
                     for (com.google.firebase.firestore.DocumentSnapshot doc : task.getResult()) {
                         batch.delete(doc.getReference());
+                        MembershipIndex.getInstance().remove(batch, doc.getId(), groupId);
+                        ops += 2;
+                        if (ops >= BATCH_LIMIT) {
+                            commits.add(batch.commit());
+                            batch = db.batch();
+                            ops = 0;
+                        }
                     }
-                    return batch.commit();
+                    if (ops > 0) commits.add(batch.commit());
+                    return Tasks.whenAll(commits);
                 });
     }
 
@@ -408,90 +494,19 @@ public class GroupRepository {
     }
 
     /**
-     * LáşĽy danh sĂĄch groupId mĂ  user hiáťn táşĄi lĂ  member (dĂšng collectionGroup("members"))
-     * VĂ  kiáşŁm tra group cĂłn tá»n táşĄi
+     * Lấy danh sách groupId mà user hiện tại là member, đọc từ membership index
+     * (users/{uid}.joinedGroupIds) thay vì collectionGroup("members") + kiểm tra từng group
      */
     public Task<java.util.Set<String>> loadJoinedGroupIds() {
-        String userId = FirebaseAuth.getInstance().getCurrentUser() != null
-                ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
-        android.util.Log.d("GroupRepository", "=== loadJoinedGroupIds ===");
-        android.util.Log.d("GroupRepository", "userId: " + userId);
-
-        if (userId == null) {
-            android.util.Log.d("GroupRepository", "userId is null, returning empty set");
-            return Tasks.forResult(new java.util.HashSet<>());
-        }
-
-        return db.collectionGroup(MEMBERS_COLLECTION)
-                .whereEqualTo("userId", userId)
-                .get()
-                .continueWithTask(memberTask -> {
-                    java.util.Set<String> potentialGroupIds = new java.util.HashSet<>();
-                    android.util.Log.d("GroupRepository", "collectionGroup query completed");
-                    android.util.Log.d("GroupRepository", "task.isSuccessful(): " + memberTask.isSuccessful());
-
-                    if (memberTask.isSuccessful() && memberTask.getResult() != null) {
-                        android.util.Log.d("GroupRepository", "Found " + memberTask.getResult().getDocuments().size() + " member documents");
-
-                        for (DocumentSnapshot doc : memberTask.getResult().getDocuments()) {
-                            android.util.Log.d("GroupRepository", "Processing member doc: " + doc.getId());
-                            android.util.Log.d("GroupRepository", "Member data: " + doc.getData());
-
-                            DocumentReference memberRef = doc.getReference();
-                            DocumentReference groupRef = memberRef.getParent().getParent();
-                            if (groupRef != null) {
-                                String groupId = groupRef.getId();
-                                android.util.Log.d("GroupRepository", "Found potential groupId: " + groupId);
-                                potentialGroupIds.add(groupId);
-                            } else {
-                                android.util.Log.w("GroupRepository", "groupRef is null for member: " + doc.getId());
-                            }
-                        }
-                    } else {
-                        android.util.Log.e("GroupRepository", "Query failed: " + (memberTask.getException() != null ? memberTask.getException().getMessage() : "unknown error"));
-                        return Tasks.forResult(new java.util.HashSet<>());
-                    }
-
-                    android.util.Log.d("GroupRepository", "Found " + potentialGroupIds.size() + " potential group IDs, now verifying they exist...");
-
-                    // KiáşŁm tra tá»«ng group cĂłn tá»n táşĄi
-                    java.util.List<com.google.android.gms.tasks.Task<DocumentSnapshot>> existenceChecks = new java.util.ArrayList<>();
-                    for (String groupId : potentialGroupIds) {
-                        existenceChecks.add(db.collection(GROUPS_COLLECTION).document(groupId).get());
-                    }
-
-                    return Tasks.whenAllSuccess(existenceChecks).continueWith(existenceTask -> {
-                        java.util.Set<String> validGroupIds = new java.util.HashSet<>();
-                        java.util.List<Object> results = existenceTask.getResult();
-
-                        for (int i = 0; i < results.size(); i++) {
-                            DocumentSnapshot groupDoc = (DocumentSnapshot) results.get(i);
-                            String groupId = new java.util.ArrayList<>(potentialGroupIds).get(i);
-
-                            if (groupDoc != null && groupDoc.exists()) {
-                                android.util.Log.d("GroupRepository", "Group " + groupId + " exists - adding to valid list");
-                                validGroupIds.add(groupId);
-                            } else {
-                                android.util.Log.w("GroupRepository", "Group " + groupId + " does not exist - removing from list");
-                                // TĂšt tiĂŞn: xĂła member document cÅ© (nÄu cĂłn)
-                                try {
-                                    db.collection(GROUPS_COLLECTION)
-                                            .document(groupId)
-                                            .collection(MEMBERS_COLLECTION)
-                                            .document(userId)
-                                            .delete();
-                                    android.util.Log.d("GroupRepository", "Cleaned up orphaned member document for group: " + groupId);
-                                } catch (Exception e) {
-                                    android.util.Log.w("GroupRepository", "Failed to clean up orphaned member document: " + e.getMessage());
-                                }
-                            }
-                        }
-
-                        android.util.Log.d("GroupRepository", "Final valid groupIds: " + validGroupIds);
-                        android.util.Log.d("GroupRepository", "validGroupIds.isEmpty(): " + validGroupIds.isEmpty());
-                        return validGroupIds;
-                    });
-                });
+        return MembershipIndex.getInstance().load().continueWith(task -> {
+            if (!task.isSuccessful()) throw task.getException();
+            java.util.Set<String> ids = new java.util.LinkedHashSet<>();
+            for (GroupSummary s : task.getResult()) {
+                ids.add(s.groupId);
+            }
+            android.util.Log.d("GroupRepository", "Joined groupIds: " + ids);
+            return ids;
+        });
     }
 
     public void getGroupMembers(String groupId, MembersCallback callback) {
@@ -512,6 +527,200 @@ public class GroupRepository {
                 .addOnFailureListener(callback::onError);
     }
 
+    /**
+     * Một trang thành viên sắp theo vai trò (owner, admin, member) rồi ngày tham gia.
+     * after = lastDoc của trang trước, null cho trang đầu.
+     */
+    public void fetchMembersPage(String groupId, int pageSize, DocumentSnapshot after, MemberPageCallback callback) {
+        Query q = db.collection(GROUPS_COLLECTION).document(groupId).collection(MEMBERS_COLLECTION)
+                .orderBy("roleRank")
+                .orderBy("joinedAt");
+        runMemberQuery(groupId, q, pageSize, after, callback);
+    }
+
+    /** Tìm thành viên theo tiền tố tên (không phân biệt hoa thường / dấu), sắp theo tên */
+    public void searchMembers(String groupId, String query, int pageSize, DocumentSnapshot after,
+                              MemberPageCallback callback) {
+        String prefix = com.example.nanaclu.utils.TextNormalizer.normalizeForSearch(query);
+        if (prefix.isEmpty()) {
+            fetchMembersPage(groupId, pageSize, after, callback);
+            return;
+        }
+        Query q = db.collection(GROUPS_COLLECTION).document(groupId).collection(MEMBERS_COLLECTION)
+                .whereGreaterThanOrEqualTo("nameLower", prefix)
+                .whereLessThan("nameLower", prefix + com.example.nanaclu.utils.TextNormalizer.PREFIX_END)
+                .orderBy("nameLower");
+        runMemberQuery(groupId, q, pageSize, after, callback);
+    }
+
+    private void runMemberQuery(String groupId, Query query, int pageSize, DocumentSnapshot after,
+                                MemberPageCallback callback) {
+        ensureMemberProfiles(groupId)
+                .continueWithTask(t -> {
+                    if (!t.isSuccessful()) throw t.getException();
+                    Query q = after != null ? query.startAfter(after) : query;
+                    return q.limit(pageSize).get();
+                })
+                .addOnSuccessListener(snaps -> {
+                    List<Member> members = new ArrayList<>();
+                    for (DocumentSnapshot doc : snaps.getDocuments()) {
+                        Member member = doc.toObject(Member.class);
+                        if (member == null) continue;
+                        if (member.userId == null) member.userId = doc.getId();
+                        members.add(member);
+                    }
+                    List<DocumentSnapshot> docs = snaps.getDocuments();
+                    DocumentSnapshot last = docs.isEmpty() ? after : docs.get(docs.size() - 1);
+                    callback.onSuccess(new MemberPage(members, last, docs.size() >= pageSize));
+                })
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("GroupRepository", e);
+                    callback.onError(e);
+                });
+    }
+
+    /**
+     * Group tạo trước khi member có userName / nameLower / roleRank sẽ không hiện trong
+     * truy vấn phân trang (orderBy bỏ qua document thiếu trường). Bổ sung một lần cho cả group
+     * rồi đánh dấu membersIndexed.
+     */
+    private Task<Void> ensureMemberProfiles(String groupId) {
+        Group cached = GroupCache.getInstance().peek(groupId);
+        if (cached != null && Boolean.TRUE.equals(cached.membersIndexed)) return Tasks.forResult(null);
+
+        DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(groupId);
+        return groupRef.get().continueWithTask(groupTask -> {
+            if (!groupTask.isSuccessful()) throw groupTask.getException();
+            if (Boolean.TRUE.equals(groupTask.getResult().getBoolean("membersIndexed"))) {
+                return Tasks.forResult(null);
+            }
+            return backfillMemberProfiles(groupRef);
+        });
+    }
+
+    private Task<Void> backfillMemberProfiles(DocumentReference groupRef) {
+        android.util.Log.d("GroupRepository", "Backfilling member profiles for group " + groupRef.getId());
+        return groupRef.collection(MEMBERS_COLLECTION).get().continueWithTask(membersTask -> {
+            if (!membersTask.isSuccessful()) throw membersTask.getException();
+            List<DocumentSnapshot> docs = membersTask.getResult().getDocuments();
+            List<String> userIds = new ArrayList<>();
+            for (DocumentSnapshot doc : docs) userIds.add(doc.getId());
+
+            com.google.android.gms.tasks.TaskCompletionSource<Void> resolved =
+                    new com.google.android.gms.tasks.TaskCompletionSource<>();
+            UserCache.getInstance().resolve(userIds, () -> resolved.setResult(null));
+            return resolved.getTask().continueWithTask(t -> {
+                List<Task<Void>> commits = new ArrayList<>();
+                com.google.firebase.firestore.WriteBatch batch = db.batch();
+                int ops = 0;
+                int unresolved = 0;
+                for (DocumentSnapshot doc : docs) {
+                    Map<String, Object> fields = backfillFields(doc);
+                    if (fields == null) {
+                        unresolved++;
+                        continue;
+                    }
+                    batch.update(doc.getReference(), fields);
+                    if (++ops == BATCH_LIMIT) {
+                        commits.add(batch.commit());
+                        batch = db.batch();
+                        ops = 0;
+                    }
+                }
+                if (ops > 0) commits.add(batch.commit());
+                int failed = unresolved;
+                return Tasks.whenAll(commits).continueWith(c -> {
+                    if (!c.isSuccessful()) throw c.getException();
+                    if (failed > 0) throw new Exception("Could not load " + failed + " member profiles");
+                    return null;
+                });
+            });
+        }).continueWithTask(t -> {
+            if (!t.isSuccessful()) throw t.getException();
+            // Chỉ đánh dấu khi mọi member đã ghi xong, lỗi giữa chừng sẽ được bổ sung lại lần sau
+            return groupRef.update("membersIndexed", true);
+        }).addOnSuccessListener(aVoid -> GroupCache.getInstance().invalidate(groupRef.getId()));
+    }
+
+    /**
+     * Các trường cần bổ sung cho một member document, null nếu chưa đọc được user (thử lại lần sau).
+     * Không có user thì giữ nguyên userName / ảnh đang có; chỉ dùng userId làm tên khi
+     * user đã bị xóa và member chưa có tên.
+     */
+    private static Map<String, Object> backfillFields(DocumentSnapshot doc) {
+        Member m = new Member();
+        m.userId = doc.getId();
+        m.applyRole(doc.getString("role"));
+        User user = UserCache.getInstance().get(m.userId);
+        String existingName = doc.getString("userName");
+        boolean hasName = existingName != null && !existingName.isEmpty();
+
+        Map<String, Object> fields;
+        if (user != null) {
+            m.applyProfile(user);
+            if (hasName && (user.displayName == null || user.displayName.isEmpty())) {
+                // User chưa đặt tên: không thay tên đang có bằng userId
+                m.userName = existingName;
+                m.nameLower = com.example.nanaclu.utils.TextNormalizer.normalizeForSearch(existingName);
+            }
+            fields = profileFields(m);
+        } else if (hasName) {
+            fields = new HashMap<>();
+            fields.put("nameLower", com.example.nanaclu.utils.TextNormalizer.normalizeForSearch(existingName));
+        } else if (UserCache.getInstance().isNotFound(m.userId)) {
+            m.applyProfile(null);
+            fields = profileFields(m);
+        } else {
+            return null;
+        }
+        fields.put("roleRank", m.roleRank);
+        return fields;
+    }
+
+    /**
+     * Chép tên / avatar hiện tại của user vào member document ở mọi group user đã tham gia
+     * (gọi sau khi user đổi tên hoặc ảnh đại diện)
+     */
+    public Task<Void> syncMemberProfile(String userId) {
+        return db.collection(USERS_COLLECTION).document(userId).get().continueWithTask(userTask -> {
+            if (!userTask.isSuccessful()) throw userTask.getException();
+            User user = userTask.getResult().toObject(User.class);
+            if (user == null || user.joinedGroupIds == null) return Tasks.forResult(null);
+            if (user.userId == null) user.userId = userId;
+            UserCache.getInstance().put(user);
+
+            Member m = new Member();
+            m.userId = userId;
+            m.applyProfile(user);
+            Map<String, Object> fields = profileFields(m);
+
+            // Cập nhật riêng từng group: một member document không còn tồn tại không làm hỏng các group khác
+            List<Task<Void>> updates = new ArrayList<>();
+            for (String groupId : user.joinedGroupIds) {
+                updates.add(db.collection(GROUPS_COLLECTION).document(groupId)
+                        .collection(MEMBERS_COLLECTION).document(userId)
+                        .update(fields)
+                        .continueWith(t -> {
+                            if (!t.isSuccessful()) {
+                                android.util.Log.w("GroupRepository", "Sync member profile failed for group " + groupId, t.getException());
+                            }
+                            return null;
+                        }));
+            }
+            return Tasks.whenAll(updates);
+        });
+    }
+
+    /** Các trường hiển thị denormalized từ User trên member document */
+    private static Map<String, Object> profileFields(Member m) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("userName", m.userName);
+        fields.put("nameLower", m.nameLower);
+        fields.put("photoUrl", m.photoUrl);
+        fields.put("avatarImageId", m.avatarImageId);
+        return fields;
+    }
+
     public void getGroupMembers(String groupId, GroupMembersCallback callback) {
         android.util.Log.d("GroupRepository", "getGroupMembers called for groupId: " + groupId);
         db.collection(GROUPS_COLLECTION)
@@ -536,18 +745,8 @@ public class GroupRepository {
     }
 
     public void removeMember(String groupId, String userId, UpdateCallback callback) {
-        db.collection(GROUPS_COLLECTION)
-                .document(groupId)
-                .collection(MEMBERS_COLLECTION)
-                .document(userId)
-                .delete()
-                .addOnSuccessListener(aVoid -> {
-                    // Update member count
-                    updateMemberCount(groupId, callback);
-                    // Log member removal
-                    LogRepository logRepo = new LogRepository(db);
-                    logRepo.logGroupAction(groupId, "member_removed", "member", userId, null, null);
-                })
+        new MembershipService(db).remove(groupId, java.util.Collections.singletonList(userId), null)
+                .addOnSuccessListener(removed -> callback.onSuccess())
                 .addOnFailureListener(callback::onError);
     }
 
@@ -580,18 +779,7 @@ public class GroupRepository {
                             data.put("requestedAt", System.currentTimeMillis());
                             return groupRef.collection(PENDING_COLLECTION).document(uid).set(data);
                         } else {
-                            Member m = new Member();
-                            m.userId = uid;
-                            m.role = "member";
-                            m.status = "active";
-                            m.joinedAt = System.currentTimeMillis();
-                            return groupRef.collection(MEMBERS_COLLECTION).document(uid).set(m)
-                                    .continueWithTask(t2 -> {
-                                        if (t2.isSuccessful()) {
-                                            return groupRef.update("memberCount", com.google.firebase.firestore.FieldValue.increment(1));
-                                        }
-                                        return t2;
-                                    });
+                            return new MembershipService(db).join(groupId, uid);
                         }
                     });
         });
@@ -599,50 +787,15 @@ public class GroupRepository {
 
     public void transferOwnership(String groupId, String fromUserId, String toUserId, UpdateCallback callback) {
         // fromUser becomes admin, toUser becomes owner, update createdBy
-        db.collection(GROUPS_COLLECTION)
-                .document(groupId)
-                .collection(MEMBERS_COLLECTION)
-                .document(fromUserId)
-                .update("role", "admin")
-                .addOnSuccessListener(aVoid -> db.collection(GROUPS_COLLECTION)
-                        .document(groupId)
-                        .collection(MEMBERS_COLLECTION)
-                        .document(toUserId)
-                        .update("role", "owner")
-                        .addOnSuccessListener(aVoid1 -> db.collection(GROUPS_COLLECTION)
-                                .document(groupId)
-                                .update("createdBy", toUserId)
-                                .addOnSuccessListener(aVoid2 -> {
-                                    // Log ownership transfer
-                                    LogRepository logRepo = new LogRepository(db);
-                                    Map<String, Object> metadata = new HashMap<>();
-                                    metadata.put("fromUserId", fromUserId);
-                                    metadata.put("toUserId", toUserId);
-                                    logRepo.logGroupAction(groupId, "ownership_transferred", "group", groupId, null, metadata);
-                                    callback.onSuccess();
-                                })
-                                .addOnFailureListener(callback::onError))
-                        .addOnFailureListener(callback::onError))
+        new MembershipService(db).transferOwnership(groupId, fromUserId, toUserId)
+                .addOnSuccessListener(aVoid -> callback.onSuccess())
                 .addOnFailureListener(callback::onError);
     }
 
     // Block a user: add to blockedUsers, remove from members and pending
     public void blockUser(String groupId, String userId, UpdateCallback callback) {
-        DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(groupId);
-        com.google.firebase.firestore.WriteBatch batch = db.batch();
-        Map<String, Object> data = new HashMap<>();
-        data.put("userId", userId);
-        data.put("blockedAt", System.currentTimeMillis());
-        batch.set(groupRef.collection(BLOCKED_COLLECTION).document(userId), data);
-        batch.delete(groupRef.collection(MEMBERS_COLLECTION).document(userId));
-        batch.delete(groupRef.collection(PENDING_COLLECTION).document(userId));
-        batch.commit()
-                .addOnSuccessListener(aVoid -> {
-                    updateMemberCount(groupId, callback);
-                    // Log member blocked
-                    LogRepository logRepo = new LogRepository(db);
-                    logRepo.logGroupAction(groupId, "member_blocked", "member", userId, null, null);
-                })
+        new MembershipService(db).block(groupId, userId)
+                .addOnSuccessListener(aVoid -> callback.onSuccess())
                 .addOnFailureListener(callback::onError);
     }
 
@@ -684,32 +837,24 @@ public class GroupRepository {
     }
 
     public void approvePendingUser(String groupId, String userId, UpdateCallback callback) {
-        DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(groupId);
-        Member m = new Member();
-        m.userId = userId; m.role = "member"; m.status = "active"; m.joinedAt = System.currentTimeMillis();
-        com.google.firebase.firestore.WriteBatch batch = db.batch();
-        batch.set(groupRef.collection(MEMBERS_COLLECTION).document(userId), m);
-        batch.delete(groupRef.collection(PENDING_COLLECTION).document(userId));
-        batch.commit()
-                .addOnSuccessListener(aVoid -> {
-                    updateMemberCount(groupId, callback);
-                    // Log member approval
-                    LogRepository logRepo = new LogRepository(db);
-                    logRepo.logGroupAction(groupId, "member_approved", "member", userId, null, null);
-                })
+        approvePendingUsers(groupId, java.util.Collections.singletonList(userId), callback);
+    }
+
+    /** Duyệt nhiều user cùng lúc (mỗi lô một transaction) */
+    public void approvePendingUsers(String groupId, List<String> userIds, UpdateCallback callback) {
+        new MembershipService(db).approve(groupId, userIds)
+                .addOnSuccessListener(added -> callback.onSuccess())
                 .addOnFailureListener(callback::onError);
     }
 
     public void rejectPendingUser(String groupId, String userId, UpdateCallback callback) {
-        db.collection(GROUPS_COLLECTION).document(groupId)
-                .collection(PENDING_COLLECTION).document(userId)
-                .delete()
-                .addOnSuccessListener(aVoid -> {
-                    // Log member rejection
-                    LogRepository logRepo = new LogRepository(db);
-                    logRepo.logGroupAction(groupId, "member_rejected", "member", userId, null, null);
-                    callback.onSuccess();
-                })
+        rejectPendingUsers(groupId, java.util.Collections.singletonList(userId), callback);
+    }
+
+    /** Từ chối nhiều user cùng lúc trong một batch */
+    public void rejectPendingUsers(String groupId, List<String> userIds, UpdateCallback callback) {
+        new MembershipService(db).reject(groupId, userIds)
+                .addOnSuccessListener(aVoid -> callback.onSuccess())
                 .addOnFailureListener(callback::onError);
     }
 
@@ -720,11 +865,13 @@ public class GroupRepository {
 
 
     public void updateMemberRole(String groupId, String userId, String newRole, UpdateCallback callback) {
-        db.collection(GROUPS_COLLECTION)
+        com.google.firebase.firestore.WriteBatch batch = db.batch();
+        batch.update(db.collection(GROUPS_COLLECTION)
                 .document(groupId)
                 .collection(MEMBERS_COLLECTION)
-                .document(userId)
-                .update("role", newRole)
+                .document(userId), "role", newRole, "roleRank", Member.rankOf(newRole));
+        MembershipIndex.getInstance().setRole(batch, userId, groupId, newRole);
+        batch.commit()
                 .addOnSuccessListener(aVoid -> {
                     // Log role change
                     LogRepository logRepo = new LogRepository(db);
@@ -736,24 +883,6 @@ public class GroupRepository {
                 .addOnFailureListener(callback::onError);
     }
 
-    private void updateMemberCount(String groupId, UpdateCallback callback) {
-        getGroupMembers(groupId, new MembersCallback() {
-            @Override
-            public void onSuccess(List<Member> members) {
-                db.collection(GROUPS_COLLECTION)
-                        .document(groupId)
-                        .update("memberCount", members.size())
-                        .addOnSuccessListener(aVoid -> callback.onSuccess())
-                        .addOnFailureListener(callback::onError);
-            }
-
-            @Override
-            public void onError(Exception e) {
-                callback.onError(e);
-            }
-        });
-    }
-
     public interface GroupCallback {
         void onSuccess(Group group);
         void onError(Exception e);
@@ -774,6 +903,11 @@ public class GroupRepository {
         void onError(Exception e);
     }
 
+    public interface MemberPageCallback {
+        void onSuccess(MemberPage page);
+        void onError(Exception e);
+    }
+
     public interface GroupMembersCallback {
         void onSuccess(List<String> memberIds);
         void onError(Exception e);
@@ -789,6 +923,7 @@ public void updateEventCreationSetting(String groupId, boolean allowMemberCreate
             .document(groupId)
             .update("allowMemberCreateEvents", allowMemberCreateEvents)
             .addOnSuccessListener(aVoid -> {
+                GroupCache.getInstance().invalidate(groupId);
                 // Log setting change
                 LogRepository logRepo = new LogRepository(db);
                 java.util.Map<String, Object> metadata = new java.util.HashMap<>();
@@ -0,0 +1,207 @@
+package com.example.nanaclu.data.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.nanaclu.data.model.Post;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trạng thái like của user hiện tại trong phiên, dùng chung cho feed và màn chi tiết.
+ * - Bấm like/unlike cập nhật icon + số like ngay (optimistic), không đọc lại post
+ * - Nhiều lần bấm liên tiếp được gộp (debounce) thành một lần ghi với trạng thái cuối cùng;
+ *   bấm like rồi bỏ like trong khoảng debounce sẽ không ghi gì cả
+ * - Trạng thái like của cả trang post được tra bằng một query (resolveLiked) thay vì đọc từng post
+ * Mọi hàm gọi trên main thread.
+ */
+public class LikeStateService {
+    private static final long DEBOUNCE_MS = 600;
+
+    private static LikeStateService instance;
+
+    public interface ToggleCallback {
+        /** Lượt ghi cuối cùng đã thành công với trạng thái liked */
+        void onCommitted(boolean liked);
+        /** Ghi thất bại, UI cần quay về trạng thái liked / count này */
+        void onReverted(boolean liked, int displayCount);
+    }
+
+    private static class Entry {
+        Boolean confirmed;      // trạng thái đã ghi trên server (null = chưa biết)
+        boolean desired;        // trạng thái người dùng muốn
+        boolean writing;
+        int baseLikeCount = -1; // post.likeCount khi bắt đầu theo dõi thay đổi cục bộ
+        boolean baseLiked;      // trạng thái like tương ứng với baseLikeCount
+        Runnable pendingFlush;
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Entry> entries = new HashMap<>();
+    // postId đang được tra, tránh query trùng khi cùng trang được bind nhiều lần
+    private final Set<String> resolving = new HashSet<>();
+    // Post cũ đang được bổ sung index likedPosts, tránh chạy trùng
+    private final Set<String> indexed = new HashSet<>();
+    private final PostRepository postRepository;
+
+    private LikeStateService() {
+        postRepository = new PostRepository(FirebaseFirestore.getInstance());
+    }
+
+    public static synchronized LikeStateService getInstance() {
+        if (instance == null) {
+            instance = new LikeStateService();
+        }
+        return instance;
+    }
+
+    /** Trạng thái like đã biết trong phiên (null nếu chưa tải) */
+    public Boolean getCachedLiked(String postId) {
+        Entry e = entries.get(postId);
+        if (e == null || e.confirmed == null) return null;
+        return e.pendingFlush != null || e.writing ? e.desired : e.confirmed;
+    }
+
+    /** Ghi nhận trạng thái like đọc được từ server */
+    public void recordLiked(String postId, boolean liked) {
+        Entry e = entry(postId);
+        // Không ghi đè khi đang có thay đổi chưa ghi xong
+        if (e.pendingFlush != null || e.writing) return;
+        e.confirmed = liked;
+        e.desired = liked;
+    }
+
+    /**
+     * Tra trạng thái like cho các post chưa có trong cache bằng một query trên index likedPosts.
+     * Post chưa có likesIndexed (like cũ chưa vào index) được đọc riêng một lần, đồng thời
+     * bổ sung like của post vào index để các lần sau chỉ cần query.
+     * @param onResolved nhận các postId vừa có trạng thái để UI cập nhật
+     */
+    public void resolveLiked(List<Post> posts, String userId,
+                             com.google.android.gms.tasks.OnSuccessListener<Set<String>> onResolved) {
+        if (userId == null || posts == null) return;
+        List<String> ids = new ArrayList<>();
+        Map<String, Post> byId = new HashMap<>();
+        for (Post p : posts) {
+            if (p == null || p.postId == null || byId.containsKey(p.postId)) continue;
+            if (getCachedLiked(p.postId) != null || resolving.contains(p.postId)) continue;
+            ids.add(p.postId);
+            byId.put(p.postId, p);
+        }
+        if (ids.isEmpty()) return;
+        resolving.addAll(ids);
+        postRepository.getLikedPostIds(userId, ids, liked -> {
+            resolving.removeAll(ids);
+            Set<String> resolved = new HashSet<>();
+            for (String id : ids) {
+                Post p = byId.get(id);
+                if (liked.contains(id) || Boolean.TRUE.equals(p.likesIndexed)) {
+                    recordLiked(id, liked.contains(id));
+                    resolved.add(id);
+                } else {
+                    resolveLegacy(p, userId, onResolved);
+                }
+            }
+            if (!resolved.isEmpty() && onResolved != null) onResolved.onSuccess(resolved);
+        }, e -> resolving.removeAll(ids));
+    }
+
+    private void resolveLegacy(Post post, String userId,
+                               com.google.android.gms.tasks.OnSuccessListener<Set<String>> onResolved) {
+        if (indexed.add(post.postId) && post.groupId != null) {
+            postRepository.indexPostLikes(post.groupId, post.postId)
+                    .addOnSuccessListener(aVoid -> post.likesIndexed = true)
+                    .addOnCompleteListener(t -> indexed.remove(post.postId))
+                    .addOnFailureListener(e -> android.util.Log.w("LikeStateService", "Index likes failed: " + post.postId, e));
+        }
+        resolving.add(post.postId);
+        postRepository.isPostLiked(post.groupId, post.postId, userId, liked -> {
+            resolving.remove(post.postId);
+            recordLiked(post.postId, liked);
+            if (onResolved != null) {
+                Set<String> one = new HashSet<>();
+                one.add(post.postId);
+                onResolved.onSuccess(one);
+            }
+        }, e -> resolving.remove(post.postId));
+    }
+
+    /** Số like hiển thị = likeCount của post + thay đổi cục bộ chưa phản ánh vào likeCount */
+    public int getDisplayCount(Post post) {
+        Entry e = entries.get(post.postId);
+        if (e == null || e.baseLikeCount != post.likeCount) return Math.max(0, post.likeCount);
+        boolean liked = e.pendingFlush != null || e.writing ? e.desired : Boolean.TRUE.equals(e.confirmed);
+        return Math.max(0, post.likeCount + (liked ? 1 : 0) - (e.baseLiked ? 1 : 0));
+    }
+
+    /**
+     * Đảo trạng thái like. Trả về trạng thái mới để UI cập nhật ngay.
+     * @param currentlyLiked trạng thái đang hiển thị (dùng khi chưa có trong cache)
+     */
+    public boolean toggle(Post post, String userId, boolean currentlyLiked, ToggleCallback callback) {
+        Entry e = entry(post.postId);
+        if (e.confirmed == null) {
+            e.confirmed = currentlyLiked;
+            e.desired = currentlyLiked;
+        }
+        if (e.baseLikeCount != post.likeCount) {
+            e.baseLikeCount = post.likeCount;
+            e.baseLiked = e.desired;
+        }
+        e.desired = !e.desired;
+
+        if (e.pendingFlush != null) mainHandler.removeCallbacks(e.pendingFlush);
+        e.pendingFlush = () -> {
+            e.pendingFlush = null;
+            flush(post, userId, e, callback);
+        };
+        mainHandler.postDelayed(e.pendingFlush, DEBOUNCE_MS);
+        return e.desired;
+    }
+
+    private void flush(Post post, String userId, Entry e, ToggleCallback callback) {
+        if (e.writing || e.confirmed == null || e.desired == e.confirmed) return;
+        boolean target = e.desired;
+        e.writing = true;
+        com.google.android.gms.tasks.OnSuccessListener<Void> onSuccess = aVoid -> {
+            e.writing = false;
+            e.confirmed = target;
+            if (e.desired != target) {
+                // Người dùng bấm tiếp trong lúc đang ghi
+                if (e.pendingFlush == null) flush(post, userId, e, callback);
+                return;
+            }
+            if (callback != null) callback.onCommitted(target);
+        };
+        com.google.android.gms.tasks.OnFailureListener onFailure = err -> {
+            e.writing = false;
+            if (e.pendingFlush != null) {
+                mainHandler.removeCallbacks(e.pendingFlush);
+                e.pendingFlush = null;
+            }
+            // Quay về trạng thái đã xác nhận
+            e.desired = e.confirmed;
+            if (callback != null) callback.onReverted(e.confirmed, getDisplayCount(post));
+        };
+        if (target) {
+            postRepository.likePost(post.groupId, post.postId, userId, onSuccess, onFailure);
+        } else {
+            postRepository.unlikePost(post.groupId, post.postId, userId, onSuccess, onFailure);
+        }
+    }
+
+    private Entry entry(String postId) {
+        Entry e = entries.get(postId);
+        if (e == null) {
+            e = new Entry();
+            entries.put(postId, e);
+        }
+        return e;
+    }
+}
@@ -102,6 +102,49 @@ public class LogRepository {
         }
     }
 
+    /**
+     * Dữ liệu log để ghi chung batch / transaction với thao tác chính (thay vì ghi riêng sau khi xong).
+     * actorName lấy từ UserCache / FirebaseAuth, không đọc thêm document.
+     * Trả về null nếu loại log bị bỏ qua hoặc chưa đăng nhập.
+     */
+    public Map<String, Object> buildGroupLog(String groupId, String type, String targetType, String targetId,
+                                             String targetName, Map<String, Object> metadata) {
+        if (GroupLog.TYPE_COMMENT_ADDED.equals(type) ||
+            GroupLog.TYPE_COMMENT_DELETED.equals(type) ||
+            GroupLog.TYPE_EVENT_RSVP.equals(type)) {
+            return null;
+        }
+        String currentUserId = getCurrentUserId();
+        if (currentUserId == null) return null;
+
+        com.example.nanaclu.data.model.User cached = UserCache.getInstance().get(currentUserId);
+        String actorName = cached != null ? cached.displayName : null;
+        if ((actorName == null || actorName.isEmpty()) && FirebaseAuth.getInstance().getCurrentUser() != null) {
+            actorName = FirebaseAuth.getInstance().getCurrentUser().getDisplayName();
+        }
+        if (actorName == null || actorName.isEmpty()) actorName = "Unknown User";
+
+        Map<String, Object> logData = new HashMap<>();
+        logData.put("groupId", groupId);
+        logData.put("type", type);
+        logData.put("actorId", currentUserId);
+        logData.put("actorName", actorName);
+        logData.put("targetType", targetType);
+        logData.put("targetId", targetId);
+        logData.put("targetName", targetName);
+        logData.put("message", generateMessage(type, actorName, targetName, metadata));
+        logData.put("createdAt", FieldValue.serverTimestamp());
+        if (metadata != null) {
+            logData.put("metadata", metadata);
+        }
+        return logData;
+    }
+
+    /** Document mới trong groups/{groupId}/logs để ghi dữ liệu của buildGroupLog */
+    public DocumentReference newGroupLogRef(String groupId) {
+        return db.collection("groups").document(groupId).collection(LOGS_COLLECTION).document();
+    }
+
     /**
      * Get group logs with pagination
      */
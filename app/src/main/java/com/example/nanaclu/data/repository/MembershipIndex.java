@@ -0,0 +1,291 @@
+package com.example.nanaclu.data.repository;
+
+import com.example.nanaclu.data.model.Group;
+import com.example.nanaclu.data.model.GroupSummary;
+import com.example.nanaclu.data.model.User;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index membership của user: users/{uid}.joinedGroupIds + joinedGroups (groupId -> GroupSummary).
+ * Được ghi cùng batch với document members khi tạo group / tham gia / duyệt / rời / bị xóa / bị chặn,
+ * nên danh sách group của user chỉ cần đọc document user thay vì collectionGroup("members")
+ * rồi đọc từng group.
+ * User cũ chưa có index (joinedGroupsIndexed != true) được dựng lại một lần từ members.
+ * Mọi hàm gọi trên main thread.
+ */
+public class MembershipIndex {
+    private static final String TAG = "MembershipIndex";
+    private static final String USERS = "users";
+    private static final String GROUPS = "groups";
+    private static final String MEMBERS = "members";
+    private static final String FIELD_IDS = "joinedGroupIds";
+    private static final String FIELD_GROUPS = "joinedGroups";
+    private static final String FIELD_INDEXED = "joinedGroupsIndexed";
+    // Giới hạn số phần tử của whereIn
+    private static final int WHERE_IN_LIMIT = 30;
+
+    private static MembershipIndex instance;
+
+    private final FirebaseFirestore db;
+    // Summary đã tải của user hiện tại
+    private String cachedUserId;
+    private final Map<String, GroupSummary> cached = new LinkedHashMap<>();
+
+    private MembershipIndex() {
+        db = FirebaseFirestore.getInstance();
+    }
+
+    public static synchronized MembershipIndex getInstance() {
+        if (instance == null) {
+            instance = new MembershipIndex();
+        }
+        return instance;
+    }
+
+    /** Summary của group user hiện tại đã tham gia, null nếu chưa tải hoặc không phải member */
+    public GroupSummary getCached(String groupId) {
+        String uid = currentUserId();
+        if (uid == null || !uid.equals(cachedUserId)) return null;
+        return cached.get(groupId);
+    }
+
+    /**
+     * Các group user hiện tại đã tham gia (mới tham gia trước), đọc một document user
+     */
+    public Task<List<GroupSummary>> load() {
+        String uid = currentUserId();
+        if (uid == null) return Tasks.forResult(new ArrayList<>());
+
+        return userRef(uid).get().continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, task.getException());
+                throw task.getException();
+            }
+            User user = task.getResult().toObject(User.class);
+            if (user == null || !Boolean.TRUE.equals(user.joinedGroupsIndexed)) {
+                return rebuild(uid);
+            }
+            List<GroupSummary> list = new ArrayList<>();
+            if (user.joinedGroupIds != null) {
+                for (String groupId : user.joinedGroupIds) {
+                    GroupSummary s = user.joinedGroups != null ? user.joinedGroups.get(groupId) : null;
+                    if (s == null) continue;
+                    s.groupId = groupId;
+                    list.add(s);
+                }
+            }
+            list.sort((a, b) -> Long.compare(b.joinedAt, a.joinedAt));
+            remember(uid, list);
+            return Tasks.forResult(list);
+        });
+    }
+
+    /** Thêm group vào index của user trong batch */
+    public void add(WriteBatch batch, String userId, GroupSummary summary) {
+        batch.set(userRef(userId), addData(summary), SetOptions.merge());
+        if (userId.equals(cachedUserId)) cached.put(summary.groupId, summary);
+    }
+
+    /**
+     * Thêm group vào index của user trong transaction. Hàm transaction chạy trên background thread
+     * nên không đụng tới cache, lần load() sau sẽ đọc lại.
+     */
+    public void add(Transaction transaction, String userId, GroupSummary summary) {
+        transaction.set(userRef(userId), addData(summary), SetOptions.merge());
+    }
+
+    /** Bỏ group khỏi index của user trong batch */
+    public void remove(WriteBatch batch, String userId, String groupId) {
+        batch.set(userRef(userId), removeData(groupId), SetOptions.merge());
+        if (userId.equals(cachedUserId)) cached.remove(groupId);
+    }
+
+    /** Bỏ group khỏi index của user trong transaction (không đụng tới cache, như add) */
+    public void remove(Transaction transaction, String userId, String groupId) {
+        transaction.set(userRef(userId), removeData(groupId), SetOptions.merge());
+    }
+
+    /** Bỏ group khỏi cache sau khi transaction xóa member đã commit */
+    public void forget(String userId, String groupId) {
+        if (userId.equals(cachedUserId)) cached.remove(groupId);
+    }
+
+    /** Bỏ group khỏi index của user (khi member bị xóa ngoài GroupRepository) */
+    public Task<Void> remove(String userId, String groupId) {
+        WriteBatch batch = db.batch();
+        remove(batch, userId, groupId);
+        return batch.commit();
+    }
+
+    /** Cập nhật vai trò của user trong summary */
+    public void setRole(WriteBatch batch, String userId, String groupId, String role) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("role", role);
+        batch.set(userRef(userId), nested(groupId, fields), SetOptions.merge());
+        if (userId.equals(cachedUserId) && cached.containsKey(groupId)) cached.get(groupId).role = role;
+    }
+
+    /**
+     * Đồng bộ summary của user hiện tại khi đọc được group mới nhất
+     * (tên, avatar, số thành viên do người khác thay đổi). Chỉ ghi khi có khác biệt.
+     */
+    public void refresh(Group group) {
+        if (group == null || group.groupId == null) return;
+        GroupSummary s = getCached(group.groupId);
+        if (s == null) return;
+        if (java.util.Objects.equals(s.name, group.name)
+                && java.util.Objects.equals(s.avatarImageId, group.avatarImageId)
+                && java.util.Objects.equals(s.createdBy, group.createdBy)
+                && s.memberCount == group.memberCount) {
+            return;
+        }
+        s.name = group.name;
+        s.avatarImageId = group.avatarImageId;
+        s.createdBy = group.createdBy;
+        s.memberCount = group.memberCount;
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("name", group.name);
+        fields.put("avatarImageId", group.avatarImageId);
+        fields.put("createdBy", group.createdBy);
+        fields.put("memberCount", group.memberCount);
+        userRef(cachedUserId).set(nested(group.groupId, fields), SetOptions.merge())
+                .addOnFailureListener(e -> com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, e));
+    }
+
+    /**
+     * Dựng index cho user chưa có: đọc members của user qua collectionGroup, đọc các group theo lô,
+     * dọn member document của group đã bị xóa, rồi ghi đè joinedGroupIds / joinedGroups
+     */
+    private Task<List<GroupSummary>> rebuild(String uid) {
+        android.util.Log.d(TAG, "Building membership index for user " + uid);
+        return db.collectionGroup(MEMBERS).whereEqualTo("userId", uid).get().continueWithTask(memberTask -> {
+            if (!memberTask.isSuccessful()) throw memberTask.getException();
+            Map<String, DocumentSnapshot> memberDocs = new LinkedHashMap<>();
+            for (DocumentSnapshot doc : memberTask.getResult().getDocuments()) {
+                DocumentReference groupRef = doc.getReference().getParent().getParent();
+                if (groupRef != null) memberDocs.put(groupRef.getId(), doc);
+            }
+            List<String> ids = new ArrayList<>(memberDocs.keySet());
+            List<Task<QuerySnapshot>> groupTasks = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i += WHERE_IN_LIMIT) {
+                List<String> chunk = new ArrayList<>(ids.subList(i, Math.min(i + WHERE_IN_LIMIT, ids.size())));
+                groupTasks.add(db.collection(GROUPS).whereIn(FieldPath.documentId(), chunk).get());
+            }
+            return Tasks.whenAllSuccess(groupTasks).continueWithTask(groupsTask -> {
+                if (!groupsTask.isSuccessful()) throw groupsTask.getException();
+                Map<String, Group> groups = new HashMap<>();
+                for (Object o : groupsTask.getResult()) {
+                    for (DocumentSnapshot doc : ((QuerySnapshot) o).getDocuments()) {
+                        Group g = doc.toObject(Group.class);
+                        if (g == null) continue;
+                        g.groupId = doc.getId();
+                        groups.put(doc.getId(), g);
+                    }
+                }
+
+                WriteBatch batch = db.batch();
+                List<GroupSummary> list = new ArrayList<>();
+                List<String> joinedIds = new ArrayList<>();
+                Map<String, Object> summaries = new HashMap<>();
+                for (Map.Entry<String, DocumentSnapshot> entry : memberDocs.entrySet()) {
+                    Group g = groups.get(entry.getKey());
+                    if (g == null) {
+                        // Group đã bị xóa: dọn member document cũ
+                        batch.delete(entry.getValue().getReference());
+                        continue;
+                    }
+                    Long joinedAt = entry.getValue().getLong("joinedAt");
+                    GroupSummary s = GroupSummary.of(g, entry.getValue().getString("role"),
+                            joinedAt != null ? joinedAt : 0L);
+                    list.add(s);
+                    joinedIds.add(s.groupId);
+                    summaries.put(s.groupId, toMap(s));
+                }
+                Map<String, Object> data = new HashMap<>();
+                data.put(FIELD_IDS, joinedIds);
+                data.put(FIELD_GROUPS, summaries);
+                data.put(FIELD_INDEXED, true);
+                batch.set(userRef(uid), data, SetOptions.mergeFields(FIELD_IDS, FIELD_GROUPS, FIELD_INDEXED));
+                batch.commit().addOnFailureListener(e ->
+                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, e));
+
+                list.sort((a, b) -> Long.compare(b.joinedAt, a.joinedAt));
+                remember(uid, list);
+                return Tasks.forResult(list);
+            });
+        });
+    }
+
+    private void remember(String uid, List<GroupSummary> list) {
+        cachedUserId = uid;
+        cached.clear();
+        for (GroupSummary s : list) {
+            cached.put(s.groupId, s);
+        }
+    }
+
+    private static Map<String, Object> addData(GroupSummary summary) {
+        Map<String, Object> groups = new HashMap<>();
+        groups.put(summary.groupId, toMap(summary));
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_IDS, FieldValue.arrayUnion(summary.groupId));
+        data.put(FIELD_GROUPS, groups);
+        return data;
+    }
+
+    private static Map<String, Object> removeData(String groupId) {
+        Map<String, Object> groups = new HashMap<>();
+        groups.put(groupId, FieldValue.delete());
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_IDS, FieldValue.arrayRemove(groupId));
+        data.put(FIELD_GROUPS, groups);
+        return data;
+    }
+
+    private static Map<String, Object> nested(String groupId, Map<String, Object> fields) {
+        Map<String, Object> groups = new HashMap<>();
+        groups.put(groupId, fields);
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_GROUPS, groups);
+        return data;
+    }
+
+    private static Map<String, Object> toMap(GroupSummary s) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("groupId", s.groupId);
+        m.put("name", s.name);
+        m.put("avatarImageId", s.avatarImageId);
+        m.put("createdBy", s.createdBy);
+        m.put("memberCount", s.memberCount);
+        m.put("role", s.role);
+        m.put("joinedAt", s.joinedAt);
+        return m;
+    }
+
+    private DocumentReference userRef(String userId) {
+        return db.collection(USERS).document(userId);
+    }
+
+    private static String currentUserId() {
+        return FirebaseAuth.getInstance().getCurrentUser() != null
+                ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
+    }
+}
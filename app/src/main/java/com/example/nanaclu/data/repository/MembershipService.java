@@ -0,0 +1,318 @@
+package com.example.nanaclu.data.repository;
+
+import com.example.nanaclu.data.model.Group;
+import com.example.nanaclu.data.model.GroupLog;
+import com.example.nanaclu.data.model.GroupSummary;
+import com.example.nanaclu.data.model.Member;
+import com.example.nanaclu.data.model.User;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Các thao tác thay đổi thành viên của group. Mỗi thao tác ghi member document, pending / blocked
+ * document, membership index của user, Group.memberCount và log trong cùng một transaction / batch,
+ * nên không còn trường hợp member đã ghi mà memberCount hoặc log bị thiếu.
+ *
+ * memberCount được cộng / trừ theo số document thực sự thay đổi (đọc trong transaction),
+ * thay vì đếm lại toàn bộ members sau mỗi thao tác.
+ * Các biến thể nhiều user chia thành từng lô CHUNK_SIZE user, mỗi lô một transaction, chạy lần lượt.
+ * Hàm transaction chạy trên background thread nên profile user và dữ liệu log được chuẩn bị trước
+ * trên main thread.
+ */
+public class MembershipService {
+    private static final String TAG = "MembershipService";
+    private static final String GROUPS = "groups";
+    private static final String MEMBERS = "members";
+    private static final String PENDING = "pendingUsers";
+    private static final String BLOCKED = "blockedUsers";
+    // Mỗi user tốn tối đa 4 thao tác ghi (member, pending, membership index, log), giới hạn 500 / transaction
+    private static final int CHUNK_SIZE = 100;
+
+    private interface ChunkAction {
+        Task<Integer> run(List<String> chunk);
+    }
+
+    private final FirebaseFirestore db;
+    private final LogRepository logRepository;
+
+    public MembershipService(FirebaseFirestore db) {
+        this.db = db;
+        this.logRepository = new LogRepository(db);
+    }
+
+    /** User tham gia group không cần duyệt. Không làm gì nếu đã là member. */
+    public Task<Void> join(String groupId, String userId) {
+        DocumentReference groupRef = groupRef(groupId);
+        return resolveProfiles(Collections.singletonList(userId)).continueWithTask(t -> {
+            Map<String, User> profiles = profilesOf(Collections.singletonList(userId));
+            Map<String, Map<String, Object>> logs = buildLogs(groupId, GroupLog.TYPE_MEMBER_JOINED,
+                    Collections.singletonList(userId), null);
+            return db.runTransaction(tx -> {
+                DocumentSnapshot groupSnap = tx.get(groupRef);
+                if (!groupSnap.exists()) {
+                    throw new FirebaseFirestoreException("Group not found", FirebaseFirestoreException.Code.NOT_FOUND);
+                }
+                if (tx.get(groupRef.collection(BLOCKED).document(userId)).exists()) {
+                    throw new FirebaseFirestoreException("Bạn đã bị chặn khỏi nhóm",
+                            FirebaseFirestoreException.Code.PERMISSION_DENIED);
+                }
+                if (tx.get(groupRef.collection(MEMBERS).document(userId)).exists()) return null;
+
+                Group group = toGroup(groupSnap, 1);
+                addMember(tx, groupRef, group, userId, profiles.get(userId));
+                tx.update(groupRef, "memberCount", FieldValue.increment(1));
+                log(tx, groupId, logs.get(userId));
+                return null;
+            });
+        }).continueWith(t -> {
+            afterWrite(groupId, t);
+            return null;
+        });
+    }
+
+    /** Duyệt các user đang chờ. Trả về số user được thêm (user không còn trong pending bị bỏ qua). */
+    public Task<Integer> approve(String groupId, List<String> userIds) {
+        return inChunks(groupId, userIds, chunk -> resolveProfiles(chunk).continueWithTask(t -> {
+            Map<String, User> profiles = profilesOf(chunk);
+            Map<String, Map<String, Object>> logs = buildLogs(groupId, GroupLog.TYPE_MEMBER_APPROVED, chunk, null);
+            return db.runTransaction(tx -> approveChunk(tx, groupId, chunk, profiles, logs));
+        }));
+    }
+
+    private Integer approveChunk(Transaction tx, String groupId, List<String> chunk, Map<String, User> profiles,
+                                 Map<String, Map<String, Object>> logs) throws FirebaseFirestoreException {
+        DocumentReference groupRef = groupRef(groupId);
+        DocumentSnapshot groupSnap = tx.get(groupRef);
+        if (!groupSnap.exists()) {
+            throw new FirebaseFirestoreException("Group not found", FirebaseFirestoreException.Code.NOT_FOUND);
+        }
+        // Transaction yêu cầu đọc hết trước khi ghi
+        List<String> toAdd = new ArrayList<>();
+        List<String> stalePending = new ArrayList<>();
+        for (String userId : chunk) {
+            if (!tx.get(groupRef.collection(PENDING).document(userId)).exists()) continue;
+            if (tx.get(groupRef.collection(MEMBERS).document(userId)).exists()) {
+                stalePending.add(userId);
+            } else {
+                toAdd.add(userId);
+            }
+        }
+
+        Group group = toGroup(groupSnap, toAdd.size());
+        for (String userId : stalePending) {
+            tx.delete(groupRef.collection(PENDING).document(userId));
+        }
+        for (String userId : toAdd) {
+            addMember(tx, groupRef, group, userId, profiles.get(userId));
+            tx.delete(groupRef.collection(PENDING).document(userId));
+            log(tx, groupId, logs.get(userId));
+        }
+        if (!toAdd.isEmpty()) {
+            tx.update(groupRef, "memberCount", FieldValue.increment(toAdd.size()));
+        }
+        return toAdd.size();
+    }
+
+    /** Từ chối các user đang chờ (chỉ xóa pending, không đổi memberCount) */
+    public Task<Void> reject(String groupId, List<String> userIds) {
+        DocumentReference groupRef = groupRef(groupId);
+        return inChunks(groupId, userIds, chunk -> {
+            Map<String, Map<String, Object>> logs = buildLogs(groupId, GroupLog.TYPE_MEMBER_REJECTED, chunk, null);
+            WriteBatch batch = db.batch();
+            for (String userId : chunk) {
+                batch.delete(groupRef.collection(PENDING).document(userId));
+                Map<String, Object> logData = logs.get(userId);
+                if (logData != null) batch.set(logRepository.newGroupLogRef(groupId), logData);
+            }
+            return batch.commit().continueWith(t -> {
+                if (!t.isSuccessful()) throw t.getException();
+                return chunk.size();
+            });
+        }).continueWith(t -> {
+            if (!t.isSuccessful()) throw t.getException();
+            return null;
+        });
+    }
+
+    /**
+     * Xóa các user khỏi group (kick hoặc tự rời). Trả về số member thực sự bị xóa.
+     * metadata được ghi vào log của từng user (có thể null).
+     */
+    public Task<Integer> remove(String groupId, List<String> userIds, Map<String, Object> metadata) {
+        return inChunks(groupId, userIds, chunk -> {
+            Map<String, Map<String, Object>> logs = buildLogs(groupId, GroupLog.TYPE_MEMBER_REMOVED, chunk, metadata);
+            return db.runTransaction(tx -> {
+                DocumentReference groupRef = groupRef(groupId);
+                List<String> existing = new ArrayList<>();
+                for (String userId : chunk) {
+                    if (tx.get(groupRef.collection(MEMBERS).document(userId)).exists()) existing.add(userId);
+                }
+                for (String userId : existing) {
+                    tx.delete(groupRef.collection(MEMBERS).document(userId));
+                    MembershipIndex.getInstance().remove(tx, userId, groupId);
+                    log(tx, groupId, logs.get(userId));
+                }
+                if (!existing.isEmpty()) {
+                    tx.update(groupRef, "memberCount", FieldValue.increment(-existing.size()));
+                }
+                return existing.size();
+            }).addOnSuccessListener(count -> forget(groupId, chunk));
+        });
+    }
+
+    /** Chặn user: thêm vào blockedUsers, xóa member / pending, giảm memberCount nếu đang là member */
+    public Task<Void> block(String groupId, String userId) {
+        DocumentReference groupRef = groupRef(groupId);
+        Map<String, Object> logData = logRepository.buildGroupLog(groupId, GroupLog.TYPE_MEMBER_BLOCKED,
+                "member", userId, null, null);
+        return db.runTransaction(tx -> {
+            boolean wasMember = tx.get(groupRef.collection(MEMBERS).document(userId)).exists();
+            Map<String, Object> data = new HashMap<>();
+            data.put("userId", userId);
+            data.put("blockedAt", System.currentTimeMillis());
+            tx.set(groupRef.collection(BLOCKED).document(userId), data);
+            tx.delete(groupRef.collection(PENDING).document(userId));
+            if (wasMember) {
+                tx.delete(groupRef.collection(MEMBERS).document(userId));
+                tx.update(groupRef, "memberCount", FieldValue.increment(-1));
+            }
+            MembershipIndex.getInstance().remove(tx, userId, groupId);
+            log(tx, groupId, logData);
+            return (Void) null;
+        }).continueWith(t -> {
+            if (t.isSuccessful()) forget(groupId, Collections.singletonList(userId));
+            afterWrite(groupId, t);
+            return null;
+        });
+    }
+
+    /** Chuyển owner: fromUser thành admin, toUser thành owner, cập nhật createdBy */
+    public Task<Void> transferOwnership(String groupId, String fromUserId, String toUserId) {
+        DocumentReference groupRef = groupRef(groupId);
+        WriteBatch batch = db.batch();
+        batch.update(groupRef.collection(MEMBERS).document(fromUserId),
+                "role", "admin", "roleRank", Member.rankOf("admin"));
+        batch.update(groupRef.collection(MEMBERS).document(toUserId),
+                "role", "owner", "roleRank", Member.rankOf("owner"));
+        batch.update(groupRef, "createdBy", toUserId);
+        MembershipIndex.getInstance().setRole(batch, fromUserId, groupId, "admin");
+        MembershipIndex.getInstance().setRole(batch, toUserId, groupId, "owner");
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("fromUserId", fromUserId);
+        metadata.put("toUserId", toUserId);
+        Map<String, Object> logData = logRepository.buildGroupLog(groupId, GroupLog.TYPE_OWNERSHIP_TRANSFERRED,
+                "group", groupId, null, metadata);
+        if (logData != null) batch.set(logRepository.newGroupLogRef(groupId), logData);
+
+        return batch.commit().continueWith(t -> {
+            afterWrite(groupId, t);
+            return null;
+        });
+    }
+
+    private void addMember(Transaction tx, DocumentReference groupRef, Group group, String userId, User profile) {
+        Member m = new Member();
+        m.userId = userId;
+        m.applyRole("member");
+        m.status = "active";
+        m.joinedAt = System.currentTimeMillis();
+        m.applyProfile(profile);
+        tx.set(groupRef.collection(MEMBERS).document(userId), m);
+        MembershipIndex.getInstance().add(tx, userId, GroupSummary.of(group, m.role, m.joinedAt));
+    }
+
+    /** Group của snapshot với memberCount sau khi thêm added member (dùng cho summary trong index) */
+    private static Group toGroup(DocumentSnapshot groupSnap, int added) {
+        Group group = groupSnap.toObject(Group.class);
+        if (group == null) group = new Group();
+        group.groupId = groupSnap.getId();
+        group.memberCount += added;
+        return group;
+    }
+
+    private void log(Transaction tx, String groupId, Map<String, Object> logData) {
+        if (logData != null) tx.set(logRepository.newGroupLogRef(groupId), logData);
+    }
+
+    /** Dữ liệu log cho từng user (chuẩn bị trên main thread) */
+    private Map<String, Map<String, Object>> buildLogs(String groupId, String type, List<String> userIds,
+                                                       Map<String, Object> metadata) {
+        Map<String, Map<String, Object>> logs = new HashMap<>();
+        for (String userId : userIds) {
+            logs.put(userId, logRepository.buildGroupLog(groupId, type, "member", userId, null, metadata));
+        }
+        return logs;
+    }
+
+    private static Map<String, User> profilesOf(List<String> userIds) {
+        Map<String, User> profiles = new HashMap<>();
+        for (String userId : userIds) {
+            profiles.put(userId, UserCache.getInstance().get(userId));
+        }
+        return profiles;
+    }
+
+    /** Chạy action lần lượt cho từng lô (các lô cùng ghi memberCount nên không chạy song song) */
+    private Task<Integer> inChunks(String groupId, List<String> userIds, ChunkAction action) {
+        if (userIds == null || userIds.isEmpty()) return Tasks.forResult(0);
+        List<String> ids = new ArrayList<>(new java.util.LinkedHashSet<>(userIds));
+        Task<Integer> chain = Tasks.forResult(0);
+        for (int i = 0; i < ids.size(); i += CHUNK_SIZE) {
+            List<String> chunk = new ArrayList<>(ids.subList(i, Math.min(i + CHUNK_SIZE, ids.size())));
+            chain = chain.continueWithTask(prev -> {
+                if (!prev.isSuccessful()) throw prev.getException();
+                int done = prev.getResult();
+                return action.run(chunk).continueWith(t -> {
+                    if (!t.isSuccessful()) throw t.getException();
+                    return done + t.getResult();
+                });
+            });
+        }
+        return chain.continueWith(t -> {
+            afterWrite(groupId, t);
+            return t.getResult();
+        });
+    }
+
+    /** Làm mới cache của group sau khi ghi, ném lại lỗi nếu thất bại */
+    private static void afterWrite(String groupId, Task<?> task) throws Exception {
+        GroupCache.getInstance().invalidate(groupId);
+        if (!task.isSuccessful()) {
+            com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, task.getException());
+            throw task.getException();
+        }
+    }
+
+    /** Bỏ group khỏi cache membership index sau khi xóa member đã commit (main thread) */
+    private static void forget(String groupId, List<String> userIds) {
+        for (String userId : userIds) {
+            MembershipIndex.getInstance().forget(userId, groupId);
+        }
+    }
+
+    /** Nạp user vào UserCache để chép tên / avatar vào member document */
+    private static Task<Void> resolveProfiles(List<String> userIds) {
+        TaskCompletionSource<Void> resolved = new TaskCompletionSource<>();
+        UserCache.getInstance().resolve(userIds, () -> resolved.setResult(null));
+        return resolved.getTask();
+    }
+
+    private DocumentReference groupRef(String groupId) {
+        return db.collection(GROUPS).document(groupId);
+    }
+}
@@ -365,9 +365,28 @@ public class NoticeRepository {
      * Tạo thông báo khi bài viết được duyệt
      */
     public Task<Void> createPostApproved(String groupId, String postId, String actorId, String actorName, String targetUid) {
-        String noticeId = UUID.randomUUID().toString();
-        Notice notice = new Notice(
-                noticeId,
+        Notice notice = postApprovedNotice(groupId, postId, actorId, actorName, targetUid);
+        return db.collection("users")
+                .document(targetUid)
+                .collection("notices")
+                .document(notice.getId())
+                .set(notice.toMap());
+    }
+
+    /**
+     * Thêm thông báo bài viết được duyệt vào batch (duyệt nhiều bài cùng lúc)
+     */
+    public void addPostApproved(WriteBatch batch, String groupId, String postId, String actorId, String actorName, String targetUid) {
+        Notice notice = postApprovedNotice(groupId, postId, actorId, actorName, targetUid);
+        batch.set(db.collection("users")
+                .document(targetUid)
+                .collection("notices")
+                .document(notice.getId()), notice.toMap());
+    }
+
+    private static Notice postApprovedNotice(String groupId, String postId, String actorId, String actorName, String targetUid) {
+        return new Notice(
+                UUID.randomUUID().toString(),
                 "post_approved",
                 actorId,
                 actorName,
@@ -378,12 +397,6 @@ public class NoticeRepository {
                 "Bài viết của bạn đã được " + actorName + " duyệt",
                 targetUid
         );
-
-        return db.collection("users")
-                .document(targetUid)
-                .collection("notices")
-                .document(noticeId)
-                .set(notice.toMap());
     }
 
     /**
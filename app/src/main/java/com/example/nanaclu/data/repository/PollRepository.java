@@ -0,0 +1,313 @@
+package com.example.nanaclu.data.repository;
+
+import com.example.nanaclu.data.model.Post;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Bình chọn poll với phiếu theo user + bộ đếm phân mảnh (sharded counter).
+ *
+ * Cấu trúc dưới groups/{groupId}/posts/{postId}:
+ * - ballots/{userId}: { userId, optionIds: [...], updatedAt } - lựa chọn hiện tại của user
+ * - pollShards/{0..n-1}: { counts: { optionId: long } } - mỗi lần vote cộng/trừ vào 1 shard ngẫu nhiên
+ *
+ * Một lần vote chỉ đọc 1 document (ballot) trong transaction rồi ghi ballot + 1 shard,
+ * nên nhiều người vote cùng lúc không phải tranh nhau trên cùng một option document.
+ * Số phiếu của option = options/{id}.voteCount (dữ liệu cũ) + tổng counts trên các shard.
+ *
+ * Poll cũ (chưa có pollShardCount) lưu phiếu ở options/{id}/votes/{userId}; lần vote đầu
+ * tiên của mỗi user sẽ chuyển các phiếu cũ đó sang ballot + shard.
+ */
+public class PollRepository {
+    private static final String GROUPS_COLLECTION = "groups";
+    private static final String POSTS_COLLECTION = "posts";
+    private static final String OPTIONS_COLLECTION = "options";
+    private static final String BALLOTS_COLLECTION = "ballots";
+    private static final String SHARDS_COLLECTION = "pollShards";
+    private static final String LEGACY_VOTES_COLLECTION = "votes";
+    public static final int DEFAULT_SHARD_COUNT = 10;
+
+    private static final Random random = new Random();
+    // postId/userId đã có ballot -> không cần kiểm tra phiếu cũ nữa
+    private static final Set<String> knownBallots = Collections.synchronizedSet(new HashSet<>());
+
+    private final FirebaseFirestore db;
+
+    public PollRepository(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    private DocumentReference postRef(String groupId, String postId) {
+        return db.collection(GROUPS_COLLECTION).document(groupId)
+                .collection(POSTS_COLLECTION).document(postId);
+    }
+
+    public DocumentReference ballotRef(String groupId, String postId, String userId) {
+        return postRef(groupId, postId).collection(BALLOTS_COLLECTION).document(userId);
+    }
+
+    private static int shardCount(Post poll) {
+        return poll.pollShardCount != null && poll.pollShardCount > 0
+                ? poll.pollShardCount : DEFAULT_SHARD_COUNT;
+    }
+
+    /**
+     * Vote / bỏ vote một option.
+     * Single-choice: chọn option khác sẽ thay phiếu cũ, chọn lại option đang chọn sẽ bỏ phiếu.
+     * Multiple-choice: bật/tắt riêng option được chọn.
+     * Cấu hình poll (multiple, deadline) lấy từ Post đang hiển thị, không đọc lại post.
+     */
+    public void vote(Post poll, String optionId, String userId,
+                     OnSuccessListener<Void> onSuccess, OnFailureListener onFailure) {
+        if (poll == null || !"poll".equals(poll.type)) {
+            if (onFailure != null) onFailure.onFailure(new IllegalStateException("Not a poll post"));
+            return;
+        }
+        if (poll.pollDeadline != null && System.currentTimeMillis() > poll.pollDeadline) {
+            if (onFailure != null) onFailure.onFailure(new IllegalStateException("Poll has ended"));
+            return;
+        }
+
+        String key = poll.postId + "/" + userId;
+        boolean legacy = poll.pollShardCount == null && !knownBallots.contains(key);
+        // Poll cũ: cần danh sách option để tìm phiếu cũ (chỉ một lần cho mỗi user)
+        Task<List<DocumentReference>> optionRefsTask = legacy
+                ? postRef(poll.groupId, poll.postId).collection(OPTIONS_COLLECTION).get()
+                        .continueWith(t -> {
+                            if (!t.isSuccessful()) throw t.getException();
+                            List<DocumentReference> refs = new ArrayList<>();
+                            for (DocumentSnapshot d : t.getResult().getDocuments()) refs.add(d.getReference());
+                            return refs;
+                        })
+                : Tasks.<List<DocumentReference>>forResult(new ArrayList<>());
+
+        optionRefsTask
+                .continueWithTask(t -> {
+                    if (!t.isSuccessful()) throw t.getException();
+                    return runVoteTransaction(poll, optionId, userId, t.getResult());
+                })
+                .addOnSuccessListener(aVoid -> {
+                    knownBallots.add(key);
+                    if (onSuccess != null) onSuccess.onSuccess(null);
+                })
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PollRepository", e);
+                    if (onFailure != null) onFailure.onFailure(e);
+                });
+    }
+
+    private Task<Void> runVoteTransaction(Post poll, String optionId, String userId,
+                                          List<DocumentReference> legacyOptionRefs) {
+        DocumentReference postRef = postRef(poll.groupId, poll.postId);
+        DocumentReference ballotRef = ballotRef(poll.groupId, poll.postId, userId);
+        boolean multiple = poll.pollMultiple != null && poll.pollMultiple;
+        int shards = shardCount(poll);
+
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot ballotSnap = transaction.get(ballotRef);
+
+            // READS PHASE (poll cũ, chưa có ballot): tìm phiếu cũ của user
+            List<DocumentReference> legacyVoteRefs = new ArrayList<>();
+            List<DocumentReference> legacyOptionsVoted = new ArrayList<>();
+            Set<String> current = new LinkedHashSet<>();
+            if (ballotSnap.exists()) {
+                List<String> ids = castStringList(ballotSnap.get("optionIds"));
+                current.addAll(ids);
+            } else {
+                for (DocumentReference optRef : legacyOptionRefs) {
+                    DocumentReference voteRef = optRef.collection(LEGACY_VOTES_COLLECTION).document(userId);
+                    if (transaction.get(voteRef).exists()) {
+                        legacyVoteRefs.add(voteRef);
+                        legacyOptionsVoted.add(optRef);
+                        current.add(optRef.getId());
+                    }
+                }
+            }
+
+            Set<String> next = new LinkedHashSet<>(current);
+            if (current.contains(optionId)) {
+                next.remove(optionId);
+            } else {
+                if (!multiple) next.clear();
+                next.add(optionId);
+            }
+
+            // WRITES PHASE
+            Map<String, Object> deltas = new HashMap<>();
+            // Phiếu cũ được chuyển từ options/{id}.voteCount sang shard
+            for (int i = 0; i < legacyVoteRefs.size(); i++) {
+                transaction.delete(legacyVoteRefs.get(i));
+                transaction.update(legacyOptionsVoted.get(i), "voteCount", FieldValue.increment(-1));
+            }
+            Set<String> before = legacyVoteRefs.isEmpty() ? current : new HashSet<>();
+            Set<String> after = next;
+            for (String id : before) {
+                if (!after.contains(id)) deltas.put(id, FieldValue.increment(-1));
+            }
+            for (String id : after) {
+                if (!before.contains(id)) deltas.put(id, FieldValue.increment(1));
+            }
+
+            if (!deltas.isEmpty()) {
+                DocumentReference shardRef = postRef.collection(SHARDS_COLLECTION)
+                        .document(String.valueOf(random.nextInt(shards)));
+                Map<String, Object> shardData = new HashMap<>();
+                shardData.put("counts", deltas);
+                transaction.set(shardRef, shardData, SetOptions.merge());
+            }
+
+            Map<String, Object> ballot = new HashMap<>();
+            ballot.put("userId", userId);
+            ballot.put("optionIds", new ArrayList<>(next));
+            ballot.put("updatedAt", System.currentTimeMillis());
+            transaction.set(ballotRef, ballot);
+            return null;
+        });
+    }
+
+    /**
+     * Lắng nghe lựa chọn hiện tại của user trong poll (1 listener cho cả poll)
+     */
+    public ListenerRegistration listenBallot(String groupId, String postId, String userId,
+                                             OnSuccessListener<Set<String>> onChanged,
+                                             OnFailureListener onFailure) {
+        return ballotRef(groupId, postId, userId).addSnapshotListener((snap, e) -> {
+            if (e != null) {
+                if (onFailure != null) onFailure.onFailure(e);
+                return;
+            }
+            Set<String> selected = new HashSet<>();
+            if (snap != null && snap.exists()) {
+                selected.addAll(castStringList(snap.get("optionIds")));
+                knownBallots.add(postId + "/" + userId);
+            }
+            onChanged.onSuccess(selected);
+        });
+    }
+
+    /**
+     * Lắng nghe tổng số phiếu trên các shard, theo optionId
+     */
+    public ListenerRegistration listenShardCounts(String groupId, String postId,
+                                                  OnSuccessListener<Map<String, Long>> onChanged,
+                                                  OnFailureListener onFailure) {
+        return postRef(groupId, postId).collection(SHARDS_COLLECTION).addSnapshotListener((snap, e) -> {
+            if (e != null) {
+                if (onFailure != null) onFailure.onFailure(e);
+                return;
+            }
+            onChanged.onSuccess(snap != null ? sumShards(snap.getDocuments()) : new HashMap<>());
+        });
+    }
+
+    /**
+     * Đọc một lần số phiếu của từng option (voteCount cũ + shard)
+     */
+    public void getVoteCounts(String groupId, String postId,
+                              OnSuccessListener<Map<String, Long>> onSuccess,
+                              OnFailureListener onFailure) {
+        DocumentReference postRef = postRef(groupId, postId);
+        Task<com.google.firebase.firestore.QuerySnapshot> optionsTask = postRef.collection(OPTIONS_COLLECTION).get();
+        Task<com.google.firebase.firestore.QuerySnapshot> shardsTask = postRef.collection(SHARDS_COLLECTION).get();
+        Tasks.whenAllSuccess(optionsTask, shardsTask)
+                .addOnSuccessListener(results -> {
+                    Map<String, Long> counts = sumShards(shardsTask.getResult().getDocuments());
+                    for (DocumentSnapshot d : optionsTask.getResult().getDocuments()) {
+                        Long legacy = d.getLong("voteCount");
+                        Long shard = counts.get(d.getId());
+                        counts.put(d.getId(), (legacy != null ? legacy : 0L) + (shard != null ? shard : 0L));
+                    }
+                    onSuccess.onSuccess(counts);
+                })
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PollRepository", e);
+                    if (onFailure != null) onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Danh sách userId đã vote (ballot không rỗng + phiếu cũ của các option còn voteCount)
+     */
+    public void getVoterIds(String groupId, String postId,
+                            OnSuccessListener<List<String>> onSuccess,
+                            OnFailureListener onFailure) {
+        DocumentReference postRef = postRef(groupId, postId);
+        Task<com.google.firebase.firestore.QuerySnapshot> ballotsTask = postRef.collection(BALLOTS_COLLECTION).get();
+        Task<List<String>> legacyTask = postRef.collection(OPTIONS_COLLECTION).get()
+                .continueWithTask(t -> {
+                    if (!t.isSuccessful()) throw t.getException();
+                    List<Task<com.google.firebase.firestore.QuerySnapshot>> voteTasks = new ArrayList<>();
+                    for (DocumentSnapshot opt : t.getResult().getDocuments()) {
+                        Long legacy = opt.getLong("voteCount");
+                        // Chỉ option còn phiếu cũ mới cần đọc subcollection votes
+                        if (legacy != null && legacy > 0) {
+                            voteTasks.add(opt.getReference().collection(LEGACY_VOTES_COLLECTION).get());
+                        }
+                    }
+                    return Tasks.whenAllSuccess(voteTasks).continueWith(all -> {
+                        List<String> ids = new ArrayList<>();
+                        for (Task<com.google.firebase.firestore.QuerySnapshot> vt : voteTasks) {
+                            for (DocumentSnapshot v : vt.getResult().getDocuments()) ids.add(v.getId());
+                        }
+                        return ids;
+                    });
+                });
+        Tasks.whenAllSuccess(ballotsTask, legacyTask)
+                .addOnSuccessListener(results -> {
+                    Set<String> voterIds = new LinkedHashSet<>();
+                    for (DocumentSnapshot b : ballotsTask.getResult().getDocuments()) {
+                        if (!castStringList(b.get("optionIds")).isEmpty()) voterIds.add(b.getId());
+                    }
+                    voterIds.addAll(legacyTask.getResult());
+                    onSuccess.onSuccess(new ArrayList<>(voterIds));
+                })
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PollRepository", e);
+                    if (onFailure != null) onFailure.onFailure(e);
+                });
+    }
+
+    private static Map<String, Long> sumShards(List<DocumentSnapshot> shards) {
+        Map<String, Long> totals = new HashMap<>();
+        for (DocumentSnapshot shard : shards) {
+            Object raw = shard.get("counts");
+            if (!(raw instanceof Map)) continue;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) raw).entrySet()) {
+                if (!(entry.getValue() instanceof Number)) continue;
+                String optionId = String.valueOf(entry.getKey());
+                long value = ((Number) entry.getValue()).longValue();
+                Long prev = totals.get(optionId);
+                totals.put(optionId, (prev != null ? prev : 0L) + value);
+            }
+        }
+        return totals;
+    }
+
+    private static List<String> castStringList(Object raw) {
+        List<String> out = new ArrayList<>();
+        if (raw instanceof List) {
+            for (Object o : (List<?>) raw) {
+                if (o != null) out.add(o.toString());
+            }
+        }
+        return out;
+    }
+}
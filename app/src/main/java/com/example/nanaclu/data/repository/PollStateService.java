@@ -0,0 +1,225 @@
+package com.example.nanaclu.data.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.nanaclu.data.model.Post;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trạng thái realtime của poll dùng chung cho feed và màn chi tiết.
+ * Mỗi poll có đúng một LiveData gộp (options + số phiếu + lựa chọn của user hiện tại),
+ * phía sau là 3 listener: options, pollShards và ballot của user.
+ * Listener chỉ được gắn khi LiveData có observer (đếm theo số observer) và được gỡ
+ * sau một khoảng trễ ngắn khi không còn ai quan sát, để cuộn qua lại không phải gắn lại.
+ * Khi gỡ listener (không còn observer) instance cũng được bỏ khỏi map để map không lớn dần
+ * theo số poll đã xem; nếu ai còn giữ LiveData đó và quan sát lại, instance tự đăng ký lại
+ * vào map (khi chưa có instance khác cho cùng poll) để vote() vẫn cập nhật đúng instance.
+ * Mọi hàm gọi trên main thread.
+ */
+public class PollStateService {
+    private static final String TAG = "PollStateService";
+    private static final long DETACH_DELAY_MS = 5_000;
+
+    private static PollStateService instance;
+
+    /** Một lựa chọn trong poll */
+    public static class Option {
+        public final String optionId;
+        public final String text;
+        public final long count;
+
+        Option(String optionId, String text, long count) {
+            this.optionId = optionId;
+            this.text = text;
+            this.count = count;
+        }
+    }
+
+    /** Trạng thái gộp của một poll */
+    public static class PollState {
+        public final List<Option> options;
+        public final Set<String> mySelections;
+        public final long totalVotes;
+
+        PollState(List<Option> options, Set<String> mySelections, long totalVotes) {
+            this.options = options;
+            this.mySelections = mySelections;
+            this.totalVotes = totalVotes;
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, PollLiveData> polls = new HashMap<>();
+    private final PostRepository postRepository;
+    private final PollRepository pollRepository;
+
+    private PollStateService() {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        postRepository = new PostRepository(db);
+        pollRepository = new PollRepository(db);
+    }
+
+    public static synchronized PollStateService getInstance() {
+        if (instance == null) {
+            instance = new PollStateService();
+        }
+        return instance;
+    }
+
+    /**
+     * LiveData của poll. Nhiều row / màn hình cùng một poll dùng chung một instance.
+     * userId có thể null (chưa đăng nhập) -> không nghe ballot.
+     */
+    public LiveData<PollState> observe(String groupId, String postId, String userId) {
+        String key = groupId + "/" + postId + "/" + userId;
+        PollLiveData live = polls.get(key);
+        if (live == null) {
+            live = new PollLiveData(key, groupId, postId, userId);
+            polls.put(key, live);
+        }
+        return live;
+    }
+
+    /**
+     * Vote qua PollRepository, cập nhật lựa chọn + số phiếu ngay trên UI
+     * (transaction không có latency compensation); listener sẽ đồng bộ lại sau.
+     */
+    public void vote(Post poll, String optionId, String userId,
+                     com.google.android.gms.tasks.OnFailureListener onFailure) {
+        PollLiveData live = polls.get(poll.groupId + "/" + poll.postId + "/" + userId);
+        if (live != null) live.applyLocalVote(optionId, poll.pollMultiple != null && poll.pollMultiple);
+        pollRepository.vote(poll, optionId, userId, aVoid -> { }, e -> {
+            if (live != null) live.revertLocalVote();
+            if (onFailure != null) onFailure.onFailure(e);
+        });
+    }
+
+    private class PollLiveData extends LiveData<PollState> {
+        private final String key;
+        private final String groupId;
+        private final String postId;
+        private final String userId;
+
+        private ListenerRegistration optionsReg;
+        private ListenerRegistration shardsReg;
+        private ListenerRegistration ballotReg;
+        private List<DocumentSnapshot> optionDocs = new ArrayList<>();
+        private Map<String, Long> shardCounts = new HashMap<>();
+        private Set<String> selections = new HashSet<>();
+        // Chênh lệch tạm thời từ vote chưa được listener xác nhận
+        private Map<String, Long> pendingDeltas = new HashMap<>();
+        private Set<String> selectionsBeforeVote;
+
+        private final Runnable detachRunnable = this::detach;
+
+        PollLiveData(String key, String groupId, String postId, String userId) {
+            this.key = key;
+            this.groupId = groupId;
+            this.postId = postId;
+            this.userId = userId;
+        }
+
+        @Override
+        protected void onActive() {
+            mainHandler.removeCallbacks(detachRunnable);
+            if (!polls.containsKey(key)) polls.put(key, this);
+            if (optionsReg != null) return;
+
+            com.google.android.gms.tasks.OnFailureListener onError = e -> {
+                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, e);
+                Log.e(TAG, "Poll listener error: " + key, e);
+            };
+            optionsReg = postRepository.listenPollOptions(groupId, postId, docs -> {
+                optionDocs = docs;
+                publish();
+            }, onError);
+            shardsReg = pollRepository.listenShardCounts(groupId, postId, counts -> {
+                shardCounts = counts;
+                pendingDeltas = new HashMap<>();
+                publish();
+            }, onError);
+            if (userId != null) {
+                ballotReg = pollRepository.listenBallot(groupId, postId, userId, selected -> {
+                    selections = selected;
+                    selectionsBeforeVote = null;
+                    publish();
+                }, onError);
+            }
+        }
+
+        @Override
+        protected void onInactive() {
+            mainHandler.postDelayed(detachRunnable, DETACH_DELAY_MS);
+        }
+
+        private void detach() {
+            if (hasObservers()) return;
+            if (optionsReg != null) { optionsReg.remove(); optionsReg = null; }
+            if (shardsReg != null) { shardsReg.remove(); shardsReg = null; }
+            if (ballotReg != null) { ballotReg.remove(); ballotReg = null; }
+            if (polls.get(key) == this) polls.remove(key);
+        }
+
+        void applyLocalVote(String optionId, boolean multiple) {
+            selectionsBeforeVote = new HashSet<>(selections);
+            Set<String> next = new LinkedHashSet<>(selections);
+            if (next.contains(optionId)) {
+                next.remove(optionId);
+            } else {
+                if (!multiple) next.clear();
+                next.add(optionId);
+            }
+            for (String id : selections) {
+                if (!next.contains(id)) addDelta(id, -1);
+            }
+            for (String id : next) {
+                if (!selections.contains(id)) addDelta(id, 1);
+            }
+            selections = next;
+            publish();
+        }
+
+        void revertLocalVote() {
+            if (selectionsBeforeVote != null) selections = selectionsBeforeVote;
+            selectionsBeforeVote = null;
+            pendingDeltas = new HashMap<>();
+            publish();
+        }
+
+        private void addDelta(String optionId, long delta) {
+            Long prev = pendingDeltas.get(optionId);
+            pendingDeltas.put(optionId, (prev != null ? prev : 0L) + delta);
+        }
+
+        private void publish() {
+            List<Option> options = new ArrayList<>();
+            long total = 0L;
+            for (DocumentSnapshot d : optionDocs) {
+                Long legacy = d.getLong("voteCount");
+                Long shard = shardCounts.get(d.getId());
+                Long pending = pendingDeltas.get(d.getId());
+                long count = Math.max(0L, (legacy != null ? legacy : 0L)
+                        + (shard != null ? shard : 0L) + (pending != null ? pending : 0L));
+                total += count;
+                options.add(new Option(d.getId(), d.getString("text"), count));
+            }
+            setValue(new PollState(Collections.unmodifiableList(options),
+                    Collections.unmodifiableSet(new HashSet<>(selections)), total));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.nanaclu.data.repository;
+
+import android.util.Log;
+
+import com.example.nanaclu.data.model.Post;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Xóa một post cùng toàn bộ dữ liệu phụ thuộc:
+ * comments (kèm likes của từng comment), likes (kèm index users/{uid}/likedPosts), likeShards,
+ * options (kèm votes cũ), ballots, pollShards và media trên Storage (ảnh, video, thumbnail, HLS).
+ *
+ * - Mỗi subcollection được xóa theo trang (mỗi batch dưới giới hạn 500 thao tác), các
+ *   subcollection chạy song song
+ * - Bước đầu là transaction đánh dấu post "deleting" và giảm postCount của group đúng một lần
+ * - Post document bị xóa sau cùng, nên nếu bị gián đoạn chỉ cần gọi lại delete(): các bước đã
+ *   xong chỉ tốn một query rỗng, file Storage không còn tồn tại được coi là đã xóa
+ */
+public class PostDeleter {
+    private static final String TAG = "PostDeleter";
+    private static final String GROUPS_COLLECTION = "groups";
+    private static final String POSTS_COLLECTION = "posts";
+
+    private static final int PAGE_SIZE = 400;
+    // Mỗi like xóa kèm một document index -> 2 thao tác / like
+    private static final int LIKES_PAGE_SIZE = 200;
+    // Mỗi comment / option kéo theo một query subcollection -> trang nhỏ để giới hạn số query song song
+    private static final int PARENT_PAGE_SIZE = 50;
+
+    /** Thêm thao tác vào batch của một trang và/hoặc xóa dữ liệu con trước khi commit trang đó */
+    private interface PageHook {
+        Task<Void> onPage(List<DocumentSnapshot> page, WriteBatch batch);
+    }
+
+    private final FirebaseFirestore db;
+    private final FirebaseStorage storage;
+
+    public PostDeleter(FirebaseFirestore db) {
+        this.db = db;
+        this.storage = FirebaseStorage.getInstance();
+    }
+
+    public Task<Void> delete(String groupId, String postId) {
+        DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(groupId);
+        DocumentReference postRef = groupRef.collection(POSTS_COLLECTION).document(postId);
+
+        return markDeleting(groupRef, postRef).continueWithTask(markTask -> {
+            if (!markTask.isSuccessful()) throw markTask.getException();
+            Post post = markTask.getResult();
+
+            List<Task<Void>> steps = new ArrayList<>();
+            steps.add(deletePaged(postRef.collection("comments"), PARENT_PAGE_SIZE, (page, batch) -> {
+                List<Task<Void>> nested = new ArrayList<>();
+                for (DocumentSnapshot comment : page) {
+                    nested.add(deletePaged(comment.getReference().collection("likes"), PAGE_SIZE, null));
+                }
+                return Tasks.whenAll(nested);
+            }));
+            steps.add(deletePaged(postRef.collection("likes"), LIKES_PAGE_SIZE, (page, batch) -> {
+                for (DocumentSnapshot like : page) {
+                    batch.delete(db.collection("users").document(like.getId())
+                            .collection("likedPosts").document(postId));
+                }
+                return Tasks.forResult(null);
+            }));
+            steps.add(deletePaged(postRef.collection("likeShards"), PAGE_SIZE, null));
+            steps.add(deletePaged(postRef.collection("options"), PARENT_PAGE_SIZE, (page, batch) -> {
+                List<Task<Void>> nested = new ArrayList<>();
+                for (DocumentSnapshot option : page) {
+                    nested.add(deletePaged(option.getReference().collection("votes"), PAGE_SIZE, null));
+                }
+                return Tasks.whenAll(nested);
+            }));
+            steps.add(deletePaged(postRef.collection("ballots"), PAGE_SIZE, null));
+            steps.add(deletePaged(postRef.collection("pollShards"), PAGE_SIZE, null));
+            if (post != null) steps.add(deleteMedia(post, groupId, postId));
+
+            return Tasks.whenAll(steps);
+        }).continueWithTask(cascadeTask -> {
+            if (!cascadeTask.isSuccessful()) throw cascadeTask.getException();
+            return postRef.delete();
+        }).addOnFailureListener(e -> {
+            com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, e);
+            Log.e(TAG, "Delete post " + postId + " interrupted, safe to retry", e);
+        });
+    }
+
+    /**
+     * Đánh dấu post đang bị xóa và giảm postCount trong cùng transaction.
+     * Lần retry thấy cờ "deleting" sẽ không giảm postCount lần nữa. Trả về null nếu post không còn.
+     */
+    private Task<Post> markDeleting(DocumentReference groupRef, DocumentReference postRef) {
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot snap = transaction.get(postRef);
+            if (!snap.exists()) return null;
+            Post post = snap.toObject(Post.class);
+            if (post != null) post.postId = snap.getId();
+            if (!Boolean.TRUE.equals(snap.getBoolean("deleting"))) {
+                transaction.update(postRef, "deleting", true);
+                transaction.update(groupRef, "postCount", FieldValue.increment(-1));
+            }
+            return post;
+        });
+    }
+
+    /** Xóa collection theo từng trang pageSize document cho tới khi rỗng */
+    private Task<Void> deletePaged(CollectionReference collection, int pageSize, PageHook hook) {
+        return collection.limit(pageSize).get().continueWithTask(queryTask -> {
+            if (!queryTask.isSuccessful()) throw queryTask.getException();
+            QuerySnapshot snapshot = queryTask.getResult();
+            if (snapshot.isEmpty()) return Tasks.forResult(null);
+
+            List<DocumentSnapshot> page = snapshot.getDocuments();
+            WriteBatch batch = db.batch();
+            Task<Void> before = hook != null ? hook.onPage(page, batch) : Tasks.forResult(null);
+            return before.continueWithTask(beforeTask -> {
+                if (!beforeTask.isSuccessful()) throw beforeTask.getException();
+                for (DocumentSnapshot doc : page) {
+                    batch.delete(doc.getReference());
+                }
+                return batch.commit();
+            }).continueWithTask(commitTask -> {
+                if (!commitTask.isSuccessful()) throw commitTask.getException();
+                if (page.size() < pageSize) return Tasks.forResult(null);
+                return deletePaged(collection, pageSize, hook);
+            });
+        });
+    }
+
+    private Task<Void> deleteMedia(Post post, String groupId, String postId) {
+        List<Task<Void>> tasks = new ArrayList<>();
+        if (post.imageUrls != null) {
+            for (String url : post.imageUrls) {
+                StorageReference ref = refFromUrl(url);
+                if (ref != null) tasks.add(ignoreNotFound(ref.delete()));
+            }
+        }
+        if (post.hasVideo || post.videoUrl != null) {
+            PostRepository repo = new PostRepository(db);
+            tasks.add(ignoreNotFound(repo.videoStorageRef(groupId, postId).delete()));
+            tasks.add(ignoreNotFound(repo.videoThumbStorageRef(groupId, postId).delete()));
+            StorageReference hlsRef = storage.getReference()
+                    .child("videos/group_posts/" + groupId + "/" + postId + "/hls");
+            tasks.add(hlsRef.listAll().continueWithTask(listTask -> {
+                if (!listTask.isSuccessful()) throw listTask.getException();
+                List<Task<Void>> deletes = new ArrayList<>();
+                for (StorageReference item : listTask.getResult().getItems()) {
+                    deletes.add(ignoreNotFound(item.delete()));
+                }
+                return Tasks.whenAll(deletes);
+            }));
+        }
+        return Tasks.whenAll(tasks);
+    }
+
+    private StorageReference refFromUrl(String url) {
+        if (url == null || url.isEmpty()) return null;
+        try {
+            return storage.getReferenceFromUrl(url);
+        } catch (IllegalArgumentException e) {
+            // URL không thuộc Storage của app (ảnh ngoài) -> bỏ qua
+            return null;
+        }
+    }
+
+    /** File đã bị xóa ở lần chạy trước vẫn tính là thành công */
+    private static Task<Void> ignoreNotFound(Task<Void> task) {
+        return task.continueWith(t -> {
+            if (!t.isSuccessful()) {
+                Exception e = t.getException();
+                if (e instanceof StorageException
+                        && ((StorageException) e).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND) {
+                    return null;
+                }
+                throw e;
+            }
+            return null;
+        });
+    }
+}
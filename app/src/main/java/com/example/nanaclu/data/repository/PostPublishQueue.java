@@ -0,0 +1,250 @@
+package com.example.nanaclu.data.repository;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.example.nanaclu.data.model.Post;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hàng đợi đăng bài chạy nền (WorkManager).
+ * Bản nháp Post + media được sao chép vào filesDir/publish_queue/{postId}/ nên job
+ * vẫn chạy lại được sau khi màn hình đóng, app bị kill hoặc quyền đọc content Uri hết hạn.
+ * PostPublishWorker đọc bản nháp và chạy PostPublisher với retry + điều kiện có mạng.
+ */
+public class PostPublishQueue {
+    private static final String TAG = "PostPublishQueue";
+    private static final String QUEUE_DIR = "publish_queue";
+    private static final String DRAFT_FILE = "draft.json";
+    private static final String VIDEO_FILE = "video.mp4";
+    private static final String THUMB_FILE = "thumb.jpg";
+    static final String KEY_POST_ID = "postId";
+    public static final String WORK_TAG = "post_publish";
+
+    private static final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    public interface EnqueueCallback {
+        void onQueued(String postId);
+        void onError(Exception e);
+    }
+
+    /** Bản nháp đã lưu trên đĩa */
+    static class Draft {
+        Post post;
+        List<String> imagePaths = new ArrayList<>();
+        File videoFile;
+        byte[] thumbJpeg;
+        PostRepository.VideoMetadata videoMetadata;
+        File dir;
+
+        PostPublisher.Request toRequest() {
+            return new PostPublisher.Request(post, imagePaths,
+                    videoFile != null ? Uri.fromFile(videoFile) : null, thumbJpeg, videoMetadata);
+        }
+    }
+
+    private PostPublishQueue() { }
+
+    /**
+     * Lưu bản nháp + sao chép media rồi xếp job đăng bài. Callback chạy trên main thread.
+     */
+    public static void enqueue(Context context, PostPublisher.Request request, EnqueueCallback callback) {
+        Context appContext = context.getApplicationContext();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        Post post = request.post;
+        if (post.postId == null || post.postId.isEmpty()) {
+            post.postId = UUID.randomUUID().toString();
+        }
+        ioExecutor.execute(() -> {
+            try {
+                saveDraft(appContext, request);
+                scheduleWork(appContext, post.postId);
+                mainHandler.post(() -> callback.onQueued(post.postId));
+            } catch (Exception e) {
+                Log.e(TAG, "Enqueue failed for " + post.postId, e);
+                deleteDraft(appContext, post.postId);
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    private static void scheduleWork(Context context, String postId) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresStorageNotLow(true)
+                .build();
+        OneTimeWorkRequest work = new OneTimeWorkRequest.Builder(PostPublishWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+                .setInputData(new Data.Builder().putString(KEY_POST_ID, postId).build())
+                .addTag(WORK_TAG)
+                .build();
+        // Mỗi postId chỉ có một job; bấm đăng lại không tạo bài trùng
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_TAG + "_" + postId, ExistingWorkPolicy.KEEP, work);
+    }
+
+    private static File draftDir(Context context, String postId) {
+        return new File(new File(context.getFilesDir(), QUEUE_DIR), postId);
+    }
+
+    private static void saveDraft(Context context, PostPublisher.Request request) throws Exception {
+        Post post = request.post;
+        File dir = draftDir(context, post.postId);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new java.io.IOException("Cannot create " + dir);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("postId", post.postId);
+        json.put("groupId", post.groupId);
+        json.put("authorId", post.authorId);
+        json.put("content", post.content != null ? post.content : "");
+
+        // Ảnh đã được copy vào cacheDir khi chọn; chuyển sang filesDir để không bị hệ thống dọn
+        JSONArray images = new JSONArray();
+        for (int i = 0; i < request.imagePaths.size(); i++) {
+            File dst = new File(dir, "image_" + i);
+            try (InputStream in = new FileInputStream(request.imagePaths.get(i))) {
+                copy(in, dst);
+            }
+            images.put(dst.getName());
+        }
+        json.put("images", images);
+
+        if (request.videoUri != null) {
+            try (InputStream in = context.getContentResolver().openInputStream(request.videoUri)) {
+                if (in == null) throw new java.io.IOException("Cannot open " + request.videoUri);
+                copy(in, new File(dir, VIDEO_FILE));
+            }
+            if (request.videoThumbJpeg != null) {
+                try (OutputStream out = new FileOutputStream(new File(dir, THUMB_FILE))) {
+                    out.write(request.videoThumbJpeg);
+                }
+            }
+            if (request.videoMetadata != null) {
+                JSONObject meta = new JSONObject();
+                meta.put("duration", request.videoMetadata.duration);
+                meta.put("width", request.videoMetadata.width);
+                meta.put("height", request.videoMetadata.height);
+                meta.put("fileSize", request.videoMetadata.fileSize);
+                json.put("videoMetadata", meta);
+            }
+        }
+
+        // Ghi draft.json cuối cùng: worker coi job hợp lệ khi file này tồn tại
+        File tmp = new File(dir, DRAFT_FILE + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (!tmp.renameTo(new File(dir, DRAFT_FILE))) {
+            throw new java.io.IOException("Cannot write draft for " + post.postId);
+        }
+    }
+
+    /** Đọc bản nháp (null nếu không còn) */
+    static Draft loadDraft(Context context, String postId) {
+        File dir = draftDir(context, postId);
+        File draftFile = new File(dir, DRAFT_FILE);
+        if (!draftFile.exists()) return null;
+        try {
+            JSONObject json = new JSONObject(new String(readAll(draftFile), StandardCharsets.UTF_8));
+            Draft draft = new Draft();
+            draft.dir = dir;
+
+            Post post = new Post();
+            post.postId = json.getString("postId");
+            post.groupId = json.getString("groupId");
+            post.authorId = json.getString("authorId");
+            post.content = json.optString("content", "");
+            post.imageUrls = new ArrayList<>();
+            draft.post = post;
+
+            JSONArray images = json.optJSONArray("images");
+            if (images != null) {
+                for (int i = 0; i < images.length(); i++) {
+                    draft.imagePaths.add(new File(dir, images.getString(i)).getAbsolutePath());
+                }
+            }
+
+            File video = new File(dir, VIDEO_FILE);
+            if (video.exists()) {
+                draft.videoFile = video;
+                File thumb = new File(dir, THUMB_FILE);
+                if (thumb.exists()) draft.thumbJpeg = readAll(thumb);
+                JSONObject meta = json.optJSONObject("videoMetadata");
+                if (meta != null) {
+                    draft.videoMetadata = new PostRepository.VideoMetadata(
+                            meta.optLong("duration"), meta.optInt("width"),
+                            meta.optInt("height"), meta.optLong("fileSize"));
+                }
+            }
+            return draft;
+        } catch (Exception e) {
+            Log.e(TAG, "Cannot read draft " + postId, e);
+            return null;
+        }
+    }
+
+    static void deleteDraft(Context context, String postId) {
+        deleteRecursive(draftDir(context, postId));
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursive(child);
+        }
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Cannot delete " + file);
+        }
+    }
+
+    private static void copy(InputStream in, File dst) throws java.io.IOException {
+        try (OutputStream out = new FileOutputStream(dst)) {
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+        }
+    }
+
+    private static byte[] readAll(File file) throws java.io.IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.nanaclu.data.repository;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.pm.ServiceInfo;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.work.Data;
+import androidx.work.ForegroundInfo;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.nanaclu.R;
+import com.example.nanaclu.data.model.Post;
+import com.example.nanaclu.utils.HlsPackager;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job đăng bài nền: đọc bản nháp của PostPublishQueue, chạy PostPublisher
+ * (nén ảnh, upload song song, ghi Post), sau đó đóng gói HLS cho video nếu cần.
+ * Tiến độ hiển thị qua notification foreground; lỗi mạng/Storage sẽ được retry
+ * với backoff, tối đa MAX_ATTEMPTS lần.
+ */
+public class PostPublishWorker extends Worker {
+    private static final String TAG = "PostPublishWorker";
+    private static final String CHANNEL_ID = "post_publish";
+    private static final int MAX_ATTEMPTS = 5;
+    public static final String KEY_PROGRESS = "progress";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private int notificationId;
+    private int lastNotifiedPercent = -1;
+
+    /** Chờ kết quả của API callback (chạy trên main thread) từ worker thread */
+    private class Waiter<T> {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile T result;
+        private volatile Exception error;
+
+        void succeed(T value) {
+            result = value;
+            latch.countDown();
+        }
+
+        void fail(Exception e) {
+            error = e;
+            latch.countDown();
+        }
+
+        T await() throws Exception {
+            while (!latch.await(1, TimeUnit.SECONDS)) {
+                if (isStopped()) throw new CancellationException("Work stopped");
+            }
+            if (error != null) throw error;
+            return result;
+        }
+    }
+
+    public PostPublishWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        String postId = getInputData().getString(PostPublishQueue.KEY_POST_ID);
+        PostPublishQueue.Draft draft = postId != null ? PostPublishQueue.loadDraft(context, postId) : null;
+        if (draft == null) {
+            Log.w(TAG, "Draft not found: " + postId);
+            return Result.failure();
+        }
+        notificationId = postId.hashCode();
+        createChannel(context);
+        try {
+            setForegroundAsync(createForegroundInfo(0)).get();
+        } catch (Exception e) {
+            // Không được phép chạy foreground (app ở nền) -> vẫn chạy như job thường
+            Log.w(TAG, "Cannot promote to foreground", e);
+        }
+
+        Post created;
+        try {
+            // Lần chạy trước có thể đã ghi Post nhưng chưa kịp báo thành công
+            Post existing = findExisting(draft.post);
+            created = existing != null ? existing : publish(draft);
+        } catch (Exception e) {
+            Log.e(TAG, "Publish attempt " + getRunAttemptCount() + " failed for " + postId, e);
+            if (isStopped() || getRunAttemptCount() + 1 < MAX_ATTEMPTS) {
+                return Result.retry();
+            }
+            PostPublishQueue.deleteDraft(context, postId);
+            notifyFinished(context, false);
+            return Result.failure();
+        }
+
+        if (draft.videoFile != null) {
+            try {
+                packageHls(created, draft.videoFile);
+            } catch (Exception e) {
+                // HLS chỉ là tối ưu phát lại, post vẫn phát bằng MP4 gốc
+                Log.e(TAG, "HLS packaging failed for " + postId, e);
+            }
+        }
+        PostPublishQueue.deleteDraft(context, postId);
+        notifyFinished(context, true);
+        return Result.success();
+    }
+
+    private Post findExisting(Post draftPost) throws Exception {
+        Waiter<Post> waiter = new Waiter<>();
+        new PostRepository(db).findPublishedPost(draftPost.groupId, draftPost.postId,
+                new PostRepository.PostCallback() {
+                    @Override
+                    public void onSuccess(Post post) {
+                        waiter.succeed(post);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        waiter.fail(e);
+                    }
+                });
+        return waiter.await();
+    }
+
+    private Post publish(PostPublishQueue.Draft draft) throws Exception {
+        Waiter<Post> waiter = new Waiter<>();
+        PostPublisher.Request request = draft.toRequest();
+        mainHandler.post(() -> new PostPublisher(getApplicationContext(), db).publish(request,
+                new PostPublisher.PublishCallback() {
+                    @Override
+                    public void onProgress(int percent) {
+                        reportProgress(percent);
+                    }
+
+                    @Override
+                    public void onSuccess(Post post) {
+                        waiter.succeed(post);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        waiter.fail(e);
+                    }
+                }));
+        return waiter.await();
+    }
+
+    /**
+     * Đóng gói HLS ladder từ bản sao video cục bộ rồi gắn master playlist vào post
+     */
+    private void packageHls(Post post, File videoFile) throws Exception {
+        if (!HlsPackager.shouldPackage(post.videoDurationMs, post.videoWidth, post.videoHeight)) {
+            return;
+        }
+        PostRepository repo = new PostRepository(db);
+        File outputDir = new File(getApplicationContext().getCacheDir(), "hls_" + post.postId);
+        Waiter<Void> waiter = new Waiter<>();
+        new HlsPackager(getApplicationContext()).packageVideo(
+                Uri.fromFile(videoFile),
+                HlsPackager.ladderFor(post.videoWidth, post.videoHeight),
+                outputDir,
+                new HlsPackager.PackageCallback() {
+                    @Override
+                    public void onSuccess(List<HlsPackager.RenditionOutput> outputs) {
+                        repo.uploadHlsPackage(outputs, post.groupId, post.postId,
+                                masterUrl -> repo.attachVideoHls(post.groupId, post.postId, masterUrl,
+                                        aVoid -> waiter.succeed(null), waiter::fail),
+                                waiter::fail);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        waiter.fail(e);
+                    }
+                });
+        try {
+            waiter.await();
+        } finally {
+            HlsPackager.deleteOutput(outputDir);
+        }
+    }
+
+    private void reportProgress(int percent) {
+        // Cập nhật notification mỗi 5% để không spam NotificationManager
+        if (percent < 100 && percent - lastNotifiedPercent < 5) return;
+        lastNotifiedPercent = percent;
+        setProgressAsync(new Data.Builder().putInt(KEY_PROGRESS, percent).build());
+        setForegroundAsync(createForegroundInfo(percent));
+    }
+
+    private ForegroundInfo createForegroundInfo(int percent) {
+        android.app.Notification notification = new NotificationCompat.Builder(getApplicationContext(), CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_send)
+                .setContentTitle("Đang đăng bài")
+                .setContentText("Đang tải lên: " + percent + "%")
+                .setProgress(100, percent, percent == 0)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setSilent(true)
+                .build();
+        return new ForegroundInfo(notificationId, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+    }
+
+    private void notifyFinished(Context context, boolean success) {
+        NotificationManagerCompat manager = NotificationManagerCompat.from(context);
+        if (!manager.areNotificationsEnabled()) return;
+        android.app.Notification notification = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_send)
+                .setContentTitle(success ? "Đã đăng bài" : "Đăng bài thất bại")
+                .setContentText(success ? "Bài đăng của bạn đã được gửi"
+                        : "Không thể tải lên bài đăng, vui lòng thử lại")
+                .setAutoCancel(true)
+                .build();
+        try {
+            // Id khác notification foreground để không bị gỡ cùng service
+            manager.notify(notificationId + 1, notification);
+        } catch (SecurityException e) {
+            Log.w(TAG, "Notification permission denied", e);
+        }
+    }
+
+    private static void createChannel(Context context) {
+        NotificationManager manager = context.getSystemService(NotificationManager.class);
+        if (manager == null || manager.getNotificationChannel(CHANNEL_ID) != null) return;
+        NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Đăng bài",
+                NotificationManager.IMPORTANCE_LOW);
+        channel.setDescription("Tiến độ tải lên bài đăng");
+        manager.createNotificationChannel(channel);
+    }
+}
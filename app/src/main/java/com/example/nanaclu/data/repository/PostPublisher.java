@@ -0,0 +1,350 @@
+package com.example.nanaclu.data.repository;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.nanaclu.data.model.Group;
+import com.example.nanaclu.data.model.Member;
+import com.example.nanaclu.data.model.Post;
+import com.example.nanaclu.utils.NetworkUtils;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Điều phối đăng bài có media: ảnh, video và thumbnail được upload song song
+ * (giới hạn số upload đồng thời theo băng thông), Post chỉ được ghi vào Firestore
+ * một lần khi đã có đủ URL. Nếu bất kỳ bước nào lỗi, các file đã upload sẽ bị xóa
+ * để không để lại blob mồ côi trên Storage.
+ *
+ * Mỗi instance dùng cho một lần đăng bài. Callback chạy trên main thread.
+ */
+public class PostPublisher {
+    private static final String TAG = "PostPublisher";
+    private static final ExecutorService encodeExecutor = Executors.newFixedThreadPool(2);
+
+    public interface PublishCallback {
+        void onProgress(int percent);
+        void onSuccess(Post post);
+        void onError(Exception e);
+    }
+
+    /** Bản nháp bài viết + media cục bộ */
+    public static class Request {
+        public final Post post;
+        public final List<String> imagePaths;
+        public final Uri videoUri;
+        public final byte[] videoThumbJpeg;
+        public final PostRepository.VideoMetadata videoMetadata;
+
+        public Request(Post post, List<String> imagePaths, Uri videoUri,
+                       byte[] videoThumbJpeg, PostRepository.VideoMetadata videoMetadata) {
+            this.post = post;
+            this.imagePaths = imagePaths != null ? imagePaths : new ArrayList<>();
+            this.videoUri = videoUri;
+            this.videoThumbJpeg = videoThumbJpeg;
+            this.videoMetadata = videoMetadata;
+        }
+    }
+
+    /** Một file cần upload */
+    private static class UploadJob {
+        final StorageReference ref;
+        final byte[] bytes;
+        final Uri fileUri;
+        final java.util.function.Consumer<String> onUrl;
+        long transferred;
+        long total;
+        UploadTask task;
+
+        UploadJob(StorageReference ref, byte[] bytes, Uri fileUri, java.util.function.Consumer<String> onUrl) {
+            this.ref = ref;
+            this.bytes = bytes;
+            this.fileUri = fileUri;
+            this.onUrl = onUrl;
+            this.total = bytes != null ? bytes.length : 0;
+        }
+    }
+
+    private final Context context;
+    private final PostRepository postRepository;
+    private final GroupRepository groupRepository;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Trạng thái chỉ được truy cập trên main thread
+    private final Deque<UploadJob> queue = new ArrayDeque<>();
+    private final List<UploadJob> allJobs = new ArrayList<>();
+    private final List<StorageReference> uploaded = new ArrayList<>();
+    private int inFlight = 0;
+    private int maxConcurrent = 1;
+    private boolean encodingDone = false;
+    private boolean failed = false;
+    private int lastPercent = 0;
+    private Request request;
+    private PublishCallback callback;
+    private String[] imageUrls = new String[0];
+    private String videoUrl;
+    private String thumbUrl;
+
+    public PostPublisher(Context context, FirebaseFirestore db) {
+        this.context = context.getApplicationContext();
+        this.postRepository = new PostRepository(db);
+        this.groupRepository = new GroupRepository(db);
+    }
+
+    public void publish(Request request, PublishCallback callback) {
+        this.request = request;
+        this.callback = callback;
+        Post post = request.post;
+        if (post.postId == null || post.postId.isEmpty()) {
+            post.postId = UUID.randomUUID().toString();
+        }
+        maxConcurrent = NetworkUtils.getUploadConcurrency(context);
+
+        // Video + thumbnail bắt đầu upload ngay, trong khi ảnh đang được nén
+        if (request.videoUri != null) {
+            if (request.videoThumbJpeg == null) {
+                fail(new IllegalArgumentException("Video thumbnail is required"));
+                return;
+            }
+            enqueue(new UploadJob(postRepository.videoThumbStorageRef(post.groupId, post.postId),
+                    request.videoThumbJpeg, null, url -> thumbUrl = url));
+            enqueue(new UploadJob(postRepository.videoStorageRef(post.groupId, post.postId),
+                    null, request.videoUri, url -> videoUrl = url));
+        }
+
+        if (request.imagePaths.isEmpty()) {
+            encodingDone = true;
+            maybeCommit();
+            return;
+        }
+
+        List<String> paths = new ArrayList<>(request.imagePaths);
+        encodeExecutor.execute(() -> {
+            List<byte[]> encoded = new ArrayList<>();
+            for (String path : paths) {
+                byte[] data = encodeImage(path);
+                if (data != null) encoded.add(data);
+            }
+            mainHandler.post(() -> {
+                if (failed) return;
+                imageUrls = new String[encoded.size()];
+                long ts = System.currentTimeMillis();
+                for (int i = 0; i < encoded.size(); i++) {
+                    final int index = i;
+                    String fileName = "image_" + ts + "_" + i + ".jpg";
+                    enqueue(new UploadJob(postRepository.postImageStorageRef(fileName),
+                            encoded.get(i), null, url -> imageUrls[index] = url));
+                }
+                encodingDone = true;
+                maybeCommit();
+            });
+        });
+    }
+
+    private void enqueue(UploadJob job) {
+        allJobs.add(job);
+        queue.add(job);
+        pump();
+    }
+
+    private void pump() {
+        while (!failed && inFlight < maxConcurrent && !queue.isEmpty()) {
+            start(queue.poll());
+        }
+    }
+
+    private void start(UploadJob job) {
+        inFlight++;
+        job.task = job.bytes != null ? job.ref.putBytes(job.bytes) : job.ref.putFile(job.fileUri);
+        job.task.addOnProgressListener(snapshot -> {
+            job.transferred = snapshot.getBytesTransferred();
+            if (snapshot.getTotalByteCount() > 0) job.total = snapshot.getTotalByteCount();
+            reportProgress();
+        });
+        job.task.continueWithTask(t -> {
+            if (!t.isSuccessful()) throw t.getException();
+            return job.ref.getDownloadUrl();
+        }).addOnCompleteListener(t -> {
+            inFlight--;
+            if (t.isSuccessful()) {
+                uploaded.add(job.ref);
+                if (failed) {
+                    // Upload hoàn tất sau khi đã lỗi -> xóa luôn
+                    deleteQuietly(job.ref);
+                    return;
+                }
+                job.onUrl.accept(t.getResult().toString());
+                pump();
+                maybeCommit();
+            } else if (!failed) {
+                fail(t.getException() != null ? t.getException() : new Exception("Upload failed"));
+            }
+        });
+    }
+
+    private void reportProgress() {
+        long transferred = 0, total = 0;
+        for (UploadJob j : allJobs) {
+            transferred += j.transferred;
+            total += j.total;
+        }
+        if (total <= 0) return;
+        int percent = (int) (transferred * 100 / total);
+        if (percent > lastPercent) {
+            lastPercent = percent;
+            callback.onProgress(percent);
+        }
+    }
+
+    private void maybeCommit() {
+        if (failed || !encodingDone || inFlight > 0 || !queue.isEmpty()) return;
+
+        Post post = request.post;
+        post.imageUrls = new ArrayList<>(Arrays.asList(imageUrls));
+        if (request.videoUri != null) {
+            post.hasVideo = true;
+            post.videoUrl = videoUrl;
+            post.videoThumbUrl = thumbUrl;
+            if (request.videoMetadata != null) {
+                post.videoDurationMs = request.videoMetadata.duration;
+                post.videoWidth = request.videoMetadata.width;
+                post.videoHeight = request.videoMetadata.height;
+            }
+        }
+
+        routePostCreation(post, new PostRepository.PostCallback() {
+            @Override
+            public void onSuccess(Post createdPost) {
+                callback.onSuccess(createdPost);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                fail(e);
+            }
+        });
+    }
+
+    /** Tạo post trực tiếp hoặc pending tùy cài đặt duyệt bài của group và vai trò người đăng */
+    private void routePostCreation(Post post, PostRepository.PostCallback postCallback) {
+        // Đọc mới: bật duyệt bài ngay trước khi đăng vẫn phải đưa post vào hàng chờ
+        groupRepository.getGroupFresh(post.groupId, new GroupRepository.GroupCallback() {
+            @Override
+            public void onSuccess(Group group) {
+                // If approval required and current user is not owner/admin -> pending
+                if (group != null && group.requirePostApproval) {
+                    groupRepository.getMemberById(post.groupId, post.authorId, new GroupRepository.MemberCallback() {
+                        @Override
+                        public void onSuccess(Member member) {
+                            boolean elevated = member != null && ("owner".equals(member.role) || "admin".equals(member.role));
+                            if (elevated) {
+                                postRepository.createPost(post, postCallback);
+                            } else {
+                                postRepository.createPendingPost(post, postCallback);
+                            }
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            // Fallback: treat as normal user
+                            postRepository.createPendingPost(post, postCallback);
+                        }
+                    });
+                } else {
+                    postRepository.createPost(post, postCallback);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // If cannot load group, fallback to direct create to avoid blocking user
+                postRepository.createPost(post, postCallback);
+            }
+        });
+    }
+
+    private void fail(Exception e) {
+        if (failed) return;
+        failed = true;
+        queue.clear();
+        for (UploadJob j : allJobs) {
+            if (j.task != null && j.task.isInProgress()) j.task.cancel();
+        }
+        for (StorageReference ref : uploaded) deleteQuietly(ref);
+        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork(TAG, e);
+        callback.onError(e);
+    }
+
+    private static void deleteQuietly(StorageReference ref) {
+        ref.delete().addOnFailureListener(e -> Log.w(TAG, "Cleanup failed: " + ref.getPath(), e));
+    }
+
+    /**
+     * Nén ảnh trước khi upload: cạnh dài tối đa 1600px, JPEG dưới ~1MB
+     */
+    static byte[] encodeImage(String imagePath) {
+        try {
+            final int maxDimension = 1600; // giới hạn cạnh dài
+            final int targetMaxBytes = 1024 * 1024; // 1MB
+
+            // 1) Decode kích thước ban đầu
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(imagePath, bounds);
+            int srcW = bounds.outWidth;
+            int srcH = bounds.outHeight;
+
+            // 2) Tính inSampleSize sơ bộ để cạnh dài ~= maxDimension
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inSampleSize = 1;
+            int longer = Math.max(srcW, srcH);
+            while (longer / opts.inSampleSize > maxDimension) {
+                opts.inSampleSize *= 2;
+            }
+
+            // 3) Decode bitmap với inSampleSize
+            Bitmap bitmap = BitmapFactory.decodeFile(imagePath, opts);
+            if (bitmap == null) return null;
+
+            // 4) Scale chính xác về maxDimension nếu vẫn vượt
+            int bw = bitmap.getWidth();
+            int bh = bitmap.getHeight();
+            int curLonger = Math.max(bw, bh);
+            if (curLonger > maxDimension) {
+                float scale = (float) maxDimension / (float) curLonger;
+                bitmap = Bitmap.createScaledBitmap(bitmap, Math.round(bw * scale), Math.round(bh * scale), true);
+            }
+
+            // 5) Nén JPEG chất lượng động để đạt dưới targetMaxBytes
+            int quality = 90;
+            byte[] jpegBytes;
+            do {
+                ByteArrayOutputStream jpegOut = new ByteArrayOutputStream();
+                bitmap.compress(Bitmap.CompressFormat.JPEG, quality, jpegOut);
+                jpegBytes = jpegOut.toByteArray();
+                quality -= 5;
+            } while (jpegBytes.length > targetMaxBytes && quality >= 60);
+
+            return jpegBytes;
+        } catch (Exception e) {
+            Log.e(TAG, "Encode image failed: " + imagePath, e);
+            return null;
+        }
+    }
+}
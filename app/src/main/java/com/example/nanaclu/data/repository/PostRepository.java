@@ -102,6 +102,7 @@ public class PostRepository {
             post.createdAt = currentTime;
             post.likeCount = 0;
             post.commentCount = 0;
+            post.likesIndexed = true;
 
             // Create batch write for atomic operation
             WriteBatch batch = db.batch();
@@ -163,6 +164,7 @@ public class PostRepository {
             post.createdAt = currentTime;
             post.likeCount = 0;
             post.commentCount = 0;
+            post.likesIndexed = true;
 
             com.google.firebase.firestore.DocumentReference pendingRef = db.collection(GROUPS_COLLECTION)
                     .document(post.groupId)
@@ -211,78 +213,110 @@ public class PostRepository {
                 });
     }
 
-    /** Approve a pending post: move to posts and remove from pending */
-    public void approvePost(String groupId, String postId, PostCallback callback) {
-        com.google.firebase.firestore.DocumentReference pendingRef = db.collection(GROUPS_COLLECTION)
-                .document(groupId)
-                .collection(PENDING_POSTS_COLLECTION)
-                .document(postId);
-        pendingRef.get().addOnSuccessListener(doc -> {
-            if (!doc.exists()) {
-                callback.onError(new Exception("Pending post not found"));
-                return;
-            }
-            Post post = doc.toObject(Post.class);
-            if (post == null) {
-                callback.onError(new Exception("Invalid post data"));
-                return;
-            }
+    public interface ModerationCallback {
+        /** Gọi sau mỗi lô đã ghi xong: done / total postId đã xử lý */
+        void onProgress(int done, int total);
+        /** processed = số bài thực sự được duyệt / từ chối (bài không còn trong pending bị bỏ qua) */
+        void onComplete(int processed);
+        void onError(Exception e);
+    }
 
-            com.google.firebase.firestore.WriteBatch batch = db.batch();
-            com.google.firebase.firestore.DocumentReference postRef = db.collection(GROUPS_COLLECTION)
-                    .document(groupId)
-                    .collection(POSTS_COLLECTION)
-                    .document(postId);
-            batch.set(postRef, post);
-            batch.delete(pendingRef);
-            com.google.firebase.firestore.DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(groupId);
-            batch.update(groupRef, "postCount", com.google.firebase.firestore.FieldValue.increment(1));
-            batch.commit()
-                    .addOnSuccessListener(aVoid -> {
-                        callback.onSuccess(post);
-                        // Log approval
-                        LogRepository logRepo = new LogRepository(db);
-                        logRepo.logGroupAction(groupId, "post_approved", "post", postId, null, null);
-                    })
-                    .addOnFailureListener(e -> {
-                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
-                        callback.onError(e);
-                    });
-        }).addOnFailureListener(e -> {
-            com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
-            callback.onError(e);
+    // Mỗi bài tối đa 4 thao tác ghi (post, pending, log, notice) + 1 postCount mỗi lô, giới hạn 500 / batch
+    private static final int MODERATION_CHUNK_SIZE = 100;
+    // Giới hạn số phần tử của whereIn
+    private static final int WHERE_IN_LIMIT = 30;
+
+    /**
+     * Duyệt / từ chối nhiều bài chờ duyệt cùng lúc. Mỗi lô MODERATION_CHUNK_SIZE bài được đọc lại
+     * bằng whereIn theo documentId rồi ghi trong một batch: chép sang posts, xóa pending, log,
+     * thông báo cho tác giả (khi duyệt) và tăng postCount một lần cho cả lô.
+     * Các lô chạy lần lượt; lô đã commit vẫn giữ nguyên nếu lô sau lỗi.
+     */
+    public void moderatePendingPosts(String groupId, List<String> postIds, boolean approve,
+                                     ModerationCallback callback) {
+        List<String> ids = postIds != null ? new ArrayList<>(new java.util.LinkedHashSet<>(postIds)) : new ArrayList<>();
+        int total = ids.size();
+        Task<Integer> chain = Tasks.forResult(0);
+        for (int i = 0; i < total; i += MODERATION_CHUNK_SIZE) {
+            List<String> chunk = new ArrayList<>(ids.subList(i, Math.min(i + MODERATION_CHUNK_SIZE, total)));
+            int done = Math.min(i + MODERATION_CHUNK_SIZE, total);
+            chain = chain.continueWithTask(prev -> {
+                if (!prev.isSuccessful()) throw prev.getException();
+                int processed = prev.getResult();
+                return moderateChunk(groupId, chunk, approve).continueWith(t -> {
+                    if (!t.isSuccessful()) throw t.getException();
+                    callback.onProgress(done, total);
+                    return processed + t.getResult();
+                });
+            });
+        }
+        chain.addOnCompleteListener(t -> {
+            // postCount có thể đã đổi ở các lô đã commit
+            if (approve) GroupCache.getInstance().invalidate(groupId);
+            if (t.isSuccessful()) {
+                callback.onComplete(t.getResult());
+            } else {
+                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", t.getException());
+                callback.onError(t.getException());
+            }
         });
     }
 
-    /** Reject a pending post: delete from pending */
-    public void rejectPost(String groupId, String postId, PostCallback callback) {
-        com.google.firebase.firestore.DocumentReference pendingRef = db.collection(GROUPS_COLLECTION)
-                .document(groupId)
-                .collection(PENDING_POSTS_COLLECTION)
-                .document(postId);
-        pendingRef.get().addOnSuccessListener(doc -> {
-            if (!doc.exists()) {
-                callback.onError(new Exception("Pending post not found"));
-                return;
+    private Task<Integer> moderateChunk(String groupId, List<String> chunk, boolean approve) {
+        DocumentReference groupRef = db.collection(GROUPS_COLLECTION).document(groupId);
+        List<Task<com.google.firebase.firestore.QuerySnapshot>> reads = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i += WHERE_IN_LIMIT) {
+            reads.add(groupRef.collection(PENDING_POSTS_COLLECTION)
+                    .whereIn(com.google.firebase.firestore.FieldPath.documentId(),
+                            new ArrayList<>(chunk.subList(i, Math.min(i + WHERE_IN_LIMIT, chunk.size()))))
+                    .get());
+        }
+        return Tasks.<com.google.firebase.firestore.QuerySnapshot>whenAllSuccess(reads).continueWithTask(t -> {
+            if (!t.isSuccessful()) throw t.getException();
+            LogRepository logRepo = new LogRepository(db);
+            NoticeRepository noticeRepo = new NoticeRepository(db);
+            String actorId = FirebaseAuth.getInstance().getUid();
+            String actorName = currentUserName();
+
+            WriteBatch batch = db.batch();
+            int count = 0;
+            for (com.google.firebase.firestore.QuerySnapshot snapshot : t.getResult()) {
+                for (com.google.firebase.firestore.DocumentSnapshot doc : snapshot.getDocuments()) {
+                    String postId = doc.getId();
+                    if (approve) {
+                        Post post = doc.toObject(Post.class);
+                        if (post == null) continue;
+                        batch.set(groupRef.collection(POSTS_COLLECTION).document(postId), post);
+                        if (post.authorId != null && actorId != null && !post.authorId.equals(actorId)) {
+                            noticeRepo.addPostApproved(batch, groupId, postId, actorId, actorName, post.authorId);
+                        }
+                    }
+                    batch.delete(doc.getReference());
+                    Map<String, Object> logData = logRepo.buildGroupLog(groupId,
+                            approve ? "post_approved" : "post_rejected", "post", postId, null, null);
+                    if (logData != null) batch.set(logRepo.newGroupLogRef(groupId), logData);
+                    count++;
+                }
             }
-            Post post = doc.toObject(Post.class);
-            pendingRef.delete()
-                    .addOnSuccessListener(aVoid -> {
-                        callback.onSuccess(post);
-                        // Log rejection
-                        LogRepository logRepo = new LogRepository(db);
-                        logRepo.logGroupAction(groupId, "post_rejected", "post", postId, null, null);
-                    })
-                    .addOnFailureListener(e -> {
-                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
-                        callback.onError(e);
-                    });
-        }).addOnFailureListener(e -> {
-            com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
-            callback.onError(e);
+            if (count == 0) return Tasks.forResult(0);
+            if (approve) batch.update(groupRef, "postCount", FieldValue.increment(count));
+            int processed = count;
+            return batch.commit().continueWith(c -> {
+                if (!c.isSuccessful()) throw c.getException();
+                return processed;
+            });
         });
     }
 
+    /** Tên hiển thị của user hiện tại (UserCache trước, rồi FirebaseAuth) */
+    private static String currentUserName() {
+        com.google.firebase.auth.FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) return "";
+        com.example.nanaclu.data.model.User cached = UserCache.getInstance().get(user.getUid());
+        if (cached != null && cached.displayName != null && !cached.displayName.isEmpty()) return cached.displayName;
+        return user.getDisplayName() != null ? user.getDisplayName() : "";
+    }
+
     /**
      * Lấy tất cả posts của một group
      * @param groupId ID của group
@@ -764,56 +798,8 @@ public void removeUserFromLeftMembers(String groupId, String userId) {
             return;
         }
         
-        // First delete all comments
-        db.collection(GROUPS_COLLECTION)
-                .document(groupId)
-                .collection(POSTS_COLLECTION)
-                .document(postId)
-                .collection("comments")
-                .get()
-                .continueWithTask(commentsTask -> {
-                    if (!commentsTask.isSuccessful()) {
-                        return com.google.android.gms.tasks.Tasks.forException(commentsTask.getException());
-                    }
-                    
-                    // Delete all comments in batch
-                    com.google.firebase.firestore.WriteBatch batch = db.batch();
-                    for (com.google.firebase.firestore.DocumentSnapshot commentDoc : commentsTask.getResult()) {
-                        batch.delete(commentDoc.getReference());
-                    }
-                    
-                    return batch.commit();
-                })
-                .continueWithTask(commentsDeleteTask -> {
-                    // Then delete all likes
-                    return db.collection(GROUPS_COLLECTION)
-                            .document(groupId)
-                            .collection(POSTS_COLLECTION)
-                            .document(postId)
-                            .collection("likes")
-                            .get()
-                            .continueWithTask(likesTask -> {
-                                if (!likesTask.isSuccessful()) {
-                                    return com.google.android.gms.tasks.Tasks.forException(likesTask.getException());
-                                }
-                                
-                                // Delete all likes in batch
-                                com.google.firebase.firestore.WriteBatch batch = db.batch();
-                                for (com.google.firebase.firestore.DocumentSnapshot likeDoc : likesTask.getResult()) {
-                                    batch.delete(likeDoc.getReference());
-                                }
-                                
-                                return batch.commit();
-                            });
-                })
-                .continueWithTask(likesDeleteTask -> {
-                    // Finally delete the post itself
-                    return db.collection(GROUPS_COLLECTION)
-                            .document(groupId)
-                            .collection(POSTS_COLLECTION)
-                            .document(postId)
-                            .delete();
-                })
+        // Cascade xóa theo trang + song song, retry an toàn nếu bị gián đoạn (PostDeleter)
+        new PostDeleter(db).delete(groupId, postId)
                 .addOnSuccessListener(aVoid -> {
                     Post deletedPost = new Post();
                     deletedPost.postId = postId;
@@ -844,42 +830,195 @@ public void removeUserFromLeftMembers(String groupId, String userId) {
     }
 
     // ---------- Likes API ----------
+    // likeCount trên post là giá trị đã gộp; lượt like mới được cộng vào likeShards/{0..n-1}
+    // để không dồn mọi lượt ghi vào một document. Tổng thật = likeCount + tổng các shard.
+    public static final int LIKE_SHARD_COUNT = 10;
+    private static final String LIKE_SHARDS_COLLECTION = "likeShards";
+    // Gộp shard vào likeCount sau khoảng ~FOLD_EVERY lượt ghi
+    private static final int LIKE_FOLD_EVERY = 20;
+    private static final java.util.Random likeRandom = new java.util.Random();
+    // Index users/{uid}/likedPosts/{postId}: cho phép tra trạng thái like của cả trang post bằng một query
+    private static final String USERS_COLLECTION = "users";
+    private static final String LIKED_POSTS_COLLECTION = "likedPosts";
+    // Giới hạn số phần tử của whereIn
+    private static final int WHERE_IN_LIMIT = 30;
+    // Số index ghi mỗi batch khi bổ sung like cũ (giới hạn 500 thao tác)
+    private static final int LIKE_INDEX_BATCH = 450;
+
     public void likePost(String groupId, String postId, String userId,
                          com.google.android.gms.tasks.OnSuccessListener<Void> onSuccess,
                          com.google.android.gms.tasks.OnFailureListener onFailure) {
-        com.google.firebase.firestore.DocumentReference likeRef = db.collection(GROUPS_COLLECTION)
-                .document(groupId)
-                .collection(POSTS_COLLECTION)
-                .document(postId)
-                .collection(LIKES_COLLECTION)
-                .document(userId);
-
-        com.google.firebase.firestore.WriteBatch batch = db.batch();
-        batch.set(likeRef, new java.util.HashMap<>() {{ put("createdAt", System.currentTimeMillis()); }});
-        // tăng likeCount trên post
-        com.google.firebase.firestore.DocumentReference postRef = db.collection(GROUPS_COLLECTION)
-                .document(groupId).collection(POSTS_COLLECTION).document(postId);
-        batch.update(postRef, "likeCount", com.google.firebase.firestore.FieldValue.increment(1));
-        batch.commit().addOnSuccessListener(onSuccess).addOnFailureListener(onFailure);
+        writeLike(groupId, postId, userId, true, onSuccess, onFailure);
     }
 
     public void unlikePost(String groupId, String postId, String userId,
                            com.google.android.gms.tasks.OnSuccessListener<Void> onSuccess,
                            com.google.android.gms.tasks.OnFailureListener onFailure) {
-        com.google.firebase.firestore.DocumentReference likeRef = db.collection(GROUPS_COLLECTION)
-                .document(groupId)
-                .collection(POSTS_COLLECTION)
-                .document(postId)
-                .collection(LIKES_COLLECTION)
-                .document(userId);
+        writeLike(groupId, postId, userId, false, onSuccess, onFailure);
+    }
 
-        com.google.firebase.firestore.WriteBatch batch = db.batch();
-        batch.delete(likeRef);
-        // giảm likeCount trên post nhưng không để âm
-        com.google.firebase.firestore.DocumentReference postRef = db.collection(GROUPS_COLLECTION)
+    private void writeLike(String groupId, String postId, String userId, boolean like,
+                           com.google.android.gms.tasks.OnSuccessListener<Void> onSuccess,
+                           com.google.android.gms.tasks.OnFailureListener onFailure) {
+        DocumentReference postRef = db.collection(GROUPS_COLLECTION)
                 .document(groupId).collection(POSTS_COLLECTION).document(postId);
-        batch.update(postRef, "likeCount", com.google.firebase.firestore.FieldValue.increment(-1));
-        batch.commit().addOnSuccessListener(onSuccess).addOnFailureListener(onFailure);
+        DocumentReference likeRef = postRef.collection(LIKES_COLLECTION).document(userId);
+        DocumentReference shardRef = postRef.collection(LIKE_SHARDS_COLLECTION)
+                .document(String.valueOf(likeRandom.nextInt(LIKE_SHARD_COUNT)));
+        DocumentReference indexRef = db.collection(USERS_COLLECTION).document(userId)
+                .collection(LIKED_POSTS_COLLECTION).document(postId);
+
+        WriteBatch batch = db.batch();
+        if (like) {
+            long now = System.currentTimeMillis();
+            Map<String, Object> likeData = new HashMap<>();
+            likeData.put("createdAt", now);
+            batch.set(likeRef, likeData);
+            Map<String, Object> indexData = new HashMap<>();
+            indexData.put("groupId", groupId);
+            indexData.put("createdAt", now);
+            batch.set(indexRef, indexData);
+        } else {
+            batch.delete(likeRef);
+            batch.delete(indexRef);
+        }
+        Map<String, Object> shardData = new HashMap<>();
+        shardData.put("count", FieldValue.increment(like ? 1 : -1));
+        batch.set(shardRef, shardData, com.google.firebase.firestore.SetOptions.merge());
+        batch.commit()
+                .addOnSuccessListener(aVoid -> {
+                    if (likeRandom.nextInt(LIKE_FOLD_EVERY) == 0) foldLikeShards(groupId, postId);
+                    if (onSuccess != null) onSuccess.onSuccess(null);
+                })
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
+                    if (onFailure != null) onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Gộp các like shard vào likeCount của post (transaction đọc post + n shard).
+     * Chạy thưa để likeCount trong feed không lệch nhiều so với tổng thật.
+     */
+    public void foldLikeShards(String groupId, String postId) {
+        DocumentReference postRef = db.collection(GROUPS_COLLECTION)
+                .document(groupId).collection(POSTS_COLLECTION).document(postId);
+        db.runTransaction(transaction -> {
+            com.google.firebase.firestore.DocumentSnapshot postSnap = transaction.get(postRef);
+            if (!postSnap.exists()) return null;
+            List<DocumentReference> shardRefs = new ArrayList<>();
+            long sum = 0L;
+            for (int i = 0; i < LIKE_SHARD_COUNT; i++) {
+                DocumentReference ref = postRef.collection(LIKE_SHARDS_COLLECTION).document(String.valueOf(i));
+                com.google.firebase.firestore.DocumentSnapshot shard = transaction.get(ref);
+                Long c = shard.exists() ? shard.getLong("count") : null;
+                if (c != null && c != 0) {
+                    sum += c;
+                    shardRefs.add(ref);
+                }
+            }
+            if (sum == 0 && shardRefs.isEmpty()) return null;
+            Long current = postSnap.getLong("likeCount");
+            transaction.update(postRef, "likeCount", Math.max(0L, (current != null ? current : 0L) + sum));
+            for (DocumentReference ref : shardRefs) transaction.update(ref, "count", 0L);
+            return null;
+        }).addOnFailureListener(e -> Log.w("PostRepository", "Fold like shards failed: " + postId, e));
+    }
+
+    /**
+     * Tổng số like thật của post = likeCount (đã gộp) + các shard chưa gộp
+     */
+    public void getLikeCount(String groupId, String postId,
+                             com.google.android.gms.tasks.OnSuccessListener<Long> onSuccess,
+                             com.google.android.gms.tasks.OnFailureListener onFailure) {
+        DocumentReference postRef = db.collection(GROUPS_COLLECTION)
+                .document(groupId).collection(POSTS_COLLECTION).document(postId);
+        Task<com.google.firebase.firestore.DocumentSnapshot> postTask = postRef.get();
+        Task<com.google.firebase.firestore.QuerySnapshot> shardsTask = postRef.collection(LIKE_SHARDS_COLLECTION).get();
+        Tasks.whenAllSuccess(postTask, shardsTask)
+                .addOnSuccessListener(results -> {
+                    Long base = postTask.getResult().getLong("likeCount");
+                    long total = base != null ? base : 0L;
+                    for (com.google.firebase.firestore.DocumentSnapshot shard : shardsTask.getResult().getDocuments()) {
+                        Long c = shard.getLong("count");
+                        if (c != null) total += c;
+                    }
+                    onSuccess.onSuccess(Math.max(0L, total));
+                })
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
+                    if (onFailure != null) onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Trong danh sách postIds, trả về các post mà user đã like.
+     * Đọc index likedPosts theo lô WHERE_IN_LIMIT id, mỗi lô một query.
+     */
+    public void getLikedPostIds(String userId, List<String> postIds,
+                                com.google.android.gms.tasks.OnSuccessListener<Set<String>> onSuccess,
+                                com.google.android.gms.tasks.OnFailureListener onFailure) {
+        if (postIds == null || postIds.isEmpty()) {
+            onSuccess.onSuccess(new HashSet<>());
+            return;
+        }
+        CollectionReference indexRef = db.collection(USERS_COLLECTION).document(userId)
+                .collection(LIKED_POSTS_COLLECTION);
+        List<Task<com.google.firebase.firestore.QuerySnapshot>> tasks = new ArrayList<>();
+        for (int i = 0; i < postIds.size(); i += WHERE_IN_LIMIT) {
+            List<String> chunk = postIds.subList(i, Math.min(i + WHERE_IN_LIMIT, postIds.size()));
+            tasks.add(indexRef.whereIn(com.google.firebase.firestore.FieldPath.documentId(),
+                    new ArrayList<>(chunk)).get());
+        }
+        Tasks.whenAllSuccess(tasks)
+                .addOnSuccessListener(results -> {
+                    Set<String> liked = new HashSet<>();
+                    for (Object r : results) {
+                        for (com.google.firebase.firestore.DocumentSnapshot d
+                                : ((com.google.firebase.firestore.QuerySnapshot) r).getDocuments()) {
+                            liked.add(d.getId());
+                        }
+                    }
+                    onSuccess.onSuccess(liked);
+                })
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
+                    if (onFailure != null) onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Post tạo trước khi có index likedPosts (likesIndexed chưa bật): chép mọi like của post
+     * vào users/{uid}/likedPosts rồi đánh dấu likesIndexed. Chạy lại an toàn nếu lỗi giữa chừng.
+     */
+    public Task<Void> indexPostLikes(String groupId, String postId) {
+        DocumentReference postRef = db.collection(GROUPS_COLLECTION)
+                .document(groupId).collection(POSTS_COLLECTION).document(postId);
+        return postRef.collection(LIKES_COLLECTION).get().continueWithTask(likesTask -> {
+            if (!likesTask.isSuccessful()) throw likesTask.getException();
+            List<Task<Void>> commits = new ArrayList<>();
+            WriteBatch batch = db.batch();
+            int ops = 0;
+            for (com.google.firebase.firestore.DocumentSnapshot like : likesTask.getResult().getDocuments()) {
+                Map<String, Object> indexData = new HashMap<>();
+                indexData.put("groupId", groupId);
+                Long createdAt = like.getLong("createdAt");
+                indexData.put("createdAt", createdAt != null ? createdAt : System.currentTimeMillis());
+                batch.set(db.collection(USERS_COLLECTION).document(like.getId())
+                        .collection(LIKED_POSTS_COLLECTION).document(postId), indexData);
+                if (++ops == LIKE_INDEX_BATCH) {
+                    commits.add(batch.commit());
+                    batch = db.batch();
+                    ops = 0;
+                }
+            }
+            if (ops > 0) commits.add(batch.commit());
+            return Tasks.whenAll(commits);
+        }).continueWithTask(t -> {
+            if (!t.isSuccessful()) throw t.getException();
+            // Chỉ đánh dấu khi mọi index đã ghi xong
+            return postRef.update("likesIndexed", true);
+        });
     }
 
     public void isPostLiked(String groupId, String postId, String userId,
@@ -933,9 +1072,12 @@ public void removeUserFromLeftMembers(String groupId, String userId) {
             pollPost.createdAt = now;
             pollPost.likeCount = 0;
             pollPost.commentCount = 0;
+            pollPost.likesIndexed = true;
             if (pollPost.type == null || pollPost.type.isEmpty()) {
                 pollPost.type = "poll";
             }
+            // Phiếu được đếm qua ballots + pollShards (PollRepository)
+            pollPost.pollShardCount = PollRepository.DEFAULT_SHARD_COUNT;
 
             com.google.firebase.firestore.WriteBatch batch = db.batch();
 
@@ -988,109 +1130,6 @@ public void removeUserFromLeftMembers(String groupId, String userId) {
         }
     }
 
-    /**
-     * Vote / unvote cho một option trong poll bằng transaction
-     * Hỗ trợ cả single-choice (pollMultiple=false) và multiple-choice (true)
-     */
-    public void voteOption(String groupId, String postId, String optionId, String userId,
-                           com.google.android.gms.tasks.OnSuccessListener<Void> onSuccess,
-                           com.google.android.gms.tasks.OnFailureListener onFailure) {
-        com.google.firebase.firestore.DocumentReference postRef = db.collection(GROUPS_COLLECTION)
-                .document(groupId)
-                .collection(POSTS_COLLECTION)
-                .document(postId);
-
-        // B1: Lấy danh sách option refs trước (ngoài transaction)
-        postRef.collection("options").get()
-                .addOnSuccessListener(optionsSnap -> {
-                    java.util.List<com.google.firebase.firestore.DocumentReference> optionRefs = new java.util.ArrayList<>();
-                    for (com.google.firebase.firestore.DocumentSnapshot d : optionsSnap.getDocuments()) {
-                        optionRefs.add(d.getReference());
-                    }
-
-                    // B2: Thực thi transaction với danh sách optionRefs đã có
-                    db.runTransaction(transaction -> {
-                        com.google.firebase.firestore.DocumentSnapshot postSnap = transaction.get(postRef);
-                        Post post = postSnap.toObject(Post.class);
-                        if (post == null || post.type == null || !"poll".equals(post.type)) {
-                            throw new IllegalStateException("Not a poll post");
-                        }
-
-                        long now = System.currentTimeMillis();
-                        if (post.pollDeadline != null && now > post.pollDeadline) {
-                            throw new IllegalStateException("Poll has ended");
-                        }
-
-                        boolean multiple = post.pollMultiple != null && post.pollMultiple;
-
-                        com.google.firebase.firestore.DocumentReference optionRef = postRef.collection("options").document(optionId);
-
-                        if (!multiple) {
-                            // READS PHASE: read all vote docs first
-                            boolean hadSelected = false;
-                            java.util.List<com.google.firebase.firestore.DocumentReference> deleteVoteRefs = new java.util.ArrayList<>();
-                            java.util.List<com.google.firebase.firestore.DocumentReference> decOptionRefs = new java.util.ArrayList<>();
-                            for (com.google.firebase.firestore.DocumentReference optRef : optionRefs) {
-                                com.google.firebase.firestore.DocumentReference voteRef = optRef.collection("votes").document(userId);
-                                com.google.firebase.firestore.DocumentSnapshot voteSnap = transaction.get(voteRef);
-                                if (voteSnap.exists()) {
-                                    deleteVoteRefs.add(voteRef);
-                                    decOptionRefs.add(optRef);
-                                    if (optRef.getId().equals(optionId)) hadSelected = true;
-                                }
-                            }
-
-                            // WRITES PHASE: perform deletes and decrements
-                            for (int i = 0; i < deleteVoteRefs.size(); i++) {
-                                com.google.firebase.firestore.DocumentReference vRef = deleteVoteRefs.get(i);
-                                com.google.firebase.firestore.DocumentReference oRef = decOptionRefs.get(i);
-                                transaction.delete(vRef);
-                                transaction.update(oRef, "voteCount",
-                                        com.google.firebase.firestore.FieldValue.increment(-1));
-                            }
-
-                            // If previously not selected, add selection for clicked option
-                            if (!hadSelected) {
-                                com.google.firebase.firestore.DocumentReference myVoteRef = optionRef.collection("votes").document(userId);
-                                java.util.Map<String, Object> voteData = new java.util.HashMap<>();
-                                voteData.put("userId", userId);
-                                voteData.put("createdAt", now);
-                                transaction.set(myVoteRef, voteData);
-                                transaction.update(optionRef, "voteCount",
-                                        com.google.firebase.firestore.FieldValue.increment(1));
-                            }
-                        } else {
-                            // Multiple-choice: read once and toggle for selected option only
-                            com.google.firebase.firestore.DocumentReference myVoteRef = optionRef.collection("votes").document(userId);
-                            com.google.firebase.firestore.DocumentSnapshot myVoteSnap = transaction.get(myVoteRef);
-                            if (myVoteSnap.exists()) {
-                                transaction.delete(myVoteRef);
-                                transaction.update(optionRef, "voteCount",
-                                        com.google.firebase.firestore.FieldValue.increment(-1));
-                            } else {
-                                java.util.Map<String, Object> voteData = new java.util.HashMap<>();
-                                voteData.put("userId", userId);
-                                voteData.put("createdAt", now);
-                                transaction.set(myVoteRef, voteData);
-                                transaction.update(optionRef, "voteCount",
-                                        com.google.firebase.firestore.FieldValue.increment(1));
-                            }
-                        }
-
-                        return null;
-                    }).addOnSuccessListener(aVoid -> {
-                        if (onSuccess != null) onSuccess.onSuccess(null);
-                    }).addOnFailureListener(e -> {
-                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
-                        if (onFailure != null) onFailure.onFailure(e);
-                    });
-                })
-                .addOnFailureListener(e -> {
-                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
-                    if (onFailure != null) onFailure.onFailure(e);
-                });
-    }
-
     /**
      * Lắng nghe realtime danh sách options của poll (bao gồm voteCount)
      */
@@ -1166,8 +1205,7 @@ public void removeUserFromLeftMembers(String groupId, String userId) {
                                    com.google.firebase.storage.OnProgressListener<UploadTask.TaskSnapshot> progressListener,
                                    com.google.android.gms.tasks.OnSuccessListener<String> onSuccess,
                                    com.google.android.gms.tasks.OnFailureListener onFailure) {
-        String storagePath = "videos/group_posts/" + groupId + "/" + postId + "/video.mp4";
-        StorageReference videoRef = storage.getReference().child(storagePath);
+        StorageReference videoRef = videoStorageRef(groupId, postId);
         
         UploadTask uploadTask = videoRef.putFile(videoUri);
         
@@ -1193,8 +1231,7 @@ public void removeUserFromLeftMembers(String groupId, String userId) {
     public void uploadVideoThumbnail(byte[] jpegBytes, String groupId, String postId,
                                    com.google.android.gms.tasks.OnSuccessListener<String> onSuccess,
                                    com.google.android.gms.tasks.OnFailureListener onFailure) {
-        String storagePath = "videos/group_posts/" + groupId + "/" + postId + "/thumb.jpg";
-        StorageReference thumbRef = storage.getReference().child(storagePath);
+        StorageReference thumbRef = videoThumbStorageRef(groupId, postId);
         
         UploadTask uploadTask = thumbRef.putBytes(jpegBytes);
         uploadTask.addOnSuccessListener(taskSnapshot -> {
@@ -1204,8 +1241,140 @@ public void removeUserFromLeftMembers(String groupId, String userId) {
         }).addOnFailureListener(onFailure);
     }
 
+    /** Storage path của video bài viết: videos/group_posts/{groupId}/{postId}/video.mp4 */
+    public StorageReference videoStorageRef(String groupId, String postId) {
+        return storage.getReference().child("videos/group_posts/" + groupId + "/" + postId + "/video.mp4");
+    }
+
+    /** Storage path của thumbnail video: videos/group_posts/{groupId}/{postId}/thumb.jpg */
+    public StorageReference videoThumbStorageRef(String groupId, String postId) {
+        return storage.getReference().child("videos/group_posts/" + groupId + "/" + postId + "/thumb.jpg");
+    }
+
+    /** Storage path của ảnh bài viết: images/post_images/{fileName} */
+    public StorageReference postImageStorageRef(String fileName) {
+        return storage.getReference().child("images/post_images/" + fileName);
+    }
+
+    /**
+     * Upload HLS package (renditions + playlists) next to the post video
+     * Storage layout: videos/group_posts/{groupId}/{postId}/hls/{name}.mp4|.m3u8, master.m3u8
+     * @param outputs Renditions produced by HlsPackager
+     * @param onSuccess Success callback with master playlist URL
+     * @param onFailure Failure callback
+     */
+    public void uploadHlsPackage(List<com.example.nanaclu.utils.HlsPackager.RenditionOutput> outputs,
+                                 String groupId, String postId,
+                                 com.google.android.gms.tasks.OnSuccessListener<String> onSuccess,
+                                 com.google.android.gms.tasks.OnFailureListener onFailure) {
+        if (outputs == null || outputs.isEmpty()) {
+            onFailure.onFailure(new IllegalArgumentException("No HLS renditions to upload"));
+            return;
+        }
+        StorageReference hlsRef = storage.getReference()
+                .child("videos/group_posts/" + groupId + "/" + postId + "/hls");
+        com.google.firebase.storage.StorageMetadata mp4Meta = new com.google.firebase.storage.StorageMetadata.Builder()
+                .setContentType("video/mp4").build();
+        com.google.firebase.storage.StorageMetadata playlistMeta = new com.google.firebase.storage.StorageMetadata.Builder()
+                .setContentType("application/vnd.apple.mpegurl").build();
+
+        // 1. Upload media files of all renditions in parallel
+        List<Task<Uri>> mediaTasks = new ArrayList<>();
+        for (com.example.nanaclu.utils.HlsPackager.RenditionOutput o : outputs) {
+            StorageReference ref = hlsRef.child(o.rendition.name + ".mp4");
+            mediaTasks.add(ref.putFile(Uri.fromFile(o.mediaFile), mp4Meta)
+                    .continueWithTask(t -> {
+                        if (!t.isSuccessful()) throw t.getException();
+                        return ref.getDownloadUrl();
+                    }));
+        }
+
+        Tasks.<Uri>whenAllSuccess(mediaTasks)
+                .continueWithTask(mediaTask -> {
+                    if (!mediaTask.isSuccessful()) throw mediaTask.getException();
+                    // 2. Media playlists reference absolute download URLs (tokenized)
+                    List<Task<Uri>> playlistTasks = new ArrayList<>();
+                    List<Uri> mediaUrls = mediaTask.getResult();
+                    for (int i = 0; i < outputs.size(); i++) {
+                        com.example.nanaclu.utils.HlsPackager.RenditionOutput o = outputs.get(i);
+                        String playlist = com.example.nanaclu.utils.HlsPackager.buildMediaPlaylist(o, mediaUrls.get(i).toString());
+                        StorageReference ref = hlsRef.child(o.rendition.name + ".m3u8");
+                        playlistTasks.add(ref.putBytes(playlist.getBytes(java.nio.charset.StandardCharsets.UTF_8), playlistMeta)
+                                .continueWithTask(t -> {
+                                    if (!t.isSuccessful()) throw t.getException();
+                                    return ref.getDownloadUrl();
+                                }));
+                    }
+                    return Tasks.<Uri>whenAllSuccess(playlistTasks);
+                })
+                .continueWithTask(playlistTask -> {
+                    if (!playlistTask.isSuccessful()) throw playlistTask.getException();
+                    // 3. Master playlist
+                    List<String> playlistUrls = new ArrayList<>();
+                    for (Uri url : playlistTask.getResult()) playlistUrls.add(url.toString());
+                    String master = com.example.nanaclu.utils.HlsPackager.buildMasterPlaylist(outputs, playlistUrls);
+                    StorageReference masterRef = hlsRef.child("master.m3u8");
+                    return masterRef.putBytes(master.getBytes(java.nio.charset.StandardCharsets.UTF_8), playlistMeta)
+                            .continueWithTask(t -> {
+                                if (!t.isSuccessful()) throw t.getException();
+                                return masterRef.getDownloadUrl();
+                            });
+                })
+                .addOnSuccessListener(uri -> onSuccess.onSuccess(uri.toString()))
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Gắn master playlist HLS vào post (post có thể vẫn đang chờ duyệt trong pendingPosts)
+     */
+    public void attachVideoHls(String groupId, String postId, String hlsUrl,
+                               com.google.android.gms.tasks.OnSuccessListener<Void> onSuccess,
+                               com.google.android.gms.tasks.OnFailureListener onFailure) {
+        DocumentReference postRef = db.collection(GROUPS_COLLECTION).document(groupId)
+                .collection(POSTS_COLLECTION).document(postId);
+        DocumentReference pendingRef = db.collection(GROUPS_COLLECTION).document(groupId)
+                .collection(PENDING_POSTS_COLLECTION).document(postId);
+        postRef.get()
+                .continueWithTask(t -> {
+                    if (!t.isSuccessful()) throw t.getException();
+                    DocumentReference target = t.getResult().exists() ? postRef : pendingRef;
+                    return target.update("videoHlsUrl", hlsUrl);
+                })
+                .addOnSuccessListener(aVoid -> { if (onSuccess != null) onSuccess.onSuccess(null); })
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
+                    if (onFailure != null) onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Tìm post đã được ghi (trong posts hoặc pendingPosts). Trả về null nếu chưa có.
+     * Dùng khi retry đăng bài để không tạo bài trùng / tăng postCount hai lần.
+     */
+    public void findPublishedPost(String groupId, String postId, PostCallback callback) {
+        DocumentReference postRef = db.collection(GROUPS_COLLECTION).document(groupId)
+                .collection(POSTS_COLLECTION).document(postId);
+        DocumentReference pendingRef = db.collection(GROUPS_COLLECTION).document(groupId)
+                .collection(PENDING_POSTS_COLLECTION).document(postId);
+        postRef.get()
+                .continueWithTask(t -> {
+                    if (!t.isSuccessful()) throw t.getException();
+                    if (t.getResult().exists()) return Tasks.forResult(t.getResult());
+                    return pendingRef.get();
+                })
+                .addOnSuccessListener(doc -> callback.onSuccess(doc.exists() ? doc.toObject(Post.class) : null))
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostRepository", e);
+                    callback.onError(e);
+                });
+    }
+
     /**
      * Generate video thumbnail using MediaMetadataRetriever
+     * Chạy đồng bộ - trên UI nên dùng VideoMetadataService (background + cache theo Uri)
      * @param context Android context
      * @param videoUri URI of the video file
      * @return Bitmap thumbnail or null if failed
@@ -1249,6 +1418,7 @@ public void removeUserFromLeftMembers(String groupId, String userId) {
 
     /**
      * Get video metadata using MediaMetadataRetriever
+     * Chạy đồng bộ - trên UI nên dùng VideoMetadataService (background + cache theo Uri)
      * @param context Android context
      * @param videoUri URI of the video file
      * @return VideoMetadata object with duration, width, height, fileSize
@@ -1,24 +1,40 @@
 package com.example.nanaclu.data.repository;
 
 import com.example.nanaclu.data.model.ReportModel;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Repository xử lý các thao tác CRUD cho báo cáo post trong group
  * Lưu trữ dữ liệu trong subcollection: groups/{groupId}/reports/{reportId}
+ * Số report theo status được đếm sẵn ở groups/{groupId}/stats/reports (mỗi status một field),
+ * cập nhật cùng lúc với submit / đổi status / xóa report.
+ * Bộ đếm chỉ đáng tin khi có backfilled = true: group có report từ trước khi có bộ đếm sẽ có
+ * document chỉ chứa phần chênh lệch, nên lần đọc đầu đếm lại toàn bộ và ghi đè.
  */
 public class ReportRepository {
     private final FirebaseFirestore db;
     private static final String GROUPS = "groups";
     private static final String REPORTS = "reports"; // subcollection name
+    private static final String STATS = "stats";
+    private static final String REPORT_COUNTS_DOC = "reports";
+    private static final String BACKFILLED = "backfilled";
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final List<String> STATUSES = Arrays.asList("pending", "reviewed", "dismissed", "action_taken");
+    public static final List<String> HANDLED_STATUSES = Arrays.asList("reviewed", "dismissed", "action_taken");
 
     public ReportRepository(FirebaseFirestore db) {
         this.db = db;
@@ -29,14 +45,40 @@ public class ReportRepository {
         void onError(Exception e); 
     }
 
+    /** Một trang report, lastDoc dùng làm cursor cho trang kế tiếp */
+    public static class ReportPage {
+        public final List<ReportModel> items;
+        public final DocumentSnapshot lastDoc;
+        public final boolean hasMore;
+
+        public ReportPage(List<ReportModel> items, DocumentSnapshot lastDoc, boolean hasMore) {
+            this.items = items;
+            this.lastDoc = lastDoc;
+            this.hasMore = hasMore;
+        }
+    }
+
+    private DocumentReference countsRef(String groupId) {
+        return db.collection(GROUPS).document(groupId).collection(STATS).document(REPORT_COUNTS_DOC);
+    }
+
     /**
      * Thêm report vào groups/{groupId}/reports (auto id)
      * callback.onSuccess(reportId) khi thành công
      */
     public void submitGroupReport(String groupId, ReportModel report, Callback<String> cb) {
         CollectionReference coll = db.collection(GROUPS).document(groupId).collection(REPORTS);
-        coll.add(report.toMap())
-            .addOnSuccessListener(docRef -> cb.onSuccess(docRef.getId()))
+        DocumentReference docRef = coll.document();
+        Map<String, Object> data = report.toMap();
+
+        // Ghi report và tăng bộ đếm status trong cùng batch
+        WriteBatch batch = db.batch();
+        batch.set(docRef, data);
+        Map<String, Object> inc = new java.util.HashMap<>();
+        inc.put((String) data.get("status"), FieldValue.increment(1));
+        batch.set(countsRef(groupId), inc, SetOptions.merge());
+        batch.commit()
+            .addOnSuccessListener(a -> cb.onSuccess(docRef.getId()))
             .addOnFailureListener(cb::onError);
     }
 
@@ -65,22 +107,34 @@ public class ReportRepository {
     }
 
     /**
-     * Lấy báo cáo của 1 group, có thể filter theo status (null => all)
-     * callback.onSuccess(List<ReportModel>) với danh sách báo cáo
+     * Lấy một trang báo cáo của group (mới nhất trước), có thể filter theo các status (null => all)
+     * @param after lastDoc của trang trước, null để lấy trang đầu
+     * callback.onSuccess(ReportPage) với danh sách báo cáo và cursor trang sau
      */
-    public void fetchGroupReports(String groupId, String statusFilter, Callback<List<ReportModel>> cb) {
-        com.google.firebase.firestore.Query q = db.collection(GROUPS).document(groupId).collection(REPORTS)
-                .orderBy("timestamp", com.google.firebase.firestore.Query.Direction.DESCENDING);
-        if (statusFilter != null) q = q.whereEqualTo("status", statusFilter);
+    public void fetchGroupReports(String groupId, List<String> statuses, int pageSize,
+                                  DocumentSnapshot after, Callback<ReportPage> cb) {
+        com.google.firebase.firestore.Query q = db.collection(GROUPS).document(groupId).collection(REPORTS);
+        if (statuses != null && statuses.size() == 1) {
+            q = q.whereEqualTo("status", statuses.get(0));
+        } else if (statuses != null && !statuses.isEmpty()) {
+            q = q.whereIn("status", statuses);
+        }
+        q = q.orderBy("timestamp", com.google.firebase.firestore.Query.Direction.DESCENDING);
+        if (after != null) q = q.startAfter(after);
 
-        q.get().addOnSuccessListener((QuerySnapshot snaps) -> {
+        q.limit(pageSize).get().addOnSuccessListener((QuerySnapshot snaps) -> {
             List<ReportModel> list = new ArrayList<>();
             for (QueryDocumentSnapshot d : snaps) {
                 ReportModel report = ReportModel.fromMap(d.getId(), d.getData());
                 if (report != null) list.add(report);
             }
-            cb.onSuccess(list);
-        }).addOnFailureListener(cb::onError);
+            List<DocumentSnapshot> docs = snaps.getDocuments();
+            DocumentSnapshot last = docs.isEmpty() ? after : docs.get(docs.size() - 1);
+            cb.onSuccess(new ReportPage(list, last, docs.size() >= pageSize));
+        }).addOnFailureListener(e -> {
+            com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("ReportRepository", e);
+            cb.onError(e);
+        });
     }
 
     /**
@@ -108,7 +162,21 @@ public class ReportRepository {
         Map<String,Object> update = new java.util.HashMap<>();
         update.put("status", newStatus);
         if (extra != null) update.putAll(extra);
-        r.update(update).addOnSuccessListener(a -> cb.onSuccess(null)).addOnFailureListener(cb::onError);
+
+        // Đọc status cũ trong transaction để chuyển bộ đếm đúng một lần
+        db.runTransaction(transaction -> {
+            DocumentSnapshot snap = transaction.get(r);
+            if (!snap.exists()) throw new Exception("Report not found");
+            String oldStatus = snap.getString("status");
+            transaction.update(r, update);
+            if (!newStatus.equals(oldStatus)) {
+                Map<String, Object> counts = new java.util.HashMap<>();
+                if (oldStatus != null) counts.put(oldStatus, FieldValue.increment(-1));
+                counts.put(newStatus, FieldValue.increment(1));
+                transaction.set(countsRef(groupId), counts, SetOptions.merge());
+            }
+            return null;
+        }).addOnSuccessListener(a -> cb.onSuccess(null)).addOnFailureListener(cb::onError);
     }
 
     /**
@@ -116,23 +184,56 @@ public class ReportRepository {
      * callback.onSuccess(null) khi xóa thành công
      */
     public void deleteReport(String groupId, String reportId, Callback<Void> cb) {
-        db.collection(GROUPS).document(groupId).collection(REPORTS).document(reportId)
-            .delete().addOnSuccessListener(a -> cb.onSuccess(null)).addOnFailureListener(cb::onError);
+        DocumentReference r = db.collection(GROUPS).document(groupId).collection(REPORTS).document(reportId);
+        db.runTransaction(transaction -> {
+            DocumentSnapshot snap = transaction.get(r);
+            // Đã bị xóa trước đó -> không trừ bộ đếm lần nữa
+            if (!snap.exists()) return null;
+            String status = snap.getString("status");
+            transaction.delete(r);
+            if (status != null) {
+                Map<String, Object> counts = new java.util.HashMap<>();
+                counts.put(status, FieldValue.increment(-1));
+                transaction.set(countsRef(groupId), counts, SetOptions.merge());
+            }
+            return null;
+        }).addOnSuccessListener(a -> cb.onSuccess(null)).addOnFailureListener(cb::onError);
     }
 
     /**
-     * Đếm số lượng reports theo status trong một group
+     * Số lượng reports theo status trong một group, đọc từ document đếm (một lần đọc)
      * callback.onSuccess(Map<String, Integer>) với key là status, value là count
+     * Document đếm chưa có backfilled (chưa có, hoặc chỉ chứa phần chênh lệch từ các thao tác
+     * sau khi có bộ đếm) được đếm lại một lần từ reports và ghi đè.
      */
     public void getReportCountsByStatus(String groupId, Callback<Map<String, Integer>> cb) {
+        countsRef(groupId).get()
+            .addOnSuccessListener(doc -> {
+                if (!Boolean.TRUE.equals(doc.getBoolean(BACKFILLED))) {
+                    backfillReportCounts(groupId, cb);
+                    return;
+                }
+                Map<String, Integer> counts = emptyCounts();
+                Map<String, Object> data = doc.getData();
+                if (data != null) {
+                    for (Map.Entry<String, Object> entry : data.entrySet()) {
+                        if (entry.getValue() instanceof Number) {
+                            counts.put(entry.getKey(), Math.max(0, ((Number) entry.getValue()).intValue()));
+                        }
+                    }
+                }
+                cb.onSuccess(counts);
+            })
+            .addOnFailureListener(e -> {
+                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("ReportRepository", e);
+                cb.onError(e);
+            });
+    }
+
+    private void backfillReportCounts(String groupId, Callback<Map<String, Integer>> cb) {
         db.collection(GROUPS).document(groupId).collection(REPORTS).get()
             .addOnSuccessListener(snapshot -> {
-                Map<String, Integer> counts = new java.util.HashMap<>();
-                counts.put("pending", 0);
-                counts.put("reviewed", 0);
-                counts.put("dismissed", 0);
-                counts.put("action_taken", 0);
-                
+                Map<String, Integer> counts = emptyCounts();
                 for (QueryDocumentSnapshot doc : snapshot) {
                     String status = doc.getString("status");
                     if (status != null) {
@@ -140,8 +241,27 @@ public class ReportRepository {
                         counts.put(status, current != null ? current + 1 : 1);
                     }
                 }
+                // Ghi đè phần chênh lệch bằng số đếm đầy đủ; bỏ qua nếu lần đọc khác đã backfill xong
+                DocumentReference ref = countsRef(groupId);
+                db.runTransaction(transaction -> {
+                    if (!Boolean.TRUE.equals(transaction.get(ref).getBoolean(BACKFILLED))) {
+                        Map<String, Object> data = new java.util.HashMap<>(counts);
+                        data.put(BACKFILLED, true);
+                        transaction.set(ref, data);
+                    }
+                    return null;
+                }).addOnFailureListener(e ->
+                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("ReportRepository", e));
                 cb.onSuccess(counts);
             })
             .addOnFailureListener(cb::onError);
     }
+
+    private static Map<String, Integer> emptyCounts() {
+        Map<String, Integer> counts = new java.util.HashMap<>();
+        for (String status : STATUSES) {
+            counts.put(status, 0);
+        }
+        return counts;
+    }
 }
@@ -0,0 +1,139 @@
+package com.example.nanaclu.data.repository;
+
+import com.example.nanaclu.data.model.User;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache thông tin user (tên, avatar) dùng chung trong phiên.
+ * Các user chưa có trong cache được đọc theo lô bằng whereIn trên documentId
+ * thay vì đọc từng users/{id}; request trùng user đang tải sẽ chờ chung kết quả.
+ * Mọi hàm gọi trên main thread.
+ */
+public class UserCache {
+    private static final String USERS_COLLECTION = "users";
+    // Giới hạn số phần tử của whereIn
+    private static final int WHERE_IN_LIMIT = 30;
+
+    private static UserCache instance;
+
+    private final FirebaseFirestore db;
+    private final Map<String, User> users = new HashMap<>();
+    // Đã đọc thành công nhưng không có document (user đã xóa), khác với đọc lỗi
+    private final Set<String> notFound = new HashSet<>();
+    // userId -> các callback đang chờ user đó
+    private final Map<String, List<Runnable>> inFlight = new HashMap<>();
+
+    private UserCache() {
+        db = FirebaseFirestore.getInstance();
+    }
+
+    public static synchronized UserCache getInstance() {
+        if (instance == null) {
+            instance = new UserCache();
+        }
+        return instance;
+    }
+
+    /** User đã có trong cache (null nếu chưa tải hoặc không tồn tại) */
+    public User get(String userId) {
+        return userId != null ? users.get(userId) : null;
+    }
+
+    /** true nếu lần đọc gần nhất xác nhận user không tồn tại (không tính đọc lỗi) */
+    public boolean isNotFound(String userId) {
+        return userId != null && notFound.contains(userId);
+    }
+
+    /** Cập nhật cache khi user sửa profile */
+    public void put(User user) {
+        if (user != null && user.userId != null) {
+            users.put(user.userId, user);
+            notFound.remove(user.userId);
+        }
+    }
+
+    /**
+     * Đảm bảo các user trong danh sách đã có trong cache rồi gọi onLoaded.
+     * Lỗi đọc không chặn UI: onLoaded vẫn được gọi, user lỗi sẽ không có trong cache.
+     */
+    public void resolve(Collection<String> userIds, Runnable onLoaded) {
+        Set<String> missing = new LinkedHashSet<>();
+        Set<String> waiting = new HashSet<>();
+        for (String id : userIds) {
+            if (id == null || id.isEmpty() || users.containsKey(id)) continue;
+            if (inFlight.containsKey(id)) {
+                waiting.add(id);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty() && waiting.isEmpty()) {
+            onLoaded.run();
+            return;
+        }
+
+        // Đếm số nhóm cần chờ: mỗi user đang tải bởi request khác + lô mới (nếu có)
+        int[] remaining = {waiting.size() + (missing.isEmpty() ? 0 : 1)};
+        Runnable done = () -> {
+            if (--remaining[0] == 0) onLoaded.run();
+        };
+        for (String id : waiting) {
+            inFlight.get(id).add(done);
+        }
+        if (!missing.isEmpty()) {
+            for (String id : missing) {
+                inFlight.put(id, new ArrayList<>());
+            }
+            fetch(new ArrayList<>(missing), done);
+        }
+    }
+
+    private void fetch(List<String> ids, Runnable done) {
+        List<Task<QuerySnapshot>> tasks = new ArrayList<>();
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += WHERE_IN_LIMIT) {
+            List<String> chunk = new ArrayList<>(ids.subList(i, Math.min(i + WHERE_IN_LIMIT, ids.size())));
+            chunks.add(chunk);
+            tasks.add(db.collection(USERS_COLLECTION).whereIn(FieldPath.documentId(), chunk).get());
+        }
+        Tasks.whenAllComplete(tasks).addOnCompleteListener(all -> {
+            for (int i = 0; i < tasks.size(); i++) {
+                Task<QuerySnapshot> t = tasks.get(i);
+                if (!t.isSuccessful()) {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("UserCache", t.getException());
+                    continue;
+                }
+                for (DocumentSnapshot doc : t.getResult().getDocuments()) {
+                    User user = doc.toObject(User.class);
+                    if (user == null) continue;
+                    if (user.userId == null) user.userId = doc.getId();
+                    users.put(doc.getId(), user);
+                }
+                for (String id : chunks.get(i)) {
+                    if (!users.containsKey(id)) notFound.add(id);
+                }
+            }
+            List<Runnable> waiters = new ArrayList<>();
+            for (String id : ids) {
+                List<Runnable> list = inFlight.remove(id);
+                if (list != null) waiters.addAll(list);
+            }
+            done.run();
+            for (Runnable r : waiters) r.run();
+        });
+    }
+}
@@ -1,12 +1,72 @@
 package com.example.nanaclu.data.repository;
 
 import com.example.nanaclu.data.model.User;
+import com.example.nanaclu.utils.TextNormalizer;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class UserRepository {
     private FirebaseFirestore db;
     private static final String USERS_COLLECTION = "users";
+    private static final String STATS_COLLECTION = "stats";
+    private static final String SEARCH_MIGRATION_DOC = "userSearch";
+    public static final int SEARCH_PAGE_SIZE = 10;
+    // null = chưa đọc stats/userSearch; true thì không cần query displayName cho user cũ
+    private static Boolean searchBackfilled;
+    // Cache trang đầu của kết quả tìm kiếm theo từ khóa đã chuẩn hóa (dùng chung, main thread)
+    private static final int SEARCH_CACHE_SIZE = 50;
+    private static final long SEARCH_CACHE_MS = 60_000;
+    private static final Map<String, CachedSearch> searchCache =
+            new LinkedHashMap<String, CachedSearch>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedSearch> eldest) {
+                    return size() > SEARCH_CACHE_SIZE;
+                }
+            };
+
+    /**
+     * Một trang kết quả tìm kiếm, truyền lại vào searchUsers để lấy trang tiếp theo.
+     * Gồm con trỏ của query searchPrefixes và của query displayName (user chưa có trường tìm kiếm);
+     * query displayName chỉ chạy sau khi searchPrefixes đã hết kết quả.
+     */
+    public static class SearchPage {
+        public final List<User> users;
+        public final boolean hasMore;
+        final DocumentSnapshot lastDoc;
+        final boolean prefixHasMore;
+        final DocumentSnapshot legacyLastDoc;
+        final boolean legacyHasMore;
+
+        SearchPage(List<User> users, DocumentSnapshot lastDoc, boolean prefixHasMore,
+                   DocumentSnapshot legacyLastDoc, boolean legacyHasMore) {
+            this.users = users;
+            this.lastDoc = lastDoc;
+            this.prefixHasMore = prefixHasMore;
+            this.legacyLastDoc = legacyLastDoc;
+            this.legacyHasMore = legacyHasMore;
+            this.hasMore = prefixHasMore || legacyHasMore;
+        }
+
+        static SearchPage empty() {
+            return new SearchPage(new ArrayList<>(), null, false, null, false);
+        }
+    }
+
+    private static class CachedSearch {
+        final SearchPage page;
+        final long cachedAt;
+
+        CachedSearch(SearchPage page, long cachedAt) {
+            this.page = page;
+            this.cachedAt = cachedAt;
+        }
+    }
 
     public UserRepository(FirebaseFirestore db) {
         this.db = db;
@@ -57,9 +117,10 @@ public class UserRepository {
         
         db.collection(USERS_COLLECTION)
                 .document(userId)
-                .update("displayName", displayName.trim())
+                .update(withSearchFields(new HashMap<>(), displayName.trim()))
                 .addOnSuccessListener(aVoid -> {
                     android.util.Log.d("UserRepository", "Updated displayName for user: " + userId);
+                    syncMemberProfile(userId);
                     callback.onSuccess();
                 })
                 .addOnFailureListener(e -> {
@@ -75,8 +136,7 @@ public class UserRepository {
             return;
         }
 
-        java.util.Map<String, Object> updates = new java.util.HashMap<>();
-        updates.put("displayName", displayName.trim());
+        java.util.Map<String, Object> updates = withSearchFields(new java.util.HashMap<>(), displayName.trim());
         if (photoUrl != null && !photoUrl.isEmpty()) {
             updates.put("photoUrl", photoUrl);
         }
@@ -86,6 +146,7 @@ public class UserRepository {
                 .update(updates)
                 .addOnSuccessListener(aVoid -> {
                     android.util.Log.d("UserRepository", "Updated profile for user: " + userId);
+                    syncMemberProfile(userId);
                     callback.onSuccess();
                 })
                 .addOnFailureListener(e -> {
@@ -95,6 +156,217 @@ public class UserRepository {
                 });
     }
 
+    /** Tên / ảnh trên member document của các group được denormalized từ user, cần ghi lại khi đổi */
+    private void syncMemberProfile(String userId) {
+        new GroupRepository(db).syncMemberProfile(userId)
+                .addOnFailureListener(e -> com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("UserRepository", e));
+    }
+
+    /** Thêm displayName cùng các trường tìm kiếm (searchName, searchPrefixes) vào dữ liệu ghi */
+    public static Map<String, Object> withSearchFields(Map<String, Object> data, String displayName) {
+        String normalized = TextNormalizer.normalizeForSearch(displayName);
+        data.put("displayName", displayName);
+        data.put("searchName", normalized);
+        data.put("searchPrefixes", TextNormalizer.searchPrefixes(normalized));
+        return data;
+    }
+
+    /** Bổ sung trường tìm kiếm cho user tạo trước khi có searchPrefixes */
+    public void ensureSearchFields(String userId) {
+        db.collection(USERS_COLLECTION).document(userId).get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) throw task.getException();
+                    DocumentSnapshot doc = task.getResult();
+                    String displayName = doc.getString("displayName");
+                    if (!doc.exists() || doc.get("searchPrefixes") != null
+                            || displayName == null || displayName.isEmpty()) {
+                        return com.google.android.gms.tasks.Tasks.forResult((Void) null);
+                    }
+                    return doc.getReference().update(withSearchFields(new HashMap<>(), displayName));
+                })
+                .addOnFailureListener(e -> com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("UserRepository", e));
+    }
+
+    /**
+     * Tìm user theo tên, không phân biệt hoa thường / dấu, khớp đầu bất kỳ từ nào trong tên.
+     * Mỗi trang là một query arrayContains trên searchPrefixes. Chỉ khi admin chưa chạy
+     * AdminRepository.backfillUserSearchFields, sau khi query searchPrefixes đã hết kết quả
+     * mới chạy thêm query tiền tố displayName như trước để vẫn tìm được user cũ chưa có
+     * searchPrefixes. Trang đầu được cache theo từ khóa, và nếu một tiền tố của từ khóa
+     * đã có đủ kết quả (không còn trang sau) thì lọc lại từ đó.
+     * after = trang trước, null cho trang đầu.
+     */
+    public void searchUsers(String query, SearchPage after, SearchCallback callback) {
+        String normalized = TextNormalizer.normalizeForSearch(query);
+        String raw = query != null ? query.trim() : "";
+        if (normalized.isEmpty()) {
+            callback.onSuccess(SearchPage.empty());
+            return;
+        }
+        if (after == null) {
+            SearchPage cached = cachedSearch(normalized);
+            if (cached != null) {
+                callback.onSuccess(cached);
+                return;
+            }
+        }
+        if (after != null && !after.hasMore) {
+            callback.onSuccess(SearchPage.empty());
+            return;
+        }
+
+        isSearchBackfilled().addOnCompleteListener(flagTask -> {
+            boolean legacyAllowed = !(flagTask.isSuccessful() && Boolean.TRUE.equals(flagTask.getResult()))
+                    && !raw.isEmpty();
+            if (after != null && !after.prefixHasMore) {
+                // Đã hết kết quả searchPrefixes, trang tiếp theo chỉ còn query cũ
+                searchLegacy(raw, new ArrayList<>(), new java.util.HashSet<>(), after.lastDoc,
+                        after.legacyLastDoc, after, normalized, callback);
+                return;
+            }
+
+            // Tiền tố lưu tối đa MAX_PREFIX_LENGTH ký tự, phần dư được lọc ở client
+            String key = normalized.length() > TextNormalizer.MAX_PREFIX_LENGTH
+                    ? normalized.substring(0, TextNormalizer.MAX_PREFIX_LENGTH).trim() : normalized;
+            com.google.firebase.firestore.Query firestoreQuery = db.collection(USERS_COLLECTION)
+                    .whereArrayContains("searchPrefixes", key)
+                    .orderBy("searchName")
+                    .limit(SEARCH_PAGE_SIZE);
+            if (after != null && after.lastDoc != null) firestoreQuery = firestoreQuery.startAfter(after.lastDoc);
+            firestoreQuery.get()
+                    .addOnSuccessListener(snapshot -> {
+                        List<User> users = new ArrayList<>();
+                        java.util.Set<String> seen = new java.util.HashSet<>();
+                        List<DocumentSnapshot> docs = snapshot.getDocuments();
+                        for (DocumentSnapshot doc : docs) {
+                            User user = toSearchResult(doc);
+                            if (user == null || !TextNormalizer.matchesPrefix(searchNameOf(user), normalized)) continue;
+                            if (seen.add(user.userId)) users.add(user);
+                        }
+                        DocumentSnapshot lastDoc = !docs.isEmpty() ? docs.get(docs.size() - 1)
+                                : after != null ? after.lastDoc : null;
+                        if (docs.size() == SEARCH_PAGE_SIZE) {
+                            finishSearch(new SearchPage(users, lastDoc, true, null, false),
+                                    after, normalized, true, callback);
+                        } else if (legacyAllowed) {
+                            searchLegacy(raw, users, seen, lastDoc, null, after, normalized, callback);
+                        } else {
+                            finishSearch(new SearchPage(users, lastDoc, false, null, false),
+                                    after, normalized, true, callback);
+                        }
+                    })
+                    .addOnFailureListener(e -> {
+                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("UserRepository", e);
+                        callback.onError(e);
+                    });
+        });
+    }
+
+    /**
+     * Query cũ theo displayName (phân biệt hoa thường) cho user chưa có searchPrefixes,
+     * nối vào sau kết quả searchPrefixes của trang. Lỗi thì trả phần đã có.
+     */
+    private void searchLegacy(String raw, List<User> users, java.util.Set<String> seen, DocumentSnapshot lastDoc,
+                              DocumentSnapshot legacyAfter, SearchPage after, String normalized,
+                              SearchCallback callback) {
+        com.google.firebase.firestore.Query legacyQuery = db.collection(USERS_COLLECTION)
+                .whereGreaterThanOrEqualTo("displayName", raw)
+                .whereLessThan("displayName", raw + "\uf8ff")
+                .orderBy("displayName")
+                .limit(SEARCH_PAGE_SIZE);
+        if (legacyAfter != null) legacyQuery = legacyQuery.startAfter(legacyAfter);
+        legacyQuery.get()
+                .addOnSuccessListener(snapshot -> {
+                    List<DocumentSnapshot> docs = snapshot.getDocuments();
+                    for (DocumentSnapshot doc : docs) {
+                        // User đã có searchPrefixes được query chính trả về
+                        if (doc.get("searchPrefixes") != null) continue;
+                        User user = toSearchResult(doc);
+                        if (user != null && seen.add(user.userId)) users.add(user);
+                    }
+                    DocumentSnapshot legacyLastDoc = !docs.isEmpty() ? docs.get(docs.size() - 1) : legacyAfter;
+                    finishSearch(new SearchPage(users, lastDoc, false, legacyLastDoc, docs.size() == SEARCH_PAGE_SIZE),
+                            after, normalized, true, callback);
+                })
+                .addOnFailureListener(e -> {
+                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("UserRepository", e);
+                    // Không cache kết quả thiếu
+                    finishSearch(new SearchPage(users, lastDoc, false, legacyAfter, false),
+                            after, normalized, false, callback);
+                });
+    }
+
+    private static void finishSearch(SearchPage page, SearchPage after, String normalized, boolean cacheable,
+                                     SearchCallback callback) {
+        if (after == null && cacheable) {
+            searchCache.put(normalized, new CachedSearch(page, System.currentTimeMillis()));
+        }
+        callback.onSuccess(page);
+    }
+
+    /**
+     * Đã chạy xong AdminRepository.backfillUserSearchFields chưa (stats/userSearch.backfilled).
+     * Đọc một lần mỗi phiên; đọc lỗi coi như chưa và đọc lại ở lần tìm sau.
+     */
+    private com.google.android.gms.tasks.Task<Boolean> isSearchBackfilled() {
+        if (searchBackfilled != null) return com.google.android.gms.tasks.Tasks.forResult(searchBackfilled);
+        return searchMigrationRef(db).get().continueWith(task -> {
+            if (!task.isSuccessful()) return false;
+            searchBackfilled = Boolean.TRUE.equals(task.getResult().getBoolean("backfilled"));
+            return searchBackfilled;
+        });
+    }
+
+    /** Doc đánh dấu migration trường tìm kiếm (ghi bởi AdminRepository khi backfill xong) */
+    static com.google.firebase.firestore.DocumentReference searchMigrationRef(FirebaseFirestore db) {
+        return db.collection(STATS_COLLECTION).document(SEARCH_MIGRATION_DOC);
+    }
+
+    /** Gọi sau khi backfill xong để phiên hiện tại bỏ query cũ ngay */
+    static void markSearchBackfilled() {
+        searchBackfilled = true;
+    }
+
+    private static User toSearchResult(DocumentSnapshot doc) {
+        User user = doc.toObject(User.class);
+        if (user == null) return null;
+        if (user.userId == null) user.userId = doc.getId();
+        UserCache.getInstance().put(user);
+        return user;
+    }
+
+    /** searchName của user, tính từ displayName với user chưa có trường tìm kiếm */
+    private static String searchNameOf(User user) {
+        return user.searchName != null ? user.searchName : TextNormalizer.normalizeForSearch(user.displayName);
+    }
+
+    /** Bỏ kết quả tìm kiếm đã cache (kéo để làm mới) */
+    public static void clearSearchCache() {
+        searchCache.clear();
+    }
+
+    /** Trang đầu cho từ khóa từ cache: khớp đúng từ khóa, hoặc lọc từ tiền tố đã có đủ kết quả */
+    private static SearchPage cachedSearch(String normalized) {
+        long now = System.currentTimeMillis();
+        CachedSearch exact = searchCache.get(normalized);
+        if (exact != null && now - exact.cachedAt < SEARCH_CACHE_MS) return exact.page;
+        for (int len = normalized.length() - 1; len > 0; len--) {
+            CachedSearch prefix = searchCache.get(normalized.substring(0, len));
+            if (prefix == null || now - prefix.cachedAt >= SEARCH_CACHE_MS || prefix.page.hasMore) continue;
+            List<User> users = new ArrayList<>();
+            for (User user : prefix.page.users) {
+                if (TextNormalizer.matchesPrefix(searchNameOf(user), normalized)) users.add(user);
+            }
+            return new SearchPage(users, null, false, null, false);
+        }
+        return null;
+    }
+
+    public interface SearchCallback {
+        void onSuccess(SearchPage page);
+        void onError(Exception e);
+    }
+
     public interface UserCallback {
         void onSuccess(User user);
         void onError(Exception e);
@@ -8,12 +8,11 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Event;
+import com.example.nanaclu.ui.event.EventDayIndex;
 
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Adapter cho RecyclerView hiển thị lịch tháng
@@ -23,11 +22,12 @@ import java.util.Map;
  * - Đánh dấu các ngày có sự kiện
  * - Hỗ trợ chọn ngày và xem sự kiện
  * - Tự động cập nhật khi thay đổi tháng/năm
+ * Số event của mỗi ô lấy từ EventDayIndex (dựng sẵn ngoài main thread), không quét danh sách event.
  */
 public class CalendarAdapter extends RecyclerView.Adapter<CalendarAdapter.CalendarViewHolder> {
     
     private List<CalendarDay> calendarDays;
-    private Map<String, List<Event>> eventsMap; // dateKey -> events
+    private EventDayIndex dayIndex;
     private OnDayClickListener listener;
     private int selectedPosition = -1;
     private int todayPosition = -1;
@@ -39,12 +39,12 @@ public class CalendarAdapter extends RecyclerView.Adapter<CalendarAdapter.Calend
     public CalendarAdapter(OnDayClickListener listener) {
         this.listener = listener;
         this.calendarDays = new ArrayList<>();
-        this.eventsMap = new HashMap<>();
+        this.dayIndex = EventDayIndex.EMPTY;
     }
     
-    public void updateCalendar(List<CalendarDay> days, Map<String, List<Event>> eventsMap) {
+    public void updateCalendar(List<CalendarDay> days, EventDayIndex dayIndex) {
         this.calendarDays = days;
-        this.eventsMap = eventsMap;
+        this.dayIndex = dayIndex;
 
         // Reset today position
         todayPosition = -1;
@@ -61,6 +61,12 @@ public class CalendarAdapter extends RecyclerView.Adapter<CalendarAdapter.Calend
 
         notifyDataSetChanged();
     }
+
+    /** Thay index khi dữ liệu event thay đổi, giữ nguyên lưới ngày */
+    public void updateDayIndex(EventDayIndex dayIndex) {
+        this.dayIndex = dayIndex;
+        notifyItemRangeChanged(0, calendarDays.size());
+    }
     
     @NonNull
     @Override
@@ -112,9 +118,7 @@ public class CalendarAdapter extends RecyclerView.Adapter<CalendarAdapter.Calend
                     CalendarDay day = calendarDays.get(position);
                     if (day.isCurrentMonth) {
                         setSelectedPosition(position);
-                        String dateKey = day.getDateKey();
-                        List<Event> events = eventsMap.getOrDefault(dateKey, new ArrayList<>());
-                        listener.onDayClick(day, events);
+                        listener.onDayClick(day, dayIndex.eventsOn(day.epochDay));
                     }
                 }
             });
@@ -146,11 +150,10 @@ public class CalendarAdapter extends RecyclerView.Adapter<CalendarAdapter.Calend
             }
 
             // Show event count
-            String dateKey = day.getDateKey();
-            List<Event> events = eventsMap.getOrDefault(dateKey, new ArrayList<>());
-            if (events.size() > 0 && day.isCurrentMonth) {
+            int eventCount = dayIndex.countOn(day.epochDay);
+            if (eventCount > 0 && day.isCurrentMonth) {
                 tvEventCount.setVisibility(View.VISIBLE);
-                tvEventCount.setText(String.valueOf(events.size()));
+                tvEventCount.setText(String.valueOf(eventCount));
             } else {
                 tvEventCount.setVisibility(View.GONE);
             }
@@ -162,12 +165,14 @@ public class CalendarAdapter extends RecyclerView.Adapter<CalendarAdapter.Calend
         public int month; // 0-based
         public int dayOfMonth;
         public boolean isCurrentMonth;
+        public final long epochDay; // key tra EventDayIndex
         
         public CalendarDay(int year, int month, int dayOfMonth, boolean isCurrentMonth) {
             this.year = year;
             this.month = month;
             this.dayOfMonth = dayOfMonth;
             this.isCurrentMonth = isCurrentMonth;
+            this.epochDay = EventDayIndex.epochDay(year, month, dayOfMonth);
         }
         
         public String getDateKey() {
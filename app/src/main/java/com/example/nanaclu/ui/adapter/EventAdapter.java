@@ -8,7 +8,6 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Event;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -135,6 +134,7 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
                     ", creatorId: " + event.creatorId + 
                     ", creatorName: " + event.creatorName);
             
+            tvEventCreator.setTag(null);
             if (event.creatorName != null && !event.creatorName.isEmpty()) {
                 android.util.Log.d("EventAdapter", "Using cached creator name: " + event.creatorName);
                 tvEventCreator.setText("Tạo bởi: " + event.creatorName);
@@ -194,45 +194,25 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
             tvNotGoingCount.setText(String.valueOf(event.notGoingCount));
         }
         
+        /** Fallback cho event cũ chưa lưu creatorName: lấy tên qua UserCache (dùng chung, đọc theo lô) */
         private void loadCreatorName(String creatorId) {
-            android.util.Log.d("EventAdapter", "Starting to load creator name for ID: " + creatorId);
-            
-            FirebaseFirestore.getInstance()
-                    .collection("users")
-                    .document(creatorId)
-                    .get()
-                    .addOnSuccessListener(documentSnapshot -> {
-                        android.util.Log.d("EventAdapter", "Firestore response for creatorId " + creatorId + 
-                                ", exists: " + documentSnapshot.exists());
-                        
-                        if (documentSnapshot.exists()) {
-                            String creatorName = documentSnapshot.getString("name");
-                            android.util.Log.d("EventAdapter", "Retrieved creator name: '" + creatorName + "' for ID: " + creatorId);
-                            
-                            if (creatorName != null && !creatorName.isEmpty()) {
-                                android.util.Log.d("EventAdapter", "Setting creator name: " + creatorName);
-                                tvEventCreator.setText("Tạo bởi: " + creatorName);
-                                
-                                // Update the event object for future use
-                                for (Event event : events) {
-                                    if (event.creatorId != null && event.creatorId.equals(creatorId)) {
-                                        android.util.Log.d("EventAdapter", "Updating event object with creator name: " + creatorName);
-                                        event.creatorName = creatorName;
-                                        break;
-                                    }
-                                }
-                            } else {
-                                android.util.Log.w("EventAdapter", "Creator name is null/empty in document for ID: " + creatorId);
-                                tvEventCreator.setText("Tạo bởi: Unknown");
-                            }
-                        } else {
-                            android.util.Log.w("EventAdapter", "Creator document does not exist for ID: " + creatorId);
+            tvEventCreator.setTag(creatorId);
+            com.example.nanaclu.data.repository.UserCache.getInstance().resolve(
+                    java.util.Collections.singletonList(creatorId), () -> {
+                        // Row đã được bind sang event khác
+                        if (!creatorId.equals(tvEventCreator.getTag())) return;
+                        com.example.nanaclu.data.model.User creator =
+                                com.example.nanaclu.data.repository.UserCache.getInstance().get(creatorId);
+                        String creatorName = creator != null ? creator.displayName : null;
+                        if (creatorName == null || creatorName.isEmpty()) {
                             tvEventCreator.setText("Tạo bởi: Unknown");
+                            return;
+                        }
+                        tvEventCreator.setText("Tạo bởi: " + creatorName);
+                        // Update the event objects for future use
+                        for (Event event : events) {
+                            if (creatorId.equals(event.creatorId)) event.creatorName = creatorName;
                         }
-                    })
-                    .addOnFailureListener(e -> {
-                        android.util.Log.e("EventAdapter", "Failed to load creator name for ID: " + creatorId, e);
-                        tvEventCreator.setText("Tạo bởi: Unknown");
                     });
         }
     }
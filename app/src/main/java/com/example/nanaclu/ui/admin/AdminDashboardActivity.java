@@ -4,26 +4,34 @@ import android.graphics.PorterDuff;
 import android.os.Bundle;
 import android.os.Environment;
 import android.widget.Button;
+import android.widget.TextView;
 import android.widget.Toast;
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.FileProvider;
 import com.example.nanaclu.R;
+import com.example.nanaclu.data.repository.AdminExporter;
 import com.example.nanaclu.data.repository.AdminRepository;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.firebase.firestore.FirebaseFirestore;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.Locale;
+import java.util.Set;
 
 public class AdminDashboardActivity extends AppCompatActivity {
-    private static final int PERMISSION_REQUEST_CODE = 1001;
+    private static final String EXPORT_PREFIX = "nanaclu_backup_";
+    // Nhãn hiển thị theo thứ tự AdminExporter.Section
+    private static final String[] SECTION_LABELS = {
+            "Users", "Groups", "Group posts", "Group events", "Group members", "Group reports", "Group chats", "Chats"
+    };
     private AdminRepository adminRepository;
     private Button btnSaveJson;
+    private Button btnBackfillSearch;
+    private TextView tvExportProgress;
     
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -44,10 +52,13 @@ public class AdminDashboardActivity extends AppCompatActivity {
         adminRepository = new AdminRepository(FirebaseFirestore.getInstance());
         
         btnSaveJson = findViewById(R.id.btnSaveJson);
+        tvExportProgress = findViewById(R.id.tvExportProgress);
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
         
         // Set up save JSON button click listener
-        btnSaveJson.setOnClickListener(v -> checkStoragePermission());
+        btnSaveJson.setOnClickListener(v -> onExportClicked());
+        btnBackfillSearch = findViewById(R.id.btnBackfillSearch);
+        btnBackfillSearch.setOnClickListener(v -> backfillUserSearch());
         setSupportActionBar(toolbar);
         if (getSupportActionBar() != null) {
             getSupportActionBar().setTitle("admin dashboard");
@@ -56,178 +67,187 @@ public class AdminDashboardActivity extends AppCompatActivity {
         toolbar.setNavigationOnClickListener(v -> finish());
         // Đặt màu trắng cho icon quay lại
         toolbar.getNavigationIcon().setColorFilter(getResources().getColor(android.R.color.white), PorterDuff.Mode.SRC_ATOP);
-        
-        Button btnSaveJson = findViewById(R.id.btnSaveJson);
-        btnSaveJson.setOnClickListener(v -> {
-            // Hiển thị thông báo đang xử lý
-            Toast.makeText(this, "Đang xuất dữ liệu...", Toast.LENGTH_SHORT).show();
-            btnSaveJson.setEnabled(false);
-            
-            // Gọi hàm export dữ liệu từ AdminRepository
-            adminRepository.exportAllDataToJson(new AdminRepository.ExportDataCallback() {
-                @Override
-                public void onSuccess(String jsonData) {
-                    // Lưu file JSON vào thư mục Downloads
-                    saveJsonToFile(jsonData);
-                    btnSaveJson.setEnabled(true);
-                }
-                
-                @Override
-                public void onError(Exception e) {
-                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("AdminDashboardActivity", e);
-                    String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(e);
-                    if (errorMessage != null) {
-                        Toast.makeText(AdminDashboardActivity.this, errorMessage, Toast.LENGTH_LONG).show();
-                    } else {
-                        Toast.makeText(AdminDashboardActivity.this, "Lỗi xuất dữ liệu: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                    }
-                    btnSaveJson.setEnabled(true);
-                }
-            });
-        });
     }
     
     /**
-     * Kiểm tra quyền truy cập bộ nhớ
+     * Bổ sung trường tìm kiếm cho user cũ (chạy lại an toàn, chỉ ghi user còn thiếu)
      */
-    private void checkStoragePermission() {
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.M) {
-            if (checkSelfPermission(android.Manifest.permission.WRITE_EXTERNAL_STORAGE) != 
-                android.content.pm.PackageManager.PERMISSION_GRANTED ||
-                checkSelfPermission(android.Manifest.permission.READ_EXTERNAL_STORAGE) != 
-                android.content.pm.PackageManager.PERMISSION_GRANTED) {
-                
-                // Nếu chưa có quyền, yêu cầu
-                requestPermissions(
-                    new String[]{
-                        android.Manifest.permission.WRITE_EXTERNAL_STORAGE,
-                        android.Manifest.permission.READ_EXTERNAL_STORAGE
-                    },
-                    PERMISSION_REQUEST_CODE
-                );
-            } else {
-                // Đã có quyền, tiến hành export
-                exportDataToJson();
+    private void backfillUserSearch() {
+        btnBackfillSearch.setEnabled(false);
+        tvExportProgress.setVisibility(android.view.View.VISIBLE);
+        tvExportProgress.setText("Đang bổ sung trường tìm kiếm...");
+        adminRepository.backfillUserSearchFields(new AdminRepository.MigrationCallback() {
+            @Override
+            public void onProgress(int scanned, int updated) {
+                if (isFinishing() || isDestroyed()) return;
+                tvExportProgress.setText("Đã duyệt " + scanned + " user, cập nhật " + updated);
             }
-        } else {
-            // Dưới Android 6.0 không cần yêu cầu quyền runtime
-            exportDataToJson();
+
+            @Override
+            public void onComplete(int scanned, int updated) {
+                if (isFinishing() || isDestroyed()) return;
+                btnBackfillSearch.setEnabled(true);
+                tvExportProgress.setText("Hoàn tất: duyệt " + scanned + " user, cập nhật " + updated);
+                com.example.nanaclu.data.repository.UserRepository.clearSearchCache();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (isFinishing() || isDestroyed()) return;
+                btnBackfillSearch.setEnabled(true);
+                tvExportProgress.setText("Đã dừng, chạy lại để tiếp tục");
+                Toast.makeText(AdminDashboardActivity.this, "Lỗi: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Nếu còn bản xuất dở (có checkpoint) thì hỏi xuất tiếp, ngược lại chọn phần dữ liệu cần xuất
+     */
+    private void onExportClicked() {
+        File pending = findPendingExport();
+        if (pending == null) {
+            showExportOptions();
+            return;
         }
+        new AlertDialog.Builder(this)
+                .setTitle("Xuất dữ liệu")
+                .setMessage("Có bản xuất chưa hoàn tất: " + pending.getName() + "\nTiếp tục từ lần dừng trước?")
+                .setPositiveButton("Tiếp tục", (d, w) -> startExport(pending, false, null))
+                .setNegativeButton("Xuất mới", (d, w) -> {
+                    //noinspection ResultOfMethodCallIgnored
+                    AdminExporter.checkpointOf(pending).delete();
+                    showExportOptions();
+                })
+                .setNeutralButton("Hủy", null)
+                .show();
     }
 
-    @Override
-    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
-        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
-        if (requestCode == PERMISSION_REQUEST_CODE) {
-            if (grantResults.length > 0 && grantResults[0] == android.content.pm.PackageManager.PERMISSION_GRANTED) {
-                // Quyền đã được cấp
-                exportDataToJson();
-            } else {
-                Toast.makeText(this, "Cần cấp quyền truy cập bộ nhớ để lưu file", Toast.LENGTH_LONG).show();
-            }
+    private void showExportOptions() {
+        AdminExporter.Section[] values = AdminExporter.Section.values();
+        // Mục cuối là tùy chọn nén gzip
+        String[] items = new String[values.length + 1];
+        boolean[] checked = new boolean[values.length + 1];
+        for (int i = 0; i < values.length; i++) {
+            items[i] = SECTION_LABELS[i];
+            checked[i] = true;
         }
+        items[values.length] = "Nén gzip (.gz)";
+        checked[values.length] = false;
+
+        new AlertDialog.Builder(this)
+                .setTitle("Chọn dữ liệu cần xuất")
+                .setMultiChoiceItems(items, checked, (d, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton("Xuất", (d, w) -> {
+                    Set<AdminExporter.Section> sections = EnumSet.noneOf(AdminExporter.Section.class);
+                    for (int i = 0; i < values.length; i++) {
+                        if (checked[i]) sections.add(values[i]);
+                    }
+                    if (sections.isEmpty()) {
+                        Toast.makeText(this, "Chưa chọn dữ liệu để xuất", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    boolean gzip = checked[values.length];
+                    File dir = getExportDir();
+                    if (dir == null) return;
+                    String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+                    String fileName = EXPORT_PREFIX + timestamp + (gzip ? ".ndjson.gz" : ".ndjson");
+                    startExport(new File(dir, fileName), gzip, sections);
+                })
+                .setNegativeButton("Hủy", null)
+                .show();
     }
 
     /**
-     * Bắt đầu quá trình export dữ liệu
+     * Bắt đầu (sections != null) hoặc xuất tiếp (sections == null) vào file
      */
-    private void exportDataToJson() {
+    private void startExport(File file, boolean gzip, @Nullable Set<AdminExporter.Section> sections) {
         btnSaveJson.setEnabled(false);
-        Toast.makeText(this, "Đang xuất dữ liệu...", Toast.LENGTH_SHORT).show();
-        
-        adminRepository.exportAllDataToJson(new AdminRepository.ExportDataCallback() {
+        tvExportProgress.setVisibility(android.view.View.VISIBLE);
+        tvExportProgress.setText("Đang xuất dữ liệu...");
+        android.util.Log.d("AdminExport", "Exporting to: " + file.getAbsolutePath());
+
+        AdminExporter.ExportCallback callback = new AdminExporter.ExportCallback() {
+            @Override
+            public void onProgress(String stage, long documents) {
+                if (isFinishing() || isDestroyed()) return;
+                tvExportProgress.setText("Đang xuất " + stage + ": " + documents + " bản ghi");
+            }
+
             @Override
-            public void onSuccess(String jsonData) {
-                saveJsonToFile(jsonData);
+            public void onComplete(File result, long documents) {
+                if (isFinishing() || isDestroyed()) return;
                 btnSaveJson.setEnabled(true);
+                tvExportProgress.setText("Hoàn tất: " + documents + " bản ghi (" + result.length() / 1024 + " KB)");
+                openExportedFile(result);
             }
-            
+
             @Override
             public void onError(Exception e) {
-                runOnUiThread(() -> {
-                    Toast.makeText(AdminDashboardActivity.this, 
-                        "Lỗi xuất dữ liệu: " + e.getMessage(), 
-                        Toast.LENGTH_LONG).show();
-                    btnSaveJson.setEnabled(true);
-                });
+                if (isFinishing() || isDestroyed()) return;
+                btnSaveJson.setEnabled(true);
+                tvExportProgress.setText("Đã dừng, có thể xuất tiếp từ lần dừng này");
+                String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(e);
+                if (errorMessage != null) {
+                    Toast.makeText(AdminDashboardActivity.this, errorMessage, Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(AdminDashboardActivity.this, "Lỗi xuất dữ liệu: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                }
             }
-        });
+        };
+        if (sections == null) {
+            adminRepository.resumeExport(file, callback);
+        } else {
+            adminRepository.exportToFile(file, gzip, sections, callback);
+        }
     }
 
     /**
-     * Lưu dữ liệu JSON vào file trong thư mục Downloads
+     * Thư mục Download/nanaclu, null nếu không tạo được
      */
-    private void saveJsonToFile(String jsonData) {
+    @Nullable
+    private File getExportDir() {
+        File downloadDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        File nanacluDir = new File(downloadDir, "nanaclu");
+        if (!nanacluDir.exists() && !nanacluDir.mkdirs()) {
+            Toast.makeText(this, "Không tạo được thư mục " + nanacluDir.getAbsolutePath()
+                    + "\nVui lòng kiểm tra quyền ghi bộ nhớ ngoài (External Storage) trong cài đặt ứng dụng.", Toast.LENGTH_LONG).show();
+            return null;
+        }
+        return nanacluDir;
+    }
+
+    /**
+     * File xuất gần nhất còn checkpoint (lần xuất trước bị dừng giữa chừng)
+     */
+    @Nullable
+    private File findPendingExport() {
+        File dir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS), "nanaclu");
+        File[] files = dir.listFiles((d, name) -> name.startsWith(EXPORT_PREFIX) && !name.contains(".checkpoint"));
+        if (files == null) return null;
+        File latest = null;
+        for (File f : files) {
+            if (!AdminExporter.checkpointOf(f).exists()) continue;
+            if (latest == null || f.lastModified() > latest.lastModified()) latest = f;
+        }
+        return latest;
+    }
+
+    private void openExportedFile(File file) {
         try {
-            // Tạo tên file với timestamp
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
-            String timestamp = sdf.format(new Date());
-            String fileName = "nanaclu_backup_" + timestamp + ".json";
-            
-            // Tạo thư mục Download/nanaclu trong bộ nhớ trong
-            File downloadDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-            File nanacluDir = new File(downloadDir, "nanaclu");
-            
-            if (!nanacluDir.exists()) {
-                boolean created = nanacluDir.mkdirs();
-                android.util.Log.d("AdminExport", "Created nanaclu directory: " + created);
-            }
-            
-            // Debug: Log thông tin thư mục
-            android.util.Log.d("AdminExport", "Download directory: " + downloadDir.getAbsolutePath());
-            android.util.Log.d("AdminExport", "Nanaclu directory path: " + nanacluDir.getAbsolutePath());
-            android.util.Log.d("AdminExport", "Can read: " + nanacluDir.canRead());
-            android.util.Log.d("AdminExport", "Can write: " + nanacluDir.canWrite());
-            android.util.Log.d("AdminExport", "Exists: " + nanacluDir.exists());
-            
-            // Đặt thư mục đích là thư mục nanaclu vừa tạo
-            File exportDir = nanacluDir;
-            
-            File jsonFile = new File(exportDir, fileName);
-            android.util.Log.d("AdminExport", "File will be saved to: " + jsonFile.getAbsolutePath());
-            
-            // Ghi dữ liệu vào file
-            try (FileWriter writer = new FileWriter(jsonFile)) {
-                writer.write(jsonData);
-                android.util.Log.d("AdminExport", "File written successfully");
-                
-                // Kiểm tra file sau khi ghi
-                android.util.Log.d("AdminExport", "File exists after write: " + jsonFile.exists());
-                android.util.Log.d("AdminExport", "File size: " + (jsonFile.exists() ? jsonFile.length() : 0) + " bytes");
-                
-                String successMsg = "Đã lưu file: " + fileName + "\nĐường dẫn: " + jsonFile.getAbsolutePath();
-                // Mở thư mục chứa file
-                android.content.Intent intent = new android.content.Intent(android.content.Intent.ACTION_VIEW);
-                android.net.Uri uri = FileProvider.getUriForFile(
-                    this,
-                    getApplicationContext().getPackageName() + ".fileprovider",
-                    jsonFile
-                );
-                intent.setDataAndType(uri, "*/*");
-                intent.addFlags(android.content.Intent.FLAG_GRANT_READ_URI_PERMISSION);
-                startActivity(intent);
-                
-                // Hiển thị thông báo
-                Toast.makeText(this, successMsg, Toast.LENGTH_LONG).show();
-                
-            } catch (IOException e) {
-                android.util.Log.e("AdminExport", "Error writing file", e);
-                throw e;
-            }
-            
+            android.content.Intent intent = new android.content.Intent(android.content.Intent.ACTION_VIEW);
+            android.net.Uri uri = FileProvider.getUriForFile(
+                this,
+                getApplicationContext().getPackageName() + ".fileprovider",
+                file
+            );
+            intent.setDataAndType(uri, "*/*");
+            intent.addFlags(android.content.Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            startActivity(intent);
+            Toast.makeText(this, "Đã lưu file: " + file.getName() + "\nĐường dẫn: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
         } catch (Exception e) {
-            String errorMsg = "Lỗi lưu file: " + e.getMessage();
-            android.util.Log.e("AdminExport", errorMsg, e);
-            
-            // Thêm thông tin chi tiết lỗi
-            errorMsg += "\n\nChi tiết lỗi:\n";
-            errorMsg += "- Message: " + e.getMessage() + "\n";
-            if (e.getCause() != null) {
-                errorMsg += "- Cause: " + e.getCause().getMessage() + "\n";
-            }
-            errorMsg += "\nVui lòng kiểm tra quyền ghi bộ nhớ ngoài (External Storage) trong cài đặt ứng dụng.";
-            
-            Toast.makeText(this, errorMsg, Toast.LENGTH_LONG).show();
+            android.util.Log.e("AdminExport", "Cannot open exported file", e);
+            Toast.makeText(this, "Đã lưu file: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
         }
     }
 }
@@ -18,8 +18,8 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Comment;
 import com.example.nanaclu.data.model.Post;
+import com.example.nanaclu.data.repository.CommentFeed;
 import com.example.nanaclu.data.repository.CommentRepository;
-import com.example.nanaclu.data.repository.UserRepository;
 import com.example.nanaclu.ui.adapter.CommentAdapter;
 import com.google.firebase.firestore.FirebaseFirestore;
 
@@ -94,7 +94,8 @@ public class CommentsBottomSheet {
         
         // Setup repositories
         CommentRepository commentRepo = new CommentRepository(FirebaseFirestore.getInstance());
-        UserRepository userRepo = new UserRepository(FirebaseFirestore.getInstance());
+        // Feed được tạo sau adapter nhưng cần dùng trong callback xóa comment
+        CommentFeed[] feedRef = new CommentFeed[1];
 
         // Setup RecyclerView với real data
         RecyclerView rv = content.findViewById(R.id.rvComments);
@@ -115,6 +116,7 @@ public class CommentsBottomSheet {
                             .setPositiveButton("Xóa", (dialog, which) -> {
                                 commentRepo.deleteComment(post.groupId, post.postId, comment.commentId)
                                         .addOnSuccessListener(aVoid -> {
+                                            if (feedRef[0] != null) feedRef[0].remove(comment.commentId);
                                             Context ctx = getContextFromObject(context);
                                             if (ctx != null) {
                                                 Toast.makeText(ctx, "Đã xóa bình luận", Toast.LENGTH_SHORT).show();
@@ -158,12 +160,11 @@ public class CommentsBottomSheet {
         
         // Load comments from database
         android.util.Log.d("CommentsBottomSheet", "Loading comments for post: " + post.postId + " in group: " + post.groupId);
-        commentRepo.getComments(post.groupId, post.postId, new CommentRepository.CommentsCallback() {
+        feedRef[0] = commentRepo.getComments(post.groupId, post.postId, new CommentRepository.CommentsCallback() {
             @Override
             public void onSuccess(List<Comment> loadedComments) {
                 android.util.Log.d("CommentsBottomSheet", "Loaded " + (loadedComments != null ? loadedComments.size() : 0) + " comments");
-                // Load user info for each comment
-                loadUserInfoForComments(loadedComments, userRepo, adapter);
+                adapter.updateComments(loadedComments);
             }
 
             @Override
@@ -180,6 +181,17 @@ public class CommentsBottomSheet {
             }
         });
 
+        // Cuộn lên đầu danh sách -> tải trang bình luận cũ hơn
+        rv.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy < 0 && !recyclerView.canScrollVertically(-1) && feedRef[0] != null) {
+                    feedRef[0].loadMore();
+                }
+            }
+        });
+        dialog.setOnDismissListener(d -> feedRef[0].stop());
+
         // Xử lý input comment
         EditText edtComment = content.findViewById(R.id.edtComment);
         View btnSend = content.findViewById(R.id.btnSendComment);
@@ -230,51 +242,4 @@ public class CommentsBottomSheet {
                     .start();
         });
     }
-
-    private static void loadUserInfoForComments(List<Comment> comments, UserRepository userRepo, CommentAdapter adapter) {
-        android.util.Log.d("CommentsBottomSheet", "Loading user info for " + (comments != null ? comments.size() : 0) + " comments");
-        if (comments == null || comments.isEmpty()) {
-            android.util.Log.d("CommentsBottomSheet", "No comments to load user info for");
-            adapter.updateComments(comments);
-            return;
-        }
-
-        int[] loadedCount = {0};
-        for (Comment comment : comments) {
-            // Skip comments with null authorId
-            if (comment.authorId == null || comment.authorId.isEmpty()) {
-                comment.authorName = "Người dùng";
-                comment.authorAvatar = null;
-                loadedCount[0]++;
-                if (loadedCount[0] == comments.size()) {
-                    adapter.updateComments(comments);
-                }
-                continue;
-            }
-            
-            userRepo.getUserById(comment.authorId, new UserRepository.UserCallback() {
-                @Override
-                public void onSuccess(com.example.nanaclu.data.model.User user) {
-                    comment.authorName = user.displayName;
-                    comment.authorAvatar = user.photoUrl;
-                    loadedCount[0]++;
-                    android.util.Log.d("CommentsBottomSheet", "Loaded user info " + loadedCount[0] + "/" + comments.size());
-                    if (loadedCount[0] == comments.size()) {
-                        android.util.Log.d("CommentsBottomSheet", "All user info loaded, updating adapter");
-                        adapter.updateComments(comments);
-                    }
-                }
-
-                @Override
-                public void onError(Exception e) {
-                    comment.authorName = "Unknown User";
-                    comment.authorAvatar = null;
-                    loadedCount[0]++;
-                    if (loadedCount[0] == comments.size()) {
-                        adapter.updateComments(comments);
-                    }
-                }
-            });
-        }
-    }
 }
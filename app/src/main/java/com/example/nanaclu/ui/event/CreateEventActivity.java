@@ -283,7 +283,7 @@ public class CreateEventActivity extends AppCompatActivity {
             return;
         }
 
-        groupRepo.getGroupById(groupId, new GroupRepository.GroupCallback() {
+        groupRepo.getGroupFresh(groupId, new GroupRepository.GroupCallback() {
             @Override
             public void onSuccess(com.example.nanaclu.data.model.Group group) {
                 // Check if user is owner/admin or if members can create events
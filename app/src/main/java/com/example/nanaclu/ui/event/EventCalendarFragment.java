@@ -2,6 +2,8 @@ package com.example.nanaclu.ui.event;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,23 +18,26 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Event;
-import com.example.nanaclu.data.repository.EventRepository;
+import com.example.nanaclu.data.repository.EventCache;
 import com.example.nanaclu.ui.adapter.CalendarAdapter;
 import com.example.nanaclu.ui.adapter.CalendarEventAdapter;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.text.SimpleDateFormat;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class EventCalendarFragment extends Fragment {
 
+    // Dựng EventDayIndex ngoài main thread
+    private static final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+
     private String groupId;
-    private EventRepository eventRepository;
+    private EventCache eventCache;
 
     // Views
     private ImageView btnPrevMonth, btnNextMonth;
@@ -48,8 +53,11 @@ public class EventCalendarFragment extends Fragment {
 
     // Data
     private Calendar currentCalendar;
-    private List<Event> allEvents;
-    private Map<String, List<Event>> eventsMap;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private EventDayIndex dayIndex = EventDayIndex.EMPTY;
+    // Các bucket tháng đã có trong dayIndex, so sánh theo identity để biết dữ liệu đã đổi chưa
+    private List<List<Event>> indexedBuckets = new ArrayList<>();
+    private int indexGeneration;
 
     public static EventCalendarFragment newInstance(String groupId) {
         EventCalendarFragment fragment = new EventCalendarFragment();
@@ -65,10 +73,8 @@ public class EventCalendarFragment extends Fragment {
         if (getArguments() != null) {
             groupId = getArguments().getString("groupId");
         }
-        eventRepository = new EventRepository(FirebaseFirestore.getInstance());
+        eventCache = EventCache.getInstance();
         currentCalendar = Calendar.getInstance();
-        allEvents = new ArrayList<>();
-        eventsMap = new HashMap<>();
     }
 
     @Nullable
@@ -101,6 +107,7 @@ public class EventCalendarFragment extends Fragment {
             calendarAdapter.setSelectedPosition(-1); // Reset selection when changing month
             layoutSelectedDateEvents.setVisibility(View.GONE); // Hide selected date events
             updateCalendarDisplay();
+            loadEvents();
         });
 
         btnNextMonth.setOnClickListener(v -> {
@@ -108,6 +115,7 @@ public class EventCalendarFragment extends Fragment {
             calendarAdapter.setSelectedPosition(-1); // Reset selection when changing month
             layoutSelectedDateEvents.setVisibility(View.GONE); // Hide selected date events
             updateCalendarDisplay();
+            loadEvents();
         });
     }
 
@@ -136,36 +144,71 @@ public class EventCalendarFragment extends Fragment {
         rvSelectedDateEvents.setAdapter(selectedDateEventAdapter);
     }
 
+    /**
+     * Tải event của tháng đang xem và hai tháng liền kề (ô đầu / cuối lưới lịch và để chuyển tháng
+     * không phải chờ). Tháng đã có trong EventCache được lấy ngay, không query lại.
+     */
     private void loadEvents() {
         if (groupId == null) return;
 
-        eventRepository.getEvents(groupId,
-                events -> {
-                    allEvents = events;
-                    organizeEventsByDate();
-                    updateCalendarDisplay();
-                },
-                error -> {
-                    // Handle error
-                    android.widget.Toast.makeText(getContext(), "Lỗi load events: " + error.getMessage(),
-                            android.widget.Toast.LENGTH_SHORT).show();
-                });
+        refreshDayIndex();
+        for (int offset = -1; offset <= 1; offset++) {
+            Calendar month = (Calendar) currentCalendar.clone();
+            month.add(Calendar.MONTH, offset);
+            int year = month.get(Calendar.YEAR);
+            int monthIndex = month.get(Calendar.MONTH);
+            if (eventCache.peekMonth(groupId, year, monthIndex) != null) continue;
+
+            eventCache.getMonth(groupId, year, monthIndex,
+                    events -> {
+                        if (!isAdded()) return;
+                        refreshDayIndex();
+                    },
+                    error -> {
+                        // Handle error
+                        if (!isAdded()) return;
+                        android.widget.Toast.makeText(getContext(), "Lỗi load events: " + error.getMessage(),
+                                android.widget.Toast.LENGTH_SHORT).show();
+                    });
+        }
     }
 
-    private void organizeEventsByDate() {
-        eventsMap.clear();
-
-        for (Event event : allEvents) {
-            Calendar eventCal = Calendar.getInstance();
-            eventCal.setTimeInMillis(event.startTime);
-
-            String dateKey = String.format("%04d-%02d-%02d",
-                    eventCal.get(Calendar.YEAR),
-                    eventCal.get(Calendar.MONTH) + 1,
-                    eventCal.get(Calendar.DAY_OF_MONTH));
+    /**
+     * Dựng lại EventDayIndex trên background khi các tháng trong EventCache thay đổi
+     * (tháng mới tải xong hoặc cache bị xóa). Chuyển qua lại giữa các tháng đã tải không dựng lại.
+     */
+    private void refreshDayIndex() {
+        List<List<Event>> buckets = eventCache.peekLoaded(groupId);
+        // Cache vừa bị xóa: giữ index cũ tới khi có dữ liệu mới, tránh lịch nháy trống
+        if (buckets.isEmpty() || sameBuckets(buckets, indexedBuckets)) return;
+        indexedBuckets = buckets;
+
+        int generation = ++indexGeneration;
+        ZoneId zone = ZoneId.systemDefault();
+        indexExecutor.execute(() -> {
+            EventDayIndex index = EventDayIndex.build(buckets, zone);
+            mainHandler.post(() -> {
+                // Bỏ kết quả cũ nếu đã có lần dựng mới hơn
+                if (generation != indexGeneration || !isAdded()) return;
+                dayIndex = index;
+                calendarAdapter.updateDayIndex(index);
+            });
+        });
+    }
 
-            eventsMap.computeIfAbsent(dateKey, k -> new ArrayList<>()).add(event);
+    private static boolean sameBuckets(List<List<Event>> a, List<List<Event>> b) {
+        if (a.size() != b.size()) return false;
+        for (List<Event> bucket : a) {
+            boolean found = false;
+            for (List<Event> other : b) {
+                if (other == bucket) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
         }
+        return true;
     }
 
     private void updateCalendarDisplay() {
@@ -175,7 +218,7 @@ public class EventCalendarFragment extends Fragment {
 
         // Generate calendar days
         List<CalendarAdapter.CalendarDay> calendarDays = generateCalendarDays();
-        calendarAdapter.updateCalendar(calendarDays, eventsMap);
+        calendarAdapter.updateCalendar(calendarDays, dayIndex);
     }
 
     private List<CalendarAdapter.CalendarDay> generateCalendarDays() {
@@ -245,6 +288,7 @@ public class EventCalendarFragment extends Fragment {
     }
 
     public void refreshEvents() {
+        if (groupId != null) eventCache.invalidate(groupId);
         loadEvents();
     }
 }
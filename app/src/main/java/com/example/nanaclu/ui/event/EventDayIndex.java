@@ -0,0 +1,86 @@
+package com.example.nanaclu.ui.event;
+
+import com.example.nanaclu.data.model.Event;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index event theo ngày (epoch day theo múi giờ máy), dựng một lần mỗi khi dữ liệu thay đổi
+ * để mỗi ô lịch chỉ tra map thay vì quét toàn bộ event.
+ * Event kéo dài nhiều ngày được gắn vào mọi ngày từ ngày bắt đầu tới ngày kết thúc.
+ * Không phụ thuộc Android, có thể dựng trên background thread; sau khi dựng thì chỉ đọc.
+ */
+public class EventDayIndex {
+    // Giới hạn số ngày một event được trải ra, tránh endTime sai làm phình index
+    private static final int MAX_SPAN_DAYS = 366;
+
+    public static final EventDayIndex EMPTY = new EventDayIndex(new HashMap<>());
+
+    private final Map<Long, List<Event>> byDay;
+
+    private EventDayIndex(Map<Long, List<Event>> byDay) {
+        this.byDay = byDay;
+    }
+
+    /** Dựng index từ các danh sách event (event trùng eventId chỉ tính một lần) */
+    public static EventDayIndex build(Collection<List<Event>> eventLists, ZoneId zone) {
+        Map<Long, List<Event>> byDay = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (List<Event> events : eventLists) {
+            if (events == null) continue;
+            for (Event event : events) {
+                if (event == null) continue;
+                if (event.eventId != null && !seen.add(event.eventId)) continue;
+
+                long startDay = toEpochDay(event.startTime, zone);
+                long endDay = event.endTime > event.startTime ? toEpochDay(event.endTime, zone) : startDay;
+                endDay = Math.min(endDay, startDay + MAX_SPAN_DAYS - 1);
+                for (long day = startDay; day <= endDay; day++) {
+                    List<Event> list = byDay.get(day);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        byDay.put(day, list);
+                    }
+                    list.add(event);
+                }
+            }
+        }
+        for (List<Event> list : byDay.values()) {
+            Collections.sort(list, (a, b) -> Long.compare(a.startTime, b.startTime));
+        }
+        return new EventDayIndex(byDay);
+    }
+
+    /** Event của ngày (month theo Calendar.MONTH, 0-11), sắp theo startTime */
+    public List<Event> eventsOn(int year, int month, int dayOfMonth) {
+        return eventsOn(epochDay(year, month, dayOfMonth));
+    }
+
+    public List<Event> eventsOn(long epochDay) {
+        List<Event> list = byDay.get(epochDay);
+        return list != null ? Collections.unmodifiableList(list) : Collections.emptyList();
+    }
+
+    public int countOn(long epochDay) {
+        List<Event> list = byDay.get(epochDay);
+        return list != null ? list.size() : 0;
+    }
+
+    public static long epochDay(int year, int month, int dayOfMonth) {
+        return LocalDate.of(year, month + 1, dayOfMonth).toEpochDay();
+    }
+
+    private static long toEpochDay(long millis, ZoneId zone) {
+        return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate().toEpochDay();
+    }
+}
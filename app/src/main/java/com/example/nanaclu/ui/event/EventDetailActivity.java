@@ -207,7 +207,8 @@ public class EventDetailActivity extends AppCompatActivity {
                     public void onSuccess(Event event) {
                         currentEvent = event;
                         displayEventDetails(event);
-                        loadRSVPCounts();
+                        // Bộ đếm RSVP nằm sẵn trên event doc
+                        showRSVPCounts(new EventRepository.RSVPCounts(event.goingCount, event.maybeCount, event.notGoingCount));
                         if (swipeRefresh != null) {
                             swipeRefresh.setRefreshing(false);
                         }
@@ -323,9 +324,7 @@ public class EventDetailActivity extends AppCompatActivity {
                 new EventRepository.OnSuccessCallback<EventRepository.RSVPCounts>() {
                     @Override
                     public void onSuccess(EventRepository.RSVPCounts counts) {
-                        tvGoingCount.setText(String.valueOf(counts.goingCount));
-                        tvMaybeCount.setText(String.valueOf(counts.maybeCount));
-                        tvNotGoingCount.setText(String.valueOf(counts.notGoingCount));
+                        showRSVPCounts(counts);
                     }
                 },
                 new EventRepository.OnErrorCallback() {
@@ -337,6 +336,12 @@ public class EventDetailActivity extends AppCompatActivity {
         );
     }
 
+    private void showRSVPCounts(EventRepository.RSVPCounts counts) {
+        tvGoingCount.setText(String.valueOf(counts.goingCount));
+        tvMaybeCount.setText(String.valueOf(counts.maybeCount));
+        tvNotGoingCount.setText(String.valueOf(counts.notGoingCount));
+    }
+
     private void updateRSVP(EventRSVP.Status newStatus) {
         android.util.Log.d("EventDetailActivity", "updateAttendance called with status: " + newStatus.getValue());
 
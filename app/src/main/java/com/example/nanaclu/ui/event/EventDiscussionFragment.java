@@ -17,6 +17,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Comment;
+import com.example.nanaclu.data.repository.CommentFeed;
 import com.example.nanaclu.data.repository.CommentRepository;
 import com.example.nanaclu.ui.adapter.CommentAdapter;
 import com.example.nanaclu.ui.profile.ProfileActivity;
@@ -42,6 +43,7 @@ public class EventDiscussionFragment extends Fragment {
     private EditText etComment;
     private ImageButton btnSend;
     private CommentRepository commentRepository;
+    private CommentFeed commentFeed;
     
     public static EventDiscussionFragment newInstance(String groupId, String eventId) {
         EventDiscussionFragment fragment = new EventDiscussionFragment();
@@ -102,7 +104,21 @@ public class EventDiscussionFragment extends Fragment {
     }
 
     private void setupSwipeRefresh() {
-        swipeRefresh.setOnRefreshListener(this::loadComments);
+        // Kéo xuống ở đầu danh sách để xem bình luận cũ hơn
+        swipeRefresh.setOnRefreshListener(() -> {
+            if (commentFeed == null || !commentFeed.loadMore()) {
+                swipeRefresh.setRefreshing(false);
+            }
+        });
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (commentFeed != null) {
+            commentFeed.stop();
+            commentFeed = null;
+        }
     }
     
 
@@ -126,7 +142,7 @@ public class EventDiscussionFragment extends Fragment {
         // Send the comment
         commentRepository.addComment(groupId, eventId, commentText, null)
                 .addOnSuccessListener(commentId -> {
-                    loadComments(); // Reload comments
+                    // Comment mới tự xuất hiện qua listener của CommentFeed
                     // Show success message
                     Toast.makeText(getContext(), "Đã gửi bình luận", Toast.LENGTH_SHORT).show();
                 })
@@ -146,13 +162,16 @@ public class EventDiscussionFragment extends Fragment {
             swipeRefresh.setRefreshing(true);
         }
 
-        commentRepository.getComments(groupId, eventId, new CommentRepository.CommentsCallback() {
+        if (commentFeed != null) commentFeed.stop();
+        final boolean[] firstPage = {true};
+        commentFeed = commentRepository.getComments(groupId, eventId, new CommentRepository.CommentsCallback() {
             @Override
             public void onSuccess(java.util.List<Comment> comments) {
                 adapter.updateComments(comments);
-                if (!comments.isEmpty()) {
+                if (firstPage[0] && !comments.isEmpty()) {
                     recyclerView.scrollToPosition(comments.size() - 1);
                 }
+                firstPage[0] = false;
                 if (swipeRefresh != null) {
                     swipeRefresh.setRefreshing(false);
                 }
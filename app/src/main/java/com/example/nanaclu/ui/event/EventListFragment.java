@@ -23,6 +23,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class EventListFragment extends Fragment {
+
+    // Danh sách chỉ lấy event bắt đầu từ đầu tháng, N tháng trước trở đi
+    private static final int PAST_MONTHS = 3;
     
     private SwipeRefreshLayout swipeRefreshLayout;
     private RecyclerView rvEvents;
@@ -106,7 +109,11 @@ public class EventListFragment extends Fragment {
         showLoading(true);
         // Switch back to normal method since debug shows events are loading
         android.util.Log.d("EventListFragment", "Starting to load events for groupId: " + groupId);
-        eventRepository.getEvents(groupId,
+        java.util.Calendar from = java.util.Calendar.getInstance();
+        from.add(java.util.Calendar.MONTH, -PAST_MONTHS);
+        long fromMs = com.example.nanaclu.data.repository.EventCache.monthBounds(
+                from.get(java.util.Calendar.YEAR), from.get(java.util.Calendar.MONTH))[0];
+        eventRepository.getEventsInRange(groupId, fromMs, Long.MAX_VALUE,
                 events -> {
                     android.util.Log.d("EventListFragment", "Success callback received with " + events.size() + " events");
                     showLoading(false);
@@ -19,7 +19,6 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.User;
 import com.example.nanaclu.data.repository.FriendshipRepository;
-import com.example.nanaclu.data.repository.UserRepository;
 import com.example.nanaclu.ui.adapter.UserSearchAdapter;
 import com.example.nanaclu.ui.profile.ProfileActivity;
 import com.google.firebase.auth.FirebaseAuth;
@@ -32,6 +31,7 @@ import java.util.List;
  * Fragment hiển thị danh sách bạn bè (accepted friends)
  */
 public class FriendsListFragment extends Fragment {
+    private static final int LOAD_MORE_THRESHOLD = 5;
 
     private RecyclerView recyclerView;
     private SwipeRefreshLayout swipeRefresh;
@@ -40,9 +40,17 @@ public class FriendsListFragment extends Fragment {
 
     private UserSearchAdapter adapter;
     private FriendshipRepository friendshipRepository;
-    private UserRepository userRepository;
     private String currentUserId;
 
+    private final List<User> friends = new ArrayList<>();
+    // Id bạn bè lấy một lần mỗi lần tải lại, cursor của các trang trỏ vào danh sách này
+    private List<String> friendIds;
+    private int nextCursor = 0;
+    private boolean hasMore = true;
+    private boolean loading = false;
+    // Tăng mỗi lần tải lại từ đầu, bỏ qua kết quả của lần tải cũ
+    private int generation;
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -70,12 +78,21 @@ public class FriendsListFragment extends Fragment {
 
         // Initialize repositories
         friendshipRepository = new FriendshipRepository(FirebaseFirestore.getInstance());
-        userRepository = new UserRepository(FirebaseFirestore.getInstance());
 
         // Setup RecyclerView
         adapter = new UserSearchAdapter(new ArrayList<>(), this::openUserProfile);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) return;
+                LinearLayoutManager lm = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (lm != null && lm.findLastVisibleItemPosition() >= adapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    loadPage(false);
+                }
+            }
+        });
 
         // Setup swipe refresh
         swipeRefresh.setOnRefreshListener(this::loadFriends);
@@ -85,71 +102,57 @@ public class FriendsListFragment extends Fragment {
     }
 
     private void loadFriends() {
-        if (currentUserId == null) return;
+        loadPage(true);
+    }
 
-        showProgress(true);
-        
-        friendshipRepository.listFriends(currentUserId, 50) // Load up to 50 friends
-                .addOnSuccessListener(friendIds -> {
+    /**
+     * Tải một trang bạn bè (reset = tải lại từ đầu, đọc lại danh sách id). Mỗi trang được
+     * nối vào cuối danh sách khi có, không sắp lại các dòng đã hiển thị.
+     */
+    private void loadPage(boolean reset) {
+        if (currentUserId == null) return;
+        if (reset) {
+            generation++;
+            friendIds = null;
+            nextCursor = 0;
+            hasMore = true;
+            loading = false;
+        }
+        if (loading || !hasMore) return;
+        loading = true;
+        int requestGeneration = generation;
+        if (reset) showProgress(true);
+
+        com.google.android.gms.tasks.Task<List<String>> idsTask = friendIds != null
+                ? com.google.android.gms.tasks.Tasks.forResult(friendIds)
+                : friendshipRepository.listFriendIds(currentUserId);
+        idsTask.continueWithTask(task -> {
+                    if (!task.isSuccessful()) throw task.getException();
+                    if (requestGeneration == generation) friendIds = task.getResult();
+                    return friendshipRepository.listFriendsPage(task.getResult(), nextCursor,
+                            FriendshipRepository.FRIEND_PAGE_SIZE);
+                })
+                .addOnSuccessListener(page -> {
+                    if (requestGeneration != generation || !isAdded()) return;
+                    loading = false;
                     showProgress(false);
                     swipeRefresh.setRefreshing(false);
-                    
-                    if (friendIds.isEmpty()) {
-                        showEmptyState();
-                        return;
-                    }
-                    
-                    // Load user details for each friend
-                    loadUserDetails(friendIds);
+                    if (reset) friends.clear();
+                    friends.addAll(page.users);
+                    nextCursor = page.nextCursor;
+                    hasMore = page.hasMore;
+                    adapter.setUsers(new ArrayList<>(friends));
+                    showResults(!friends.isEmpty());
                 })
                 .addOnFailureListener(e -> {
+                    if (requestGeneration != generation || !isAdded()) return;
+                    loading = false;
                     showProgress(false);
                     swipeRefresh.setRefreshing(false);
                     showError("Lỗi tải danh sách bạn bè: " + e.getMessage());
                 });
     }
 
-    private void loadUserDetails(List<String> friendIds) {
-        List<User> friends = new ArrayList<>();
-        int total = friendIds.size();
-        int[] loaded = {0}; // Array để có thể modify trong lambda
-
-        if (total == 0) {
-            adapter.setUsers(friends);
-            showEmptyState();
-            return;
-        }
-
-        for (String friendId : friendIds) {
-            userRepository.getUserById(friendId, new UserRepository.UserCallback() {
-                @Override
-                public void onSuccess(User user) {
-                    if (user != null) {
-                        friends.add(user);
-                    }
-                    loaded[0]++;
-                    
-                    // Khi load xong tất cả users
-                    if (loaded[0] == total) {
-                        adapter.setUsers(friends);
-                        showResults(friends.size() > 0);
-                    }
-                }
-
-                @Override
-                public void onError(Exception e) {
-                    loaded[0]++;
-                    
-                    // Khi load xong tất cả users (kể cả lỗi)
-                    if (loaded[0] == total) {
-                        adapter.setUsers(friends);
-                        showResults(friends.size() > 0);
-                    }
-                }
-            });
-        }
-    }
-
     private void openUserProfile(String userId) {
         Intent intent = new Intent(getContext(), ProfileActivity.class);
         intent.putExtra("userId", userId);
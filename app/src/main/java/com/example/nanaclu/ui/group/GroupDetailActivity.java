@@ -22,6 +22,7 @@ import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Group;
 import com.example.nanaclu.data.model.Member;
 import com.example.nanaclu.data.repository.ChatRepository;
+import com.example.nanaclu.data.repository.GroupCache;
 import com.example.nanaclu.data.repository.GroupRepository;
 import com.example.nanaclu.ui.chat.ChatRoomActivity;
 import com.example.nanaclu.ui.common.CommentsBottomSheet;
@@ -41,6 +42,8 @@ public class GroupDetailActivity extends AppCompatActivity {
     private ChatRepository chatRepository;
     private String groupId;
     private Group currentGroup;
+    // Listener dùng chung của GroupCache, giữ trong lúc màn hình hiển thị
+    private com.google.firebase.firestore.ListenerRegistration groupRegistration;
     private String currentUserId;
     private Member currentUserMember;
     private RecyclerView rvPosts;
@@ -171,8 +174,7 @@ public class GroupDetailActivity extends AppCompatActivity {
             });
         }
 
-        // Load group data
-        loadGroupData();
+        // Group data được theo dõi qua GroupCache trong onStart()
 
         // Load current user's member info
         loadCurrentUserMember();
@@ -399,11 +401,12 @@ public class GroupDetailActivity extends AppCompatActivity {
         com.example.nanaclu.data.repository.ReportRepository reportRepository =
             new com.example.nanaclu.data.repository.ReportRepository(FirebaseFirestore.getInstance());
 
-        reportRepository.fetchGroupReports(groupId, "pending", new com.example.nanaclu.data.repository.ReportRepository.Callback<java.util.List<com.example.nanaclu.data.model.ReportModel>>() {
+        // Đọc bộ đếm status thay vì tải toàn bộ report đang chờ
+        reportRepository.getReportCountsByStatus(groupId, new com.example.nanaclu.data.repository.ReportRepository.Callback<java.util.Map<String, Integer>>() {
             @Override
-            public void onSuccess(java.util.List<com.example.nanaclu.data.model.ReportModel> reports) {
-                int count = (reports != null) ? reports.size() : 0;
-                updateManageReportsTitle(count);
+            public void onSuccess(java.util.Map<String, Integer> counts) {
+                Integer count = counts != null ? counts.get("pending") : null;
+                updateManageReportsTitle(count != null ? count : 0);
             }
 
             @Override
@@ -902,12 +905,32 @@ public class GroupDetailActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (groupRegistration == null && groupId != null) {
+            // Nhận bản cache ngay (nếu có) và mọi thay đổi của group khi đang hiển thị
+            groupRegistration = GroupCache.getInstance().observe(groupId, group -> {
+                if (group == null || isFinishing()) return;
+                currentGroup = group;
+                updateUI(group);
+            });
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (groupRegistration != null) {
+            groupRegistration.remove();
+            groupRegistration = null;
+        }
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
         System.out.println("GroupDetailActivity: onResume() - groupId = " + groupId);
-        // Always reload group data when activity resumes
-        loadGroupData();
         // Refresh pending members count for the approve menu item
         refreshPendingMembersCount();
     }
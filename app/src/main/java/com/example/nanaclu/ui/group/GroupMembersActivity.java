@@ -3,6 +3,8 @@ package com.example.nanaclu.ui.group;
 import android.app.AlertDialog;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.MenuItem;
 import android.widget.Toast;
 
@@ -16,10 +18,9 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Group;
 import com.example.nanaclu.data.model.Member;
-import com.example.nanaclu.data.model.User;
 import com.example.nanaclu.data.repository.GroupRepository;
-import com.example.nanaclu.data.repository.UserRepository;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.util.ArrayList;
@@ -27,19 +28,29 @@ import java.util.List;
 
 public class GroupMembersActivity extends AppCompatActivity {
 
+    // Còn cách cuối danh sách bao nhiêu item thì tải trang tiếp theo
+    private static final int LOAD_MORE_THRESHOLD = 5;
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+
     private String groupId;
     private String currentUserId;
     private Group currentGroup;
     private Member currentUserMember;
     private GroupRepository groupRepository;
-    private UserRepository userRepository;
 
     private RecyclerView recyclerView;
     private GroupMembersAdapter adapter;
     private SearchView searchView;
-    private List<Member> allMembers = new ArrayList<>();
-    private List<Member> filteredMembers = new ArrayList<>();
+    // Các trang đã tải của danh sách hiện tại (toàn bộ hoặc kết quả tìm kiếm)
+    private final List<Member> members = new ArrayList<>();
+    private DocumentSnapshot lastDoc;
+    private boolean hasMore = true;
+    private boolean loading = false;
+    // Tăng mỗi lần tải lại từ đầu, bỏ qua kết quả của truy vấn cũ
+    private int generation;
     private String currentQuery = "";
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::loadMembers;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,7 +75,6 @@ public class GroupMembersActivity extends AppCompatActivity {
 
         // Initialize repositories
         groupRepository = new GroupRepository(FirebaseFirestore.getInstance());
-        userRepository = new UserRepository(FirebaseFirestore.getInstance());
 
         setupToolbar();
         setupUI();
@@ -130,23 +140,36 @@ public class GroupMembersActivity extends AppCompatActivity {
         searchView = findViewById(R.id.searchView);
 
         // Setup RecyclerView
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        adapter = new GroupMembersAdapter(filteredMembers, this::onMemberClick, currentUserId);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        adapter = new GroupMembersAdapter(members, this::onMemberClick, currentUserId);
         recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) return;
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (last >= adapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    loadPage(false);
+                }
+            }
+        });
 
-        // Setup SearchView
+        // Setup SearchView: tìm trên server theo tiền tố tên, chờ người dùng ngừng gõ
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
                 currentQuery = query != null ? query : "";
-                filterMembers(currentQuery);
+                searchHandler.removeCallbacks(searchRunnable);
+                loadMembers();
                 return true;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
                 currentQuery = newText != null ? newText : "";
-                filterMembers(currentQuery);
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
                 return true;
             }
         });
@@ -190,88 +213,60 @@ public class GroupMembersActivity extends AppCompatActivity {
         });
     }
 
+    /** Tải lại từ trang đầu (danh sách đầy đủ hoặc kết quả tìm kiếm hiện tại) */
     private void loadMembers() {
-        groupRepository.getGroupMembers(groupId, new GroupRepository.MembersCallback() {
-            @Override
-            public void onSuccess(List<Member> members) {
-                android.util.Log.d("GroupMembers", "Loaded " + members.size() + " members");
-                boolean currentUserFound = false;
-                for (Member member : members) {
-                    android.util.Log.d("GroupMembers", "Member: " + member.userId + ", role: " + member.role);
-                    if (member.userId.equals(currentUserId)) {
-                        currentUserFound = true;
-                        android.util.Log.d("GroupMembers", "Current user found in members list");
-                    }
-                }
-                if (!currentUserFound) {
-                    android.util.Log.w("GroupMembers", "Current user NOT found in members list!");
-                    // If current user is not in the list but has access to this activity,
-                    // they should be added (this can happen in edge cases)
-                    if (currentUserMember != null) {
-                        android.util.Log.d("GroupMembers", "Adding current user to members list");
-                        members.add(currentUserMember);
-                    }
-                }
+        loadPage(true);
+    }
+
+    private void loadPage(boolean reset) {
+        if (reset) {
+            generation++;
+            lastDoc = null;
+            hasMore = true;
+            loading = false;
+        }
+        if (loading || !hasMore) return;
+        loading = true;
+        int requestGeneration = generation;
 
-                allMembers = members;
-                filteredMembers = new ArrayList<>(members);
-                loadUserDataForMembers();
+        GroupRepository.MemberPageCallback callback = new GroupRepository.MemberPageCallback() {
+            @Override
+            public void onSuccess(GroupRepository.MemberPage page) {
+                if (requestGeneration != generation || isFinishing()) return;
+                loading = false;
+                if (reset) members.clear();
+                members.addAll(page.items);
+                lastDoc = page.lastDoc;
+                hasMore = page.hasMore;
+                android.util.Log.d("GroupMembers", "Loaded " + members.size() + " members, hasMore=" + hasMore);
+                adapter.updateMembers(members);
             }
 
             @Override
             public void onError(Exception e) {
+                if (requestGeneration != generation || isFinishing()) return;
+                loading = false;
                 android.util.Log.e("GroupMembers", "Error loading members: " + e.getMessage());
                 Toast.makeText(GroupMembersActivity.this, "Lỗi khi tải danh sách thành viên", Toast.LENGTH_SHORT).show();
             }
-        });
-    }
+        };
 
-    private void loadUserDataForMembers() {
-        // Load user data for each member
-        for (Member member : allMembers) {
-            userRepository.getUserById(member.userId, new UserRepository.UserCallback() {
-                @Override
-                public void onSuccess(User user) {
-                    member.userName = user.displayName;
-                    member.userEmail = user.email;
-                    member.avatarImageId = user.avatarImageId;
-                    filterMembers(currentQuery);
-                }
-
-                @Override
-                public void onError(Exception e) {
-                    // If can't load user data, use userId as fallback
-                    member.userName = member.userId;
-                    member.userEmail = "";
-                    member.avatarImageId = "";
-                    filterMembers(currentQuery);
-                }
-            });
+        String query = currentQuery.trim();
+        if (query.isEmpty()) {
+            groupRepository.fetchMembersPage(groupId, GroupRepository.MEMBER_PAGE_SIZE, lastDoc, callback);
+        } else {
+            groupRepository.searchMembers(groupId, query, GroupRepository.MEMBER_PAGE_SIZE, lastDoc, callback);
         }
     }
 
-    private void filterMembers(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            filteredMembers = new ArrayList<>(allMembers);
-        } else {
-            filteredMembers = new ArrayList<>();
-            String lowerQuery = query.toLowerCase().trim();
-
-            for (Member member : allMembers) {
-                // Search by user name or user ID
-                String searchText = "";
-                if (member.userName != null && !member.userName.isEmpty()) {
-                    searchText = member.userName.toLowerCase();
-                } else {
-                    searchText = member.userId.toLowerCase();
-                }
-
-                if (searchText.contains(lowerQuery)) {
-                    filteredMembers.add(member);
-                }
+    private void removeMemberFromList(String userId) {
+        for (int i = 0; i < members.size(); i++) {
+            if (members.get(i).userId.equals(userId)) {
+                members.remove(i);
+                adapter.notifyItemRemoved(i);
+                return;
             }
         }
-        adapter.updateMembers(filteredMembers);
     }
 
     private void onMemberClick(Member member) {
@@ -475,10 +470,7 @@ public class GroupMembersActivity extends AppCompatActivity {
                         @Override public void onSuccess() {
                             Toast.makeText(GroupMembersActivity.this, "Đã chặn thành công", Toast.LENGTH_SHORT).show();
                             // Remove from current list
-                            for (int i = 0; i < allMembers.size(); i++) {
-                                if (allMembers.get(i).userId.equals(member.userId)) { allMembers.remove(i); break; }
-                            }
-                            filterMembers(currentQuery);
+                            removeMemberFromList(member.userId);
                         }
                         @Override public void onError(Exception e) {
                             Toast.makeText(GroupMembersActivity.this, "Lỗi block: " + e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -527,13 +519,7 @@ public class GroupMembersActivity extends AppCompatActivity {
                 kickUserFromGroupChat(member, groupId);
 
                 // Remove from current list
-                for (int i = 0; i < allMembers.size(); i++) {
-                    if (allMembers.get(i).userId.equals(member.userId)) {
-                        allMembers.remove(i);
-                        break;
-                    }
-                }
-                filterMembers(currentQuery);
+                removeMemberFromList(member.userId);
             }
 
             @Override
@@ -591,6 +577,12 @@ public class GroupMembersActivity extends AppCompatActivity {
                 });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchHandler.removeCallbacks(searchRunnable);
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
@@ -90,13 +90,42 @@ public class GroupMembersAdapter extends RecyclerView.Adapter<GroupMembersAdapte
         }
 
         public void bind(Member member) {
+            if (member.userName != null && !member.userName.isEmpty()) {
+                // Tên / ảnh đã được denormalized trên member document
+                tvMemberName.setTag(null);
+                tvMemberName.setText(member.userName);
+                User user = new User();
+                user.userId = member.userId;
+                user.displayName = member.userName;
+                user.photoUrl = member.photoUrl;
+                loadUserAvatar(user);
+            } else {
+                loadUserInfo(member);
+            }
+
+            // Hide role text since we have badge
+            tvMemberRole.setVisibility(View.GONE);
+
+            // Set role badge
+            setRoleBadge(member.role);
+
+            // Set join date
+            String joinDate = formatDate(member.joinedAt);
+            tvJoinDate.setText("Tham gia: " + joinDate);
+        }
+
+        /** Member document cũ chưa có tên: đọc user */
+        private void loadUserInfo(Member member) {
             // Set default name first
             tvMemberName.setText("Loading...");
+            tvMemberName.setTag(member.userId);
 
             // Load user info asynchronously
             userRepository.getUserById(member.userId, new UserRepository.UserCallback() {
                 @Override
                 public void onSuccess(User user) {
+                    // View đã được dùng cho member khác
+                    if (!member.userId.equals(tvMemberName.getTag())) return;
                     if (user != null && user.displayName != null) {
                         tvMemberName.setText(user.displayName);
                         // Load user avatar
@@ -109,20 +138,11 @@ public class GroupMembersAdapter extends RecyclerView.Adapter<GroupMembersAdapte
 
                 @Override
                 public void onError(Exception e) {
+                    if (!member.userId.equals(tvMemberName.getTag())) return;
                     tvMemberName.setText(member.userId);
                     showTextAvatar(member.userId);
                 }
             });
-
-            // Hide role text since we have badge
-            tvMemberRole.setVisibility(View.GONE);
-
-            // Set role badge
-            setRoleBadge(member.role);
-
-            // Set join date
-            String joinDate = formatDate(member.joinedAt);
-            tvJoinDate.setText("Tham gia: " + joinDate);
         }
 
         private void loadUserAvatar(User user) {
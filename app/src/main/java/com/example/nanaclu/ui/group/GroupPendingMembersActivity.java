@@ -92,59 +92,26 @@ public class GroupPendingMembersActivity extends AppCompatActivity {
             return;
         }
 
-        // Process each selected user with proper callback handling
-        final int totalSelected = selectedUserIds.size();
-        final int[] processedCount = {0};
-        final boolean[] hasError = {false};
-
-        for (String userId : selectedUserIds) {
-            if (approve) {
-                groupRepository.approvePendingUser(groupId, userId, new GroupRepository.UpdateCallback() {
-                    @Override
-                    public void onSuccess() {
-                        processedCount[0]++;
-                        if (processedCount[0] == totalSelected) {
-                            if (!hasError[0]) {
-                                Toast.makeText(GroupPendingMembersActivity.this, getString(R.string.toast_approved_clean), Toast.LENGTH_SHORT).show();
-                            }
-                            loadPending(); // Refresh the list
-                        }
-                    }
-
-                    @Override
-                    public void onError(Exception e) {
-                        hasError[0] = true;
-                        processedCount[0]++;
-                        Toast.makeText(GroupPendingMembersActivity.this, getString(R.string.error_action_clean, e.getMessage()), Toast.LENGTH_SHORT).show();
-                        if (processedCount[0] == totalSelected) {
-                            loadPending(); // Refresh the list even on error
-                        }
-                    }
-                });
-            } else {
-                groupRepository.rejectPendingUser(groupId, userId, new GroupRepository.UpdateCallback() {
-                    @Override
-                    public void onSuccess() {
-                        processedCount[0]++;
-                        if (processedCount[0] == totalSelected) {
-                            if (!hasError[0]) {
-                                Toast.makeText(GroupPendingMembersActivity.this, getString(R.string.toast_rejected_clean), Toast.LENGTH_SHORT).show();
-                            }
-                            loadPending(); // Refresh the list
-                        }
-                    }
-
-                    @Override
-                    public void onError(Exception e) {
-                        hasError[0] = true;
-                        processedCount[0]++;
-                        Toast.makeText(GroupPendingMembersActivity.this, getString(R.string.error_action_clean, e.getMessage()), Toast.LENGTH_SHORT).show();
-                        if (processedCount[0] == totalSelected) {
-                            loadPending(); // Refresh the list even on error
-                        }
-                    }
-                });
+        // Duyệt / từ chối cả danh sách trong một lần ghi (mỗi lô một transaction / batch)
+        GroupRepository.UpdateCallback callback = new GroupRepository.UpdateCallback() {
+            @Override
+            public void onSuccess() {
+                Toast.makeText(GroupPendingMembersActivity.this,
+                        getString(approve ? R.string.toast_approved_clean : R.string.toast_rejected_clean),
+                        Toast.LENGTH_SHORT).show();
+                loadPending(); // Refresh the list
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(GroupPendingMembersActivity.this, getString(R.string.error_action_clean, e.getMessage()), Toast.LENGTH_SHORT).show();
+                loadPending(); // Refresh the list even on error
             }
+        };
+        if (approve) {
+            groupRepository.approvePendingUsers(groupId, selectedUserIds, callback);
+        } else {
+            groupRepository.rejectPendingUsers(groupId, selectedUserIds, callback);
         }
     }
 
@@ -91,6 +91,8 @@ public class GroupsAdapter extends RecyclerView.Adapter<GroupsAdapter.GroupViewH
         }
         
         private void loadUserRole(Group group) {
+            // Đánh dấu view đang hiển thị group nào (bỏ qua kết quả của lần bind cũ)
+            tvUserRole.setTag(group.groupId);
             if (currentUserId == null) {
                 tvUserRole.setVisibility(View.GONE);
                 return;
@@ -104,33 +106,40 @@ public class GroupsAdapter extends RecyclerView.Adapter<GroupsAdapter.GroupViewH
                 return;
             }
             
-            // Load role from members collection
-            groupRepository.getGroupMembers(group.groupId, new GroupRepository.MembersCallback() {
+            // Role có sẵn trong membership index (đã tải cùng danh sách group)
+            com.example.nanaclu.data.model.GroupSummary summary =
+                    com.example.nanaclu.data.repository.MembershipIndex.getInstance().getCached(group.groupId);
+            if (summary != null && summary.role != null) {
+                showRole(summary.role);
+                return;
+            }
+
+            // Chỉ đọc member document của user hiện tại thay vì toàn bộ members
+            groupRepository.getMemberById(group.groupId, currentUserId, new GroupRepository.MemberCallback() {
                 @Override
-                public void onSuccess(List<Member> members) {
-                    // Find current user's role in this group
-                    for (Member member : members) {
-                        if (currentUserId.equals(member.userId)) {
-                            String roleText = getRoleText(member.role);
-                            int backgroundRes = getRoleBackground(member.role);
-                            
-                            tvUserRole.setText(roleText);
-                            tvUserRole.setBackgroundResource(backgroundRes);
-                            tvUserRole.setVisibility(View.VISIBLE);
-                            return;
-                        }
+                public void onSuccess(Member member) {
+                    if (!group.groupId.equals(tvUserRole.getTag())) return;
+                    if (member != null && member.role != null) {
+                        showRole(member.role);
+                    } else {
+                        tvUserRole.setVisibility(View.GONE);
                     }
-                    // User not found in members, hide role
-                    tvUserRole.setVisibility(View.GONE);
                 }
                 
                 @Override
                 public void onError(Exception e) {
-                    // On error, hide role
+                    if (!group.groupId.equals(tvUserRole.getTag())) return;
+                    // User not found in members or error, hide role
                     tvUserRole.setVisibility(View.GONE);
                 }
             });
         }
+
+        private void showRole(String role) {
+            tvUserRole.setText(getRoleText(role));
+            tvUserRole.setBackgroundResource(getRoleBackground(role));
+            tvUserRole.setVisibility(View.VISIBLE);
+        }
         
         private String getRoleText(String role) {
             switch (role) {
@@ -201,20 +201,14 @@ public class GroupsFragment extends BaseFragment {
 					}
 					android.util.Log.d("GroupsFragment", "Joining group with code: " + code);
 					final String upper = code.toUpperCase();
-					com.google.firebase.firestore.FirebaseFirestore.getInstance()
-							.collection("groups").whereEqualTo("code", upper).limit(1).get()
-							.addOnSuccessListener(qs -> {
-								final boolean needApproval;
-								if (!qs.isEmpty()) {
-									com.google.firebase.firestore.DocumentSnapshot ddoc = qs.getDocuments().get(0);
-									Boolean ra = ddoc.getBoolean("requireApproval");
-									needApproval = ra != null && ra;
-								} else {
-									needApproval = false;
-								}
+					final com.example.nanaclu.data.repository.GroupRepository repo = new com.example.nanaclu.data.repository.GroupRepository(
+							com.google.firebase.firestore.FirebaseFirestore.getInstance());
+					repo.findGroupByCode(upper)
+							.addOnSuccessListener(ddoc -> {
+								Boolean ra = ddoc != null ? ddoc.getBoolean("requireApproval") : null;
+								final boolean needApproval = ra != null && ra;
 								
 								Runnable doJoin = () -> {
-									com.example.nanaclu.data.repository.GroupRepository repo = new com.example.nanaclu.data.repository.GroupRepository(com.google.firebase.firestore.FirebaseFirestore.getInstance());
 									repo.joinGroupByCode(upper)
 											.addOnSuccessListener(vv -> {
 												android.util.Log.d("GroupsFragment", "Join request success");
@@ -20,6 +20,8 @@ import com.bumptech.glide.load.resource.bitmap.RoundedCorners;
 import com.bumptech.glide.request.RequestOptions;
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Post;
+import com.example.nanaclu.data.repository.LikeStateService;
+import com.example.nanaclu.data.repository.PollStateService;
 import com.example.nanaclu.data.repository.PostRepository;
 import com.example.nanaclu.data.repository.UserRepository;
 import com.example.nanaclu.data.repository.GroupRepository;
@@ -46,6 +48,7 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
     }
 
     private final List<Post> posts = new ArrayList<>();
+    private final java.util.Set<PostViewHolder> pollHolders = new java.util.HashSet<>();
     private final PostRepository postRepository;
     private final PostActionListener actionListener;
     private final UserRepository userRepository;
@@ -53,6 +56,7 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
     private final NoticeRepository noticeRepository;
     private final String currentUserId;
     private final boolean showGroupName; // true for feed, false for group detail
+    private static final String PAYLOAD_LIKE_STATE = "like_state";
 
     public PostAdapter(PostRepository postRepository, PostActionListener actionListener) {
         this(postRepository, actionListener, false); // Default: don't show group name
@@ -72,6 +76,7 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
         posts.clear();
         if (newItems != null) posts.addAll(newItems);
         notifyDataSetChanged();
+        resolveLikeStates(posts);
     }
 
     public void addItems(List<Post> moreItems) {
@@ -79,6 +84,19 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
         int start = posts.size();
         posts.addAll(moreItems);
         notifyItemRangeInserted(start, moreItems.size());
+        resolveLikeStates(moreItems);
+    }
+
+    /** Tra trạng thái like của cả trang bằng một query, cập nhật icon của các row tương ứng */
+    private void resolveLikeStates(List<Post> items) {
+        if (currentUserId == null) return;
+        LikeStateService.getInstance().resolveLiked(new ArrayList<>(items), currentUserId, resolved -> {
+            for (int i = 0; i < posts.size(); i++) {
+                if (resolved.contains(posts.get(i).postId)) {
+                    notifyItemChanged(i, PAYLOAD_LIKE_STATE);
+                }
+            }
+        });
     }
     
     public void removePost(String postId) {
@@ -103,11 +121,39 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
         holder.bind(posts.get(position));
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull PostViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && payloads.contains(PAYLOAD_LIKE_STATE)) {
+            holder.bindLikeIcon(posts.get(position));
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
     @Override
     public int getItemCount() {
         return posts.size();
     }
 
+    private String boundPostIdOf(int position) {
+        return position >= 0 && position < posts.size() ? posts.get(position).postId : null;
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull PostViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.clearPollListeners();
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        // Row chưa bị recycle vẫn giữ observer -> gỡ hết khi adapter rời RecyclerView
+        for (PostViewHolder holder : new ArrayList<>(pollHolders)) {
+            holder.clearPollListeners();
+        }
+    }
+
     class PostViewHolder extends RecyclerView.ViewHolder {
         TextView tvAuthorName, tvCreatedAt, tvContent, tvGroupName;
         TextView tvShowMore;
@@ -122,8 +168,9 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
         LinearLayout layoutPoll;
         LinearLayout layoutPollOptions;
         TextView tvPollTitle, tvPollDescription, tvPollStatus;
-        com.google.firebase.firestore.ListenerRegistration pollOptionsListener;
-        java.util.List<com.google.firebase.firestore.ListenerRegistration> myVoteListeners = new java.util.ArrayList<>();
+        // LiveData poll dùng chung (PollStateService), gỡ observer khi row bị recycle
+        androidx.lifecycle.LiveData<PollStateService.PollState> pollLiveData;
+        androidx.lifecycle.Observer<PollStateService.PollState> pollObserver;
         
         // State for text expansion
         private boolean isTextExpanded = false;
@@ -176,18 +223,8 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
         void bind(Post post) {
             android.util.Log.d("PostAdapter", "bind: Post ID: " + post.postId + ", GroupID: " + post.groupId);
 
-            // Clear previous poll listener (nếu có) để tránh leak khi ViewHolder được reuse
-            if (pollOptionsListener != null) {
-                pollOptionsListener.remove();
-                pollOptionsListener = null;
-            }
-            // Clear my vote listeners
-            if (!myVoteListeners.isEmpty()) {
-                for (com.google.firebase.firestore.ListenerRegistration reg : myVoteListeners) {
-                    try { if (reg != null) reg.remove(); } catch (Exception ignored) {}
-                }
-                myVoteListeners.clear();
-            }
+            // Clear previous poll listeners (nếu có) để tránh leak khi ViewHolder được reuse
+            clearPollListeners();
 
             // Group name (only show in feed)
             if (showGroupName && tvGroupName != null) {
@@ -209,7 +246,7 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
             // Setup expandable content
             setupExpandableContent(post.content);
             
-            tvLikeCount.setText(String.valueOf(post.likeCount));
+            tvLikeCount.setText(String.valueOf(LikeStateService.getInstance().getDisplayCount(post)));
             tvCommentCount.setText(String.valueOf(post.commentCount));
 
             // Load author info (name + avatar). Use photoUrl from User model if available
@@ -318,14 +355,9 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
                 }
             });
 
-            // Set icon like ban đầu theo trạng thái
-            if (currentUserId != null) {
-                postRepository.isPostLiked(post.groupId, post.postId, currentUserId,
-                        liked -> btnLike.setImageResource(liked ? R.drawable.heart1 : R.drawable.heart0),
-                        e -> btnLike.setImageResource(R.drawable.heart0));
-            } else {
-                btnLike.setImageResource(R.drawable.heart0);
-            }
+            // Icon like lấy từ cache trong phiên; trạng thái của cả trang được tra khi setItems/addItems
+            final String boundPostId = post.postId;
+            bindLikeIcon(post);
 
             btnLike.setOnClickListener(v -> {
                 if (currentUserId == null) return;
@@ -337,47 +369,30 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
                         android.widget.Toast.LENGTH_SHORT).show();
                     return;
                 }
-                
-                // Disable button temporarily to prevent double-click
-                btnLike.setEnabled(false);
-                
-                postRepository.isPostLiked(post.groupId, post.postId, currentUserId, liked -> {
-                    if (liked) {
-                        // Unlike post
-                        postRepository.unlikePost(post.groupId, post.postId, currentUserId, aVoid -> {
-                            // Update icon and fetch new like count
-                            btnLike.setImageResource(R.drawable.heart0);
-                            fetchAndUpdateLikeCount(post);
-                            btnLike.setEnabled(true);
-                        }, e -> {
-                            android.widget.Toast.makeText(itemView.getContext(), 
-                                "Lỗi khi bỏ thích bài viết", 
-                                android.widget.Toast.LENGTH_SHORT).show();
-                            btnLike.setEnabled(true);
-                        });
-                    } else {
-                        // Like post
-                        postRepository.likePost(post.groupId, post.postId, currentUserId, aVoid -> {
-                            // Update icon and fetch new like count
-                            btnLike.setImageResource(R.drawable.heart1);
-                            fetchAndUpdateLikeCount(post);
-                            btnLike.setEnabled(true);
-                            
-                            // Create notice for post author
-                            createLikeNotice(post);
-                        }, e -> {
-                            android.widget.Toast.makeText(itemView.getContext(), 
-                                "Lỗi khi thích bài viết", 
-                                android.widget.Toast.LENGTH_SHORT).show();
-                            btnLike.setEnabled(true);
+
+                // Cập nhật ngay trên UI; các lần bấm liên tiếp được gộp thành một lần ghi
+                Boolean shown = LikeStateService.getInstance().getCachedLiked(post.postId);
+                boolean liked = LikeStateService.getInstance().toggle(post, currentUserId, Boolean.TRUE.equals(shown),
+                        new LikeStateService.ToggleCallback() {
+                            @Override
+                            public void onCommitted(boolean nowLiked) {
+                                // Create notice for post author
+                                if (nowLiked) createLikeNotice(post);
+                            }
+
+                            @Override
+                            public void onReverted(boolean nowLiked, int displayCount) {
+                                if (boundPostId.equals(boundPostIdOf(getAdapterPosition()))) {
+                                    btnLike.setImageResource(nowLiked ? R.drawable.heart1 : R.drawable.heart0);
+                                    tvLikeCount.setText(String.valueOf(displayCount));
+                                }
+                                android.widget.Toast.makeText(itemView.getContext(),
+                                    "Lỗi khi cập nhật lượt thích",
+                                    android.widget.Toast.LENGTH_SHORT).show();
+                            }
                         });
-                    }
-                }, e -> {
-                    android.widget.Toast.makeText(itemView.getContext(), 
-                        "Lỗi kết nối", 
-                        android.widget.Toast.LENGTH_SHORT).show();
-                    btnLike.setEnabled(true);
-                });
+                btnLike.setImageResource(liked ? R.drawable.heart1 : R.drawable.heart0);
+                tvLikeCount.setText(String.valueOf(LikeStateService.getInstance().getDisplayCount(post)));
                 if (actionListener != null) actionListener.onLike(post);
             });
             btnComment.setOnClickListener(v -> {
@@ -464,28 +479,6 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
             textView.setText(spannableString);
         }
 
-        private void fetchAndUpdateLikeCount(Post post) {
-            // Fetch updated like count from database
-            com.google.firebase.firestore.FirebaseFirestore.getInstance()
-                    .collection("groups")
-                    .document(post.groupId)
-                    .collection("posts")
-                    .document(post.postId)
-                    .get()
-                    .addOnSuccessListener(documentSnapshot -> {
-                        if (documentSnapshot.exists()) {
-                            Long likeCount = documentSnapshot.getLong("likeCount");
-                            if (likeCount != null) {
-                                post.likeCount = likeCount.intValue();
-                                tvLikeCount.setText(String.valueOf(post.likeCount));
-                            }
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        android.util.Log.e("PostAdapter", "Error fetching like count", e);
-                    });
-        }
-
         private void setupPollDisplay(Post post) {
             if (layoutPoll == null || layoutPollOptions == null) return;
 
@@ -505,160 +498,137 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
             }
 
             layoutPollOptions.removeAllViews();
-            // Clean previous my vote listeners
-            if (!myVoteListeners.isEmpty()) {
-                for (com.google.firebase.firestore.ListenerRegistration reg : myVoteListeners) {
-                    try { if (reg != null) reg.remove(); } catch (Exception ignored) {}
+            pollObserver = state -> renderPollOptions(post, ended, state);
+            pollLiveData = PollStateService.getInstance().observe(post.groupId, post.postId, currentUserId);
+            pollLiveData.observeForever(pollObserver);
+            pollHolders.add(this);
+        }
+
+        private void renderPollOptions(Post post, boolean ended, PollStateService.PollState state) {
+            layoutPollOptions.removeAllViews();
+
+            long totalVotes = state.totalVotes;
+            final boolean hideResult = post.pollHideResult != null && post.pollHideResult;
+
+            for (PollStateService.Option option : state.options) {
+                String optionId = option.optionId;
+                String text = option.text;
+                long count = option.count;
+                int percent = (totalVotes > 0) ? (int) (count * 100 / totalVotes) : 0;
+
+                android.widget.LinearLayout row = new android.widget.LinearLayout(itemView.getContext());
+                row.setOrientation(android.widget.LinearLayout.VERTICAL);
+                row.setPadding(0, (int) (4 * itemView.getResources().getDisplayMetrics().density), 0,
+                        (int) (4 * itemView.getResources().getDisplayMetrics().density));
+
+                android.widget.LinearLayout firstLine = new android.widget.LinearLayout(itemView.getContext());
+                firstLine.setOrientation(android.widget.LinearLayout.HORIZONTAL);
+                firstLine.setGravity(android.view.Gravity.CENTER_VERTICAL);
+
+                android.widget.CheckBox cb = new android.widget.CheckBox(itemView.getContext());
+                cb.setEnabled(!ended);
+                cb.setChecked(state.mySelections.contains(optionId));
+
+                android.widget.TextView tvOptionText = new android.widget.TextView(itemView.getContext());
+                android.widget.LinearLayout.LayoutParams lpText = new android.widget.LinearLayout.LayoutParams(0,
+                        android.view.ViewGroup.LayoutParams.WRAP_CONTENT, 1f);
+                tvOptionText.setLayoutParams(lpText);
+                tvOptionText.setText(text != null ? text : "");
+
+                android.widget.TextView tvCount = new android.widget.TextView(itemView.getContext());
+                if (hideResult) {
+                    tvCount.setVisibility(android.view.View.GONE);
+                } else {
+                    tvCount.setVisibility(android.view.View.VISIBLE);
+                    tvCount.setText(count + " phiếu");
                 }
-                myVoteListeners.clear();
-            }
 
-            pollOptionsListener = postRepository.listenPollOptions(
-                    post.groupId,
-                    post.postId,
-                    optionDocs -> {
-                        layoutPollOptions.removeAllViews();
+                firstLine.addView(cb);
+                firstLine.addView(tvOptionText);
+                firstLine.addView(tvCount);
+
+                android.widget.ProgressBar bar = new android.widget.ProgressBar(
+                        itemView.getContext(), null,
+                        android.R.attr.progressBarStyleHorizontal);
+                android.widget.LinearLayout.LayoutParams lpBar = new android.widget.LinearLayout.LayoutParams(
+                        android.view.ViewGroup.LayoutParams.MATCH_PARENT,
+                        (int) (4 * itemView.getResources().getDisplayMetrics().density));
+                lpBar.topMargin = (int) (2 * itemView.getResources().getDisplayMetrics().density);
+                bar.setLayoutParams(lpBar);
+                bar.setMax(100);
+                bar.setProgress(percent);
+                if (hideResult) {
+                    bar.setVisibility(android.view.View.GONE);
+                }
 
-                        long totalVotes = 0L;
-                        for (com.google.firebase.firestore.DocumentSnapshot d : optionDocs) {
-                            Long c = d.getLong("voteCount");
-                            if (c != null) totalVotes += c;
-                        }
+                row.addView(firstLine);
+                row.addView(bar);
 
-                        final boolean hideResult = post.pollHideResult != null && post.pollHideResult;
-
-                        for (com.google.firebase.firestore.DocumentSnapshot d : optionDocs) {
-                            String optionId = d.getId();
-                            String text = d.getString("text");
-                            Long c = d.getLong("voteCount");
-                            long count = c != null ? c : 0L;
-                            int percent = (totalVotes > 0) ? (int) (count * 100 / totalVotes) : 0;
-
-                            android.widget.LinearLayout row = new android.widget.LinearLayout(itemView.getContext());
-                            row.setOrientation(android.widget.LinearLayout.VERTICAL);
-                            row.setPadding(0, (int) (4 * itemView.getResources().getDisplayMetrics().density), 0,
-                                    (int) (4 * itemView.getResources().getDisplayMetrics().density));
-
-                            android.widget.LinearLayout firstLine = new android.widget.LinearLayout(itemView.getContext());
-                            firstLine.setOrientation(android.widget.LinearLayout.HORIZONTAL);
-                            firstLine.setGravity(android.view.Gravity.CENTER_VERTICAL);
-
-                            android.widget.CheckBox cb = new android.widget.CheckBox(itemView.getContext());
-                            cb.setEnabled(!ended);
-
-                            android.widget.TextView tvOptionText = new android.widget.TextView(itemView.getContext());
-                            android.widget.LinearLayout.LayoutParams lpText = new android.widget.LinearLayout.LayoutParams(0,
-                                    android.view.ViewGroup.LayoutParams.WRAP_CONTENT, 1f);
-                            tvOptionText.setLayoutParams(lpText);
-                            tvOptionText.setText(text != null ? text : "");
-
-                            android.widget.TextView tvCount = new android.widget.TextView(itemView.getContext());
-                            if (hideResult) {
-                                tvCount.setVisibility(android.view.View.GONE);
-                            } else {
-                                tvCount.setVisibility(android.view.View.VISIBLE);
-                                tvCount.setText(count + " phiếu");
-                            }
+                row.setOnClickListener(v -> cb.performClick());
 
-                            firstLine.addView(cb);
-                            firstLine.addView(tvOptionText);
-                            firstLine.addView(tvCount);
-
-                            android.widget.ProgressBar bar = new android.widget.ProgressBar(
-                                    itemView.getContext(), null,
-                                    android.R.attr.progressBarStyleHorizontal);
-                            android.widget.LinearLayout.LayoutParams lpBar = new android.widget.LinearLayout.LayoutParams(
-                                    android.view.ViewGroup.LayoutParams.MATCH_PARENT,
-                                    (int) (4 * itemView.getResources().getDisplayMetrics().density));
-                            lpBar.topMargin = (int) (2 * itemView.getResources().getDisplayMetrics().density);
-                            bar.setLayoutParams(lpBar);
-                            bar.setMax(100);
-                            bar.setProgress(percent);
-                            if (hideResult) {
-                                bar.setVisibility(android.view.View.GONE);
-                            }
+                cb.setOnClickListener(v -> {
+                    if (currentUserId == null) return;
+                    if (!NetworkUtils.isNetworkAvailable(itemView.getContext())) {
+                        android.widget.Toast.makeText(itemView.getContext(),
+                                "Không có kết nối Internet",
+                                android.widget.Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    android.util.Log.d("PollVote", "voteOption click: group="+post.groupId+", post="+post.postId+", option="+optionId+", user="+currentUserId);
+                    PollStateService.getInstance().vote(post, optionId, currentUserId,
+                            e -> android.util.Log.e("PollVote", "voteOption error", e));
+                });
 
-                            row.addView(firstLine);
-                            row.addView(bar);
+                // Xem danh sách người đã chọn nếu không ẩn danh
+                boolean anonymous = post.pollAnonymous != null && post.pollAnonymous;
+                boolean allowViewVoters = !anonymous;
+                tvOptionText.setOnClickListener(v -> {
+                    if (!allowViewVoters || anonymous) return;
+                    // TODO: mở bottom sheet hiển thị danh sách user vote option này
+                });
 
-                            row.setOnClickListener(v -> cb.performClick());
+                layoutPollOptions.addView(row);
+            }
 
-                            cb.setOnClickListener(v -> {
-                                if (currentUserId == null) return;
-                                if (!NetworkUtils.isNetworkAvailable(itemView.getContext())) {
-                                    android.widget.Toast.makeText(itemView.getContext(),
-                                            "Không có kết nối Internet",
-                                            android.widget.Toast.LENGTH_SHORT).show();
-                                    return;
-                                }
-                                android.util.Log.d("PollVote", "voteOption click: group="+post.groupId+", post="+post.postId+", option="+optionId+", user="+currentUserId);
-                                postRepository.voteOption(post.groupId, post.postId, optionId, currentUserId,
-                                        aVoid -> android.util.Log.d("PollVote", "voteOption success for option="+optionId),
-                                        e -> android.util.Log.e("PollVote", "voteOption error", e));
-                            });
-
-                            // Xem danh sách người đã chọn nếu không ẩn danh
-                            boolean anonymous = post.pollAnonymous != null && post.pollAnonymous;
-                            boolean allowViewVoters = !anonymous;
-                            tvOptionText.setOnClickListener(v -> {
-                                if (!allowViewVoters || anonymous) return;
-                                // TODO: mở bottom sheet hiển thị danh sách user vote option này
-                            });
-
-                            layoutPollOptions.addView(row);
-
-                            // Listen my vote for this option to keep checkbox state
-                            if (currentUserId != null) {
-                                com.google.firebase.firestore.DocumentReference optRef = com.google.firebase.firestore.FirebaseFirestore.getInstance()
-                                        .collection("groups").document(post.groupId)
-                                        .collection("posts").document(post.postId)
-                                        .collection("options").document(optionId);
-                                com.google.firebase.firestore.ListenerRegistration reg = optRef
-                                        .collection("votes").document(currentUserId)
-                                        .addSnapshotListener((snap, err) -> {
-                                            if (err != null) {
-                                                android.util.Log.e("PollVote", "listen my vote error", err);
-                                                return;
-                                            }
-                                            boolean checked = snap != null && snap.exists();
-                                            cb.setOnCheckedChangeListener(null);
-                                            cb.setChecked(checked);
-                                            // reattach click listener (already set)
-                                        });
-                                myVoteListeners.add(reg);
-                            }
-                        }
+            // Add "Thêm lựa chọn" button if allowed
+            boolean allowAdd = post.pollAllowAddOption != null && post.pollAllowAddOption && !ended;
+            if (allowAdd) {
+                android.widget.TextView tvAdd = new android.widget.TextView(itemView.getContext());
+                tvAdd.setText("+ Thêm lựa chọn");
+                tvAdd.setTextColor(0xFF1976D2);
+                tvAdd.setPadding(0, (int)(8*itemView.getResources().getDisplayMetrics().density), 0, 0);
+                tvAdd.setOnClickListener(v -> {
+                    android.widget.EditText input = new android.widget.EditText(itemView.getContext());
+                    input.setHint("Nhập lựa chọn");
+                    new androidx.appcompat.app.AlertDialog.Builder(itemView.getContext())
+                            .setTitle("Thêm lựa chọn")
+                            .setView(input)
+                            .setPositiveButton("Thêm", (dialog, which) -> {
+                                String txt = input.getText() != null ? input.getText().toString().trim() : "";
+                                if (txt.isEmpty()) return;
+                                postRepository.addPollOption(post.groupId, post.postId, txt,
+                                        aVoid -> android.util.Log.d("PollVote", "add option success"),
+                                        e -> android.util.Log.e("PollVote", "add option error", e));
+                            })
+                            .setNegativeButton("Hủy", null)
+                            .show();
+                });
+                layoutPollOptions.addView(tvAdd);
+            }
+        }
 
-                        // Add "Thêm lựa chọn" button if allowed
-                        boolean allowAdd = post.pollAllowAddOption != null && post.pollAllowAddOption && !ended;
-                        if (allowAdd) {
-                            android.widget.TextView tvAdd = new android.widget.TextView(itemView.getContext());
-                            tvAdd.setText("+ Thêm lựa chọn");
-                            tvAdd.setTextColor(0xFF1976D2);
-                            tvAdd.setPadding(0, (int)(8*itemView.getResources().getDisplayMetrics().density), 0, 0);
-                            tvAdd.setOnClickListener(v -> {
-                                android.widget.EditText input = new android.widget.EditText(itemView.getContext());
-                                input.setHint("Nhập lựa chọn");
-                                new androidx.appcompat.app.AlertDialog.Builder(itemView.getContext())
-                                        .setTitle("Thêm lựa chọn")
-                                        .setView(input)
-                                        .setPositiveButton("Thêm", (dialog, which) -> {
-                                            String txt = input.getText() != null ? input.getText().toString().trim() : "";
-                                            if (txt.isEmpty()) return;
-                                            postRepository.addPollOption(post.groupId, post.postId, txt,
-                                                    aVoid -> android.util.Log.d("PollVote", "add option success"),
-                                                    e -> android.util.Log.e("PollVote", "add option error", e));
-                                        })
-                                        .setNegativeButton("Hủy", null)
-                                        .show();
-                            });
-                            layoutPollOptions.addView(tvAdd);
-                        }
-                    },
-                    error -> {
-                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostAdapter", error);
-                        android.util.Log.e("PollVote", "listenPollOptions error", error);
-                    });
+        void bindLikeIcon(Post post) {
+            Boolean liked = LikeStateService.getInstance().getCachedLiked(post.postId);
+            btnLike.setImageResource(Boolean.TRUE.equals(liked) ? R.drawable.heart1 : R.drawable.heart0);
+        }
+
+        void clearPollListeners() {
+            if (pollLiveData != null && pollObserver != null) {
+                pollLiveData.removeObserver(pollObserver);
+            }
+            pollLiveData = null;
+            pollObserver = null;
+            pollHolders.remove(this);
         }
 
         void setupImagesDynamic(Post post) {
@@ -839,12 +809,17 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
             
             // Set video duration
             tvVideoDuration.setText(formatDuration(post.videoDurationMs));
+
+            // Prefetch vài giây đầu vào cache để mở player là phát ngay
+            com.example.nanaclu.utils.VideoCacheManager.getInstance(itemView.getContext())
+                    .prefetch(post.videoUrl);
             
             // Set click listener to open video player
             videoContainer.setOnClickListener(v -> {
                 android.content.Intent intent = new android.content.Intent(
                     itemView.getContext(), com.example.nanaclu.ui.video.VideoPlayerActivity.class);
                 intent.putExtra("videoUrl", post.videoUrl);
+                intent.putExtra("videoHlsUrl", post.videoHlsUrl);
                 intent.putExtra("postId", post.postId);
                 itemView.getContext().startActivity(intent);
             });
@@ -956,9 +931,13 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
 
             android.util.Log.d("PostAdapter", "loadGroupName: Loading group with ID: " + groupId);
 
+            // getGroupById đọc qua GroupCache: các post cùng group chỉ tốn một lần đọc
+            tvGroupName.setTag(groupId);
             groupRepository.getGroupById(groupId, new GroupRepository.GroupCallback() {
                 @Override
                 public void onSuccess(Group group) {
+                    // View đã được tái sử dụng cho post khác
+                    if (!groupId.equals(tvGroupName.getTag())) return;
                     if (group != null && group.name != null) {
                         tvGroupName.setText(group.name);
                         android.util.Log.d("PostAdapter", "loadGroupName: Loaded group name: " + group.name);
@@ -989,6 +968,7 @@ public class PostAdapter extends RecyclerView.Adapter<PostAdapter.PostViewHolder
 
                 @Override
                 public void onError(Exception e) {
+                    if (!groupId.equals(tvGroupName.getTag())) return;
                     tvGroupName.setText("Unknown Group");
                     android.util.Log.e("PostAdapter", "loadGroupName: Error loading group", e);
                 }
@@ -32,6 +32,8 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Post;
+import com.example.nanaclu.data.repository.PostPublishQueue;
+import com.example.nanaclu.data.repository.PostPublisher;
 import com.example.nanaclu.data.repository.PostRepository;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
@@ -54,6 +56,7 @@ public class CreatePostActivity extends AppCompatActivity {
     private static final int PERMISSION_REQUEST_CODE = 1002;
     private static final int PICK_VIDEO_REQUEST = 1004;
     private static final int PERMISSION_VIDEO = 1003;
+    private static final int PERMISSION_NOTIFICATIONS = 1005;
 
     private MaterialToolbar toolbar;
     private TextInputLayout tilContent;
@@ -70,6 +73,8 @@ public class CreatePostActivity extends AppCompatActivity {
     private ImageView ivPlayIcon;
     private TextView tvVideoDuration;
     private ImageButton btnRemoveVideo;
+    private android.widget.HorizontalScrollView scrollThumbCandidates;
+    private android.widget.LinearLayout layoutThumbCandidates;
 
     private PostRepository postRepository;
     private SelectedImageAdapter imageAdapter;
@@ -106,6 +111,8 @@ public class CreatePostActivity extends AppCompatActivity {
         setupRecyclerView();
         setupClickListeners();
         initRepository();
+        // Tiến độ đăng bài nền hiển thị qua notification
+        requestNotificationPermissionIfNeeded();
     }
     
     private void initViews() {
@@ -124,6 +131,8 @@ public class CreatePostActivity extends AppCompatActivity {
         ivPlayIcon = findViewById(R.id.ivPlayIcon);
         tvVideoDuration = findViewById(R.id.tvVideoDuration);
         btnRemoveVideo = findViewById(R.id.btnRemoveVideo);
+        scrollThumbCandidates = findViewById(R.id.scrollThumbCandidates);
+        layoutThumbCandidates = findViewById(R.id.layoutThumbCandidates);
     }
     
     private void setupToolbar() {
@@ -301,21 +310,71 @@ public class CreatePostActivity extends AppCompatActivity {
     }
 
     private void showVideoPreview(Uri videoUri) {
-        // Generate thumbnail
-        Bitmap thumbnail = PostRepository.generateVideoThumbnail(this, videoUri);
-        if (thumbnail != null) {
-            ivVideoThumb.setImageBitmap(thumbnail);
-        }
+        // Show video preview ngay, thumbnail + metadata được trích xuất trên background
+        ivVideoThumb.setImageDrawable(null);
+        tvVideoDuration.setText("...");
+        videoPreviewContainer.setVisibility(View.VISIBLE);
+        scrollThumbCandidates.setVisibility(View.GONE);
 
-        // Get video metadata
-        PostRepository.VideoMetadata metadata = PostRepository.getVideoMetadata(this, videoUri);
-        long sizeBytes = getVideoFileSizeBytes(videoUri);
-        String info = formatDuration(metadata.duration);
-        if (sizeBytes > 0) info += " · " + formatSize(sizeBytes);
-        tvVideoDuration.setText(info);
+        com.example.nanaclu.utils.VideoMetadataService.getInstance().load(this, videoUri,
+                new com.example.nanaclu.utils.VideoMetadataService.Callback() {
+                    @Override
+                    public void onReady(com.example.nanaclu.utils.VideoMetadataService.VideoInfo info) {
+                        if (isFinishing() || !videoUri.equals(selectedVideoUri)) return;
+                        ivVideoThumb.setImageBitmap(info.thumbnail);
+                        String text = formatDuration(info.metadata.duration);
+                        if (info.metadata.fileSize > 0) text += " · " + formatSize(info.metadata.fileSize);
+                        tvVideoDuration.setText(text);
+                        showThumbnailCandidates(info);
+                    }
 
-        // Show video preview
-        videoPreviewContainer.setVisibility(View.VISIBLE);
+                    @Override
+                    public void onError(Exception e) {
+                        if (isFinishing() || !videoUri.equals(selectedVideoUri)) return;
+                        tvVideoDuration.setText("");
+                        Toast.makeText(CreatePostActivity.this, "Không thể đọc thông tin video", Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
+
+    /** Hiển thị các frame ứng viên, chạm để chọn làm thumbnail */
+    private void showThumbnailCandidates(com.example.nanaclu.utils.VideoMetadataService.VideoInfo info) {
+        layoutThumbCandidates.removeAllViews();
+        if (info.candidateFrames.size() <= 1) {
+            scrollThumbCandidates.setVisibility(View.GONE);
+            return;
+        }
+        float density = getResources().getDisplayMetrics().density;
+        int height = (int) (56 * density);
+        int margin = (int) (4 * density);
+        for (int i = 0; i < info.candidateFrames.size(); i++) {
+            Bitmap frame = info.candidateFrames.get(i);
+            ImageView iv = new ImageView(this);
+            int width = Math.round(height * (float) frame.getWidth() / Math.max(frame.getHeight(), 1));
+            android.widget.LinearLayout.LayoutParams lp = new android.widget.LinearLayout.LayoutParams(width, height);
+            lp.setMargins(margin, 0, margin, 0);
+            iv.setLayoutParams(lp);
+            iv.setScaleType(ImageView.ScaleType.CENTER_CROP);
+            iv.setImageBitmap(frame);
+            iv.setAlpha(i == info.selectedIndex ? 1f : 0.5f);
+            final int index = i;
+            iv.setOnClickListener(v -> com.example.nanaclu.utils.VideoMetadataService.getInstance()
+                    .selectCandidate(info.uri, index, new com.example.nanaclu.utils.VideoMetadataService.Callback() {
+                        @Override
+                        public void onReady(com.example.nanaclu.utils.VideoMetadataService.VideoInfo updated) {
+                            if (isFinishing() || !updated.uri.equals(selectedVideoUri)) return;
+                            ivVideoThumb.setImageBitmap(updated.thumbnail);
+                            for (int c = 0; c < layoutThumbCandidates.getChildCount(); c++) {
+                                layoutThumbCandidates.getChildAt(c).setAlpha(c == updated.selectedIndex ? 1f : 0.5f);
+                            }
+                        }
+
+                        @Override
+                        public void onError(Exception e) { }
+                    }));
+            layoutThumbCandidates.addView(iv);
+        }
+        scrollThumbCandidates.setVisibility(View.VISIBLE);
     }
 
     private String formatDuration(long durationMs) {
@@ -341,8 +400,11 @@ public class CreatePostActivity extends AppCompatActivity {
     }
 
     private void removeVideo() {
+        com.example.nanaclu.utils.VideoMetadataService.getInstance().evict(selectedVideoUri);
         selectedVideoUri = null;
         videoPreviewContainer.setVisibility(View.GONE);
+        scrollThumbCandidates.setVisibility(View.GONE);
+        layoutThumbCandidates.removeAllViews();
         cardAddImage.setEnabled(true); // Re-enable image picker
     }
 
@@ -423,355 +485,95 @@ public class CreatePostActivity extends AppCompatActivity {
         post.content = content;
         post.imageUrls = new ArrayList<>();
 
-        boolean hasVideo = selectedVideoUri != null;
-        boolean hasImages = !selectedImagePaths.isEmpty();
-
-        if (hasVideo && hasImages) {
-            // Post có cả ảnh và video: upload ảnh trước rồi tiếp tục với upload video
-            createPostWithImagesAndVideo(post);
-        } else if (hasVideo) {
-            // Chỉ có video
-            createPostWithVideo(post);
-        } else if (hasImages) {
-            // Chỉ có ảnh
-            processImagesWithStorage(post);
-        } else {
-            // Không có media, tạo post trực tiếp
-            routePostCreation(post, new PostRepository.PostCallback() {
-                @Override
-                public void onSuccess(Post createdPost) {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        Toast.makeText(CreatePostActivity.this, "Đã gửi bài đăng", Toast.LENGTH_SHORT).show();
-                        setResult(Activity.RESULT_OK);
-                        finish();
-                    });
-                }
-                
-                @Override
-                public void onError(Exception e) {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CreatePostActivity", e);
-                        String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(e);
-                        if (errorMessage != null) {
-                            Toast.makeText(CreatePostActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
-                        } else {
-                            Toast.makeText(CreatePostActivity.this, "Lỗi: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        }
-                    });
-                }
-            });
-        }
-    }
-
-    private void createPostWithImagesAndVideo(Post post) {
-        List<byte[]> imageDataList = new ArrayList<>();
-
-        for (String imagePath : selectedImagePaths) {
-            byte[] imageData = convertImageToByteArray(imagePath);
-            if (imageData != null) {
-                imageDataList.add(imageData);
-            }
-        }
-
-        if (imageDataList.isEmpty()) {
-            // Không có ảnh hợp lệ, fallback về luồng chỉ video
-            createPostWithVideo(post);
+        if (selectedVideoUri == null && selectedImagePaths.isEmpty()) {
+            publishTextPost(new PostPublisher.Request(post, null, null, null, null));
             return;
         }
-
-        postRepository.uploadMultipleImages(imageDataList,
-            urls -> {
-                // Upload ảnh thành công, set URLs vào post rồi tiếp tục upload video
-                post.imageUrls = urls;
-                createPostWithVideo(post);
-            },
-            e -> {
-                runOnUiThread(() -> {
-                    showLoading(false);
-                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CreatePostActivity", e);
-                    String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(e);
-                    if (errorMessage != null) {
-                        Toast.makeText(CreatePostActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(CreatePostActivity.this, "Lỗi upload ảnh: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    }
-                });
-            }
-        );
-    }
-
-    private void processImagesWithStorage(Post post) {
-        // Convert image paths to byte arrays
-        List<byte[]> imageDataList = new ArrayList<>();
-        
-        for (String imagePath : selectedImagePaths) {
-            byte[] imageData = convertImageToByteArray(imagePath);
-            if (imageData != null) {
-                imageDataList.add(imageData);
-            }
-        }
-        
-        if (imageDataList.isEmpty()) {
-            // No valid images, create post without images
-            routePostCreation(post, new PostRepository.PostCallback() {
-                @Override
-                public void onSuccess(Post createdPost) {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        Toast.makeText(CreatePostActivity.this, "Đã gửi bài đăng", Toast.LENGTH_SHORT).show();
-                        setResult(Activity.RESULT_OK);
-                        finish();
-                    });
-                }
-                
-                @Override
-                public void onError(Exception e) {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CreatePostActivity", e);
-                        String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(e);
-                        if (errorMessage != null) {
-                            Toast.makeText(CreatePostActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
-                        } else {
-                            Toast.makeText(CreatePostActivity.this, "Lỗi: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        }
-                    });
-                }
-            });
+        if (selectedVideoUri == null) {
+            publish(new PostPublisher.Request(post, selectedImagePaths, null, null, null));
             return;
         }
-        
-        // Upload images to Firebase Storage
-        postRepository.uploadMultipleImages(imageDataList, 
-            urls -> {
-                // Upload thành công, set URLs vào post
-                post.imageUrls = urls;
-                
-                // Route post creation (check approval requirement)
-                routePostCreation(post, new PostRepository.PostCallback() {
+
+        // Thumbnail (đã nén JPEG) + metadata lấy từ cache, không decode lại video
+        final Uri videoUri = selectedVideoUri;
+        com.example.nanaclu.utils.VideoMetadataService.getInstance().load(this, videoUri,
+                new com.example.nanaclu.utils.VideoMetadataService.Callback() {
                     @Override
-                    public void onSuccess(Post createdPost) {
-                        runOnUiThread(() -> {
-                            showLoading(false);
-                            Toast.makeText(CreatePostActivity.this, "Đã gửi bài đăng", Toast.LENGTH_SHORT).show();
-                            setResult(Activity.RESULT_OK);
-                            finish();
-                        });
+                    public void onReady(com.example.nanaclu.utils.VideoMetadataService.VideoInfo info) {
+                        publish(new PostPublisher.Request(post, selectedImagePaths, videoUri,
+                                info.thumbnailJpeg, info.metadata));
                     }
-                    
+
                     @Override
                     public void onError(Exception e) {
-                        runOnUiThread(() -> {
-                            showLoading(false);
-                            com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CreatePostActivity", e);
-                            String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(e);
-                            if (errorMessage != null) {
-                                Toast.makeText(CreatePostActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
-                            } else {
-                                Toast.makeText(CreatePostActivity.this, "Lỗi tạo bài đăng: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                            }
-                        });
-                    }
-                });
-            },
-            e -> {
-                runOnUiThread(() -> {
-                    showLoading(false);
-                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CreatePostActivity", e);
-                    String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(e);
-                    if (errorMessage != null) {
-                        Toast.makeText(CreatePostActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(CreatePostActivity.this, "Lỗi upload ảnh: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    }
-                });
-            }
-        );
-    }
-
-    private void createPostWithVideo(Post post) {
-        // 1. Generate thumbnail
-        Bitmap thumb = PostRepository.generateVideoThumbnail(this, selectedVideoUri);
-        if (thumb == null) {
-            runOnUiThread(() -> {
-                showLoading(false);
-                Toast.makeText(this, "Không thể tạo thumbnail cho video", Toast.LENGTH_SHORT).show();
-            });
-            return;
-        }
-        byte[] thumbBytes = PostRepository.compressBitmapToJpeg(thumb);
-        
-        // 2. Get metadata
-        PostRepository.VideoMetadata meta = PostRepository.getVideoMetadata(this, selectedVideoUri);
-        
-        // 3. Upload thumbnail
-        postRepository.uploadVideoThumbnail(thumbBytes, groupId, post.postId,
-            thumbUrl -> {
-                // 4. Upload video with progress
-                postRepository.uploadVideoToStorage(selectedVideoUri, groupId, post.postId,
-                    progress -> {
-                        // Update progress on UI thread
-                        runOnUiThread(() -> {
-                            int progressPercent = (int) (100.0 * progress.getBytesTransferred() / progress.getTotalByteCount());
-                            // Could show progress dialog here
-                        });
-                    },
-                    videoUrl -> {
-                        // 5. Create post with video fields
-                        post.hasVideo = true;
-                        post.videoUrl = videoUrl;
-                        post.videoThumbUrl = thumbUrl;
-                        post.videoDurationMs = meta.duration;
-                        post.videoWidth = meta.width;
-                        post.videoHeight = meta.height;
-                        routePostCreation(post, new PostRepository.PostCallback() {
-                            @Override
-                            public void onSuccess(Post createdPost) {
-                                runOnUiThread(() -> {
-                                    showLoading(false);
-                                    Toast.makeText(CreatePostActivity.this, "Đã gửi bài đăng", Toast.LENGTH_SHORT).show();
-                                    setResult(Activity.RESULT_OK);
-                                    finish();
-                                });
-                            }
-                            
-                            @Override
-                            public void onError(Exception e) {
-                                runOnUiThread(() -> {
-                                    showLoading(false);
-                                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CreatePostActivity", e);
-                                    String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(e);
-                                    if (errorMessage != null) {
-                                        Toast.makeText(CreatePostActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
-                                    } else {
-                                        Toast.makeText(CreatePostActivity.this, "Lỗi tạo bài đăng: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                                    }
-                                });
-                            }
-                        });
-                    },
-                    error -> {
-                        runOnUiThread(() -> {
-                            showLoading(false);
-                            com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CreatePostActivity", error);
-                            String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(error);
-                            if (errorMessage != null) {
-                                Toast.makeText(CreatePostActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
-                            } else {
-                                Toast.makeText(CreatePostActivity.this, "Lỗi upload video: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                            }
-                        });
-                    });
-            },
-            error -> {
-                runOnUiThread(() -> {
-                    showLoading(false);
-                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CreatePostActivity", error);
-                    String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(error);
-                    if (errorMessage != null) {
-                        Toast.makeText(CreatePostActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(CreatePostActivity.this, "Lỗi upload thumbnail: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+                        showLoading(false);
+                        Toast.makeText(CreatePostActivity.this, "Không thể tạo thumbnail cho video", Toast.LENGTH_SHORT).show();
                     }
                 });
-            });
     }
 
-    /** Decide whether to create immediate post or pending post based on group setting and role */
-    private void routePostCreation(Post post, PostRepository.PostCallback callback) {
-        // Load group setting to check requirePostApproval
-        com.example.nanaclu.data.repository.GroupRepository gRepo = new com.example.nanaclu.data.repository.GroupRepository(FirebaseFirestore.getInstance());
-        gRepo.getGroupById(post.groupId, new com.example.nanaclu.data.repository.GroupRepository.GroupCallback() {
+    /**
+     * Bài chỉ có chữ: ghi thẳng qua PostPublisher (không có gì để upload), chỉ đóng màn hình
+     * khi post đã có trong Firestore để màn hình trước refresh là thấy ngay
+     */
+    private void publishTextPost(PostPublisher.Request request) {
+        new PostPublisher(this, FirebaseFirestore.getInstance()).publish(request, new PostPublisher.PublishCallback() {
             @Override
-            public void onSuccess(com.example.nanaclu.data.model.Group group) {
-                // If approval required and current user is not owner/admin -> pending
-                if (group != null && group.requirePostApproval) {
-                    gRepo.getMemberById(post.groupId, currentUserId, new com.example.nanaclu.data.repository.GroupRepository.MemberCallback() {
-                        @Override
-                        public void onSuccess(com.example.nanaclu.data.model.Member member) {
-                            boolean elevated = member != null && ("owner".equals(member.role) || "admin".equals(member.role));
-                            if (elevated) {
-                                postRepository.createPost(post, callback);
-                            } else {
-                                postRepository.createPendingPost(post, callback);
-                            }
-                        }
+            public void onProgress(int percent) { }
 
-                        @Override
-                        public void onError(Exception e) {
-                            // Fallback: treat as normal user
-                            postRepository.createPendingPost(post, callback);
-                        }
-                    });
-                } else {
-                    postRepository.createPost(post, callback);
-                }
+            @Override
+            public void onSuccess(Post createdPost) {
+                showLoading(false);
+                Toast.makeText(CreatePostActivity.this, "Đã gửi bài đăng", Toast.LENGTH_SHORT).show();
+                setResult(Activity.RESULT_OK);
+                finish();
             }
 
             @Override
             public void onError(Exception e) {
-                // If cannot load group, fallback to direct create to avoid blocking user
-                postRepository.createPost(post, callback);
+                showLoading(false);
+                com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("CreatePostActivity", e);
+                String errorMessage = com.example.nanaclu.utils.NetworkErrorLogger.getNetworkErrorMessage(e);
+                if (errorMessage != null) {
+                    Toast.makeText(CreatePostActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(CreatePostActivity.this, "Lỗi tạo bài đăng: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                }
             }
         });
     }
 
-    private byte[] convertImageToByteArray(String imagePath) {
-        try {
-            // Tối ưu hóa ảnh trước khi upload
-            final int maxDimension = 1600; // giới hạn cạnh dài
-            final int targetMaxBytes = 1024 * 1024; // 1MB
-
-            // 1) Decode kích thước ban đầu
-            android.graphics.BitmapFactory.Options bounds = new android.graphics.BitmapFactory.Options();
-            bounds.inJustDecodeBounds = true;
-            android.graphics.BitmapFactory.decodeFile(imagePath, bounds);
-            int srcW = bounds.outWidth;
-            int srcH = bounds.outHeight;
-
-            // 2) Tính inSampleSize sơ bộ để cạnh dài ~= maxDimension
-            android.graphics.BitmapFactory.Options opts = new android.graphics.BitmapFactory.Options();
-            opts.inSampleSize = 1;
-            int longer = Math.max(srcW, srcH);
-            while (longer / opts.inSampleSize > maxDimension) {
-                opts.inSampleSize *= 2;
+    /**
+     * Xếp bài đăng có media vào hàng đợi nền (PostPublishQueue): upload + ghi Post + đóng gói HLS
+     * chạy trong WorkManager nên người dùng có thể rời màn hình ngay, tiến độ hiện ở notification
+     */
+    private void publish(PostPublisher.Request request) {
+        PostPublishQueue.enqueue(this, request, new PostPublishQueue.EnqueueCallback() {
+            @Override
+            public void onQueued(String postId) {
+                showLoading(false);
+                Toast.makeText(CreatePostActivity.this, "Bài đăng đang được tải lên", Toast.LENGTH_SHORT).show();
+                setResult(Activity.RESULT_OK);
+                finish();
             }
 
-            // 3) Decode bitmap với inSampleSize
-            android.graphics.Bitmap bitmap = android.graphics.BitmapFactory.decodeFile(imagePath, opts);
-            if (bitmap == null) return null;
-
-            // 4) Scale chính xác về maxDimension nếu vẫn vượt
-            int bw = bitmap.getWidth();
-            int bh = bitmap.getHeight();
-            int curLonger = Math.max(bw, bh);
-            if (curLonger > maxDimension) {
-                float scale = (float) maxDimension / (float) curLonger;
-                int newW = Math.round(bw * scale);
-                int newH = Math.round(bh * scale);
-                bitmap = android.graphics.Bitmap.createScaledBitmap(bitmap, newW, newH, true);
+            @Override
+            public void onError(Exception e) {
+                showLoading(false);
+                Toast.makeText(CreatePostActivity.this, "Lỗi tạo bài đăng: " + e.getMessage(), Toast.LENGTH_SHORT).show();
             }
+        });
+    }
 
-            // 5) Nén JPEG chất lượng động để đạt dưới targetMaxBytes
-            int quality = 90;
-            byte[] jpegBytes;
-            do {
-                ByteArrayOutputStream jpegOut = new ByteArrayOutputStream();
-                bitmap.compress(android.graphics.Bitmap.CompressFormat.JPEG, quality, jpegOut);
-                jpegBytes = jpegOut.toByteArray();
-                quality -= 5;
-            } while (jpegBytes.length > targetMaxBytes && quality >= 60);
-
-            return jpegBytes;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+    private void requestNotificationPermissionIfNeeded() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                    PERMISSION_NOTIFICATIONS);
         }
     }
 
-
     private void showLoading(boolean show) {
         progressBar.setVisibility(show ? View.VISIBLE : View.GONE);
         btnPost.setEnabled(!show);
@@ -1,10 +1,14 @@
 package com.example.nanaclu.ui.post;
 
 import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -27,6 +31,9 @@ public class PendingPostsActivity extends AppCompatActivity implements PendingPo
     private RecyclerView recyclerView;
     private View emptyView;
     private PendingPostAdapter adapter;
+    private final List<Post> pendingPosts = new ArrayList<>();
+    // Đang duyệt / từ chối thì bỏ qua thao tác mới cho tới khi xong
+    private boolean moderating = false;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -97,6 +104,8 @@ public class PendingPostsActivity extends AppCompatActivity implements PendingPo
         postRepository.getPendingPosts(groupId, new PostRepository.PostsCallback() {
             @Override
             public void onSuccess(List<Post> posts) {
+                pendingPosts.clear();
+                pendingPosts.addAll(posts);
                 adapter.setItems(posts);
                 updateEmptyState(posts.isEmpty());
             }
@@ -114,36 +123,81 @@ public class PendingPostsActivity extends AppCompatActivity implements PendingPo
     }
 
     @Override
-    public void onApprove(Post post) {
-        postRepository.approvePost(groupId, post.postId, new PostRepository.PostCallback() {
-            @Override
-            public void onSuccess(Post p) {
-                Toast.makeText(PendingPostsActivity.this, "Đã duyệt bài", Toast.LENGTH_SHORT).show();
-                loadPendingPosts();
-            }
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_pending_posts, menu);
+        return true;
+    }
 
-            @Override
-            public void onError(Exception e) {
-                Toast.makeText(PendingPostsActivity.this, "Lỗi duyệt bài: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        });
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_approve_all) {
+            confirmModerateAll(true);
+            return true;
+        } else if (item.getItemId() == R.id.action_reject_all) {
+            confirmModerateAll(false);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void confirmModerateAll(boolean approve) {
+        if (pendingPosts.isEmpty() || moderating) return;
+        new AlertDialog.Builder(this)
+                .setTitle(approve ? "Duyệt tất cả" : "Từ chối tất cả")
+                .setMessage((approve ? "Duyệt " : "Từ chối ") + pendingPosts.size() + " bài viết đang chờ?")
+                .setPositiveButton("Đồng ý", (d, w) -> {
+                    List<String> ids = new ArrayList<>();
+                    for (Post p : pendingPosts) ids.add(p.postId);
+                    moderate(ids, approve);
+                })
+                .setNegativeButton("Hủy", null)
+                .show();
+    }
+
+    @Override
+    public void onApprove(Post post) {
+        moderate(java.util.Collections.singletonList(post.postId), true);
     }
 
     @Override
     public void onReject(Post post) {
-        postRepository.rejectPost(groupId, post.postId, new PostRepository.PostCallback() {
+        moderate(java.util.Collections.singletonList(post.postId), false);
+    }
+
+    /** Duyệt / từ chối danh sách bài qua API hàng loạt, tiến độ hiển thị ở subtitle của toolbar */
+    private void moderate(List<String> postIds, boolean approve) {
+        if (moderating) return;
+        moderating = true;
+        postRepository.moderatePendingPosts(groupId, postIds, approve, new PostRepository.ModerationCallback() {
+            @Override
+            public void onProgress(int done, int total) {
+                if (total > 1 && getSupportActionBar() != null) {
+                    getSupportActionBar().setSubtitle("Đang xử lý " + done + "/" + total);
+                }
+            }
+
             @Override
-            public void onSuccess(Post p) {
-                Toast.makeText(PendingPostsActivity.this, "Đã từ chối bài", Toast.LENGTH_SHORT).show();
+            public void onComplete(int processed) {
+                finishModerating();
+                String message = postIds.size() == 1
+                        ? (approve ? "Đã duyệt bài" : "Đã từ chối bài")
+                        : (approve ? "Đã duyệt " : "Đã từ chối ") + processed + " bài";
+                Toast.makeText(PendingPostsActivity.this, message, Toast.LENGTH_SHORT).show();
                 loadPendingPosts();
             }
 
             @Override
             public void onError(Exception e) {
-                Toast.makeText(PendingPostsActivity.this, "Lỗi từ chối: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                finishModerating();
+                Toast.makeText(PendingPostsActivity.this,
+                        (approve ? "Lỗi duyệt bài: " : "Lỗi từ chối: ") + e.getMessage(), Toast.LENGTH_SHORT).show();
+                loadPendingPosts();
             }
         });
     }
-}
-
 
+    private void finishModerating() {
+        moderating = false;
+        if (getSupportActionBar() != null) getSupportActionBar().setSubtitle(null);
+    }
+}
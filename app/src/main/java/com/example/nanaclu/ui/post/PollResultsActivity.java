@@ -27,29 +27,30 @@ public class PollResultsActivity extends AppCompatActivity {
     }
 
     private void loadResults(String groupId, String postId) {
-        FirebaseFirestore.getInstance()
-                .collection("groups").document(groupId)
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        db.collection("groups").document(groupId)
                 .collection("posts").document(postId)
                 .collection("options")
                 .orderBy("createdAt")
                 .get()
-                .addOnSuccessListener(snap -> {
-                    container.removeAllViews();
-                    long total = 0L;
-                    for (com.google.firebase.firestore.DocumentSnapshot d : snap.getDocuments()) {
-                        Long c = d.getLong("voteCount"); total += c != null ? c : 0L;
-                    }
-                    for (com.google.firebase.firestore.DocumentSnapshot d : snap.getDocuments()) {
-                        String text = d.getString("text");
-                        Long c = d.getLong("voteCount"); long count = c != null ? c : 0L;
-                        int percent = total > 0 ? (int)(count * 100 / total) : 0;
-                        TextView tv = new TextView(this);
-                        tv.setText((text != null ? text : "") + " — " + count + " phiếu (" + percent + "%)");
-                        tv.setTextSize(16f);
-                        int pad = (int)(8*getResources().getDisplayMetrics().density);
-                        tv.setPadding(0, pad, 0, pad);
-                        container.addView(tv);
-                    }
-                });
+                .addOnSuccessListener(snap -> new com.example.nanaclu.data.repository.PollRepository(db)
+                        .getVoteCounts(groupId, postId, counts -> {
+                            container.removeAllViews();
+                            long total = 0L;
+                            for (com.google.firebase.firestore.DocumentSnapshot d : snap.getDocuments()) {
+                                Long c = counts.get(d.getId()); total += c != null ? c : 0L;
+                            }
+                            for (com.google.firebase.firestore.DocumentSnapshot d : snap.getDocuments()) {
+                                String text = d.getString("text");
+                                Long c = counts.get(d.getId()); long count = c != null ? c : 0L;
+                                int percent = total > 0 ? (int)(count * 100 / total) : 0;
+                                TextView tv = new TextView(this);
+                                tv.setText((text != null ? text : "") + " — " + count + " phiếu (" + percent + "%)");
+                                tv.setTextSize(16f);
+                                int pad = (int)(8*getResources().getDisplayMetrics().density);
+                                tv.setPadding(0, pad, 0, pad);
+                                container.addView(tv);
+                            }
+                        }, e -> android.util.Log.e("PollResults", "load counts failed", e)));
     }
 }
@@ -30,8 +30,11 @@ import com.bumptech.glide.Glide;
 import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.Post;
 import com.google.firebase.Timestamp;
+import com.example.nanaclu.data.repository.CommentFeed;
 import com.example.nanaclu.data.repository.CommentRepository;
+import com.example.nanaclu.data.repository.LikeStateService;
 import com.example.nanaclu.data.repository.NoticeRepository;
+import com.example.nanaclu.data.repository.PostRepository;
 import com.example.nanaclu.data.repository.UserRepository;
 import com.example.nanaclu.data.model.User;
 import com.google.firebase.auth.FirebaseAuth;
@@ -52,6 +55,9 @@ public class PostDetailActivity extends AppCompatActivity {
 
     private final FirebaseFirestore db = FirebaseFirestore.getInstance();
     private CommentRepository commentRepository;
+    private CommentFeed commentFeed;
+    private TextView tvLoadOlderComments;
+    private PostRepository postRepository;
     private final Handler handler = new Handler(Looper.getMainLooper());
 
     private RecyclerView rvComments;
@@ -66,13 +72,14 @@ public class PostDetailActivity extends AppCompatActivity {
     private TextView tvVideoDuration;
     private LinearLayout btnLike;
     private ImageView ivLike;
+    private Post likeTarget;
 
     // Poll views
     private LinearLayout layoutPoll;
     private LinearLayout layoutPollOptions;
     private TextView tvPollTitle, tvPollDescription, tvPollStatus;
-    private com.google.firebase.firestore.ListenerRegistration pollOptionsListener;
-    private final java.util.List<com.google.firebase.firestore.ListenerRegistration> myVoteListeners = new java.util.ArrayList<>();
+    // LiveData poll dùng chung với feed (PollStateService)
+    private androidx.lifecycle.LiveData<com.example.nanaclu.data.repository.PollStateService.PollState> pollLiveData;
 
     private String groupId;
     private String postId;
@@ -93,6 +100,7 @@ public class PostDetailActivity extends AppCompatActivity {
         postId = getIntent().getStringExtra(EXTRA_POST_ID);
 
         commentRepository = new CommentRepository(db);
+        postRepository = new PostRepository(db);
 
         // Setup toolbar with back button and menu
         com.google.android.material.appbar.MaterialToolbar toolbar = findViewById(R.id.toolbar);
@@ -136,6 +144,12 @@ public class PostDetailActivity extends AppCompatActivity {
             startActivity(intent);
         }, this);
         rvComments.setAdapter(adapter);
+        tvLoadOlderComments = findViewById(R.id.tvLoadOlderComments);
+        tvLoadOlderComments.setOnClickListener(v -> {
+            if (commentFeed != null && commentFeed.loadMore()) {
+                tvLoadOlderComments.setEnabled(false);
+            }
+        });
 
         currentUserId = com.google.firebase.auth.FirebaseAuth.getInstance().getCurrentUser() != null ? com.google.firebase.auth.FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
 
@@ -325,13 +339,7 @@ public class PostDetailActivity extends AppCompatActivity {
     }
 
     private void clearPollListeners() {
-        if (pollOptionsListener != null) { try { pollOptionsListener.remove(); } catch (Exception ignored) {} pollOptionsListener = null; }
-        if (!myVoteListeners.isEmpty()) {
-            for (com.google.firebase.firestore.ListenerRegistration reg : myVoteListeners) {
-                try { if (reg != null) reg.remove(); } catch (Exception ignored) {}
-            }
-            myVoteListeners.clear();
-        }
+        if (pollLiveData != null) { pollLiveData.removeObservers(this); pollLiveData = null; }
     }
 
     private void setupPollDisplay(Post post) {
@@ -355,132 +363,108 @@ public class PostDetailActivity extends AppCompatActivity {
         layoutPollOptions.removeAllViews();
         clearPollListeners();
 
-        pollOptionsListener = new com.example.nanaclu.data.repository.PostRepository(FirebaseFirestore.getInstance())
-                .listenPollOptions(post.groupId, post.postId, optionDocs -> {
-                    layoutPollOptions.removeAllViews();
+        String uid = FirebaseAuth.getInstance().getCurrentUser() != null ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
+        pollLiveData = com.example.nanaclu.data.repository.PollStateService.getInstance()
+                .observe(post.groupId, post.postId, uid);
+        pollLiveData.observe(this, state -> renderPollOptions(post, ended, state));
+    }
 
-                    long totalVotes = 0L;
-                    for (com.google.firebase.firestore.DocumentSnapshot d : optionDocs) {
-                        Long c = d.getLong("voteCount");
-                        if (c != null) totalVotes += c;
-                    }
-                    final boolean hideResult = post.pollHideResult != null && post.pollHideResult;
-
-                    for (com.google.firebase.firestore.DocumentSnapshot d : optionDocs) {
-                        String optionId = d.getId();
-                        String text = d.getString("text");
-                        Long c = d.getLong("voteCount");
-                        long count = c != null ? c : 0L;
-                        int percent = (totalVotes > 0) ? (int) (count * 100 / totalVotes) : 0;
-
-                        LinearLayout row = new LinearLayout(this);
-                        row.setOrientation(LinearLayout.VERTICAL);
-                        int pad = (int) (4 * getResources().getDisplayMetrics().density);
-                        row.setPadding(0, pad, 0, pad);
-
-                        LinearLayout firstLine = new LinearLayout(this);
-                        firstLine.setOrientation(LinearLayout.HORIZONTAL);
-                        firstLine.setGravity(android.view.Gravity.CENTER_VERTICAL);
-
-                        android.widget.CheckBox cb = new android.widget.CheckBox(this);
-                        cb.setEnabled(!ended);
-
-                        TextView tvOptionText = new TextView(this);
-                        LinearLayout.LayoutParams lpText = new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1f);
-                        tvOptionText.setLayoutParams(lpText);
-                        tvOptionText.setText(text != null ? text : "");
-
-                        TextView tvCount = new TextView(this);
-                        if (hideResult) {
-                            tvCount.setVisibility(View.GONE);
-                        } else {
-                            tvCount.setVisibility(View.VISIBLE);
-                            tvCount.setText(count + " phiếu");
-                        }
+    private void renderPollOptions(Post post, boolean ended,
+                                   com.example.nanaclu.data.repository.PollStateService.PollState state) {
+        layoutPollOptions.removeAllViews();
 
-                        firstLine.addView(cb);
-                        firstLine.addView(tvOptionText);
-                        firstLine.addView(tvCount);
-
-                        android.widget.ProgressBar bar = new android.widget.ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
-                        LinearLayout.LayoutParams lpBar = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, (int) (4 * getResources().getDisplayMetrics().density));
-                        lpBar.topMargin = (int) (2 * getResources().getDisplayMetrics().density);
-                        bar.setLayoutParams(lpBar);
-                        bar.setMax(100);
-                        bar.setProgress(percent);
-
-                        row.addView(firstLine);
-                        row.addView(bar);
-
-                        row.setOnClickListener(v -> cb.performClick());
-                        cb.setOnClickListener(v -> {
-                            String currentUserId = FirebaseAuth.getInstance().getCurrentUser() != null ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
-                            if (currentUserId == null) return;
-                            if (!com.example.nanaclu.utils.NetworkUtils.isNetworkAvailable(this)) {
-                                Toast.makeText(this, "Không có kết nối Internet", Toast.LENGTH_SHORT).show();
-                                return;
-                            }
-                            android.util.Log.d("PollVote", "[Detail] voteOption click: group="+post.groupId+", post="+post.postId+", option="+optionId+", user="+currentUserId);
-                            new com.example.nanaclu.data.repository.PostRepository(FirebaseFirestore.getInstance())
-                                    .voteOption(post.groupId, post.postId, optionId, currentUserId,
-                                            aVoid -> android.util.Log.d("PollVote", "[Detail] vote success for option="+optionId),
-                                            e -> android.util.Log.e("PollVote", "[Detail] vote error", e));
-                        });
+        long totalVotes = state.totalVotes;
+        final boolean hideResult = post.pollHideResult != null && post.pollHideResult;
 
-                        // Keep my checked state
-                        String currentUserId = FirebaseAuth.getInstance().getCurrentUser() != null ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
-                        if (currentUserId != null) {
-                            com.google.firebase.firestore.DocumentReference optRef = FirebaseFirestore.getInstance()
-                                    .collection("groups").document(post.groupId)
-                                    .collection("posts").document(post.postId)
-                                    .collection("options").document(optionId);
-                            com.google.firebase.firestore.ListenerRegistration reg = optRef
-                                    .collection("votes").document(currentUserId)
-                                    .addSnapshotListener((snap, err) -> {
-                                        if (err != null) {
-                                            android.util.Log.e("PollVote", "[Detail] listen my vote error", err);
-                                            return;
-                                        }
-                                        boolean checked = snap != null && snap.exists();
-                                        cb.setOnCheckedChangeListener(null);
-                                        cb.setChecked(checked);
-                                    });
-                            myVoteListeners.add(reg);
-                        }
+        for (com.example.nanaclu.data.repository.PollStateService.Option option : state.options) {
+            String optionId = option.optionId;
+            String text = option.text;
+            long count = option.count;
+            int percent = (totalVotes > 0) ? (int) (count * 100 / totalVotes) : 0;
 
-                        layoutPollOptions.addView(row);
-                    }
+            LinearLayout row = new LinearLayout(this);
+            row.setOrientation(LinearLayout.VERTICAL);
+            int pad = (int) (4 * getResources().getDisplayMetrics().density);
+            row.setPadding(0, pad, 0, pad);
+
+            LinearLayout firstLine = new LinearLayout(this);
+            firstLine.setOrientation(LinearLayout.HORIZONTAL);
+            firstLine.setGravity(android.view.Gravity.CENTER_VERTICAL);
+
+            android.widget.CheckBox cb = new android.widget.CheckBox(this);
+            cb.setEnabled(!ended);
+            cb.setChecked(state.mySelections.contains(optionId));
+
+            TextView tvOptionText = new TextView(this);
+            LinearLayout.LayoutParams lpText = new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1f);
+            tvOptionText.setLayoutParams(lpText);
+            tvOptionText.setText(text != null ? text : "");
+
+            TextView tvCount = new TextView(this);
+            if (hideResult) {
+                tvCount.setVisibility(View.GONE);
+            } else {
+                tvCount.setVisibility(View.VISIBLE);
+                tvCount.setText(count + " phiếu");
+            }
 
-                    // Add option button if allowed
-                    boolean allowAdd = post.pollAllowAddOption != null && post.pollAllowAddOption && !ended;
-                    if (allowAdd) {
-                        TextView tvAdd = new TextView(this);
-                        tvAdd.setText("+ Thêm lựa chọn");
-                        tvAdd.setTextColor(0xFF1976D2);
-                        tvAdd.setPadding(0, (int)(8*getResources().getDisplayMetrics().density), 0, 0);
-                        tvAdd.setOnClickListener(v -> {
-                            android.widget.EditText input = new android.widget.EditText(this);
-                            input.setHint("Nhập lựa chọn");
-                            new androidx.appcompat.app.AlertDialog.Builder(this)
-                                    .setTitle("Thêm lựa chọn")
-                                    .setView(input)
-                                    .setPositiveButton("Thêm", (dialog, which) -> {
-                                        String txt = input.getText() != null ? input.getText().toString().trim() : "";
-                                        if (txt.isEmpty()) return;
-                                        new com.example.nanaclu.data.repository.PostRepository(FirebaseFirestore.getInstance())
-                                                .addPollOption(post.groupId, post.postId, txt,
-                                                        aVoid -> android.util.Log.d("PollVote", "[Detail] add option success"),
-                                                        e -> android.util.Log.e("PollVote", "[Detail] add option error", e));
-                                    })
-                                    .setNegativeButton("Hủy", null)
-                                    .show();
-                        });
-                        layoutPollOptions.addView(tvAdd);
-                    }
-                }, error -> {
-                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("PostDetailActivity", error);
-                    android.util.Log.e("PollVote", "[Detail] listenPollOptions error", error);
-                });
+            firstLine.addView(cb);
+            firstLine.addView(tvOptionText);
+            firstLine.addView(tvCount);
+
+            android.widget.ProgressBar bar = new android.widget.ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+            LinearLayout.LayoutParams lpBar = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, (int) (4 * getResources().getDisplayMetrics().density));
+            lpBar.topMargin = (int) (2 * getResources().getDisplayMetrics().density);
+            bar.setLayoutParams(lpBar);
+            bar.setMax(100);
+            bar.setProgress(percent);
+
+            row.addView(firstLine);
+            row.addView(bar);
+
+            row.setOnClickListener(v -> cb.performClick());
+            cb.setOnClickListener(v -> {
+                String currentUserId = FirebaseAuth.getInstance().getCurrentUser() != null ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
+                if (currentUserId == null) return;
+                if (!com.example.nanaclu.utils.NetworkUtils.isNetworkAvailable(this)) {
+                    Toast.makeText(this, "Không có kết nối Internet", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                android.util.Log.d("PollVote", "[Detail] voteOption click: group="+post.groupId+", post="+post.postId+", option="+optionId+", user="+currentUserId);
+                com.example.nanaclu.data.repository.PollStateService.getInstance()
+                        .vote(post, optionId, currentUserId,
+                                e -> android.util.Log.e("PollVote", "[Detail] vote error", e));
+            });
+
+            layoutPollOptions.addView(row);
+        }
+
+        // Add option button if allowed
+        boolean allowAdd = post.pollAllowAddOption != null && post.pollAllowAddOption && !ended;
+        if (allowAdd) {
+            TextView tvAdd = new TextView(this);
+            tvAdd.setText("+ Thêm lựa chọn");
+            tvAdd.setTextColor(0xFF1976D2);
+            tvAdd.setPadding(0, (int)(8*getResources().getDisplayMetrics().density), 0, 0);
+            tvAdd.setOnClickListener(v -> {
+                android.widget.EditText input = new android.widget.EditText(this);
+                input.setHint("Nhập lựa chọn");
+                new androidx.appcompat.app.AlertDialog.Builder(this)
+                        .setTitle("Thêm lựa chọn")
+                        .setView(input)
+                        .setPositiveButton("Thêm", (dialog, which) -> {
+                            String txt = input.getText() != null ? input.getText().toString().trim() : "";
+                            if (txt.isEmpty()) return;
+                            new com.example.nanaclu.data.repository.PostRepository(FirebaseFirestore.getInstance())
+                                    .addPollOption(post.groupId, post.postId, txt,
+                                            aVoid -> android.util.Log.d("PollVote", "[Detail] add option success"),
+                                            e -> android.util.Log.e("PollVote", "[Detail] add option error", e));
+                        })
+                        .setNegativeButton("Hủy", null)
+                        .show();
+            });
+            layoutPollOptions.addView(tvAdd);
+        }
     }
 
     private void loadAuthorName(String authorId) {
@@ -544,14 +528,14 @@ public class PostDetailActivity extends AppCompatActivity {
             return;
         }
 
-        // Load group info from Firestore
-        db.collection("groups").document(groupId)
-                .get()
-                .addOnSuccessListener(groupDoc -> {
-                    if (groupDoc.exists()) {
-                        String groupName = groupDoc.getString("name");
-                        if (groupName != null && !groupName.isEmpty()) {
-                            tvGroupName.setText(groupName);
+        // Tên group lấy qua GroupCache (thường đã có sẵn từ feed / chi tiết group)
+        com.example.nanaclu.data.repository.GroupCache.getInstance().get(groupId,
+                new com.example.nanaclu.data.repository.GroupRepository.GroupCallback() {
+                    @Override
+                    public void onSuccess(com.example.nanaclu.data.model.Group group) {
+                        if (isFinishing()) return;
+                        if (group.name != null && !group.name.isEmpty()) {
+                            tvGroupName.setText(group.name);
                             tvGroupName.setVisibility(View.VISIBLE);
 
                             // Add click listener for group name
@@ -563,13 +547,13 @@ public class PostDetailActivity extends AppCompatActivity {
                         } else {
                             tvGroupName.setVisibility(View.GONE);
                         }
-                    } else {
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        android.util.Log.e("PostDetailActivity", "Error loading group name", e);
                         tvGroupName.setVisibility(View.GONE);
                     }
-                })
-                .addOnFailureListener(e -> {
-                    android.util.Log.e("PostDetailActivity", "Error loading group name", e);
-                    tvGroupName.setVisibility(View.GONE);
                 });
     }
 
@@ -651,93 +635,60 @@ public class PostDetailActivity extends AppCompatActivity {
             return;
         }
 
+        // Post tối thiểu để LikeStateService theo dõi, likeCount được cập nhật khi đếm xong
+        likeTarget = new Post();
+        likeTarget.groupId = groupId;
+        likeTarget.postId = postId;
+
         // Load initial like state and count
         loadLikeStateAndCount(currentUserId);
 
         // Setup click listener
-        btnLike.setOnClickListener(v -> {
-            btnLike.setEnabled(false);
-            toggleLike(currentUserId);
-        });
+        btnLike.setOnClickListener(v -> toggleLike(currentUserId));
     }
 
     private void loadLikeStateAndCount(String currentUserId) {
-        // Check if post is liked by current user
-        db.collection("groups").document(groupId)
-                .collection("posts").document(postId)
-                .collection("likes").document(currentUserId)
-                .get()
-                .addOnSuccessListener(likeDoc -> {
-                    boolean isLiked = likeDoc.exists();
-                    ivLike.setImageResource(isLiked ? R.drawable.heart1 : R.drawable.heart0);
-                })
-                .addOnFailureListener(e -> {
-                    ivLike.setImageResource(R.drawable.heart0);
-                });
+        LikeStateService likeState = LikeStateService.getInstance();
+        Boolean cachedLiked = likeState.getCachedLiked(postId);
+        if (cachedLiked != null) {
+            ivLike.setImageResource(cachedLiked ? R.drawable.heart1 : R.drawable.heart0);
+        } else {
+            postRepository.isPostLiked(groupId, postId, currentUserId, liked -> {
+                likeState.recordLiked(postId, liked);
+                ivLike.setImageResource(Boolean.TRUE.equals(likeState.getCachedLiked(postId))
+                        ? R.drawable.heart1 : R.drawable.heart0);
+            }, e -> ivLike.setImageResource(R.drawable.heart0));
+        }
 
-        // Load like count
-        fetchAndUpdateLikeCount();
+        // Số like chính xác = likeCount + các shard chưa gộp
+        postRepository.getLikeCount(groupId, postId, count -> {
+            likeTarget.likeCount = count.intValue();
+            tvLikeCount.setText(String.valueOf(likeState.getDisplayCount(likeTarget)));
+        }, e -> android.util.Log.e("PostDetailActivity", "Error fetching like count", e));
     }
 
     private void toggleLike(String currentUserId) {
-        // Check current like state
-        db.collection("groups").document(groupId)
-                .collection("posts").document(postId)
-                .collection("likes").document(currentUserId)
-                .get()
-                .addOnSuccessListener(likeDoc -> {
-                    boolean isLiked = likeDoc.exists();
-                    
-                    if (isLiked) {
-                        // Unlike post
-                        db.collection("groups").document(groupId)
-                                .collection("posts").document(postId)
-                                .collection("likes").document(currentUserId)
-                                .delete()
-                                .addOnSuccessListener(aVoid -> {
-                                    ivLike.setImageResource(R.drawable.heart0);
-                                    fetchAndUpdateLikeCount();
-                                    btnLike.setEnabled(true);
-                                })
-                                .addOnFailureListener(e -> {
-                                    btnLike.setEnabled(true);
-                                });
-                    } else {
-                        // Like post
-                        db.collection("groups").document(groupId)
-                                .collection("posts").document(postId)
-                                .collection("likes").document(currentUserId)
-                                .set(new java.util.HashMap<String, Object>())
-                                .addOnSuccessListener(aVoid -> {
-                                    ivLike.setImageResource(R.drawable.heart1);
-                                    fetchAndUpdateLikeCount();
-                                    btnLike.setEnabled(true);
-                                })
-                                .addOnFailureListener(e -> {
-                                    btnLike.setEnabled(true);
-                                });
+        LikeStateService likeState = LikeStateService.getInstance();
+        Boolean shown = likeState.getCachedLiked(postId);
+        boolean liked = likeState.toggle(likeTarget, currentUserId, Boolean.TRUE.equals(shown),
+                new LikeStateService.ToggleCallback() {
+                    @Override
+                    public void onCommitted(boolean nowLiked) {
                     }
-                })
-                .addOnFailureListener(e -> {
-                    btnLike.setEnabled(true);
-                });
-    }
 
-    private void fetchAndUpdateLikeCount() {
-        // Count total likes
-        db.collection("groups").document(groupId)
-                .collection("posts").document(postId)
-                .collection("likes")
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    int likeCount = querySnapshot.size();
-                    tvLikeCount.setText(String.valueOf(likeCount));
-                })
-                .addOnFailureListener(e -> {
-                    android.util.Log.e("PostDetailActivity", "Error fetching like count", e);
+                    @Override
+                    public void onReverted(boolean nowLiked, int displayCount) {
+                        if (isFinishing() || isDestroyed()) return;
+                        ivLike.setImageResource(nowLiked ? R.drawable.heart1 : R.drawable.heart0);
+                        tvLikeCount.setText(String.valueOf(displayCount));
+                        Toast.makeText(PostDetailActivity.this, "Lỗi khi cập nhật lượt thích", Toast.LENGTH_SHORT).show();
+                    }
                 });
+        // Cập nhật ngay, lượt ghi được gộp trong LikeStateService
+        ivLike.setImageResource(liked ? R.drawable.heart1 : R.drawable.heart0);
+        tvLikeCount.setText(String.valueOf(likeState.getDisplayCount(likeTarget)));
     }
-    
+
     private void setupImages(List<String> urls) {
         imageArea.removeAllViews();
         if (urls == null || urls.isEmpty()) return;
@@ -958,6 +909,7 @@ public class PostDetailActivity extends AppCompatActivity {
         videoContainer.setOnClickListener(v -> {
             android.content.Intent intent = new android.content.Intent(this, com.example.nanaclu.ui.video.VideoPlayerActivity.class);
             intent.putExtra("videoUrl", post.videoUrl);
+            intent.putExtra("videoHlsUrl", post.videoHlsUrl);
             intent.putExtra("postId", post.postId);
             startActivity(intent);
         });
@@ -994,49 +946,38 @@ public class PostDetailActivity extends AppCompatActivity {
         startActivity(i);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (commentFeed != null) {
+            commentFeed.stop();
+            commentFeed = null;
+        }
+    }
+
     private void loadComments() {
         if (groupId == null || postId == null) {
             android.util.Log.e("PostDetailActivity", "❌ groupId or postId is null - groupId: " + groupId + ", postId: " + postId);
             return;
         }
-        
+        if (commentFeed != null) return; // Đã nghe, comment mới tự cập nhật
+
         android.util.Log.d("PostDetailActivity", "🔄 Loading comments for post: " + postId + " in group: " + groupId);
-        
-        db.collection("groups").document(groupId)
-                .collection("posts").document(postId)
-                .collection("comments")
-                .orderBy("createdAt")
-                .addSnapshotListener((snap, e) -> {
-                    if (e != null) {
-                        android.util.Log.e("PostDetailActivity", "❌ Error loading comments: " + e.getMessage());
-                        return;
-                    }
-                    if (snap == null) {
-                        android.util.Log.w("PostDetailActivity", "⚠️ Comments snapshot is null");
-                        return;
-                    }
-                    
-                    android.util.Log.d("PostDetailActivity", "📥 Received " + snap.getDocuments().size() + " comments from Firestore");
-                    
-                    List<Comment> list = new ArrayList<>();
-                    for (DocumentSnapshot d : snap.getDocuments()) {
-                        Comment c = new Comment();
-                        c.commentId = d.getId();
-                        c.content = d.getString("content"); // Map from "content" to "content"
-                        c.createdAt = d.getTimestamp("createdAt");
-                        c.authorId = d.getString("authorId");
-                        
-                        android.util.Log.d("PostDetailActivity", "📝 Comment: " + c.commentId + 
-                            " | authorId: " + c.authorId + 
-                            " | content: " + (c.content != null ? c.content.substring(0, Math.min(20, c.content.length())) + "..." : "null"));
-                        
-                        list.add(c);
-                    }
-                    
-                    android.util.Log.d("PostDetailActivity", "✅ Created " + list.size() + " Comment objects, now loading user info...");
-                    // Load user info for all comments
-                    loadUserInfoForComments(list);
-                });
+        commentFeed = commentRepository.getComments(groupId, postId, new CommentRepository.CommentsCallback() {
+            @Override
+            public void onSuccess(List<Comment> comments) {
+                android.util.Log.d("PostDetailActivity", "📥 Comments updated: " + comments.size());
+                adapter.setItems(comments);
+                tvLoadOlderComments.setEnabled(true);
+                tvLoadOlderComments.setVisibility(commentFeed != null && commentFeed.hasMore() ? View.VISIBLE : View.GONE);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                android.util.Log.e("PostDetailActivity", "❌ Error loading comments: " + e.getMessage());
+                tvLoadOlderComments.setEnabled(true);
+            }
+        });
     }
 
     private void showReportDialog() {
@@ -1068,6 +1009,7 @@ public class PostDetailActivity extends AppCompatActivity {
                 .collection("comments").document(comment.commentId)
                 .delete()
                 .addOnSuccessListener(aVoid -> {
+                    if (commentFeed != null) commentFeed.remove(comment.commentId);
                     Toast.makeText(this, "Đã xóa bình luận", Toast.LENGTH_SHORT).show();
                 })
                 .addOnFailureListener(e -> {
@@ -1081,69 +1023,6 @@ public class PostDetailActivity extends AppCompatActivity {
                 });
     }
 
-    private void loadUserInfoForComments(List<Comment> comments) {
-        android.util.Log.d("PostDetailActivity", "👥 Loading user info for " + (comments != null ? comments.size() : 0) + " comments");
-        
-        if (comments == null || comments.isEmpty()) {
-            android.util.Log.d("PostDetailActivity", "⚠️ No comments to load user info for");
-            adapter.setItems(comments);
-            return;
-        }
-
-        com.example.nanaclu.data.repository.UserRepository userRepo = new com.example.nanaclu.data.repository.UserRepository(FirebaseFirestore.getInstance());
-        int[] loadedCount = {0};
-        
-        for (Comment comment : comments) {
-            // Skip comments with null authorId
-            if (comment.authorId == null || comment.authorId.isEmpty()) {
-                android.util.Log.w("PostDetailActivity", "⚠️ Comment " + comment.commentId + " has null/empty authorId");
-                comment.authorName = "Người dùng";
-                comment.authorAvatar = null;
-                loadedCount[0]++;
-                if (loadedCount[0] == comments.size()) {
-                    android.util.Log.d("PostDetailActivity", "✅ All user info loaded (with nulls), updating adapter");
-                    adapter.setItems(comments);
-                }
-                continue;
-            }
-            
-            android.util.Log.d("PostDetailActivity", "🔄 Loading user info for authorId: " + comment.authorId);
-            
-            userRepo.getUserById(comment.authorId, new com.example.nanaclu.data.repository.UserRepository.UserCallback() {
-                @Override
-                public void onSuccess(com.example.nanaclu.data.model.User user) {
-                    comment.authorName = user.displayName;
-                    comment.authorAvatar = user.photoUrl;
-                    loadedCount[0]++;
-                    
-                    android.util.Log.d("PostDetailActivity", "✅ Loaded user info for " + comment.authorId + 
-                        " | name: " + comment.authorName + 
-                        " | avatar: " + (comment.authorAvatar != null ? "has_avatar" : "no_avatar") +
-                        " | progress: " + loadedCount[0] + "/" + comments.size());
-                    
-                    if (loadedCount[0] == comments.size()) {
-                        android.util.Log.d("PostDetailActivity", "🎉 All user info loaded successfully, updating adapter");
-                        adapter.setItems(comments);
-                    }
-                }
-
-                @Override
-                public void onError(Exception e) {
-                    android.util.Log.e("PostDetailActivity", "❌ Failed to load user info for " + comment.authorId + ": " + e.getMessage());
-                    comment.authorName = "Người dùng";
-                    comment.authorAvatar = null;
-                    loadedCount[0]++;
-                    
-                    if (loadedCount[0] == comments.size()) {
-                        android.util.Log.d("PostDetailActivity", "⚠️ All user info loaded (with errors), updating adapter");
-                        adapter.setItems(comments);
-                    }
-                }
-            });
-        }
-    }
-
-
     private void addComment(String text) {
         android.util.Log.d("PostDetailActivity", "=== START addComment ===");
         KeyboardUtils.hideKeyboard(this);
@@ -1161,8 +1040,7 @@ public class PostDetailActivity extends AppCompatActivity {
         commentRepository.addComment(groupId, postId, text, null)
                 .addOnSuccessListener(commentId -> {
                     android.util.Log.d("PostDetailActivity", "✅ Comment added successfully with id: " + commentId);
-                    // Reload comments to reflect new one
-                    loadComments();
+                    // Comment mới tự xuất hiện qua listener của CommentFeed
                 })
                 .addOnFailureListener(e -> {
                     android.util.Log.e("PostDetailActivity", "❌ Failed to add comment via CommentRepository", e);
@@ -14,9 +14,7 @@ import com.example.nanaclu.R;
 import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 public class VotersListActivity extends AppCompatActivity {
     public static final String EXTRA_GROUP_ID = "groupId";
@@ -47,28 +45,9 @@ public class VotersListActivity extends AppCompatActivity {
 
     private void loadVoters(String groupId, String postId) {
         if (groupId == null || postId == null) { finish(); return; }
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-        db.collection("groups").document(groupId)
-                .collection("posts").document(postId)
-                .collection("options")
-                .get()
-                .addOnSuccessListener(optionsSnap -> {
-                    Set<String> voterIds = new HashSet<>();
-                    List<com.google.android.gms.tasks.Task<?>> tasks = new ArrayList<>();
-                    for (com.google.firebase.firestore.DocumentSnapshot opt : optionsSnap.getDocuments()) {
-                        com.google.android.gms.tasks.Task<?> t = opt.getReference().collection("votes").get()
-                                .addOnSuccessListener(votesSnap -> {
-                                    for (com.google.firebase.firestore.DocumentSnapshot v : votesSnap.getDocuments()) {
-                                        voterIds.add(v.getId());
-                                    }
-                                });
-                        tasks.add(t);
-                    }
-                    com.google.android.gms.tasks.Tasks.whenAllComplete(tasks)
-                            .addOnSuccessListener(done -> fetchUsers(new ArrayList<>(voterIds)))
-                            .addOnFailureListener(e -> finish());
-                })
-                .addOnFailureListener(e -> finish());
+        // Người vote lấy từ ballots (kèm phiếu cũ trong options/{id}/votes nếu còn)
+        new com.example.nanaclu.data.repository.PollRepository(FirebaseFirestore.getInstance())
+                .getVoterIds(groupId, postId, this::fetchUsers, e -> finish());
     }
 
     private void fetchUsers(List<String> userIds) {
@@ -16,6 +16,7 @@ import com.example.nanaclu.R;
 import com.example.nanaclu.data.model.ReportModel;
 import com.example.nanaclu.data.repository.ReportRepository;
 import com.google.android.material.tabs.TabLayout;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.util.ArrayList;
@@ -24,6 +25,8 @@ import java.util.List;
 /**
  * Fragment hiển thị dashboard báo cáo cho group admin/moderator
  * Có 2 tab: Pending Reports và Handled Reports
+ * Mỗi tab tải theo trang (cursor), cuộn gần cuối danh sách thì tải trang tiếp.
+ * Số lượng trên tab lấy từ bộ đếm status của group, không đọc toàn bộ reports.
  */
 public class ActiveGroupReportDashboardFragment extends Fragment {
     
@@ -37,8 +40,28 @@ public class ActiveGroupReportDashboardFragment extends Fragment {
     private TextView tvEmptyState;
     private ReportListAdapter adapter;
     
-    private List<ReportModel> pendingReports = new ArrayList<>();
-    private List<ReportModel> handledReports = new ArrayList<>();
+    private static final String TAB_PENDING_TITLE = "Chờ xử lý";
+    private static final String TAB_HANDLED_TITLE = "Đã xử lý";
+    // Còn ít hơn số item này tới cuối danh sách thì tải trang tiếp
+    private static final int LOAD_MORE_THRESHOLD = 5;
+
+    /** Trạng thái phân trang của một tab */
+    private static class TabState {
+        final List<String> statuses;
+        final List<ReportModel> reports = new ArrayList<>();
+        DocumentSnapshot lastDoc;
+        boolean hasMore = true;
+        boolean loading;
+        // Tăng khi tải lại từ đầu, bỏ kết quả của lần tải cũ
+        int generation;
+
+        TabState(List<String> statuses) {
+            this.statuses = statuses;
+        }
+    }
+
+    private final TabState pendingState = new TabState(java.util.Collections.singletonList("pending"));
+    private final TabState handledState = new TabState(ReportRepository.HANDLED_STATUSES);
     
     /**
      * Tạo instance mới của fragment với groupId
@@ -90,8 +113,8 @@ public class ActiveGroupReportDashboardFragment extends Fragment {
      * Thiết lập TabLayout với 2 tab: Pending và Handled
      */
     private void setupTabLayout() {
-        tabLayout.addTab(tabLayout.newTab().setText("Chờ xử lý"));
-        tabLayout.addTab(tabLayout.newTab().setText("Đã xử lý"));
+        tabLayout.addTab(tabLayout.newTab().setText(TAB_PENDING_TITLE));
+        tabLayout.addTab(tabLayout.newTab().setText(TAB_HANDLED_TITLE));
         
         tabLayout.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
             @Override
@@ -119,8 +142,19 @@ public class ActiveGroupReportDashboardFragment extends Fragment {
      */
     private void setupRecyclerView() {
         adapter = new ReportListAdapter(new ArrayList<>(), this::onReportItemClicked);
-        rvReports.setLayoutManager(new LinearLayoutManager(requireContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(requireContext());
+        rvReports.setLayoutManager(layoutManager);
         rvReports.setAdapter(adapter);
+        rvReports.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) return;
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (last >= adapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    loadPage(currentState(), false);
+                }
+            }
+        });
     }
     
     /**
@@ -128,85 +162,107 @@ public class ActiveGroupReportDashboardFragment extends Fragment {
      */
     private void loadInitialData() {
         android.util.Log.d("ReportDashboard", "Loading initial data for group: " + groupId);
-        loadPendingReports();
-        loadHandledReports();
+        loadCounts();
+        loadPage(pendingState, true);
+        loadPage(handledState, true);
     }
-    
+
     /**
-     * Load danh sách báo cáo đang chờ xử lý
+     * Hiển thị số báo cáo của mỗi tab từ bộ đếm status
      */
-    private void loadPendingReports() {
-        android.util.Log.d("ReportDashboard", "Loading pending reports for group: " + groupId);
-        reportRepository.fetchGroupReports(groupId, "pending", new ReportRepository.Callback<List<ReportModel>>() {
+    private void loadCounts() {
+        reportRepository.getReportCountsByStatus(groupId, new ReportRepository.Callback<java.util.Map<String, Integer>>() {
             @Override
-            public void onSuccess(List<ReportModel> reports) {
-                android.util.Log.d("ReportDashboard", "Loaded " + (reports != null ? reports.size() : 0) + " pending reports");
-                pendingReports.clear();
-                if (reports != null) {
-                    pendingReports.addAll(reports);
-                }
-                
-                // Nếu đang ở tab pending, cập nhật UI
-                if (tabLayout.getSelectedTabPosition() == 0) {
-                    showPendingReports();
+            public void onSuccess(java.util.Map<String, Integer> counts) {
+                if (!isAdded()) return;
+                int pending = counts.containsKey("pending") ? counts.get("pending") : 0;
+                int handled = 0;
+                for (String status : ReportRepository.HANDLED_STATUSES) {
+                    Integer c = counts.get(status);
+                    if (c != null) handled += c;
                 }
+                setTabTitle(0, TAB_PENDING_TITLE, pending);
+                setTabTitle(1, TAB_HANDLED_TITLE, handled);
             }
-            
+
             @Override
             public void onError(Exception e) {
-                android.util.Log.e("ReportDashboard", "Error loading pending reports", e);
-                // Hiển thị lỗi cho user
-                if (getContext() != null) {
-                    android.widget.Toast.makeText(getContext(), "Lỗi tải báo cáo: " + e.getMessage(), android.widget.Toast.LENGTH_SHORT).show();
-                }
+                android.util.Log.e("ReportDashboard", "Error loading report counts", e);
             }
         });
     }
-    
+
+    private void setTabTitle(int position, String title, int count) {
+        TabLayout.Tab tab = tabLayout.getTabAt(position);
+        if (tab != null) tab.setText(count > 0 ? title + " (" + count + ")" : title);
+    }
+
     /**
-     * Load danh sách báo cáo đã xử lý (tất cả trừ pending)
+     * Tải trang tiếp theo của tab (reset = tải lại từ trang đầu)
      */
-    private void loadHandledReports() {
-        reportRepository.fetchGroupReports(groupId, null, new ReportRepository.Callback<List<ReportModel>>() {
+    private void loadPage(TabState state, boolean reset) {
+        if (reset) {
+            state.generation++;
+            state.lastDoc = null;
+            state.hasMore = true;
+            state.loading = false;
+        }
+        if (state.loading || !state.hasMore) return;
+        state.loading = true;
+        int generation = state.generation;
+
+        reportRepository.fetchGroupReports(groupId, state.statuses, ReportRepository.DEFAULT_PAGE_SIZE, state.lastDoc,
+                new ReportRepository.Callback<ReportRepository.ReportPage>() {
             @Override
-            public void onSuccess(List<ReportModel> allReports) {
-                handledReports.clear();
-                if (allReports != null) {
-                    // Filter ra các report đã xử lý (không phải pending)
-                    for (ReportModel report : allReports) {
-                        if (!"pending".equals(report.status)) {
-                            handledReports.add(report);
-                        }
-                    }
-                }
-                
-                // Nếu đang ở tab handled, cập nhật UI
-                if (tabLayout.getSelectedTabPosition() == 1) {
-                    showHandledReports();
+            public void onSuccess(ReportRepository.ReportPage page) {
+                if (generation != state.generation || !isAdded()) return;
+                state.loading = false;
+                if (reset) state.reports.clear();
+                state.reports.addAll(page.items);
+                state.lastDoc = page.lastDoc;
+                state.hasMore = page.hasMore;
+                android.util.Log.d("ReportDashboard", "Loaded " + page.items.size() + " reports " + state.statuses);
+
+                // Nếu đang ở tab này, cập nhật UI
+                if (state == currentState()) {
+                    showReports(state);
                 }
             }
-            
+
             @Override
             public void onError(Exception e) {
-                android.util.Log.e("ReportDashboard", "Error loading handled reports", e);
+                if (generation != state.generation) return;
+                state.loading = false;
+                android.util.Log.e("ReportDashboard", "Error loading reports " + state.statuses, e);
+                // Hiển thị lỗi cho user
+                if (getContext() != null && state == pendingState) {
+                    android.widget.Toast.makeText(getContext(), "Lỗi tải báo cáo: " + e.getMessage(), android.widget.Toast.LENGTH_SHORT).show();
+                }
             }
         });
     }
-    
+
+    private TabState currentState() {
+        return tabLayout.getSelectedTabPosition() == 1 ? handledState : pendingState;
+    }
+
     /**
      * Hiển thị danh sách báo cáo đang chờ xử lý
      */
     private void showPendingReports() {
-        adapter.setItems(pendingReports);
-        updateEmptyState(pendingReports.isEmpty());
+        showReports(pendingState);
     }
-    
+
     /**
      * Hiển thị danh sách báo cáo đã xử lý
      */
     private void showHandledReports() {
-        adapter.setItems(handledReports);
-        updateEmptyState(handledReports.isEmpty());
+        showReports(handledState);
+    }
+
+    private void showReports(TabState state) {
+        adapter.setItems(state.reports);
+        updateEmptyState(state.reports.isEmpty());
     }
     
     /**
@@ -276,31 +276,17 @@ public class ReportDetailFragment extends Fragment {
             return;
         }
         
-        // Kick user khỏi group (xóa member)
-        FirebaseFirestore.getInstance()
-            .collection("groups").document(groupId)
-            .collection("members").document(report.reportedUserId)
-            .delete()
-            .addOnSuccessListener(aVoid -> {
-                // Giảm memberCount của group
-                FirebaseFirestore.getInstance()
-                    .collection("groups").document(groupId)
-                    .update("memberCount", com.google.firebase.firestore.FieldValue.increment(-1));
-
-                // Log the kick action
-                com.example.nanaclu.data.repository.LogRepository logRepository =
-                    new com.example.nanaclu.data.repository.LogRepository(FirebaseFirestore.getInstance());
-
-                Map<String, Object> logMetadata = new HashMap<>();
-                logMetadata.put("reason", "reported_content");
-                logMetadata.put("reportId", reportId);
-                if (!note.isEmpty()) {
-                    logMetadata.put("moderatorNote", note);
-                }
-
-                logRepository.logGroupAction(groupId, com.example.nanaclu.data.model.GroupLog.TYPE_MEMBER_REMOVED,
-                    "user", report.reportedUserId, null, logMetadata);
+        Map<String, Object> logMetadata = new HashMap<>();
+        logMetadata.put("reason", "reported_content");
+        logMetadata.put("reportId", reportId);
+        if (!note.isEmpty()) {
+            logMetadata.put("moderatorNote", note);
+        }
 
+        // Kick user khỏi group: xóa member, membership index, memberCount và log trong cùng một transaction
+        new com.example.nanaclu.data.repository.MembershipService(FirebaseFirestore.getInstance())
+            .remove(groupId, java.util.Collections.singletonList(report.reportedUserId), logMetadata)
+            .addOnSuccessListener(removed -> {
                 // Sau khi kick thành công, update report status
                 Map<String, Object> extra = new HashMap<>();
                 extra.put("moderatorId", FirebaseAuth.getInstance().getUid());
@@ -2,6 +2,8 @@ package com.example.nanaclu.ui.search;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.View;
@@ -22,7 +24,6 @@ import com.example.nanaclu.ui.adapter.UserSearchAdapter;
 import com.example.nanaclu.ui.profile.ProfileActivity;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,6 +33,7 @@ import java.util.List;
  * Real-time search với pagination
  */
 public class SearchUsersActivity extends AppCompatActivity {
+    private static final long SEARCH_DEBOUNCE_MS = 300;
 
     private TextInputEditText editTextSearch;
     private RecyclerView recyclerView;
@@ -44,7 +46,11 @@ public class SearchUsersActivity extends AppCompatActivity {
     private String lastQuery = "";
     private boolean isLoading = false;
     private boolean hasMoreData = true;
-    private com.google.firebase.firestore.DocumentSnapshot lastDocumentSnapshot = null;
+    private UserRepository.SearchPage lastPage = null;
+    // Tăng mỗi lần tìm từ khóa mới, bỏ qua kết quả của từ khóa cũ
+    private int generation;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = () -> searchUsers(lastQuery, true);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -98,14 +104,18 @@ public class SearchUsersActivity extends AppCompatActivity {
                 if (query.equals(lastQuery)) return;
 
                 lastQuery = query;
-                
+                searchHandler.removeCallbacks(searchRunnable);
+
                 if (query.isEmpty()) {
                     // Clear results
+                    generation++;
+                    isLoading = false;
+                    showProgress(false);
                     adapter.setUsers(new ArrayList<>());
                     showEmptyState("Nhập tên để tìm kiếm người dùng");
                 } else {
-                    // Search users
-                    searchUsers(query, true);
+                    // Chờ người dùng ngừng gõ rồi mới tìm
+                    searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
                 }
             }
 
@@ -137,76 +147,56 @@ public class SearchUsersActivity extends AppCompatActivity {
     }
 
     private void searchUsers(String query, boolean isNewSearch) {
-        if (query.isEmpty() || isLoading) return;
-
-        isLoading = true;
+        if (query.isEmpty()) return;
         if (isNewSearch) {
-            showProgress(true);
-            lastDocumentSnapshot = null;
+            generation++;
+            isLoading = false;
+            lastPage = null;
             hasMoreData = true;
         }
+        if (isLoading || !hasMoreData) return;
 
-        // Tạo Firestore query
-        Query firestoreQuery = FirebaseFirestore.getInstance()
-                .collection("users")
-                .whereGreaterThanOrEqualTo("displayName", query)
-                .whereLessThan("displayName", query + "\uf8ff")
-                .orderBy("displayName")
-                .limit(10);
-
-        // Nếu có lastDocumentSnapshot (pagination), thêm startAfter
-        if (lastDocumentSnapshot != null && !isNewSearch) {
-            firestoreQuery = firestoreQuery.startAfter(lastDocumentSnapshot);
-        }
-
-        firestoreQuery.get()
-                .addOnSuccessListener(querySnapshot -> {
-                    isLoading = false;
-                    showProgress(false);
-                    swipeRefresh.setRefreshing(false);
-
-                    if (querySnapshot.isEmpty()) {
-                        if (isNewSearch) {
-                            adapter.setUsers(new ArrayList<>());
-                            showEmptyState("Không tìm thấy người dùng nào");
-                        }
-                        hasMoreData = false;
-                        return;
-                    }
-
-                    List<User> users = new ArrayList<>();
-                    for (com.google.firebase.firestore.DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                        User user = doc.toObject(User.class);
-                        if (user != null && user.userId != null) {
-                            users.add(user);
-                        }
-                    }
+        isLoading = true;
+        int requestGeneration = generation;
+        if (isNewSearch) showProgress(true);
 
-                    if (isNewSearch) {
-                        adapter.setUsers(users);
-                        showResults(true);
+        userRepository.searchUsers(query, isNewSearch ? null : lastPage, new UserRepository.SearchCallback() {
+            @Override
+            public void onSuccess(UserRepository.SearchPage page) {
+                if (requestGeneration != generation || isFinishing()) return;
+                isLoading = false;
+                showProgress(false);
+                swipeRefresh.setRefreshing(false);
+
+                lastPage = page;
+                hasMoreData = page.hasMore;
+                if (isNewSearch) {
+                    adapter.setUsers(page.users);
+                    if (page.users.isEmpty()) {
+                        showEmptyState("Không tìm thấy người dùng nào");
                     } else {
-                        adapter.addUsers(users);
+                        showResults(true);
                     }
+                } else {
+                    adapter.addUsers(page.users);
+                }
+            }
 
-                    // Update pagination
-                    if (!querySnapshot.getDocuments().isEmpty()) {
-                        lastDocumentSnapshot = querySnapshot.getDocuments().get(querySnapshot.size() - 1);
-                    }
-                    
-                    if (users.size() < 10) {
-                        hasMoreData = false;
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    isLoading = false;
-                    showProgress(false);
-                    swipeRefresh.setRefreshing(false);
-                    
-                    com.example.nanaclu.utils.NetworkErrorLogger.logIfNoNetwork("SearchUsersActivity", e);
-                    android.util.Log.e("SearchUsersActivity", "Search failed", e);
-                   
-                });
+            @Override
+            public void onError(Exception e) {
+                if (requestGeneration != generation || isFinishing()) return;
+                isLoading = false;
+                showProgress(false);
+                swipeRefresh.setRefreshing(false);
+                android.util.Log.e("SearchUsersActivity", "Search failed", e);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        searchHandler.removeCallbacks(searchRunnable);
+        super.onDestroy();
     }
 
     private void refreshSearch() {
@@ -214,6 +204,7 @@ public class SearchUsersActivity extends AppCompatActivity {
             swipeRefresh.setRefreshing(false);
             return;
         }
+        UserRepository.clearSearchCache();
         searchUsers(lastQuery, true);
     }
 
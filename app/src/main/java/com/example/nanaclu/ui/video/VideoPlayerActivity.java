@@ -19,8 +19,13 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.nanaclu.R;
 import com.example.nanaclu.utils.NetworkUtils;
+import com.example.nanaclu.utils.VideoCacheManager;
+import androidx.annotation.OptIn;
+import androidx.media3.common.util.UnstableApi;
 import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.source.DefaultMediaSourceFactory;
 import androidx.media3.common.MediaItem;
+import androidx.media3.common.MimeTypes;
 import androidx.media3.common.PlaybackException;
 import androidx.media3.common.Player;
 import androidx.media3.ui.PlayerView;
@@ -31,6 +36,8 @@ public class VideoPlayerActivity extends AppCompatActivity {
     private ExoPlayer player;
     private PlayerView playerView;
     private String videoUrl;
+    private String videoHlsUrl;
+    private boolean playingHls = false;
     private String postId;
     
     // Custom controls
@@ -54,9 +61,10 @@ public class VideoPlayerActivity extends AppCompatActivity {
         
         // Get video URL and post ID from intent
         videoUrl = getIntent().getStringExtra("videoUrl");
+        videoHlsUrl = getIntent().getStringExtra("videoHlsUrl");
         postId = getIntent().getStringExtra("postId");
         
-        if (videoUrl == null) {
+        if (videoUrl == null && videoHlsUrl == null) {
             Toast.makeText(this, "Video URL not found", Toast.LENGTH_SHORT).show();
             finish();
             return;
@@ -83,12 +91,26 @@ public class VideoPlayerActivity extends AppCompatActivity {
         btnFullscreen = findViewById(R.id.btnFullscreen);
     }
     
+    @OptIn(markerClass = UnstableApi.class)
     private void initializePlayer() {
-        player = new ExoPlayer.Builder(this).build();
+        // Đọc video qua cache dùng chung để phát lại không tải lại từ mạng
+        DefaultMediaSourceFactory mediaSourceFactory = new DefaultMediaSourceFactory(
+                VideoCacheManager.getInstance(this).getDataSourceFactory());
+        player = new ExoPlayer.Builder(this)
+                .setMediaSourceFactory(mediaSourceFactory)
+                .build();
         playerView.setPlayer(player);
         
-        MediaItem mediaItem = MediaItem.fromUri(videoUrl);
-        player.setMediaItem(mediaItem);
+        // Ưu tiên HLS (adaptive) nếu bài viết đã được đóng gói, fallback về MP4 gốc
+        if (videoHlsUrl != null && !videoHlsUrl.isEmpty()) {
+            playingHls = true;
+            player.setMediaItem(new MediaItem.Builder()
+                    .setUri(videoHlsUrl)
+                    .setMimeType(MimeTypes.APPLICATION_M3U8)
+                    .build());
+        } else {
+            player.setMediaItem(MediaItem.fromUri(videoUrl));
+        }
         player.prepare();
         
         // Set up player listeners
@@ -123,6 +145,14 @@ public class VideoPlayerActivity extends AppCompatActivity {
             
             @Override
             public void onPlayerError(PlaybackException error) {
+                if (playingHls && videoUrl != null) {
+                    // HLS lỗi -> phát lại bằng file MP4 gốc, giữ vị trí hiện tại
+                    playingHls = false;
+                    long position = player.getCurrentPosition();
+                    player.setMediaItem(MediaItem.fromUri(videoUrl), position);
+                    player.prepare();
+                    return;
+                }
                 progressBar.setVisibility(View.GONE);
                 String errorMessage = "Lỗi khi phát video: ";
                 
@@ -0,0 +1,424 @@
+package com.example.nanaclu.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.OptIn;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.MimeTypes;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.effect.Presentation;
+import androidx.media3.transformer.Composition;
+import androidx.media3.transformer.DefaultEncoderFactory;
+import androidx.media3.transformer.EditedMediaItem;
+import androidx.media3.transformer.Effects;
+import androidx.media3.transformer.ExportException;
+import androidx.media3.transformer.ExportResult;
+import androidx.media3.transformer.InAppMuxer;
+import androidx.media3.transformer.Transformer;
+import androidx.media3.transformer.VideoEncoderSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Đóng gói video đã upload thành một ladder HLS nhỏ (2-3 rendition).
+ * Mỗi rendition được transcode bằng Media3 Transformer ra một file fragmented MP4,
+ * sau đó tách thành init segment + các segment theo byte range (EXT-X-BYTERANGE)
+ * để chỉ cần upload 1 file media cho mỗi rendition.
+ *
+ * Playlist được sinh sau khi upload (PostRepository.uploadHlsPackage) vì URL tải
+ * của Firebase Storage có token riêng từng file, không dùng được đường dẫn tương đối.
+ * Mỗi instance chỉ dùng cho một lần đóng gói.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class HlsPackager {
+    private static final String TAG = "HlsPackager";
+
+    // Chỉ đóng gói video đủ dài / đủ lớn để ABR có ý nghĩa
+    private static final long MIN_DURATION_MS = 10_000;
+    private static final int MIN_SOURCE_HEIGHT = 480;
+
+    public static class Rendition {
+        public final String name;
+        public final int height;
+        public final int bitrate;
+
+        public Rendition(String name, int height, int bitrate) {
+            this.name = name;
+            this.height = height;
+            this.bitrate = bitrate;
+        }
+    }
+
+    public static final List<Rendition> DEFAULT_LADDER = Collections.unmodifiableList(java.util.Arrays.asList(
+            new Rendition("360p", 360, 800_000),
+            new Rendition("540p", 540, 1_600_000),
+            new Rendition("720p", 720, 3_000_000)
+    ));
+
+    /** Một segment trong file fragmented MP4 (byte range + thời lượng) */
+    public static class Segment {
+        public final long offset;
+        public final long length;
+        public final double durationSec;
+
+        Segment(long offset, long length, double durationSec) {
+            this.offset = offset;
+            this.length = length;
+            this.durationSec = durationSec;
+        }
+    }
+
+    /** Kết quả đóng gói của một rendition */
+    public static class RenditionOutput {
+        public final Rendition rendition;
+        public final File mediaFile;
+        public final long initLength;
+        public final List<Segment> segments;
+        public final int width;
+        public final int height;
+        public final long bandwidth;
+
+        RenditionOutput(Rendition rendition, File mediaFile, long initLength, List<Segment> segments,
+                        int width, int height, long bandwidth) {
+            this.rendition = rendition;
+            this.mediaFile = mediaFile;
+            this.initLength = initLength;
+            this.segments = segments;
+            this.width = width;
+            this.height = height;
+            this.bandwidth = bandwidth;
+        }
+    }
+
+    public interface PackageCallback {
+        void onSuccess(List<RenditionOutput> outputs);
+        void onError(Exception e);
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    public HlsPackager(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Bước đóng gói là tùy chọn: bỏ qua video ngắn hoặc độ phân giải thấp
+     */
+    public static boolean shouldPackage(long durationMs, int width, int height) {
+        return durationMs >= MIN_DURATION_MS && Math.min(width, height) >= MIN_SOURCE_HEIGHT;
+    }
+
+    /**
+     * Chọn các rendition không vượt quá độ phân giải gốc (luôn giữ ít nhất rendition thấp nhất)
+     */
+    public static List<Rendition> ladderFor(int sourceWidth, int sourceHeight) {
+        int sourceShortSide = Math.min(sourceWidth, sourceHeight);
+        List<Rendition> ladder = new ArrayList<>();
+        for (Rendition r : DEFAULT_LADDER) {
+            if (r.height <= sourceShortSide) ladder.add(r);
+        }
+        if (ladder.isEmpty()) ladder.add(DEFAULT_LADDER.get(0));
+        return ladder;
+    }
+
+    /**
+     * Transcode lần lượt từng rendition vào outputDir. Callback chạy trên main thread.
+     */
+    public void packageVideo(Uri sourceUri, List<Rendition> ladder, File outputDir, PackageCallback callback) {
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            callback.onError(new IOException("Cannot create " + outputDir));
+            return;
+        }
+        List<RenditionOutput> outputs = new ArrayList<>();
+        mainHandler.post(() -> exportNext(sourceUri, ladder, 0, outputDir, outputs, callback));
+    }
+
+    private void exportNext(Uri sourceUri, List<Rendition> ladder, int index, File outputDir,
+                            List<RenditionOutput> outputs, PackageCallback callback) {
+        if (index >= ladder.size()) {
+            ioExecutor.shutdown();
+            callback.onSuccess(outputs);
+            return;
+        }
+        Rendition rendition = ladder.get(index);
+        File outFile = new File(outputDir, rendition.name + ".mp4");
+
+        Transformer transformer = new Transformer.Builder(context)
+                .setVideoMimeType(MimeTypes.VIDEO_H264)
+                .setAudioMimeType(MimeTypes.AUDIO_AAC)
+                .setEncoderFactory(new DefaultEncoderFactory.Builder(context)
+                        .setRequestedVideoEncoderSettings(new VideoEncoderSettings.Builder()
+                                .setBitrate(rendition.bitrate)
+                                .build())
+                        .build())
+                .setMuxerFactory(new InAppMuxer.Factory.Builder()
+                        .setOutputFragmentedMp4(true)
+                        .build())
+                .addListener(new Transformer.Listener() {
+                    @Override
+                    public void onCompleted(@NonNull Composition composition, @NonNull ExportResult result) {
+                        ioExecutor.execute(() -> {
+                            try {
+                                RenditionOutput output = splitSegments(rendition, outFile, result);
+                                mainHandler.post(() -> {
+                                    outputs.add(output);
+                                    exportNext(sourceUri, ladder, index + 1, outputDir, outputs, callback);
+                                });
+                            } catch (Exception e) {
+                                Log.e(TAG, "Segment split failed for " + rendition.name, e);
+                                mainHandler.post(() -> fail(callback, e));
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(@NonNull Composition composition, @NonNull ExportResult result,
+                                        @NonNull ExportException exception) {
+                        Log.e(TAG, "Export failed for " + rendition.name, exception);
+                        fail(callback, exception);
+                    }
+                })
+                .build();
+
+        EditedMediaItem item = new EditedMediaItem.Builder(MediaItem.fromUri(sourceUri))
+                .setEffects(new Effects(
+                        Collections.emptyList(),
+                        Collections.singletonList(Presentation.createForHeight(rendition.height))))
+                .build();
+        transformer.start(item, outFile.getAbsolutePath());
+    }
+
+    private void fail(PackageCallback callback, Exception e) {
+        ioExecutor.shutdown();
+        callback.onError(e);
+    }
+
+    // ---------- Fragmented MP4 -> byte-range segments ----------
+
+    private static RenditionOutput splitSegments(Rendition rendition, File file, ExportResult result) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long fileLength = raf.length();
+            long timescale = 0;
+            long videoTrackId = -1;
+            long initLength = -1;
+            List<Long> moofOffsets = new ArrayList<>();
+            List<Long> decodeTimes = new ArrayList<>();
+
+            long pos = 0;
+            while (pos + 8 <= fileLength) {
+                long[] header = readBoxHeader(raf, pos);
+                long size = header[0];
+                int type = (int) header[1];
+                long headerSize = header[2];
+                if (size < headerSize) break;
+
+                if (type == fourCc("moov")) {
+                    long[] trackInfo = readFirstVideoTrack(raf, pos + headerSize, pos + size);
+                    videoTrackId = trackInfo[0];
+                    timescale = trackInfo[1];
+                } else if (type == fourCc("moof")) {
+                    if (initLength < 0) initLength = pos;
+                    moofOffsets.add(pos);
+                    decodeTimes.add(readDecodeTime(raf, pos + headerSize, pos + size, videoTrackId));
+                }
+                pos += size;
+            }
+
+            if (initLength < 0 || moofOffsets.isEmpty() || timescale <= 0) {
+                throw new IOException("Output is not a fragmented MP4: " + file.getName());
+            }
+
+            double totalSec = result.durationMs / 1000.0;
+            List<Segment> segments = new ArrayList<>();
+            for (int i = 0; i < moofOffsets.size(); i++) {
+                long start = moofOffsets.get(i);
+                long end = i + 1 < moofOffsets.size() ? moofOffsets.get(i + 1) : fileLength;
+                double startSec = decodeTimes.get(i) / (double) timescale;
+                double endSec = i + 1 < decodeTimes.size()
+                        ? decodeTimes.get(i + 1) / (double) timescale : Math.max(totalSec, startSec);
+                segments.add(new Segment(start, end - start, Math.max(endSec - startSec, 0.001)));
+            }
+
+            long bandwidth = result.averageVideoBitrate > 0
+                    ? result.averageVideoBitrate + Math.max(result.averageAudioBitrate, 0)
+                    : rendition.bitrate;
+            return new RenditionOutput(rendition, file, initLength, segments,
+                    result.width, result.height, bandwidth);
+        }
+    }
+
+    /** @return {trackId, timescale} của track video đầu tiên trong moov */
+    private static long[] readFirstVideoTrack(RandomAccessFile raf, long start, long end) throws IOException {
+        long pos = start;
+        long[] fallback = null;
+        while (pos + 8 <= end) {
+            long[] header = readBoxHeader(raf, pos);
+            if (header[0] < header[2]) break;
+            if ((int) header[1] == fourCc("trak")) {
+                long[] info = readTrack(raf, pos + header[2], pos + header[0]);
+                if (info[2] == 1) return new long[]{info[0], info[1]};
+                if (fallback == null) fallback = new long[]{info[0], info[1]};
+            }
+            pos += header[0];
+        }
+        return fallback != null ? fallback : new long[]{-1, 0};
+    }
+
+    /** @return {trackId, timescale, isVideo} */
+    private static long[] readTrack(RandomAccessFile raf, long start, long end) throws IOException {
+        long trackId = -1, timescale = 0, isVideo = 0;
+        long pos = start;
+        while (pos + 8 <= end) {
+            long[] header = readBoxHeader(raf, pos);
+            if (header[0] < header[2]) break;
+            int type = (int) header[1];
+            long body = pos + header[2];
+            if (type == fourCc("tkhd")) {
+                raf.seek(body);
+                int version = raf.readUnsignedByte();
+                raf.skipBytes(3 + (version == 1 ? 16 : 8));
+                trackId = raf.readInt() & 0xFFFFFFFFL;
+            } else if (type == fourCc("mdia")) {
+                long child = body;
+                long mdiaEnd = pos + header[0];
+                while (child + 8 <= mdiaEnd) {
+                    long[] ch = readBoxHeader(raf, child);
+                    if (ch[0] < ch[2]) break;
+                    long chBody = child + ch[2];
+                    if ((int) ch[1] == fourCc("mdhd")) {
+                        raf.seek(chBody);
+                        int version = raf.readUnsignedByte();
+                        raf.skipBytes(3 + (version == 1 ? 16 : 8));
+                        timescale = raf.readInt() & 0xFFFFFFFFL;
+                    } else if ((int) ch[1] == fourCc("hdlr")) {
+                        raf.seek(chBody + 8);
+                        isVideo = raf.readInt() == fourCc("vide") ? 1 : 0;
+                    }
+                    child += ch[0];
+                }
+            }
+            pos += header[0];
+        }
+        return new long[]{trackId, timescale, isVideo};
+    }
+
+    /** baseMediaDecodeTime (tfdt) của track video trong một moof */
+    private static long readDecodeTime(RandomAccessFile raf, long start, long end, long videoTrackId) throws IOException {
+        long pos = start;
+        long firstTime = 0;
+        boolean hasFirst = false;
+        while (pos + 8 <= end) {
+            long[] header = readBoxHeader(raf, pos);
+            if (header[0] < header[2]) break;
+            if ((int) header[1] == fourCc("traf")) {
+                long trackId = -1;
+                long time = 0;
+                long child = pos + header[2];
+                long trafEnd = pos + header[0];
+                while (child + 8 <= trafEnd) {
+                    long[] ch = readBoxHeader(raf, child);
+                    if (ch[0] < ch[2]) break;
+                    long chBody = child + ch[2];
+                    if ((int) ch[1] == fourCc("tfhd")) {
+                        raf.seek(chBody + 4);
+                        trackId = raf.readInt() & 0xFFFFFFFFL;
+                    } else if ((int) ch[1] == fourCc("tfdt")) {
+                        raf.seek(chBody);
+                        int version = raf.readUnsignedByte();
+                        raf.skipBytes(3);
+                        time = version == 1 ? raf.readLong() : (raf.readInt() & 0xFFFFFFFFL);
+                    }
+                    child += ch[0];
+                }
+                if (trackId == videoTrackId) return time;
+                if (!hasFirst) { firstTime = time; hasFirst = true; }
+            }
+            pos += header[0];
+        }
+        return firstTime;
+    }
+
+    /** @return {size, type, headerSize} */
+    private static long[] readBoxHeader(RandomAccessFile raf, long pos) throws IOException {
+        raf.seek(pos);
+        long size = raf.readInt() & 0xFFFFFFFFL;
+        int type = raf.readInt();
+        long headerSize = 8;
+        if (size == 1) {
+            size = raf.readLong();
+            headerSize = 16;
+        } else if (size == 0) {
+            size = raf.length() - pos;
+        }
+        return new long[]{size, type, headerSize};
+    }
+
+    private static int fourCc(String type) {
+        return (type.charAt(0) << 24) | (type.charAt(1) << 16) | (type.charAt(2) << 8) | type.charAt(3);
+    }
+
+    // ---------- Playlist ----------
+
+    /** Media playlist của một rendition, mọi segment trỏ vào cùng một file qua byte range */
+    public static String buildMediaPlaylist(RenditionOutput output, String mediaUrl) {
+        double maxDuration = 0;
+        for (Segment s : output.segments) maxDuration = Math.max(maxDuration, s.durationSec);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("#EXTM3U\n");
+        sb.append("#EXT-X-VERSION:7\n");
+        sb.append("#EXT-X-TARGETDURATION:").append((long) Math.ceil(maxDuration)).append('\n');
+        sb.append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+        sb.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        sb.append("#EXT-X-MAP:URI=\"").append(mediaUrl)
+                .append("\",BYTERANGE=\"").append(output.initLength).append("@0\"\n");
+        for (Segment s : output.segments) {
+            sb.append(String.format(Locale.US, "#EXTINF:%.3f,\n", s.durationSec));
+            sb.append("#EXT-X-BYTERANGE:").append(s.length).append('@').append(s.offset).append('\n');
+            sb.append(mediaUrl).append('\n');
+        }
+        sb.append("#EXT-X-ENDLIST\n");
+        return sb.toString();
+    }
+
+    /** Master playlist liệt kê các rendition theo thứ tự bandwidth tăng dần */
+    public static String buildMasterPlaylist(List<RenditionOutput> outputs, List<String> playlistUrls) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("#EXTM3U\n");
+        sb.append("#EXT-X-VERSION:7\n");
+        sb.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        for (int i = 0; i < outputs.size(); i++) {
+            RenditionOutput o = outputs.get(i);
+            sb.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(o.bandwidth);
+            if (o.width > 0 && o.height > 0) {
+                sb.append(",RESOLUTION=").append(o.width).append('x').append(o.height);
+            }
+            sb.append('\n').append(playlistUrls.get(i)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Xóa thư mục tạm sau khi upload xong */
+    public static void deleteOutput(File outputDir) {
+        File[] files = outputDir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        outputDir.delete();
+    }
+}
@@ -35,6 +35,24 @@ public class NetworkUtils {
         }
     }
 
+    /**
+     * Số upload song song phù hợp với băng thông hiện tại (upstream + metered)
+     */
+    public static int getUploadConcurrency(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) return 1;
+        Network network = connectivityManager.getActiveNetwork();
+        if (network == null) return 1;
+        NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(network);
+        if (capabilities == null) return 1;
+
+        int upstreamKbps = capabilities.getLinkUpstreamBandwidthKbps();
+        boolean unmetered = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        if (upstreamKbps >= 10_000 && unmetered) return 4;
+        if (upstreamKbps >= 2_000) return 2;
+        return 1;
+    }
+
     public static void registerNetworkCallback(Context context) {
         ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
         if (connectivityManager == null) {
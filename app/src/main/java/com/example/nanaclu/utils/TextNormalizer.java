@@ -0,0 +1,65 @@
+package com.example.nanaclu.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa chuỗi để lưu làm trường tìm kiếm theo tiền tố trên Firestore:
+ * chữ thường, bỏ dấu tiếng Việt (đ -> d), gộp khoảng trắng.
+ * Trường lưu và từ khóa tìm kiếm phải đi qua cùng một hàm này.
+ */
+public final class TextNormalizer {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    // Ký tự cuối dải Unicode thường dùng để giới hạn trên cho truy vấn tiền tố
+    public static final String PREFIX_END = "\uf8ff";
+
+    private TextNormalizer() {}
+
+    public static String normalizeForSearch(String text) {
+        if (text == null) return "";
+        String s = Normalizer.normalize(text, Normalizer.Form.NFD);
+        s = MARKS.matcher(s).replaceAll("");
+        s = s.replace('đ', 'd').replace('Đ', 'D');
+        s = SPACES.matcher(s).replaceAll(" ").trim();
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    // Độ dài tối đa của tiền tố được lưu cho tìm kiếm bằng arrayContains
+    public static final int MAX_PREFIX_LENGTH = 20;
+
+    /**
+     * Các tiền tố (tối đa MAX_PREFIX_LENGTH ký tự) của tên đã chuẩn hóa tính từ đầu mỗi từ,
+     * ví dụ "nguyen van an" -> "n", "ng", ..., "nguyen van an", "v", "va", "van", "van a", "van an", "a", "an".
+     * Lưu vào mảng để tìm bằng arrayContains theo bất kỳ từ nào trong tên.
+     */
+    public static List<String> searchPrefixes(String normalized) {
+        Set<String> prefixes = new LinkedHashSet<>();
+        if (normalized == null) return new ArrayList<>();
+        for (int start = 0; start < normalized.length(); start++) {
+            if (start > 0 && normalized.charAt(start - 1) != ' ') continue;
+            int end = Math.min(normalized.length(), start + MAX_PREFIX_LENGTH);
+            for (int i = start + 1; i <= end; i++) {
+                String prefix = normalized.substring(start, i);
+                if (!prefix.endsWith(" ")) prefixes.add(prefix);
+            }
+        }
+        return new ArrayList<>(prefixes);
+    }
+
+    /** Tên đã chuẩn hóa có từ nào (tính đến hết tên) bắt đầu bằng query đã chuẩn hóa không */
+    public static boolean matchesPrefix(String normalized, String query) {
+        if (normalized == null || query == null || query.isEmpty()) return false;
+        for (int start = 0; start < normalized.length(); start++) {
+            if (start > 0 && normalized.charAt(start - 1) != ' ') continue;
+            if (normalized.startsWith(query, start)) return true;
+        }
+        return false;
+    }
+}
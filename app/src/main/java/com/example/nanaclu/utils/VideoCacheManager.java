@@ -0,0 +1,111 @@
+package com.example.nanaclu.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.OptIn;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.DefaultDataSource;
+import androidx.media3.datasource.DefaultHttpDataSource;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.CacheWriter;
+import androidx.media3.datasource.cache.LeastRecentlyUsedCacheEvictor;
+import androidx.media3.datasource.cache.SimpleCache;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cache video dùng chung cho toàn bộ process.
+ * - Một SimpleCache duy nhất (LRU, giới hạn dung lượng) trong cacheDir/video_cache
+ * - Một CacheDataSource.Factory dùng chung cho mọi ExoPlayer
+ * - Prefetch vài giây đầu của video đang hiển thị trong feed để phát ngay khi mở
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class VideoCacheManager {
+    private static final String TAG = "VideoCacheManager";
+    private static final String CACHE_DIR_NAME = "video_cache";
+    private static final long MAX_CACHE_BYTES = 200L * 1024 * 1024; // 200MB
+    // ~5 giây đầu với bitrate video đăng bài thông thường (~1.5 Mbps)
+    private static final long PREFETCH_BYTES = 1024L * 1024;
+    private static final int PREFETCH_THREADS = 2;
+
+    private static VideoCacheManager instance;
+
+    private final SimpleCache cache;
+    private final CacheDataSource.Factory cacheDataSourceFactory;
+    private final ExecutorService prefetchExecutor;
+    private final Set<String> prefetching = Collections.synchronizedSet(new HashSet<>());
+
+    private VideoCacheManager(Context context) {
+        Context appContext = context.getApplicationContext();
+        File cacheDir = new File(appContext.getCacheDir(), CACHE_DIR_NAME);
+        cache = new SimpleCache(cacheDir,
+                new LeastRecentlyUsedCacheEvictor(MAX_CACHE_BYTES),
+                new StandaloneDatabaseProvider(appContext));
+
+        DefaultHttpDataSource.Factory httpFactory = new DefaultHttpDataSource.Factory()
+                .setAllowCrossProtocolRedirects(true);
+        cacheDataSourceFactory = new CacheDataSource.Factory()
+                .setCache(cache)
+                .setUpstreamDataSourceFactory(new DefaultDataSource.Factory(appContext, httpFactory))
+                .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+        prefetchExecutor = Executors.newFixedThreadPool(PREFETCH_THREADS);
+    }
+
+    public static synchronized VideoCacheManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new VideoCacheManager(context);
+        }
+        return instance;
+    }
+
+    /**
+     * DataSource factory đọc qua cache, dùng khi build ExoPlayer / MediaSource
+     */
+    public CacheDataSource.Factory getDataSourceFactory() {
+        return cacheDataSourceFactory;
+    }
+
+    /**
+     * Tải trước phần đầu của video vào cache (chạy nền, bỏ qua nếu đã có trong cache)
+     */
+    public void prefetch(String videoUrl) {
+        if (videoUrl == null || videoUrl.isEmpty()) return;
+        if (cache.isCached(videoUrl, 0, PREFETCH_BYTES)) return;
+        if (!prefetching.add(videoUrl)) return;
+
+        prefetchExecutor.execute(() -> {
+            try {
+                DataSpec dataSpec = new DataSpec.Builder()
+                        .setUri(Uri.parse(videoUrl))
+                        .setLength(PREFETCH_BYTES)
+                        .build();
+                CacheWriter writer = new CacheWriter(
+                        cacheDataSourceFactory.createDataSource(), dataSpec, null, null);
+                writer.cache();
+            } catch (InterruptedIOException e) {
+                Log.d(TAG, "Prefetch interrupted: " + videoUrl);
+            } catch (Exception e) {
+                Log.w(TAG, "Prefetch failed: " + videoUrl, e);
+            } finally {
+                prefetching.remove(videoUrl);
+            }
+        });
+    }
+
+    /**
+     * Dung lượng cache video hiện tại (bytes)
+     */
+    public long getCacheSpace() {
+        return cache.getCacheSpace();
+    }
+}
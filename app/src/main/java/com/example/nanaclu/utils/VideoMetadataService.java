@@ -0,0 +1,215 @@
+package com.example.nanaclu.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.nanaclu.data.repository.PostRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Trích xuất metadata + thumbnail video trên background executor.
+ * - Chỉ mở MediaMetadataRetriever một lần cho mỗi Uri, kết quả được cache theo Uri
+ * - Sinh sẵn vài frame ứng viên để người dùng chọn thumbnail
+ * - Thumbnail đã được nén JPEG sẵn để truyền thẳng vào uploadVideoThumbnail
+ * Callback luôn chạy trên main thread.
+ */
+public class VideoMetadataService {
+    private static final String TAG = "VideoMetadataService";
+    private static final int MAX_THUMB_WIDTH = 640;
+    private static final int CANDIDATE_COUNT = 5;
+    private static final int CACHE_ENTRIES = 3;
+
+    private static VideoMetadataService instance;
+
+    public static class VideoInfo {
+        public final Uri uri;
+        public final PostRepository.VideoMetadata metadata;
+        public final List<Bitmap> candidateFrames;
+        public final int selectedIndex;
+        public final Bitmap thumbnail;
+        public final byte[] thumbnailJpeg;
+
+        VideoInfo(Uri uri, PostRepository.VideoMetadata metadata, List<Bitmap> candidateFrames,
+                  int selectedIndex, byte[] thumbnailJpeg) {
+            this.uri = uri;
+            this.metadata = metadata;
+            this.candidateFrames = candidateFrames;
+            this.selectedIndex = selectedIndex;
+            this.thumbnail = candidateFrames.get(selectedIndex);
+            this.thumbnailJpeg = thumbnailJpeg;
+        }
+    }
+
+    public interface Callback {
+        void onReady(VideoInfo info);
+        void onError(Exception e);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, VideoInfo> cache = new LruCache<>(CACHE_ENTRIES);
+    // Gộp các request đang chạy cho cùng một Uri (chỉ decode một lần)
+    private final Map<String, List<Callback>> inFlight = new HashMap<>();
+
+    private VideoMetadataService() { }
+
+    public static synchronized VideoMetadataService getInstance() {
+        if (instance == null) {
+            instance = new VideoMetadataService();
+        }
+        return instance;
+    }
+
+    /** Kết quả đã cache (null nếu chưa trích xuất xong) */
+    public VideoInfo peek(Uri uri) {
+        return uri != null ? cache.get(uri.toString()) : null;
+    }
+
+    /**
+     * Lấy metadata + thumbnail cho video. Trả về ngay nếu đã có trong cache.
+     * Phải gọi từ main thread.
+     */
+    public void load(Context context, Uri uri, Callback callback) {
+        if (uri == null) {
+            callback.onError(new IllegalArgumentException("Video uri is null"));
+            return;
+        }
+        String key = uri.toString();
+        VideoInfo cached = cache.get(key);
+        if (cached != null) {
+            callback.onReady(cached);
+            return;
+        }
+        List<Callback> waiting = inFlight.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        inFlight.put(key, waiting);
+
+        Context appContext = context.getApplicationContext();
+        executor.execute(() -> {
+            try {
+                VideoInfo info = extract(appContext, uri);
+                mainHandler.post(() -> {
+                    cache.put(key, info);
+                    List<Callback> callbacks = inFlight.remove(key);
+                    if (callbacks != null) for (Callback c : callbacks) c.onReady(info);
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "Extract failed for " + uri, e);
+                mainHandler.post(() -> {
+                    List<Callback> callbacks = inFlight.remove(key);
+                    if (callbacks != null) for (Callback c : callbacks) c.onError(e);
+                });
+            }
+        });
+    }
+
+    /**
+     * Chọn frame ứng viên khác làm thumbnail (nén JPEG lại trên background)
+     */
+    public void selectCandidate(Uri uri, int index, Callback callback) {
+        VideoInfo current = peek(uri);
+        if (current == null || index < 0 || index >= current.candidateFrames.size()) {
+            callback.onError(new IllegalStateException("Video info not ready"));
+            return;
+        }
+        if (index == current.selectedIndex) {
+            callback.onReady(current);
+            return;
+        }
+        executor.execute(() -> {
+            byte[] jpeg = PostRepository.compressBitmapToJpeg(current.candidateFrames.get(index));
+            VideoInfo updated = new VideoInfo(uri, current.metadata, current.candidateFrames, index, jpeg);
+            mainHandler.post(() -> {
+                cache.put(uri.toString(), updated);
+                callback.onReady(updated);
+            });
+        });
+    }
+
+    /** Bỏ kết quả của Uri khỏi cache (khi người dùng bỏ video) */
+    public void evict(Uri uri) {
+        if (uri != null) cache.remove(uri.toString());
+    }
+
+    private static VideoInfo extract(Context context, Uri uri) throws Exception {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, uri);
+
+            String durationStr = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            String widthStr = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH);
+            String heightStr = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT);
+            String rotationStr = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
+            long duration = durationStr != null ? Long.parseLong(durationStr) : 0;
+            int width = widthStr != null ? Integer.parseInt(widthStr) : 0;
+            int height = heightStr != null ? Integer.parseInt(heightStr) : 0;
+            int rotation = rotationStr != null ? Integer.parseInt(rotationStr) : 0;
+            if (rotation == 90 || rotation == 270) {
+                int tmp = width; width = height; height = tmp;
+            }
+
+            PostRepository.VideoMetadata metadata =
+                    new PostRepository.VideoMetadata(duration, width, height, querySize(context, uri));
+
+            // Frame mặc định ở giây thứ 1 (giống generateVideoThumbnail), sau đó các frame rải đều
+            List<Long> timesUs = new ArrayList<>();
+            timesUs.add(Math.min(1_000_000L, duration * 1000));
+            for (int i = 1; i < CANDIDATE_COUNT; i++) {
+                timesUs.add(duration * 1000 * i / CANDIDATE_COUNT);
+            }
+
+            int dstW = Math.min(MAX_THUMB_WIDTH, width > 0 ? width : MAX_THUMB_WIDTH);
+            int dstH = width > 0 && height > 0 ? Math.round(dstW * (float) height / width) : dstW;
+            List<Bitmap> frames = new ArrayList<>();
+            for (long t : timesUs) {
+                Bitmap frame = retriever.getScaledFrameAtTime(t, MediaMetadataRetriever.OPTION_CLOSEST_SYNC, dstW, dstH);
+                if (frame != null) frames.add(frame);
+            }
+            if (frames.isEmpty()) {
+                Bitmap first = retriever.getFrameAtTime(0, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+                if (first == null) throw new IllegalStateException("Cannot decode any video frame");
+                frames.add(first);
+            }
+
+            byte[] jpeg = PostRepository.compressBitmapToJpeg(frames.get(0));
+            return new VideoInfo(uri, metadata, Collections.unmodifiableList(frames), 0, jpeg);
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                Log.w(TAG, "Release retriever failed", e);
+            }
+        }
+    }
+
+    private static long querySize(Context context, Uri uri) {
+        long size = 0L;
+        try (Cursor cursor = context.getContentResolver().query(uri, null, null, null, null)) {
+            if (cursor != null) {
+                int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                if (sizeIndex != -1 && cursor.moveToFirst()) size = cursor.getLong(sizeIndex);
+            }
+        } catch (Exception ignored) { }
+        return Math.max(size, 0L);
+    }
+}
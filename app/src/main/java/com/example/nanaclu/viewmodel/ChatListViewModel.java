@@ -18,6 +18,9 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ChatListViewModel extends ViewModel {
+    // Số bạn bè tối đa hiển thị ở danh sách chat
+    private static final int FRIENDS_LIMIT = 100;
+
     // UI thread items for adapter consumption
     public static class UiThreadItem {
         public String chatId;
@@ -125,30 +128,33 @@ public class ChatListViewModel extends ViewModel {
     public void loadFriends() {
         String uid = currentUid();
         if (uid == null) { _friendUsers.postValue(new ArrayList<>()); return; }
-        friendshipRepo.listFriends(uid, 100)
-                .addOnSuccessListener(friendIds -> {
-                    if (friendIds == null || friendIds.isEmpty()) {
-                        _friendUsers.postValue(new ArrayList<>());
-                        return;
-                    }
-                    List<User> users = new ArrayList<>();
-                    AtomicInteger loaded = new AtomicInteger(0);
-                    int total = friendIds.size();
-                    for (String fid : friendIds) {
-                        userRepo.getUserById(fid, new UserRepository.UserCallback() {
-                            @Override public void onSuccess(User u) {
-                                if (u != null) users.add(u);
-                                if (loaded.incrementAndGet() == total) _friendUsers.postValue(users);
-                            }
-                            @Override public void onError(Exception e) {
-                                if (loaded.incrementAndGet() == total) _friendUsers.postValue(users);
-                            }
-                        });
-                    }
+        friendshipRepo.listFriendIds(uid)
+                .addOnSuccessListener(ids -> {
+                    List<String> limited = ids.size() > FRIENDS_LIMIT
+                            ? new ArrayList<>(ids.subList(0, FRIENDS_LIMIT)) : ids;
+                    loadFriendsFrom(limited, 0, new ArrayList<>());
                 })
                 .addOnFailureListener(e -> _friendUsers.postValue(new ArrayList<>()));
     }
 
+    /**
+     * Tải lần lượt từng trang trong friendIds (đã cắt ở FRIENDS_LIMIT), nối trang vào cuối
+     * và đăng danh sách sau mỗi trang
+     */
+    private void loadFriendsFrom(List<String> friendIds, int cursor, List<User> loaded) {
+        friendshipRepo.listFriendsPage(friendIds, cursor, FriendshipRepository.FRIEND_PAGE_SIZE)
+                .addOnSuccessListener(page -> {
+                    loaded.addAll(page.users);
+                    _friendUsers.postValue(new ArrayList<>(loaded));
+                    if (page.hasMore) {
+                        loadFriendsFrom(friendIds, page.nextCursor, loaded);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    if (loaded.isEmpty()) _friendUsers.postValue(new ArrayList<>());
+                });
+    }
+
     private void buildUiItems(List<Chat> chats) {
         List<UiThreadItem> out = new ArrayList<>();
         if (chats == null || chats.isEmpty()) { _uiThreads.postValue(out); return; }
@@ -173,7 +179,19 @@ public class ChatListViewModel extends ViewModel {
 
             if ("group".equals(chat.type)) {
                 item.groupId = chat.groupId;
-                if (chat.groupId != null) {
+                com.example.nanaclu.data.model.GroupSummary summary = chat.groupId != null
+                        ? com.example.nanaclu.data.repository.MembershipIndex.getInstance().getCached(chat.groupId) : null;
+                if (summary != null) {
+                    // Tên / avatar lấy từ membership index, không đọc group
+                    item.name = summary.name != null ? summary.name : "Group Chat";
+                    item.avatarUrl = summary.avatarImageId;
+                    out.add(item);
+                    if (resolved.incrementAndGet() == total) {
+                        // Sort by time (descending) before posting
+                        out.sort((a, b) -> Long.compare(b.time, a.time));
+                        _uiThreads.postValue(out);
+                    }
+                } else if (chat.groupId != null) {
                     db.collection("groups").document(chat.groupId)
                             .get()
                             .addOnSuccessListener(ds -> {
@@ -52,22 +52,15 @@ public class GroupViewModel extends ViewModel {
         group.avatarImageId = null;
         group.coverImageId = null;
 
-        groupRepository.generateUniqueCode(6)
-                .addOnSuccessListener(code -> {
-                    group.code = code;
-                    groupRepository.createGroup(group)
-                            .addOnSuccessListener(aVoid -> {
-                                _isLoading.setValue(false);
-                                loadUserGroups();
-                            })
-                            .addOnFailureListener(e -> {
-                                _isLoading.setValue(false);
-                                _error.setValue("Failed to create group: " + e.getMessage());
-                            });
+        // createGroup giữ chỗ mã tham gia cùng lúc với việc ghi group
+        groupRepository.createGroup(group)
+                .addOnSuccessListener(aVoid -> {
+                    _isLoading.setValue(false);
+                    loadUserGroups();
                 })
                 .addOnFailureListener(e -> {
                     _isLoading.setValue(false);
-                    _error.setValue("Failed to generate code: " + e.getMessage());
+                    _error.setValue("Failed to create group: " + e.getMessage());
                 });
     }
 
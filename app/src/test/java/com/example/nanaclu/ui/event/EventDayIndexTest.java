@@ -0,0 +1,217 @@
+package com.example.nanaclu.ui.event;
+
+import com.example.nanaclu.data.model.Event;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Kiểm tra EventDayIndex gắn event vào đúng epoch day (kể cả event nhiều ngày, qua tháng)
+ * và cho cùng kết quả với cách quét toàn bộ event cho từng ô lịch.
+ */
+public class EventDayIndexTest {
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    @Test
+    public void singleDayEvent_onlyOnItsDay() {
+        Event e = event("a", at(2026, 3, 10, 9, 0), at(2026, 3, 10, 11, 0));
+        EventDayIndex index = build(e);
+
+        assertEquals(Collections.singletonList(e), index.eventsOn(day(2026, 3, 10)));
+        assertEquals(0, index.countOn(day(2026, 3, 9)));
+        assertEquals(0, index.countOn(day(2026, 3, 11)));
+    }
+
+    @Test
+    public void multiDayEvent_onEveryDayFromStartToEnd() {
+        Event e = event("a", at(2026, 5, 4, 20, 0), at(2026, 5, 7, 8, 0));
+        EventDayIndex index = build(e);
+
+        for (int d = 4; d <= 7; d++) {
+            assertEquals("day " + d, 1, index.countOn(day(2026, 5, d)));
+        }
+        assertEquals(0, index.countOn(day(2026, 5, 3)));
+        assertEquals(0, index.countOn(day(2026, 5, 8)));
+    }
+
+    @Test
+    public void eventAcrossMonthBoundary_onDaysOfBothMonths() {
+        Event e = event("a", at(2026, 1, 30, 18, 0), at(2026, 2, 2, 10, 0));
+        EventDayIndex index = build(e);
+
+        // eventsOn(year, month, day) dùng month theo Calendar (0-11)
+        assertEquals(1, index.eventsOn(2026, 0, 30).size());
+        assertEquals(1, index.eventsOn(2026, 0, 31).size());
+        assertEquals(1, index.eventsOn(2026, 1, 1).size());
+        assertEquals(1, index.eventsOn(2026, 1, 2).size());
+        assertEquals(0, index.eventsOn(2026, 1, 3).size());
+        assertEquals(0, index.eventsOn(2026, 0, 29).size());
+    }
+
+    @Test
+    public void eventAcrossYearBoundary_onDaysOfBothYears() {
+        Event e = event("a", at(2025, 12, 31, 22, 0), at(2026, 1, 1, 2, 0));
+        EventDayIndex index = build(e);
+
+        assertEquals(1, index.countOn(day(2025, 12, 31)));
+        assertEquals(1, index.countOn(day(2026, 1, 1)));
+    }
+
+    @Test
+    public void bucketsByLocalDate_notUtc() {
+        // 23:30 giờ VN là 16:30 UTC cùng ngày; 06:00 giờ VN là 23:00 UTC ngày hôm trước
+        Event late = event("late", at(2026, 4, 15, 23, 30), 0);
+        Event early = event("early", at(2026, 4, 16, 6, 0), 0);
+        EventDayIndex index = build(late, early);
+
+        assertEquals(Collections.singletonList(late), index.eventsOn(day(2026, 4, 15)));
+        assertEquals(Collections.singletonList(early), index.eventsOn(day(2026, 4, 16)));
+    }
+
+    @Test
+    public void missingOrInvalidEndTime_onlyOnStartDay() {
+        Event noEnd = event("a", at(2026, 6, 1, 9, 0), 0);
+        Event endBeforeStart = event("b", at(2026, 6, 1, 10, 0), at(2026, 5, 20, 10, 0));
+        EventDayIndex index = build(noEnd, endBeforeStart);
+
+        assertEquals(2, index.countOn(day(2026, 6, 1)));
+        assertEquals(0, index.countOn(day(2026, 5, 31)));
+        assertEquals(0, index.countOn(day(2026, 6, 2)));
+    }
+
+    @Test
+    public void eventsOfDay_sortedByStartTime() {
+        Event afternoon = event("a", at(2026, 7, 1, 15, 0), 0);
+        Event morning = event("b", at(2026, 7, 1, 8, 0), 0);
+        Event spanning = event("c", at(2026, 6, 30, 9, 0), at(2026, 7, 1, 12, 0));
+        EventDayIndex index = build(afternoon, morning, spanning);
+
+        assertEquals(Arrays.asList(spanning, morning, afternoon), index.eventsOn(day(2026, 7, 1)));
+    }
+
+    @Test
+    public void sameEventIdInSeveralLists_countedOnce() {
+        // Event nhiều ngày nằm trong bucket của cả hai tháng
+        Event e = event("a", at(2026, 8, 31, 9, 0), at(2026, 9, 1, 9, 0));
+        Event copy = event("a", e.startTime, e.endTime);
+        EventDayIndex index = EventDayIndex.build(
+                Arrays.asList(Collections.singletonList(e), Collections.singletonList(copy)), ZONE);
+
+        assertEquals(1, index.countOn(day(2026, 8, 31)));
+        assertEquals(1, index.countOn(day(2026, 9, 1)));
+    }
+
+    @Test
+    public void span_isCappedAtOneYear() {
+        Event e = event("a", at(2026, 1, 1, 0, 0), at(2030, 1, 1, 0, 0));
+        EventDayIndex index = build(e);
+
+        long start = day(2026, 1, 1);
+        assertEquals(1, index.countOn(start + 365));
+        assertEquals(0, index.countOn(start + 366));
+    }
+
+    @Test
+    public void nullListsAndEvents_ignored() {
+        Event e = event("a", at(2026, 2, 14, 9, 0), 0);
+        EventDayIndex index = EventDayIndex.build(Arrays.asList(null, Arrays.asList(null, e)), ZONE);
+
+        assertEquals(1, index.countOn(day(2026, 2, 14)));
+        assertEquals(0, EventDayIndex.EMPTY.countOn(day(2026, 2, 14)));
+    }
+
+    /** Đếm qua index phải khớp với quét toàn bộ event cho từng ô lịch (cách cũ) */
+    @Test
+    public void index_matchesPerCellScan() {
+        List<Event> events = randomEvents(300, 42L);
+        LocalDate firstMonth = LocalDate.of(2026, 1, 1);
+
+        assertEquals(renderWithScan(events, firstMonth, 12), renderWithIndex(events, firstMonth, 12));
+    }
+
+    /** Tổng số event của mọi ô (một lần dựng index cho cả khoảng) */
+    private static long renderWithIndex(List<Event> events, LocalDate firstMonth, int months) {
+        EventDayIndex index = EventDayIndex.build(Collections.singletonList(events), ZONE);
+        long total = 0;
+        for (int m = 0; m < months; m++) {
+            long gridStart = gridStart(firstMonth.plusMonths(m));
+            for (int cell = 0; cell < 42; cell++) {
+                total += index.countOn(gridStart + cell);
+            }
+        }
+        return total;
+    }
+
+    /** Cách cũ: mỗi ô quét toàn bộ event và so ngày */
+    private static long renderWithScan(List<Event> events, LocalDate firstMonth, int months) {
+        long total = 0;
+        for (int m = 0; m < months; m++) {
+            long gridStart = gridStart(firstMonth.plusMonths(m));
+            for (int cell = 0; cell < 42; cell++) {
+                long day = gridStart + cell;
+                for (Event e : events) {
+                    long startDay = toDay(e.startTime);
+                    long endDay = e.endTime > e.startTime ? toDay(e.endTime) : startDay;
+                    if (day >= startDay && day <= endDay) total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    /** Ô đầu tiên của lưới tháng (Chủ nhật trước hoặc đúng ngày 1) */
+    private static long gridStart(LocalDate month) {
+        LocalDate first = month.withDayOfMonth(1);
+        return first.toEpochDay() - first.getDayOfWeek().getValue() % 7;
+    }
+
+    private static List<Event> randomEvents(int count, long seed) {
+        Random random = new Random(seed);
+        long from = at(2025, 12, 1, 0, 0);
+        long range = at(2027, 1, 31, 0, 0) - from;
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long start = from + (long) (random.nextDouble() * range);
+            // Phần lớn event trong ngày, một số kéo dài vài ngày
+            long duration = random.nextInt(10) == 0
+                    ? (1 + random.nextInt(5)) * 86_400_000L
+                    : (1 + random.nextInt(4)) * 3_600_000L;
+            events.add(event("e" + i, start, start + duration));
+        }
+        return events;
+    }
+
+    private static long toDay(long millis) {
+        return java.time.Instant.ofEpochMilli(millis).atZone(ZONE).toLocalDate().toEpochDay();
+    }
+
+    private static EventDayIndex build(Event... events) {
+        return EventDayIndex.build(Collections.singletonList(Arrays.asList(events)), ZONE);
+    }
+
+    private static Event event(String id, long start, long end) {
+        Event e = new Event();
+        e.eventId = id;
+        e.startTime = start;
+        e.endTime = end;
+        return e;
+    }
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static long day(int year, int month, int day) {
+        return LocalDate.of(year, month, day).toEpochDay();
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.nanaclu.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Kiểm tra chuẩn hóa tên và các tiền tố lưu cho tìm kiếm user.
+ * Từ khóa và trường lưu phải đi qua cùng normalizeForSearch nên các case ở đây cũng là hợp đồng của query.
+ */
+public class TextNormalizerTest {
+
+    @Test
+    public void normalize_foldsAccentsCaseAndSpaces() {
+        assertEquals("nguyen van an", TextNormalizer.normalizeForSearch("  Nguyễn   Văn An "));
+        assertEquals("dang thi dao", TextNormalizer.normalizeForSearch("Đặng Thị Đào"));
+        assertEquals("", TextNormalizer.normalizeForSearch(null));
+    }
+
+    @Test
+    public void searchPrefixes_startAtEachWord() {
+        List<String> prefixes = TextNormalizer.searchPrefixes("van an");
+        assertEquals(Arrays.asList("v", "va", "van", "van a", "van an", "a", "an"), prefixes);
+    }
+
+    @Test
+    public void searchPrefixes_cappedAtMaxLength() {
+        String name = "abcdefghijklmnopqrstuvwxyz";
+        List<String> prefixes = TextNormalizer.searchPrefixes(name);
+        assertEquals(TextNormalizer.MAX_PREFIX_LENGTH, prefixes.size());
+        assertEquals(name.substring(0, TextNormalizer.MAX_PREFIX_LENGTH), prefixes.get(prefixes.size() - 1));
+    }
+
+    @Test
+    public void searchPrefixes_noDuplicates() {
+        List<String> prefixes = TextNormalizer.searchPrefixes("an an");
+        assertEquals(Arrays.asList("a", "an", "an a", "an an"), prefixes);
+    }
+
+    @Test
+    public void normalizedQuery_isAStoredPrefix() {
+        List<String> prefixes = TextNormalizer.searchPrefixes(TextNormalizer.normalizeForSearch("Trần Đức Minh"));
+        assertTrue(prefixes.contains(TextNormalizer.normalizeForSearch("duc")));
+        assertTrue(prefixes.contains(TextNormalizer.normalizeForSearch("Đức Mi")));
+        assertTrue(prefixes.contains(TextNormalizer.normalizeForSearch("TRAN")));
+        assertFalse(prefixes.contains(TextNormalizer.normalizeForSearch("inh")));
+    }
+
+    @Test
+    public void matchesPrefix_onlyAtWordStarts() {
+        assertTrue(TextNormalizer.matchesPrefix("nguyen van an", "van"));
+        assertTrue(TextNormalizer.matchesPrefix("nguyen van an", "van an"));
+        assertTrue(TextNormalizer.matchesPrefix("nguyen van an", "nguyen van an"));
+        assertFalse(TextNormalizer.matchesPrefix("nguyen van an", "guyen"));
+        assertFalse(TextNormalizer.matchesPrefix("nguyen van an", "an van"));
+        assertFalse(TextNormalizer.matchesPrefix(null, "an"));
+        assertFalse(TextNormalizer.matchesPrefix("an", ""));
+    }
+}